@@ -0,0 +1,142 @@
+package edu.brown.cs.student.sprint5.benchmarks;
+
+import static edu.brown.cs.student.sprint5.Constants.REDLINING_PATH;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.toJson;
+
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Geometry;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Properties;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Utility class that builds synthetic datasets of a requested size for the benchmarks, by copying
+ * the features of the redlining dataset (or the mocked GeoJSON, if the redlining data is not
+ * present) with slightly shifted coordinates.
+ */
+public class BenchmarkData {
+
+  /** The dataset used when the redlining data is not available. */
+  public static final String FALLBACK_PATH = "data/mocks/mockGeoJSON.json";
+
+  /** How far, in degrees, each copy of the base dataset is shifted from the previous one. */
+  private static final double COPY_OFFSET = 0.0005;
+
+  /**
+   * Loads the dataset that synthetic data is scaled from.
+   *
+   * @return the base FeatureCollection
+   * @throws IOException if neither dataset can be read
+   */
+  public static FeatureCollection loadBase() throws IOException {
+    String path = Files.exists(Paths.get(REDLINING_PATH)) ? REDLINING_PATH : FALLBACK_PATH;
+    return fromJsonFile(path, FeatureCollection.class);
+  }
+
+  /**
+   * Builds a FeatureCollection with exactly size features by cycling through the base features with
+   * a geometry, shifting each full cycle by a small offset.
+   *
+   * @param base the dataset to scale
+   * @param size the number of features to produce
+   * @return the synthetic FeatureCollection
+   */
+  public static FeatureCollection scale(FeatureCollection base, int size) {
+    List<Feature> source =
+        base.features().stream().filter(feature -> feature.geometry() != null).toList();
+    Set<Feature> features = new LinkedHashSet<>();
+    for (int i = 0; i < size; i++) {
+      Feature original = source.get(i % source.size());
+      double offset = (i / source.size()) * COPY_OFFSET;
+      Properties p = original.properties();
+      features.add(
+          new Feature(
+              original.type(),
+              new Geometry(
+                  shift(original.geometry().coordinates(), offset), original.geometry().type()),
+              new Properties(
+                  p.city(),
+                  p.state(),
+                  p.name(),
+                  p.holc_id(),
+                  p.holc_grade(),
+                  i,
+                  p.area_description_data())));
+    }
+    return new FeatureCollection(base.type(), features);
+  }
+
+  /**
+   * Writes a FeatureCollection to a temporary GeoJSON file that is deleted on exit.
+   *
+   * @param data the FeatureCollection to write
+   * @return the path of the file
+   * @throws IOException if the file cannot be written
+   */
+  public static Path writeTemp(FeatureCollection data) throws IOException {
+    Path path = Files.createTempFile("benchmark", ".json");
+    path.toFile().deleteOnExit();
+    Files.writeString(path, toJson(data, FeatureCollection.class));
+    return path;
+  }
+
+  /**
+   * Returns a box around the middle of the dataset covering a quarter of its extent in each
+   * direction, used as a typical viewport query.
+   *
+   * @param data the dataset
+   * @return the query box
+   */
+  public static Envelope viewport(FeatureCollection data) {
+    double minLat = Double.POSITIVE_INFINITY;
+    double maxLat = Double.NEGATIVE_INFINITY;
+    double minLng = Double.POSITIVE_INFINITY;
+    double maxLng = Double.NEGATIVE_INFINITY;
+    for (Feature feature : data.features()) {
+      double[] coord = feature.geometry().coordinates()[0][0][0];
+      minLat = Math.min(minLat, coord[1]);
+      maxLat = Math.max(maxLat, coord[1]);
+      minLng = Math.min(minLng, coord[0]);
+      maxLng = Math.max(maxLng, coord[0]);
+    }
+    double latSpan = maxLat - minLat;
+    double lngSpan = maxLng - minLng;
+    double centerLat = (minLat + maxLat) / 2;
+    double centerLng = (minLng + maxLng) / 2;
+    return new Envelope(
+        centerLat - latSpan / 8,
+        centerLat + latSpan / 8,
+        centerLng - lngSpan / 8,
+        centerLng + lngSpan / 8);
+  }
+
+  /**
+   * Copies coordinates, shifting every position by the same offset in latitude and longitude.
+   *
+   * @param coordinates the coordinates to copy
+   * @param offset the offset in degrees
+   * @return the shifted copy
+   */
+  private static double[][][][] shift(double[][][][] coordinates, double offset) {
+    double[][][][] copy = new double[coordinates.length][][][];
+    for (int p = 0; p < coordinates.length; p++) {
+      copy[p] = new double[coordinates[p].length][][];
+      for (int r = 0; r < coordinates[p].length; r++) {
+        copy[p][r] = new double[coordinates[p][r].length][];
+        for (int i = 0; i < coordinates[p][r].length; i++) {
+          copy[p][r][i] =
+              new double[] {coordinates[p][r][i][0] + offset, coordinates[p][r][i][1] + offset};
+        }
+      }
+    }
+    return copy;
+  }
+}
@@ -0,0 +1,41 @@
+package edu.brown.cs.student.sprint5.benchmarks;
+
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Shared benchmark state holding a synthetic dataset of the size given by the size parameter. */
+@State(Scope.Benchmark)
+public class DatasetState {
+
+  /** The number of features in the synthetic dataset. */
+  @Param({"1000", "10000", "50000"})
+  public int size;
+
+  /** The synthetic dataset. */
+  public FeatureCollection data;
+
+  /** The synthetic dataset written out as a GeoJSON file. */
+  public Path file;
+
+  /** A typical viewport over the middle of the dataset. */
+  public Envelope viewport;
+
+  /**
+   * Builds the dataset for the current size.
+   *
+   * @throws IOException if the base dataset cannot be read or the file cannot be written
+   */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    this.data = BenchmarkData.scale(BenchmarkData.loadBase(), this.size);
+    this.file = BenchmarkData.writeTemp(this.data);
+    this.viewport = BenchmarkData.viewport(this.data);
+  }
+}
@@ -0,0 +1,97 @@
+package edu.brown.cs.student.sprint5.benchmarks;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import edu.brown.cs.student.sprint5.server.filters.BoundingBoxFilter;
+import edu.brown.cs.student.sprint5.server.filters.DescriptionKeywordFilter;
+import edu.brown.cs.student.sprint5.server.index.CompletionIndex;
+import edu.brown.cs.student.sprint5.server.index.CompletionIndex.Completion;
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.index.KeywordIndex;
+import edu.brown.cs.student.sprint5.server.index.KeywordIndex.ScoredFeature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Benchmarks for filtering a FeatureCollection with each of the filters. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+
+  /**
+   * Measures filterFeatureCollection with a BoundingBoxFilter over a typical viewport.
+   *
+   * @param state the dataset
+   * @return the features in the viewport
+   */
+  @Benchmark
+  public Set<Feature> boundingBox(DatasetState state) {
+    Envelope box = state.viewport;
+    return state.data.filterFeatureCollection(
+        new BoundingBoxFilter(box.minLat(), box.maxLat(), box.minLng(), box.maxLng()));
+  }
+
+  /**
+   * Measures filterFeatureCollection with a DescriptionKeywordFilter for a common term.
+   *
+   * @param state the dataset
+   * @return the features whose descriptions mention the term
+   */
+  @Benchmark
+  public Set<Feature> keyword(DatasetState state) {
+    return state.data.filterFeatureCollection(new DescriptionKeywordFilter("school"));
+  }
+
+  /**
+   * Measures a ranked KeywordIndex search for the same common term, returning the default number of
+   * results.
+   *
+   * @param state the index over the dataset
+   * @return the best matching features
+   */
+  @Benchmark
+  public List<ScoredFeature> rankedKeyword(IndexState state) {
+    return state.index.search("school", SEARCH_DEFAULT_K, CancellationToken.NONE);
+  }
+
+  /**
+   * Measures completing a one-letter prefix, which matches the most terms, returning the default
+   * number of suggestions.
+   *
+   * @param state the index over the dataset
+   * @return the most frequent completions
+   */
+  @Benchmark
+  public List<Completion> suggest(IndexState state) {
+    return state.completions.complete("s", SUGGEST_DEFAULT_K);
+  }
+
+  /** State holding a keyword index and a completion index over the synthetic dataset. */
+  @State(Scope.Benchmark)
+  public static class IndexState {
+
+    /** The index. */
+    public KeywordIndex index;
+
+    /** The completion index. */
+    public CompletionIndex completions;
+
+    /**
+     * Indexes the synthetic dataset for both kinds of lookup.
+     *
+     * @param dataset the dataset
+     */
+    @Setup
+    public void setup(DatasetState dataset) {
+      this.index = new KeywordIndex(dataset.data.features(), Map.of(), BM25_K1, BM25_B);
+      this.completions = new CompletionIndex(dataset.data.features());
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package edu.brown.cs.student.sprint5.benchmarks;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import edu.brown.cs.student.sprint5.server.datasources.JSONReader;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Benchmarks for parsing a GeoJSON file into a FeatureCollection. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JSONReaderBenchmark {
+
+  /**
+   * Measures JSONReader.fromJsonFile on the synthetic dataset.
+   *
+   * @param state the dataset
+   * @return the parsed FeatureCollection
+   * @throws IOException if the file cannot be read
+   */
+  @Benchmark
+  public FeatureCollection fromJsonFile(DatasetState state) throws IOException {
+    return JSONReader.fromJsonFile(state.file.toString(), FeatureCollection.class);
+  }
+
+  /**
+   * Measures JSONReader.fromGeoJsonFile on the synthetic dataset, with the features parsed on
+   * INGEST_THREADS workers.
+   *
+   * @param state the dataset
+   * @param pool the workers
+   * @return the parsed FeatureCollection
+   * @throws IOException if the file cannot be read
+   */
+  @Benchmark
+  public FeatureCollection fromGeoJsonFile(DatasetState state, WorkerState pool)
+      throws IOException {
+    return JSONReader.fromGeoJsonFile(
+        state.file.toString(), pool.workers, INGEST_THREADS * INGEST_BATCHES_PER_THREAD);
+  }
+
+  /** State holding the threads that parse features. */
+  @State(Scope.Benchmark)
+  public static class WorkerState {
+
+    /** The workers. */
+    public ExecutorService workers;
+
+    /** Starts the workers. */
+    @Setup
+    public void setup() {
+      this.workers = Executors.newFixedThreadPool(INGEST_THREADS);
+    }
+
+    /** Stops the workers. */
+    @TearDown
+    public void teardown() {
+      this.workers.shutdownNow();
+    }
+  }
+}
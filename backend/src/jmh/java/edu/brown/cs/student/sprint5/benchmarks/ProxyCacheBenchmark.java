@@ -0,0 +1,132 @@
+package edu.brown.cs.student.sprint5.benchmarks;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.proxies.BoundingBoxProxy;
+import edu.brown.cs.student.sprint5.server.proxies.KeywordSearchProxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import spark.Request;
+
+/**
+ * Benchmarks for the cache hit and cache miss paths of the bounding box and keyword proxies. Miss
+ * benchmarks make every request unique so that the proxy always has to filter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProxyCacheBenchmark {
+
+  private BoundingBoxProxy boxProxy;
+  private KeywordSearchProxy keywordProxy;
+  private Request boxRequest;
+  private Request keywordRequest;
+  private Envelope viewport;
+  private long counter;
+
+  /**
+   * Builds the proxies for the current dataset and warms the cache entries used by the hit
+   * benchmarks.
+   *
+   * @param state the dataset
+   * @throws Exception if the proxies fail to respond
+   */
+  @Setup(Level.Trial)
+  public void setup(DatasetState state) throws Exception {
+    this.boxProxy = new BoundingBoxProxy(state.data);
+    this.keywordProxy = new KeywordSearchProxy(state.data);
+    this.viewport = state.viewport;
+    this.boxRequest = boxRequest(this.viewport, 0);
+    this.keywordRequest = new FakeRequest(Map.of(KEYWORD_PARAM, "school"));
+    this.boxProxy.getResponsePercolate(this.boxRequest);
+    this.keywordProxy.getResponsePercolate(this.keywordRequest);
+  }
+
+  /**
+   * Measures a bounding box request whose response is already cached.
+   *
+   * @return the cached response
+   * @throws Exception if the proxy fails to respond
+   */
+  @Benchmark
+  public ServerResponse boundingBoxHit() throws Exception {
+    return this.boxProxy.getResponsePercolate(this.boxRequest);
+  }
+
+  /**
+   * Measures a bounding box request that is not cached.
+   *
+   * @return the freshly computed response
+   * @throws Exception if the proxy fails to respond
+   */
+  @Benchmark
+  public ServerResponse boundingBoxMiss() throws Exception {
+    return this.boxProxy.getResponsePercolate(boxRequest(this.viewport, ++this.counter));
+  }
+
+  /**
+   * Measures a keyword request whose response is already cached.
+   *
+   * @return the cached response
+   * @throws Exception if the proxy fails to respond
+   */
+  @Benchmark
+  public ServerResponse keywordHit() throws Exception {
+    return this.keywordProxy.getResponsePercolate(this.keywordRequest);
+  }
+
+  /**
+   * Measures a keyword request that is not cached.
+   *
+   * @return the freshly computed response
+   * @throws Exception if the proxy fails to respond
+   */
+  @Benchmark
+  public ServerResponse keywordMiss() throws Exception {
+    return this.keywordProxy.getResponsePercolate(
+        new FakeRequest(Map.of(KEYWORD_PARAM, "school" + ++this.counter)));
+  }
+
+  /**
+   * Builds a bounding box request for a viewport, nudged by a tiny amount so that different values
+   * of nudge produce different cache keys.
+   *
+   * @param box the viewport
+   * @param nudge the number of 1e-9 degree steps to move the box's minimum latitude
+   * @return the request
+   */
+  private static Request boxRequest(Envelope box, long nudge) {
+    return new FakeRequest(
+        Map.of(
+            MIN_LAT_PARAM, String.valueOf(box.minLat() - nudge * 1e-9),
+            MIN_LNG_PARAM, String.valueOf(box.minLng()),
+            MAX_LAT_PARAM, String.valueOf(box.maxLat()),
+            MAX_LNG_PARAM, String.valueOf(box.maxLng())));
+  }
+
+  /** A Spark request that only answers queryParams lookups, from a fixed map. */
+  private static class FakeRequest extends Request {
+
+    private final Map<String, String> params;
+
+    /**
+     * Constructor for FakeRequest.
+     *
+     * @param params the query parameters of the request
+     */
+    FakeRequest(Map<String, String> params) {
+      this.params = params;
+    }
+
+    @Override
+    public String queryParams(String queryParam) {
+      return this.params.get(queryParam);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package edu.brown.cs.student.sprint5.benchmarks;
+
+import static edu.brown.cs.student.sprint5.Constants.FEATURES;
+
+import edu.brown.cs.student.sprint5.server.responseformatting.BinaryDecoder;
+import edu.brown.cs.student.sprint5.server.responseformatting.BinaryDecoder.BinaryResponse;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for serializing a successful response containing the whole dataset, as JSON and in the
+ * compact binary format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializeBenchmark {
+
+  /**
+   * Measures ServerResponse.serialize for a response holding the synthetic dataset.
+   *
+   * @param state the dataset
+   * @return the serialized response
+   */
+  @Benchmark
+  public String serialize(DatasetState state) {
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put(FEATURES, state.data);
+    return new ServerResponse(responseMap).serialize();
+  }
+
+  /**
+   * Measures ServerResponse.encodeBinary for a response holding the synthetic dataset. After the
+   * first invocation every geometry is already encoded, as it is for a server's cached layers.
+   *
+   * @param state the dataset
+   * @return the encoded response
+   */
+  @Benchmark
+  public byte[] encodeBinary(DatasetState state) {
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put(FEATURES, state.data);
+    return new ServerResponse(responseMap).encodeBinary(CancellationToken.NONE);
+  }
+
+  /**
+   * Measures BinaryDecoder.decode for a response holding the synthetic dataset.
+   *
+   * @param state the encoded dataset
+   * @return the decoded response
+   * @throws IOException never, since the response is well formed
+   */
+  @Benchmark
+  public BinaryResponse decodeBinary(EncodedState state) throws IOException {
+    return BinaryDecoder.decode(state.encoded);
+  }
+
+  /** State holding the synthetic dataset encoded in the binary format. */
+  @State(Scope.Benchmark)
+  public static class EncodedState {
+
+    /** The encoded response. */
+    public byte[] encoded;
+
+    /**
+     * Encodes a response holding the synthetic dataset.
+     *
+     * @param dataset the dataset
+     */
+    @Setup
+    public void setup(DatasetState dataset) {
+      Map<String, Object> responseMap = new HashMap<>();
+      responseMap.put(FEATURES, dataset.data);
+      this.encoded = new ServerResponse(responseMap).encodeBinary(CancellationToken.NONE);
+    }
+  }
+}
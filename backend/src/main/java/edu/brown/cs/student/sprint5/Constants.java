@@ -33,6 +33,165 @@ public class Constants {
   /** The unit of time that the cache will use to expire entries. */
   public static final TimeUnit CACHE_EXPIRE_UNIT = TimeUnit.MINUTES;
 
+  // server execution parameters:
+  /** The system property that selects the server's execution mode ("pooled" or "elastic"). */
+  public static final String SERVER_MODE_PROPERTY = "server.mode";
+  /** The maximum number of request threads the server keeps in elastic mode. */
+  public static final int ELASTIC_MAX_THREADS = 2000;
+  /** The number of request threads the server keeps alive when idle in elastic mode. */
+  public static final int ELASTIC_MIN_THREADS = 16;
+  /** The number of milliseconds an idle request thread is kept in elastic mode. */
+  public static final int ELASTIC_IDLE_TIMEOUT_MILLIS = 30_000;
+
+  // filter execution parameters:
+  /** The number of threads filters run on. Set with -Dserver.filterThreads. */
+  public static final int FILTER_THREADS =
+      Integer.getInteger("server.filterThreads", Runtime.getRuntime().availableProcessors());
+  /**
+   * The number of features below which a filter runs on the calling thread alone. Set with
+   * -Dserver.filterThreshold.
+   */
+  public static final int FILTER_PARALLEL_THRESHOLD =
+      Integer.getInteger("server.filterThreshold", 4096);
+  /**
+   * The most threads that one request's filter may use at once, by default half of the filter
+   * threads. Set with -Dserver.filterParallelism.
+   */
+  public static final int FILTER_MAX_PARALLELISM =
+      Math.max(1, Integer.getInteger("server.filterParallelism", (FILTER_THREADS + 1) / 2));
+
+  // admission control parameters:
+  /** The system property that turns admission control off when set to "off". */
+  public static final String ADMISSION_PROPERTY = "server.admission";
+  /** The number of expensive requests the server works on at once before it has any samples. */
+  public static final int ADMISSION_INITIAL_LIMIT = 20;
+  /** The fewest expensive requests the server will work on at once. */
+  public static final int ADMISSION_MIN_LIMIT = 2;
+  /** The most expensive requests the server will work on at once. */
+  public static final int ADMISSION_MAX_LIMIT = 1000;
+  /** The fraction of the limit that cached requests may use on top of it. */
+  public static final double ADMISSION_CHEAP_HEADROOM = 1.0;
+  /** The number of seconds a rejected client is told to wait before retrying. */
+  public static final int RETRY_AFTER_SECONDS = 1;
+
+  // session parameters:
+  /** The optional argument identifying the client session that sent a request. */
+  public static final String SESSION_PARAM = "session";
+  /** The optional argument giving a request's position in its session, increasing per request. */
+  public static final String SEQUENCE_PARAM = "seq";
+  /** The maximum number of client sessions whose latest request is remembered. */
+  public static final int SESSION_MAX_COUNT = 10_000;
+  /** The number of minutes after its last request that a session is forgotten. */
+  public static final int SESSION_EXPIRE_TIME = 10;
+  /** The unit of time that sessions are forgotten after. */
+  public static final TimeUnit SESSION_EXPIRE_UNIT = TimeUnit.MINUTES;
+  /** The number of features serialized between checks for whether a request was cancelled. */
+  public static final int CANCELLATION_CHECK_INTERVAL = 256;
+
+  // layer parameters:
+  /** The optional argument naming the layer a request is for; absent means the default layer. */
+  public static final String LAYER_PARAM = "layer";
+  /** The system property naming a directory whose .json files are each served as a layer. */
+  public static final String LAYER_DIRECTORY_PROPERTY = "server.layerDir";
+  /**
+   * The most megabytes of heap that loaded layers may take up together. Set with
+   * -Dserver.layerBudgetMb.
+   */
+  public static final long LAYER_BUDGET_MB = Long.getLong("server.layerBudgetMb", 2048);
+  /**
+   * How many bytes of heap a layer is estimated to take up per byte of its file, once parsed and
+   * indexed by every endpoint.
+   */
+  public static final int LAYER_MEMORY_FACTOR = 6;
+  /**
+   * How often, in seconds, the files of loaded layers are checked for changes, and the partitions
+   * whose features changed are reloaded. Set with -Dserver.layerReloadSeconds; 0 never checks.
+   */
+  public static final long LAYER_RELOAD_SECONDS = Long.getLong("server.layerReloadSeconds", 30);
+  /**
+   * The number of threads that parse a layer's features and build its spatial indexes while it
+   * loads. Set with -Dserver.ingestThreads; defaults to the number of cores.
+   */
+  public static final int INGEST_THREADS =
+      Integer.getInteger("server.ingestThreads", Runtime.getRuntime().availableProcessors());
+  /** The number of features handed to a parsing thread at once while a layer loads. */
+  public static final int INGEST_BATCH_SIZE = 256;
+  /**
+   * The most batches of features per parsing thread that may be read from a layer's file before
+   * they are parsed, which bounds the unparsed text held at once while the layer loads.
+   */
+  public static final int INGEST_BATCHES_PER_THREAD = 4;
+  /**
+   * The longest area_description_data value that is shared between the features of a dataset as it
+   * loads. Longer descriptions are free text that is rarely repeated, so they are kept as read.
+   */
+  public static final int DICTIONARY_MAX_VALUE_LENGTH = 64;
+
+  // cluster parameters:
+  /** The system property giving the port the server listens on. */
+  public static final String SERVER_PORT_PROPERTY = "server.port";
+  /** The port the server listens on unless server.port is set. */
+  public static final int DEFAULT_PORT = 3232;
+  /**
+   * The system property listing the base URLs of every node of the cluster, separated by commas.
+   * Unset means the server runs alone.
+   */
+  public static final String CLUSTER_NODES_PROPERTY = "server.cluster";
+  /** The system property giving this node's own base URL, as it appears in server.cluster. */
+  public static final String CLUSTER_SELF_PROPERTY = "server.self";
+  /** The number of points each node is placed at on the cluster's hash ring. */
+  public static final int CLUSTER_VIRTUAL_NODES = 128;
+  /** The header marking a request as forwarded by another node, naming that node. */
+  public static final String CLUSTER_FORWARDED_HEADER = "X-Cluster-Forwarded";
+  /** The number of milliseconds to wait for a connection to the owner of a request. */
+  public static final int CLUSTER_CONNECT_TIMEOUT_MILLIS = 500;
+  /** The number of milliseconds to wait for the owner of a request to answer it. */
+  public static final int CLUSTER_FORWARD_TIMEOUT_MILLIS = 30_000;
+  /**
+   * The most requests a node forwards to other nodes at once. Further requests that another node
+   * owns are rejected as if the node were overloaded. Set with -Dserver.clusterMaxForwards.
+   */
+  public static final int CLUSTER_MAX_FORWARDS =
+      Integer.getInteger("server.clusterMaxForwards", 64);
+
+  // response cache persistence parameters:
+  /**
+   * The system property naming the directory of the on-disk response cache. Unset means responses
+   * are only cached in memory.
+   */
+  public static final String DISK_CACHE_PROPERTY = "server.diskCache";
+  /** The size, in megabytes, that compaction keeps the on-disk response cache under. */
+  public static final long DISK_CACHE_MAX_MB = Long.getLong("server.diskCacheMb", 1024);
+  /** The size, in megabytes, at which a segment of the on-disk response cache is sealed. */
+  public static final long DISK_CACHE_SEGMENT_MB = 64;
+  /** Whether responses in the on-disk cache are gzip-compressed. */
+  public static final boolean DISK_CACHE_COMPRESS =
+      !"false".equalsIgnoreCase(System.getProperty("server.diskCacheCompress"));
+  /**
+   * The system property naming the file that the access log is saved to. Unset means queries are
+   * not counted and the caches are not warmed at startup.
+   */
+  public static final String ACCESS_LOG_PROPERTY = "server.accessLog";
+  /** The number of distinct queries the access log keeps. */
+  public static final int ACCESS_LOG_MAX_KEYS = 10_000;
+  /** The number of seconds between saves of the access log. */
+  public static final long ACCESS_LOG_SAVE_SECONDS = 60;
+  /** The number of seconds after which the access log's counts are halved. */
+  public static final long ACCESS_LOG_HALF_LIFE_SECONDS = 24 * 60 * 60;
+  /** The number of most popular queries that are replayed at startup. */
+  public static final int WARMUP_QUERIES = Integer.getInteger("server.warmupQueries", 200);
+  /** The most warm-up queries asked per second. */
+  public static final double WARMUP_REQUESTS_PER_SECOND =
+      Integer.getInteger("server.warmupRate", 5);
+  /**
+   * The fraction of the admission limit that warm-up requests may fill. Warm-up requests are only
+   * admitted while fewer requests than this are in flight, so the rest of the limit is left to live
+   * requests.
+   */
+  public static final double WARMUP_LIMIT_SHARE = 0.25;
+  /** The header marking a request as asked by the cache warm-up. */
+  public static final String WARMUP_HEADER = "X-Cache-Warmup";
+
   // bounding box handler constants:
   /** The name of the bounding box endpoint. */
   public static final String BOUNDING_BOX_ENDPOINT = "boundingBox";
@@ -47,6 +206,75 @@ public class Constants {
   /** The set of arguments that the bounding box handler will accept. */
   public static final Set<String> BOUNDING_BOX_PARAMS =
       new HashSet<>(List.of(MIN_LAT_PARAM, MIN_LNG_PARAM, MAX_LAT_PARAM, MAX_LNG_PARAM));
+  /** The set of optional arguments that the bounding box handler will accept. */
+  public static final Set<String> BOUNDING_BOX_OPTIONAL_PARAMS =
+      new HashSet<>(List.of(SESSION_PARAM, SEQUENCE_PARAM));
+
+  // streaming bounding box handler constants:
+  /** The name of the endpoint that streams the features in a bounding box in batches. */
+  public static final String BOUNDING_BOX_STREAM_ENDPOINT = "boundingBoxStream";
+  /** The most features sent in one batch of a streamed response. */
+  public static final int STREAM_BATCH_SIZE = 256;
+  /**
+   * The number of rings a streamed box is searched in. The innermost ring is 1 / 2^(STREAM_RINGS -
+   * 1) of the box's width and height.
+   */
+  public static final int STREAM_RINGS = 8;
+  /** The content type of streamed responses framed as one JSON value per line. */
+  public static final String NDJSON_TYPE = "application/x-ndjson";
+  /** The content type of streamed responses framed as Server-Sent Events. */
+  public static final String EVENT_STREAM_TYPE = "text/event-stream";
+
+  // binary response constants:
+  /** The content type of responses in the compact binary format, requested with Accept. */
+  public static final String BINARY_FEATURES_TYPE = "application/x-feature-binary";
+  /** The number of decimal digits of a degree that binary responses keep for each coordinate. */
+  public static final int BINARY_COORDINATE_DIGITS = 7;
+  /** The most memory, in megabytes, that encoded geometries are kept in for reuse. */
+  public static final long BINARY_BLOCK_CACHE_MB = Long.getLong("server.binaryCacheMb", 64);
+
+  // TopoJSON response constants:
+  /** The content type that requests ask for with Accept to get FeatureCollections as TopoJSON. */
+  public static final String TOPOJSON_TYPE = "application/topo+json";
+  /**
+   * The number of decimal digits of a degree that TopoJSON arcs keep. At most 7, so that every
+   * quantized coordinate fits in an int.
+   */
+  public static final int TOPOLOGY_COORDINATE_DIGITS = 7;
+
+  // viewport delta handler constants:
+  /** The name of the endpoint that returns the features entering and leaving a moved viewport. */
+  public static final String VIEWPORT_DELTA_ENDPOINT = "viewportDelta";
+  /** The minimum latitude argument of the previous viewport. */
+  public static final String PREV_MIN_LAT_PARAM = "prevMinLat";
+  /** The maximum latitude argument of the previous viewport. */
+  public static final String PREV_MAX_LAT_PARAM = "prevMaxLat";
+  /** The minimum longitude argument of the previous viewport. */
+  public static final String PREV_MIN_LNG_PARAM = "prevMinLng";
+  /** The maximum longitude argument of the previous viewport. */
+  public static final String PREV_MAX_LNG_PARAM = "prevMaxLng";
+  /** The set of arguments that the viewport delta handler requires. */
+  public static final Set<String> VIEWPORT_DELTA_PARAMS =
+      new HashSet<>(
+          List.of(
+              PREV_MIN_LAT_PARAM,
+              PREV_MIN_LNG_PARAM,
+              PREV_MAX_LAT_PARAM,
+              PREV_MAX_LNG_PARAM,
+              MIN_LAT_PARAM,
+              MIN_LNG_PARAM,
+              MAX_LAT_PARAM,
+              MAX_LNG_PARAM));
+  /**
+   * The key of the response map that will contain a FeatureCollection of the features in the new
+   * viewport that were not in the previous one.
+   */
+  public static final String ENTERED = "entered";
+  /**
+   * The key of the response map that will contain the neighborhood ids of the features in the
+   * previous viewport that are not in the new one.
+   */
+  public static final String LEFT = "left";
 
   // description search handler constants:
   /** The name of the overlay endpoint. */
@@ -56,6 +284,129 @@ public class Constants {
   /** The set of arguments that the overlay handler will accept. */
   public static final Set<String> KEYWORD_PARAMS = new HashSet<>(List.of(KEYWORD_PARAM));
 
+  // feature lookup handler constants:
+  /** The name of the endpoint that returns the feature containing a point. */
+  public static final String FEATURE_AT_ENDPOINT = "featureAt";
+  /** The latitude argument that point-based handlers will accept. */
+  public static final String LAT_PARAM = "lat";
+  /** The longitude argument that point-based handlers will accept. */
+  public static final String LNG_PARAM = "lng";
+  /** The set of arguments that the feature lookup handler will accept. */
+  public static final Set<String> FEATURE_AT_PARAMS = new HashSet<>(List.of(LAT_PARAM, LNG_PARAM));
+
+  // nearest neighbor handler constants:
+  /** The name of the endpoint that returns the features closest to a point. */
+  public static final String NEAREST_ENDPOINT = "nearest";
+  /** The argument for the number of features that the nearest neighbor handler will return. */
+  public static final String K_PARAM = "k";
+  /** The optional argument for the farthest distance, in meters, that a result may be. */
+  public static final String MAX_DISTANCE_PARAM = "maxDistance";
+  /** The optional argument restricting results to features in a city. */
+  public static final String CITY_PARAM = "city";
+  /** The optional argument restricting results to features in a state. */
+  public static final String STATE_PARAM = "state";
+  /** The optional argument restricting results to features with a HOLC grade. */
+  public static final String GRADE_PARAM = "grade";
+  /** The set of arguments that the nearest neighbor handler requires. */
+  public static final Set<String> NEAREST_PARAMS =
+      new HashSet<>(List.of(LAT_PARAM, LNG_PARAM, K_PARAM));
+  /** The set of optional arguments that the nearest neighbor handler will accept. */
+  public static final Set<String> NEAREST_OPTIONAL_PARAMS =
+      new HashSet<>(List.of(MAX_DISTANCE_PARAM, CITY_PARAM, STATE_PARAM, GRADE_PARAM));
+  /** The largest number of features that a single nearest neighbor request may ask for. */
+  public static final int NEAREST_MAX_K = 100;
+  /**
+   * The key of the response map that will contain the distances, in meters, of the returned
+   * features, in the same order as the features.
+   */
+  public static final String DISTANCES = "distances";
+
+  // ranked keyword search constants:
+  /** The optional argument that asks the keyword search handler to rank its results. */
+  public static final String RANKED_PARAM = "ranked";
+  /** The set of optional arguments that the keyword search handler will accept. */
+  public static final Set<String> KEYWORD_OPTIONAL_PARAMS =
+      new HashSet<>(List.of(RANKED_PARAM, K_PARAM));
+  /** The number of features a ranked keyword search returns if k is not passed. */
+  public static final int SEARCH_DEFAULT_K = 20;
+  /** The largest number of features that a single ranked keyword search may ask for. */
+  public static final int SEARCH_MAX_K = 1000;
+  /** The BM25 parameter that controls how quickly repeated terms stop adding to a score. */
+  public static final double BM25_K1 = 1.2;
+  /** The BM25 parameter that controls how much long descriptions are penalized. */
+  public static final double BM25_B = 0.75;
+  /**
+   * The system property holding the weight of each area_description_data field in ranked keyword
+   * searches, as comma-separated field=weight pairs. Fields that are not listed weigh 1.
+   */
+  public static final String SEARCH_BOOSTS_PROPERTY = "server.searchBoosts";
+  /**
+   * The key of the response map that will contain the scores of the features returned by a ranked
+   * keyword search, in the same order as the features.
+   */
+  public static final String SCORES = "scores";
+
+  // keyword suggestion handler constants:
+  /** The name of the endpoint that completes a prefix of a description keyword. */
+  public static final String SUGGEST_ENDPOINT = "suggest";
+  /** The argument for the prefix that the keyword suggestion handler will complete. */
+  public static final String PREFIX_PARAM = "prefix";
+  /** The set of arguments that the keyword suggestion handler requires. */
+  public static final Set<String> SUGGEST_PARAMS = new HashSet<>(List.of(PREFIX_PARAM));
+  /** The set of optional arguments that the keyword suggestion handler will accept. */
+  public static final Set<String> SUGGEST_OPTIONAL_PARAMS = new HashSet<>(List.of(K_PARAM));
+  /** The number of completions a keyword suggestion returns if k is not passed. */
+  public static final int SUGGEST_DEFAULT_K = 10;
+  /** The largest number of completions that a single keyword suggestion may ask for. */
+  public static final int SUGGEST_MAX_K = 100;
+  /** The key of the response map that will contain the completed terms, most frequent first. */
+  public static final String SUGGESTIONS = "suggestions";
+  /**
+   * The key of the response map that will contain the number of features whose descriptions contain
+   * each completed term, in the same order as the terms.
+   */
+  public static final String FREQUENCIES = "frequencies";
+
+  // aggregation handler constants:
+  /** The name of the endpoint that summarizes features by HOLC grade. */
+  public static final String AGGREGATE_ENDPOINT = "aggregate";
+  /** The set of optional arguments that the aggregation handler will accept. */
+  public static final Set<String> AGGREGATE_OPTIONAL_PARAMS =
+      new HashSet<>(
+          List.of(
+              MIN_LAT_PARAM, MIN_LNG_PARAM, MAX_LAT_PARAM, MAX_LNG_PARAM, CITY_PARAM, STATE_PARAM));
+  /** The key of the response map that will contain the number of features per HOLC grade. */
+  public static final String GRADE_COUNTS = "gradeCounts";
+  /**
+   * The key of the response map that will contain the total area, in square meters, of the features
+   * of each HOLC grade.
+   */
+  public static final String GRADE_AREAS = "gradeAreasSqMeters";
+
+  // density grid handler constants:
+  /** The name of the endpoint that returns feature counts on a grid. */
+  public static final String DENSITY_ENDPOINT = "density";
+  /**
+   * The argument for the number of grid cells along the longer side of the box. Cells are never
+   * smaller than the finest density pyramid level's (about 0.022 degrees), so a small enough box
+   * gets fewer cells than requested.
+   */
+  public static final String RESOLUTION_PARAM = "resolution";
+  /** The set of arguments that the density grid handler will accept. */
+  public static final Set<String> DENSITY_PARAMS =
+      new HashSet<>(
+          List.of(MIN_LAT_PARAM, MIN_LNG_PARAM, MAX_LAT_PARAM, MAX_LNG_PARAM, RESOLUTION_PARAM));
+  /** The largest number of cells that a density grid may have along one side. */
+  public static final int DENSITY_MAX_RESOLUTION = 256;
+  /** The key of the response map that will contain the width and height of a cell in degrees. */
+  public static final String CELL_SIZE = "cellSize";
+  /** The key of the response map that will contain the number of rows of the grid. */
+  public static final String ROWS = "rows";
+  /** The key of the response map that will contain the number of columns of the grid. */
+  public static final String COLS = "cols";
+  /** The key of the response map that will contain the non-empty cells of the grid. */
+  public static final String CELLS = "cells";
+
   // constants for success and error messages:
   /** The message that the server will send to the client if the request was successful. */
   public static final String SUCCESS_MESSAGE = "success";
@@ -79,11 +430,26 @@ public class Constants {
    * there are parameters that are not recognized.
    */
   public static final String ERROR_BAD_JSON = "error_bad_json";
+  /**
+   * The general message that the server will send to the client if a newer request from the same
+   * session arrived before this one was answered, so this one was abandoned.
+   */
+  public static final String ERROR_SUPERSEDED = "error_superseded";
+  /**
+   * The general message that the server will send to the client, with HTTP status 503, if it is too
+   * busy to take on the request.
+   */
+  public static final String ERROR_OVERLOADED = "error_overloaded";
   /**
    * The general message that the server will send to the client if the redlining data could not be
    * loaded.
    */
   public static final String DATA_LOAD_FAILURE = "%s_overlay_data_could_not_be_loaded.";
+  /**
+   * A more specific message that the server will send to the client if the layer named in the
+   * request does not exist.
+   */
+  public static final String UNKNOWN_LAYER = "layer_%s_does_not_exist";
   /**
    * A more specific message that the server will send to the client if there are missing parameters
    * in the request.
@@ -104,6 +470,22 @@ public class Constants {
    * passed to the request.
    */
   public static final String NO_PARAMS = "no_params";
+  /**
+   * A more specific message that the server will send to the client if a request was abandoned for
+   * a newer request from the same session.
+   */
+  public static final String SUPERSEDED_REQUEST =
+      "a_newer_request_from_this_session_replaced_this_one";
+  /**
+   * A more specific message that the server will send to the client if a request names a session
+   * but its sequence number is missing or not an integer.
+   */
+  public static final String INVALID_SEQUENCE = "seq_must_be_an_integer_when_session_is_passed";
+  /**
+   * A more specific message that the server will send to the client if it rejected the request
+   * because of load.
+   */
+  public static final String SERVER_OVERLOADED = "server_overloaded,_retry_later";
 
   // constants for bounding box error messages:
   /**
@@ -126,10 +508,63 @@ public class Constants {
   public static final String MIN_GREATER_THAN_MAX =
       "min_lat_must_be_less_than_max_lat,_and_" + "min_lng_must_be_less_than_max_lng";
 
+  // constants for nearest neighbor error messages:
+  /**
+   * A more specific message that the server will send to the client if k is not an integer between
+   * 1 and NEAREST_MAX_K.
+   */
+  public static final String INVALID_K = "k_must_be_an_integer_between_1_and_" + NEAREST_MAX_K;
+  /**
+   * A more specific message that the server will send to the client if the maximum distance is not
+   * a non-negative decimal.
+   */
+  public static final String INVALID_MAX_DISTANCE =
+      "max_distance_must_be_a_non-negative_number_of_meters";
+
+  // constants for aggregation error messages:
+  /**
+   * A more specific message that the server will send to the client if an aggregation request does
+   * not specify exactly one region to summarize.
+   */
+  public static final String INVALID_AGGREGATE_SCOPE =
+      "pass_either_all_four_bounding_box_coordinates,_or_a_city_and/or_state";
+
+  // constants for density grid error messages:
+  /**
+   * A more specific message that the server will send to the client if the resolution is not an
+   * integer between 1 and DENSITY_MAX_RESOLUTION.
+   */
+  public static final String INVALID_RESOLUTION =
+      "resolution_must_be_an_integer_between_1_and_" + DENSITY_MAX_RESOLUTION;
+
   // constants for keyword search error messages:
   /**
    * A more specific message that the server will send to the client if no keyword argument is
    * passed
    */
   public static final String NO_KEYWORD = "you_must_pass_a_keyword_to_filter_by";
+  /**
+   * A more specific message that the server will send to the client if the ranked argument is not
+   * true or false.
+   */
+  public static final String INVALID_RANKED = "ranked_must_be_true_or_false";
+  /**
+   * A more specific message that the server will send to the client if k is not an integer between
+   * 1 and SEARCH_MAX_K in a ranked keyword search.
+   */
+  public static final String INVALID_SEARCH_K =
+      "k_must_be_an_integer_between_1_and_" + SEARCH_MAX_K;
+
+  // constants for keyword suggestion error messages:
+  /**
+   * A more specific message that the server will send to the client if the prefix argument has no
+   * letters or digits to complete.
+   */
+  public static final String NO_PREFIX = "you_must_pass_a_prefix_to_complete";
+  /**
+   * A more specific message that the server will send to the client if k is not an integer between
+   * 1 and SUGGEST_MAX_K in a keyword suggestion.
+   */
+  public static final String INVALID_SUGGEST_K =
+      "k_must_be_an_integer_between_1_and_" + SUGGEST_MAX_K;
 }
@@ -0,0 +1,142 @@
+package edu.brown.cs.student.sprint5.server.admission;
+
+/**
+ * Class that limits how many requests the server works on at once, adapting the limit to measured
+ * latency in the style of a gradient limiter. It keeps a slowly moving average of latency as the
+ * baseline and a quickly moving one as the current latency. While the current latency stays within
+ * a tolerance of the baseline the limit grows, and once requests start queueing and the current
+ * latency rises, the limit shrinks in proportion. Requests over the limit are rejected immediately
+ * instead of queueing, which keeps the latency of admitted requests bounded.
+ *
+ * <p>The baseline rises much more slowly than it falls, but under overload that lasts long enough
+ * it does rise, as in other gradient limiters, so the limit bounds latency relative to recent
+ * history rather than absolutely.
+ *
+ * <p>Cheap requests (cache hits) may use some headroom above the limit, so they keep being served
+ * while expensive requests are being shed. Only expensive requests are used as latency samples, as
+ * cache hits say nothing about how loaded the server is.
+ */
+public class ConcurrencyLimiter {
+
+  /** How much the current latency may exceed the baseline before the limit shrinks. */
+  private static final double TOLERANCE = 1.5;
+  /** The weight of a new sample in the current latency average. */
+  private static final double SHORT_SMOOTHING = 0.1;
+  /** The weight of a new, higher sample in the baseline latency average. */
+  private static final double LONG_SMOOTHING_UP = 0.001;
+  /** The weight of a new, lower sample in the baseline latency average. */
+  private static final double LONG_SMOOTHING_DOWN = 0.05;
+  /** The weight of a newly computed limit against the previous one. */
+  private static final double LIMIT_SMOOTHING = 0.2;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double cheapHeadroom;
+
+  // all guarded by this
+  private double limit;
+  private int inFlight;
+  private double shortRtt;
+  private double longRtt;
+
+  /**
+   * Constructor for ConcurrencyLimiter.
+   *
+   * @param initialLimit the limit to start with
+   * @param minLimit the smallest the limit may become
+   * @param maxLimit the largest the limit may become
+   * @param cheapHeadroom the fraction of the limit that cheap requests may use on top of it
+   */
+  public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double cheapHeadroom) {
+    this.limit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.cheapHeadroom = cheapHeadroom;
+  }
+
+  /**
+   * Admits a request if there is room for it.
+   *
+   * @param cheap true if the request is cheap to answer, e.g. a cache hit
+   * @return true if the request was admitted, in which case {@link #release} must be called when it
+   *     finishes; false if it should be rejected
+   */
+  public synchronized boolean tryAcquire(boolean cheap) {
+    double allowed = cheap ? this.limit * (1 + this.cheapHeadroom) : this.limit;
+    if (this.inFlight >= Math.max(1, (int) allowed)) {
+      return false;
+    }
+    this.inFlight++;
+    return true;
+  }
+
+  /**
+   * Admits a low-priority request, such as a cache warm-up request, if few enough requests are in
+   * flight. Low-priority requests only use a share of the limit, so they never take room that live
+   * requests would need, but unlike waiting for the server to go idle they still make progress
+   * under steady load.
+   *
+   * @param share the fraction of the limit that low-priority requests may fill
+   * @return true if the request was admitted, in which case {@link #release} must be called when it
+   *     finishes; false if it should be rejected
+   */
+  public synchronized boolean tryAcquireLowPriority(double share) {
+    if (this.inFlight >= this.limit * share) {
+      return false;
+    }
+    this.inFlight++;
+    return true;
+  }
+
+  /**
+   * Marks an admitted request as finished.
+   *
+   * @param latencyNanos how long the request took
+   * @param sample true if the latency should be used to adapt the limit
+   */
+  public synchronized void release(long latencyNanos, boolean sample) {
+    boolean saturated = this.inFlight >= this.limit / 2;
+    this.inFlight--;
+    if (!sample || latencyNanos <= 0) {
+      return;
+    }
+    if (this.longRtt == 0) {
+      this.shortRtt = latencyNanos;
+      this.longRtt = latencyNanos;
+      return;
+    }
+    this.shortRtt += SHORT_SMOOTHING * (latencyNanos - this.shortRtt);
+    // the baseline creeps up slowly, so sustained queueing is not mistaken for the new normal, and
+    // comes back down quickly once the queueing stops
+    double longSmoothing = latencyNanos > this.longRtt ? LONG_SMOOTHING_UP : LONG_SMOOTHING_DOWN;
+    this.longRtt += longSmoothing * (latencyNanos - this.longRtt);
+    // only grow the limit if it is actually being used
+    if (!saturated && this.shortRtt <= this.longRtt * TOLERANCE) {
+      return;
+    }
+
+    double gradient = Math.max(0.5, Math.min(1, TOLERANCE * this.longRtt / this.shortRtt));
+    double queueAllowance = Math.sqrt(this.limit);
+    double target = this.limit * gradient + queueAllowance;
+    double next = this.limit * (1 - LIMIT_SMOOTHING) + target * LIMIT_SMOOTHING;
+    this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, next));
+  }
+
+  /**
+   * Returns the current limit.
+   *
+   * @return the number of expensive requests that may be in flight at once
+   */
+  public synchronized int getLimit() {
+    return (int) this.limit;
+  }
+
+  /**
+   * Returns the number of requests in flight.
+   *
+   * @return the number of admitted requests that have not finished
+   */
+  public synchronized int getInFlight() {
+    return this.inFlight;
+  }
+}
@@ -0,0 +1,202 @@
+package edu.brown.cs.student.sprint5.server.cluster;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import spark.Request;
+
+/**
+ * Class that decides which node of a cluster answers a request, and forwards requests to the nodes
+ * that own them. Every node is given the same static list of nodes, so they all agree on the owner
+ * of each query: the node at its canonical key on a consistent-hash ring. Each query is then
+ * computed and cached on one node only, and the cluster as a whole caches as many distinct queries
+ * as all of its nodes together.
+ */
+public class ClusterRouter {
+
+  private final String self;
+  private final HashRing ring;
+  private final HttpClient client;
+  private final Semaphore forwards;
+
+  /**
+   * Constructor for ClusterRouter.
+   *
+   * @param self the base URL of this node, as it appears in nodes
+   * @param nodes the base URLs of every node of the cluster, e.g. "http://localhost:3232"
+   */
+  public ClusterRouter(String self, List<String> nodes) {
+    this(self, nodes, CLUSTER_MAX_FORWARDS);
+  }
+
+  /**
+   * Constructor for ClusterRouter.
+   *
+   * @param self the base URL of this node, as it appears in nodes
+   * @param nodes the base URLs of every node of the cluster, e.g. "http://localhost:3232"
+   * @param maxForwards the most requests this node may forward at once
+   */
+  public ClusterRouter(String self, List<String> nodes, int maxForwards) {
+    List<String> normalized = new ArrayList<>();
+    for (String node : nodes) {
+      normalized.add(normalize(node));
+    }
+    this.self = normalize(self);
+    if (!normalized.contains(this.self)) {
+      throw new IllegalArgumentException(self + " is not one of the cluster's nodes " + nodes);
+    }
+    this.ring = new HashRing(normalized, CLUSTER_VIRTUAL_NODES);
+    this.client =
+        HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(CLUSTER_CONNECT_TIMEOUT_MILLIS))
+            .build();
+    this.forwards = new Semaphore(maxForwards);
+  }
+
+  /**
+   * Creates the router configured by the server.cluster and server.self system properties.
+   *
+   * @return the router, or null if server.cluster is not set and the server runs alone
+   */
+  public static ClusterRouter fromProperties() {
+    String nodes = System.getProperty(CLUSTER_NODES_PROPERTY);
+    if (nodes == null || nodes.isBlank()) {
+      return null;
+    }
+    return new ClusterRouter(
+        System.getProperty(CLUSTER_SELF_PROPERTY), List.of(nodes.trim().split("\\s*,\\s*")));
+  }
+
+  /**
+   * Strips the trailing slashes of a base URL, so that nodes compare equal however they are
+   * written.
+   *
+   * @param node the base URL
+   * @return the base URL without trailing slashes
+   */
+  private static String normalize(String node) {
+    String trimmed = node.trim();
+    while (trimmed.endsWith("/")) {
+      trimmed = trimmed.substring(0, trimmed.length() - 1);
+    }
+    return trimmed;
+  }
+
+  /**
+   * Builds the key that decides which node owns a query: its path and its parameters in sorted
+   * order, without the session parameters, which do not change the answer.
+   *
+   * @param path the path of the endpoint, e.g. "/boundingBox"
+   * @param params the query parameters of the request
+   * @return the canonical key of the query
+   */
+  public static String canonicalKey(String path, Map<String, String[]> params) {
+    StringBuilder key = new StringBuilder(path).append('?');
+    for (Map.Entry<String, String[]> param : new TreeMap<>(params).entrySet()) {
+      if (param.getKey().equals(SESSION_PARAM) || param.getKey().equals(SEQUENCE_PARAM)) {
+        continue;
+      }
+      key.append(param.getKey()).append('=').append(String.join(",", param.getValue())).append('&');
+    }
+    return key.toString();
+  }
+
+  /**
+   * Returns the node that should answer a request, if it is not this one. Requests that another
+   * node already forwarded are always answered here, so forwarding never loops even while nodes
+   * disagree about the membership.
+   *
+   * @param request the request
+   * @return the base URL of the node that owns the request, or null if this node should answer it
+   */
+  public String ownerOf(Request request) {
+    if (request.headers(CLUSTER_FORWARDED_HEADER) != null) {
+      return null;
+    }
+    String owner = this.ring.owner(canonicalKey(request.pathInfo(), request.queryMap().toMap()));
+    return owner.equals(this.self) ? null : owner;
+  }
+
+  /**
+   * Checks if this node owns a query, e.g. to decide whether it should warm its cache with it.
+   *
+   * @param path the path of the endpoint
+   * @param params the query parameters
+   * @return true if this node owns the query
+   */
+  public boolean owns(String path, Map<String, String[]> params) {
+    return this.ring.owner(canonicalKey(path, params)).equals(this.self);
+  }
+
+  /**
+   * Reserves room to forward a request, if fewer than the most requests this node may forward at
+   * once are being forwarded. Forwarded requests are not admitted by the node's limiter, since the
+   * owner admits them, so this bounds the threads that wait on other nodes.
+   *
+   * @return true if the request may be forwarded, in which case {@link #releaseForward} must be
+   *     called once it is; false if it should be rejected
+   */
+  public boolean tryAcquireForward() {
+    return this.forwards.tryAcquire();
+  }
+
+  /** Frees the room reserved to forward a request. */
+  public void releaseForward() {
+    this.forwards.release();
+  }
+
+  /**
+   * Sends a request on to the node that owns it and waits for its answer. The request's Accept
+   * header is passed on, so the owner answers in the format the client asked for.
+   *
+   * @param owner the base URL of the owning node
+   * @param request the request to forward
+   * @return the owner's response
+   * @throws IOException if the owner cannot be reached or does not answer in time
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public HttpResponse<byte[]> forward(String owner, Request request)
+      throws IOException, InterruptedException {
+    String query = request.queryString();
+    URI uri = URI.create(owner + request.pathInfo() + (query == null ? "" : "?" + query));
+    HttpRequest.Builder forwarded =
+        HttpRequest.newBuilder(uri)
+            .timeout(Duration.ofMillis(CLUSTER_FORWARD_TIMEOUT_MILLIS))
+            .header(CLUSTER_FORWARDED_HEADER, this.self)
+            .GET();
+    String accept = request.headers("Accept");
+    if (accept != null) {
+      forwarded.header("Accept", accept);
+    }
+    return this.client.send(forwarded.build(), HttpResponse.BodyHandlers.ofByteArray());
+  }
+
+  /**
+   * Returns the base URL of this node.
+   *
+   * @return the base URL
+   */
+  public String self() {
+    return this.self;
+  }
+
+  /**
+   * Returns the node that owns a canonical key.
+   *
+   * @param key the canonical key of a query
+   * @return the base URL of the owning node
+   */
+  public String ownerOf(String key) {
+    return this.ring.owner(key);
+  }
+}
@@ -0,0 +1,58 @@
+package edu.brown.cs.student.sprint5.server.cluster;
+
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Class for a consistent-hash ring that assigns keys to nodes. Each node is placed on the ring at
+ * many points, and a key belongs to the node at the first point at or after the key's hash. Adding
+ * or removing a node therefore only moves the keys of the ring segments next to its points, and the
+ * many points per node even out how many keys each node gets.
+ */
+public class HashRing {
+
+  private final NavigableMap<Long, String> ring;
+
+  /**
+   * Constructor for HashRing.
+   *
+   * @param nodes the names of the nodes, e.g. their base URLs
+   * @param virtualNodes the number of points each node is placed at
+   */
+  public HashRing(List<String> nodes, int virtualNodes) {
+    if (nodes.isEmpty()) {
+      throw new IllegalArgumentException("A hash ring needs at least one node");
+    }
+    this.ring = new TreeMap<>();
+    for (String node : nodes) {
+      for (int i = 0; i < virtualNodes; i++) {
+        this.ring.put(hash(node + "#" + i), node);
+      }
+    }
+  }
+
+  /**
+   * Returns the node that a key belongs to.
+   *
+   * @param key the key
+   * @return the name of the node that owns the key
+   */
+  public String owner(String key) {
+    Map.Entry<Long, String> point = this.ring.ceilingEntry(hash(key));
+    return point == null ? this.ring.firstEntry().getValue() : point.getValue();
+  }
+
+  /**
+   * Hashes a string onto the ring.
+   *
+   * @param value the string to hash
+   * @return its position on the ring
+   */
+  private static long hash(String value) {
+    return Hashing.murmur3_128().hashString(value, StandardCharsets.UTF_8).asLong();
+  }
+}
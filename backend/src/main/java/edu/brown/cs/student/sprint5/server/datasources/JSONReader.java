@@ -1,15 +1,21 @@
 package edu.brown.cs.student.sprint5.server.datasources;
 
+import static edu.brown.cs.student.sprint5.Constants.INGEST_BATCH_SIZE;
+
 import com.squareup.moshi.JsonAdapter;
 import com.squareup.moshi.JsonDataException;
-import com.squareup.moshi.Moshi;
+import com.squareup.moshi.JsonReader;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.GeoJsonAdapters;
+import edu.brown.cs.student.sprint5.server.responseformatting.JsonAdapters;
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import okio.BufferedSource;
+import okio.Okio;
 
-/** Utility class for reading JSON files. */
+/** Utility class for reading JSON files. All conversions use the shared {@link JsonAdapters}. */
 public class JSONReader {
 
   /**
@@ -21,10 +27,31 @@ public class JSONReader {
    * @throws IOException error thrown by Moshi
    */
   public static <T> T fromJsonFile(String path, Type type) throws IOException, JsonDataException {
-    JsonAdapter<T> adapter = new Moshi.Builder().build().adapter(type);
-    try {
-      String asString = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
-      return adapter.fromJson(asString);
+    JsonAdapter<T> adapter = JsonAdapters.adapter(type);
+    // parse while reading, rather than first reading the whole file into a string
+    try (BufferedSource source = Okio.buffer(Okio.source(new File(path)))) {
+      return adapter.fromJson(source);
+    } catch (IOException e) {
+      throw new IOException("Error reading file at " + path);
+    }
+  }
+
+  /**
+   * Convert a GeoJSON FeatureCollection file to a FeatureCollection, parsing its features on worker
+   * threads while the file is read. Only a bounded number of features' text is held at once.
+   *
+   * @param path path of file to be converted
+   * @param workers the threads that parse the features
+   * @param inFlightBatches the most batches of features that may be read but not yet parsed
+   * @return converted GeoJSON
+   * @throws IOException error thrown by Moshi
+   */
+  public static FeatureCollection fromGeoJsonFile(
+      String path, ExecutorService workers, int inFlightBatches)
+      throws IOException, JsonDataException {
+    try (BufferedSource source = Okio.buffer(Okio.source(new File(path)))) {
+      return GeoJsonAdapters.readFeatureCollection(
+          JsonReader.of(source), workers, INGEST_BATCH_SIZE, inFlightBatches);
     } catch (IOException e) {
       throw new IOException("Error reading file at " + path);
     }
@@ -39,7 +66,7 @@ public class JSONReader {
    * @throws IOException error thrown by Moshi
    */
   public static <T> T fromJsonString(String json, Type type) throws IOException, JsonDataException {
-    JsonAdapter<T> adapter = new Moshi.Builder().build().adapter(type);
+    JsonAdapter<T> adapter = JsonAdapters.adapter(type);
     return adapter.fromJson(json);
   }
 
@@ -52,7 +79,7 @@ public class JSONReader {
    * @throws IOException
    */
   public static String toJson(Object toParse, Type type) throws JsonDataException {
-    JsonAdapter<Object> adapter = new Moshi.Builder().build().adapter(type);
+    JsonAdapter<Object> adapter = JsonAdapters.adapter(type);
     return adapter.toJson(toParse);
   }
 }
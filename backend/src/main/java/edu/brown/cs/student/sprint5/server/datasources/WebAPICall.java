@@ -1,6 +1,6 @@
 package edu.brown.cs.student.sprint5.server.datasources;
 
-import com.squareup.moshi.Moshi;
+import edu.brown.cs.student.sprint5.server.responseformatting.JsonAdapters;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -28,7 +28,6 @@ public class WebAPICall implements APICall {
     HttpClient client = HttpClient.newHttpClient();
     HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).GET().build();
     HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-    Moshi moshi = new Moshi.Builder().build();
-    return moshi.adapter(responseClass).fromJson(response.body());
+    return JsonAdapters.MOSHI.adapter(responseClass).fromJson(response.body());
   }
 }
@@ -0,0 +1,293 @@
+package edu.brown.cs.student.sprint5.server.diskcache;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.RawJson;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Class for a second-level cache of serialized responses that lives on disk and survives restarts.
+ * Values are appended to segment files; full segments are sealed and memory-mapped. An in-memory
+ * index maps each key to the newest record for it, and is rebuilt by scanning the segments when the
+ * cache is opened. When the segments outgrow the size bound, the oldest segment is compacted away:
+ * its values that were read since they were written are copied forward, and the rest are dropped.
+ *
+ * <p>Keys should include the version of the dataset a response was computed from, so responses
+ * computed from older data are simply never asked for again and age out.
+ */
+public class DiskCache {
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private static DiskCache shared;
+  private static boolean sharedOpened;
+
+  private final Path directory;
+  private final long maxBytes;
+  private final long segmentBytes;
+  private final boolean compress;
+  private final Map<String, Location> index;
+  // oldest first; the last segment is the one being appended to
+  private final Deque<Segment> segments;
+  private long totalBytes;
+
+  /**
+   * Constructor for DiskCache, which opens the cache in a directory and indexes what is already
+   * there.
+   *
+   * @param directory the directory holding the segment files, created if it does not exist
+   * @param maxBytes the size, in bytes, that compaction keeps the segments under
+   * @param segmentBytes the size, in bytes, at which a segment is sealed and a new one started
+   * @param compress whether values are gzip-compressed
+   * @throws IOException if the directory or its segments cannot be read
+   */
+  public DiskCache(Path directory, long maxBytes, long segmentBytes, boolean compress)
+      throws IOException {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.segmentBytes = segmentBytes;
+    this.compress = compress;
+    this.index = new ConcurrentHashMap<>();
+    this.segments = new ArrayDeque<>();
+    Files.createDirectories(directory);
+
+    List<Long> ids = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      files.forEach(
+          file -> {
+            String name = file.getFileName().toString();
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+              try {
+                ids.add(
+                    Long.parseLong(
+                        name.substring(
+                            SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+              } catch (NumberFormatException e) {
+                // not one of ours
+              }
+            }
+          });
+    }
+    ids.sort(null);
+    for (long id : ids) {
+      Segment segment = new Segment(id, segmentPath(id));
+      segment.scan(this.index::put);
+      segment.seal();
+      this.segments.addLast(segment);
+      this.totalBytes += segment.size();
+    }
+    long activeId = ids.isEmpty() ? 0 : ids.get(ids.size() - 1) + 1;
+    this.segments.addLast(new Segment(activeId, segmentPath(activeId)));
+    compact();
+  }
+
+  /**
+   * Returns the disk cache configured by the server.diskCache system property, opening it on first
+   * use.
+   *
+   * @return the shared disk cache, or null if none is configured or it cannot be opened
+   */
+  public static synchronized DiskCache shared() {
+    if (!sharedOpened) {
+      sharedOpened = true;
+      String directory = System.getProperty(DISK_CACHE_PROPERTY);
+      if (directory != null && !directory.isBlank()) {
+        try {
+          shared =
+              new DiskCache(
+                  Path.of(directory),
+                  DISK_CACHE_MAX_MB * 1024 * 1024,
+                  DISK_CACHE_SEGMENT_MB * 1024 * 1024,
+                  DISK_CACHE_COMPRESS);
+        } catch (IOException e) {
+          e.printStackTrace();
+          System.out.println("Failed to open the disk cache at " + directory);
+        }
+      }
+    }
+    return shared;
+  }
+
+  /**
+   * Returns the path of a segment file.
+   *
+   * @param id the number of the segment
+   * @return the path
+   */
+  private Path segmentPath(long id) {
+    return this.directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+  }
+
+  /**
+   * Returns the response stored under a key, or computes it and stores it. Only successful
+   * responses holding just a FeatureCollection are stored, as serialized GeoJSON. A stored response
+   * is returned in that serialized form, so it is written out as is rather than parsed and
+   * serialized again; a computed response is returned as computed.
+   *
+   * @param key the key of the response
+   * @param compute the code that computes the response if it is not stored
+   * @return the response
+   */
+  public ServerResponse getOrCompute(String key, Supplier<ServerResponse> compute) {
+    String stored = get(key);
+    if (stored != null) {
+      return new ServerResponse(Map.of(FEATURES, new RawJson(stored)));
+    }
+    ServerResponse response = compute.get();
+    if (SUCCESS_MESSAGE.equals(response.responseCode())
+        && response.data() != null
+        && response.data().size() == 1
+        && response.data().get(FEATURES) instanceof FeatureCollection collection) {
+      put(key, RawJson.of(collection).json());
+    }
+    return response;
+  }
+
+  /**
+   * Returns the value stored under a key.
+   *
+   * @param key the key
+   * @return the value, or null if nothing is stored under the key or it cannot be read
+   */
+  public String get(String key) {
+    Location location = this.index.get(key);
+    if (location == null) {
+      return null;
+    }
+    try {
+      byte[] bytes = location.segment().read(location);
+      location.setReferenced(true);
+      if (location.compressed()) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+          bytes = in.readAllBytes();
+        }
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      // the segment was compacted away while this read was starting
+      this.index.remove(key, location);
+      return null;
+    }
+  }
+
+  /**
+   * Stores a value under a key, replacing any value stored under it before. Failures to write are
+   * reported and otherwise ignored, since the value can always be computed again.
+   *
+   * @param key the key
+   * @param value the value
+   */
+  public void put(String key, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    try {
+      if (this.compress) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+          gzip.write(bytes);
+        }
+        bytes = out.toByteArray();
+      }
+      synchronized (this) {
+        Segment active = this.segments.getLast();
+        this.index.put(key, append(key, bytes, this.compress));
+        if (this.segments.getLast() != active) {
+          compact();
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      System.out.println("Failed to write to the disk cache at " + this.directory);
+    }
+  }
+
+  /**
+   * Appends a record to the active segment, sealing it and starting a new one once it reaches the
+   * segment size.
+   *
+   * @param key the key
+   * @param bytes the value, compressed if compressed is set
+   * @param compressed whether the value is gzip-compressed
+   * @return the location of the value
+   * @throws IOException if the segment cannot be written or sealed
+   */
+  private synchronized Location append(String key, byte[] bytes, boolean compressed)
+      throws IOException {
+    Segment active = this.segments.getLast();
+    long before = active.size();
+    Location location = active.append(key, bytes, compressed);
+    this.totalBytes += active.size() - before;
+    if (active.size() >= this.segmentBytes) {
+      active.seal();
+      this.segments.addLast(new Segment(active.id() + 1, segmentPath(active.id() + 1)));
+    }
+    return location;
+  }
+
+  /**
+   * Compacts the oldest segments away until the cache is within its size bound. Values of a
+   * compacted segment that are still current and were read since they were written are copied to
+   * the newest segment, which is sealed and replaced as it fills up like it is for new values; the
+   * others are dropped from the index. Segments written during this compaction are left for the
+   * next one, so values copied forward keep their second chance even when every value was read.
+   *
+   * @throws IOException if a segment cannot be read or deleted
+   */
+  private synchronized void compact() throws IOException {
+    long firstNewId = this.segments.getLast().id();
+    while (this.totalBytes > this.maxBytes && this.segments.getFirst().id() < firstNewId) {
+      Segment oldest = this.segments.pollFirst();
+      this.totalBytes -= oldest.size();
+      oldest.scan(
+          (key, location) -> {
+            Location current = this.index.get(key);
+            if (current == null
+                || current.segment() != oldest
+                || current.offset() != location.offset()) {
+              return;
+            }
+            if (current.referenced()) {
+              this.index.put(key, append(key, oldest.read(current), current.compressed()));
+            } else {
+              this.index.remove(key, current);
+            }
+          });
+      oldest.delete();
+    }
+  }
+
+  /**
+   * Returns the number of keys stored.
+   *
+   * @return the number of keys
+   */
+  public int size() {
+    return this.index.size();
+  }
+
+  /**
+   * Returns the number of bytes the segment files take up.
+   *
+   * @return the total size of the segments
+   */
+  public synchronized long totalBytes() {
+    return this.totalBytes;
+  }
+}
@@ -0,0 +1,84 @@
+package edu.brown.cs.student.sprint5.server.diskcache;
+
+/**
+ * Class for where a value of the disk cache is stored. A location that has been read since it was
+ * written is marked as referenced, and compaction keeps referenced values rather than dropping
+ * them.
+ */
+class Location {
+
+  private final Segment segment;
+  private final long offset;
+  private final int length;
+  private final boolean compressed;
+  private volatile boolean referenced;
+
+  /**
+   * Constructor for Location.
+   *
+   * @param segment the segment the value is in
+   * @param offset the position of the value in the segment file
+   * @param length the number of bytes of the value
+   * @param compressed whether the value is gzip-compressed
+   */
+  Location(Segment segment, long offset, int length, boolean compressed) {
+    this.segment = segment;
+    this.offset = offset;
+    this.length = length;
+    this.compressed = compressed;
+  }
+
+  /**
+   * Returns the segment the value is in.
+   *
+   * @return the segment
+   */
+  Segment segment() {
+    return this.segment;
+  }
+
+  /**
+   * Returns the position of the value in its segment file.
+   *
+   * @return the offset in bytes
+   */
+  long offset() {
+    return this.offset;
+  }
+
+  /**
+   * Returns the number of bytes of the value as stored.
+   *
+   * @return the length in bytes
+   */
+  int length() {
+    return this.length;
+  }
+
+  /**
+   * Returns whether the value is gzip-compressed.
+   *
+   * @return true if the value is compressed
+   */
+  boolean compressed() {
+    return this.compressed;
+  }
+
+  /**
+   * Returns whether the value has been read since it was written.
+   *
+   * @return true if the value is referenced
+   */
+  boolean referenced() {
+    return this.referenced;
+  }
+
+  /**
+   * Marks the value as read, or clears the mark.
+   *
+   * @param referenced whether the value has been read
+   */
+  void setReferenced(boolean referenced) {
+    this.referenced = referenced;
+  }
+}
@@ -0,0 +1,205 @@
+package edu.brown.cs.student.sprint5.server.diskcache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Class for one append-only file of the disk cache. Each record is laid out as
+ *
+ * <pre>[int body length][int CRC32 of body][byte flags][int key length][key][value]</pre>
+ *
+ * where the body is everything after the checksum. Records are only ever appended to the newest
+ * segment; once a segment is full it is sealed and memory-mapped, and reads are served from the
+ * mapping.
+ */
+class Segment {
+
+  /** The flag marking a value as gzip-compressed. */
+  static final byte COMPRESSED = 1;
+
+  private static final int HEADER_BYTES = 8;
+
+  private final long id;
+  private final Path path;
+  private final FileChannel channel;
+  private volatile MappedByteBuffer mapped;
+  private long size;
+
+  /**
+   * Opens a segment file, creating it if it does not exist.
+   *
+   * @param id the number of the segment, which orders segments from oldest to newest
+   * @param path the path of the segment file
+   * @throws IOException if the file cannot be opened
+   */
+  Segment(long id, Path path) throws IOException {
+    this.id = id;
+    this.path = path;
+    this.channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    this.size = this.channel.size();
+  }
+
+  /**
+   * Visits every intact record of the segment, in order. A record cut short or corrupted by a crash
+   * ends the scan, and the file is truncated to the records before it.
+   *
+   * @param visitor the code to run for each record
+   * @throws IOException if the file cannot be read
+   */
+  void scan(RecordVisitor visitor) throws IOException {
+    if (this.size > Integer.MAX_VALUE) {
+      throw new IOException("Segment " + this.path + " is too large");
+    }
+    ByteBuffer buffer =
+        this.mapped != null
+            ? this.mapped
+            : this.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    int offset = 0;
+    while (offset + HEADER_BYTES <= this.size) {
+      int bodyLength = buffer.getInt(offset);
+      int checksum = buffer.getInt(offset + 4);
+      int bodyStart = offset + HEADER_BYTES;
+      if (bodyLength < 5 || bodyStart + (long) bodyLength > this.size) {
+        break;
+      }
+      byte[] body = new byte[bodyLength];
+      buffer.get(bodyStart, body);
+      CRC32 crc = new CRC32();
+      crc.update(body);
+      if ((int) crc.getValue() != checksum) {
+        break;
+      }
+      ByteBuffer fields = ByteBuffer.wrap(body);
+      byte flags = fields.get();
+      int keyLength = fields.getInt();
+      if (keyLength < 0 || 5 + keyLength > bodyLength) {
+        break;
+      }
+      String key = new String(body, 5, keyLength, StandardCharsets.UTF_8);
+      int valueStart = bodyStart + 5 + keyLength;
+      visitor.visit(
+          key,
+          new Location(this, valueStart, bodyLength - 5 - keyLength, (flags & COMPRESSED) != 0));
+      offset = bodyStart + bodyLength;
+    }
+    if (offset < this.size) {
+      this.channel.truncate(offset);
+      this.size = offset;
+    }
+  }
+
+  /**
+   * Appends a record to the end of the segment.
+   *
+   * @param key the key of the record
+   * @param value the value of the record
+   * @param compressed whether the value is gzip-compressed
+   * @return where the value was written
+   * @throws IOException if the record cannot be written
+   */
+  Location append(String key, byte[] value, boolean compressed) throws IOException {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    int bodyLength = 5 + keyBytes.length + value.length;
+    ByteBuffer body = ByteBuffer.allocate(bodyLength);
+    body.put(compressed ? COMPRESSED : 0).putInt(keyBytes.length).put(keyBytes).put(value);
+    CRC32 crc = new CRC32();
+    crc.update(body.array());
+
+    ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+    record.putInt(bodyLength).putInt((int) crc.getValue()).put(body.array()).flip();
+    long start = this.size;
+    long position = start;
+    while (record.hasRemaining()) {
+      position += this.channel.write(record, position);
+    }
+    this.size = position;
+    return new Location(this, start + HEADER_BYTES + 5 + keyBytes.length, value.length, compressed);
+  }
+
+  /**
+   * Seals the segment: no more records will be appended, and reads go through a memory mapping.
+   *
+   * @throws IOException if the file cannot be mapped
+   */
+  void seal() throws IOException {
+    this.channel.force(false);
+    this.mapped = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.size);
+  }
+
+  /**
+   * Reads the value at a location of this segment.
+   *
+   * @param location the location of the value
+   * @return the value's bytes
+   * @throws IOException if the value cannot be read, e.g. because the segment was deleted
+   */
+  byte[] read(Location location) throws IOException {
+    byte[] value = new byte[location.length()];
+    MappedByteBuffer mapped = this.mapped;
+    if (mapped != null) {
+      mapped.get((int) location.offset(), value);
+      return value;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(value);
+    long position = location.offset();
+    while (buffer.hasRemaining()) {
+      int read = this.channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("Unexpected end of segment " + this.path);
+      }
+      position += read;
+    }
+    return value;
+  }
+
+  /**
+   * Closes and deletes the segment file. Values that are being read from the mapping can still be
+   * read until the mapping is garbage collected.
+   *
+   * @throws IOException if the file cannot be deleted
+   */
+  void delete() throws IOException {
+    this.channel.close();
+    Files.deleteIfExists(this.path);
+  }
+
+  /**
+   * Returns the number of bytes in the segment.
+   *
+   * @return the segment's size
+   */
+  long size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the number of the segment.
+   *
+   * @return the number that orders segments from oldest to newest
+   */
+  long id() {
+    return this.id;
+  }
+
+  /** Interface for code that visits the records of a segment. */
+  interface RecordVisitor {
+
+    /**
+     * Visits a record.
+     *
+     * @param key the key of the record
+     * @param location where the record's value is
+     * @throws IOException if the visit fails
+     */
+    void visit(String key, Location location) throws IOException;
+  }
+}
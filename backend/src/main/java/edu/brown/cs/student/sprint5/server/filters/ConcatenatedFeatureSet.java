@@ -0,0 +1,52 @@
+package edu.brown.cs.student.sprint5.server.filters;
+
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Class for a read-only set of features made of lists of distinct features, e.g. the matches found
+ * by each chunk of a filter. Iterating it walks the lists in order, so merging the results of a
+ * split filter costs nothing, and the features reach the serializer without being copied or hashed.
+ * The lists must not share features.
+ */
+public class ConcatenatedFeatureSet extends AbstractSet<Feature> {
+
+  private final List<List<Feature>> parts;
+  private final int size;
+
+  /**
+   * Constructor for ConcatenatedFeatureSet.
+   *
+   * @param parts the lists of features, in the order they should be iterated
+   */
+  public ConcatenatedFeatureSet(List<List<Feature>> parts) {
+    this.parts = parts;
+    int size = 0;
+    for (List<Feature> part : parts) {
+      size += part.size();
+    }
+    this.size = size;
+  }
+
+  /**
+   * Returns an iterator over the features, list by list.
+   *
+   * @return the iterator
+   */
+  @Override
+  public Iterator<Feature> iterator() {
+    return this.parts.stream().flatMap(List::stream).iterator();
+  }
+
+  /**
+   * Returns the number of features in the set.
+   *
+   * @return the total size of the lists
+   */
+  @Override
+  public int size() {
+    return this.size;
+  }
+}
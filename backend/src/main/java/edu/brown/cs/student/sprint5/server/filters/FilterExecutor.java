@@ -0,0 +1,158 @@
+package edu.brown.cs.student.sprint5.server.filters;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Class that runs filters over arrays of features on a dedicated fork/join pool, rather than on the
+ * common pool that parallel streams share with everything else in the JVM. The features are split
+ * into a few contiguous chunks that are each scanned sequentially, and the number of chunks one
+ * request may use is capped, so a single huge query leaves threads free for the others. Small
+ * arrays are scanned on the calling thread, where the cost of handing work to the pool would
+ * outweigh the scan.
+ */
+public class FilterExecutor {
+
+  private static final ForkJoinPool POOL =
+      new ForkJoinPool(
+          FILTER_THREADS,
+          pool -> {
+            ForkJoinWorkerThread thread =
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("filter-" + thread.getPoolIndex());
+            return thread;
+          },
+          null,
+          false);
+
+  /**
+   * Returns the features that meet a filter's criteria, in the order of the array.
+   *
+   * @param features the features to filter
+   * @param filter the filter to apply
+   * @param token the token of the request that the filtering is for, checked between chunks of
+   *     features
+   * @return the features that meet the filter's criteria
+   * @throws java.util.concurrent.CancellationException if the request is cancelled
+   */
+  public static Set<Feature> filter(
+      Feature[] features, FeatureFilter filter, CancellationToken token) {
+    return filter(Collections.singletonList(features), filter, token);
+  }
+
+  /**
+   * Returns the features of several arrays that meet a filter's criteria, in the order of the
+   * arrays. The arrays are treated as one sequence when it is split into chunks, so many small
+   * arrays are spread over the pool as evenly as one large one.
+   *
+   * @param arrays the arrays of features to filter, which must not share features
+   * @param filter the filter to apply
+   * @param token the token of the request that the filtering is for, checked between chunks of
+   *     features
+   * @return the features that meet the filter's criteria
+   * @throws java.util.concurrent.CancellationException if the request is cancelled
+   */
+  public static Set<Feature> filter(
+      List<Feature[]> arrays, FeatureFilter filter, CancellationToken token) {
+    int total = 0;
+    for (Feature[] array : arrays) {
+      total += array.length;
+    }
+    int minChunk = Math.max(1, FILTER_PARALLEL_THRESHOLD / 2);
+    int chunks =
+        total < FILTER_PARALLEL_THRESHOLD
+            ? 1
+            : Math.min(FILTER_MAX_PARALLELISM, (total + minChunk - 1) / minChunk);
+    List<List<Slice>> plan = plan(arrays, Math.max(1, (total + chunks - 1) / chunks));
+    if (plan.isEmpty()) {
+      return Set.of();
+    }
+
+    List<ForkJoinTask<List<Feature>>> forked = new ArrayList<>();
+    for (List<Slice> chunk : plan.subList(1, plan.size())) {
+      forked.add(POOL.submit(() -> scan(chunk, filter, token)));
+    }
+    // the first chunk runs on the calling thread, which would otherwise just wait
+    List<List<Feature>> results = new ArrayList<>();
+    results.add(scan(plan.get(0), filter, token));
+    for (ForkJoinTask<List<Feature>> task : forked) {
+      results.add(task.join());
+    }
+    return new ConcatenatedFeatureSet(results);
+  }
+
+  /**
+   * Splits arrays into chunks of about equal size. A chunk may cover the end of one array and the
+   * start of the next.
+   *
+   * @param arrays the arrays to split
+   * @param chunkSize the number of features per chunk
+   * @return the chunks, each a list of slices, in order
+   */
+  private static List<List<Slice>> plan(List<Feature[]> arrays, int chunkSize) {
+    List<List<Slice>> chunks = new ArrayList<>();
+    List<Slice> chunk = new ArrayList<>();
+    int room = chunkSize;
+    for (Feature[] array : arrays) {
+      int from = 0;
+      while (from < array.length) {
+        int to = Math.min(array.length, from + room);
+        chunk.add(new Slice(array, from, to));
+        room -= to - from;
+        from = to;
+        if (room == 0) {
+          chunks.add(chunk);
+          chunk = new ArrayList<>();
+          room = chunkSize;
+        }
+      }
+    }
+    if (!chunk.isEmpty()) {
+      chunks.add(chunk);
+    }
+    return chunks;
+  }
+
+  /**
+   * Scans a chunk sequentially.
+   *
+   * @param chunk the slices of the chunk
+   * @param filter the filter to apply
+   * @param token the token to check every CANCELLATION_CHECK_INTERVAL features
+   * @return the scanned features that meet the filter's criteria
+   */
+  private static List<Feature> scan(
+      List<Slice> chunk, FeatureFilter filter, CancellationToken token) {
+    List<Feature> matches = new ArrayList<>();
+    int scanned = 0;
+    for (Slice slice : chunk) {
+      for (int i = slice.from(); i < slice.to(); i++) {
+        if (scanned++ % CANCELLATION_CHECK_INTERVAL == 0) {
+          token.throwIfCancelled();
+        }
+        if (filter.featureMeetsCriteria(slice.features()[i])) {
+          matches.add(slice.features()[i]);
+        }
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Record for a range of an array of features.
+   *
+   * @param features the array
+   * @param from the index of the first feature of the range
+   * @param to the index after the last feature of the range
+   */
+  private record Slice(Feature[] features, int from, int to) {}
+}
@@ -1,30 +1,50 @@
 package edu.brown.cs.student.sprint5.server.handlers;
 
 import static edu.brown.cs.student.sprint5.Constants.*;
-import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
 
+import edu.brown.cs.student.sprint5.server.admission.ConcurrencyLimiter;
+import edu.brown.cs.student.sprint5.server.cluster.ClusterRouter;
+import edu.brown.cs.student.sprint5.server.index.Topology;
+import edu.brown.cs.student.sprint5.server.layers.Layer;
+import edu.brown.cs.student.sprint5.server.layers.LayerRegistry;
 import edu.brown.cs.student.sprint5.server.proxies.Proxy;
-import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
 import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import edu.brown.cs.student.sprint5.server.responseformatting.TopoJson;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import edu.brown.cs.student.sprint5.server.sessions.SessionRegistry;
+import edu.brown.cs.student.sprint5.server.warmup.AccessLog;
 import java.io.IOException;
+import java.net.http.HttpResponse;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import spark.Request;
 import spark.Response;
 import spark.Route;
 
-/** Class that generically handles requests for data from a JSON file. */
+/**
+ * Class that generically handles requests for data from JSON files. Requests pick a dataset with
+ * the optional layer parameter, and each layer gets its own proxy of the handler's proxy class.
+ */
 public class JSONDataHandler implements RequestHandler, Route {
 
-  private Proxy proxy;
+  private LayerRegistry layers;
+  private Class<? extends Proxy> proxyClass;
   private Set<String> knownParams;
-  private FeatureCollection data;
-  private boolean dataLoaded;
-  private String dataPath;
+  private Set<String> optionalParams;
+  private Executor compute;
+  private SessionRegistry sessions;
+  private ConcurrencyLimiter limiter;
+  private ClusterRouter router;
+  private AccessLog accessLog;
 
   /**
-   * Constructor for JSONDataHandler.
+   * Constructor for JSONDataHandler that computes responses on the thread serving the request.
    *
    * @param path the path to the JSON file.
    * @param dataClass the Record class that the JSON file should be parsed into.
@@ -35,70 +55,436 @@ public class JSONDataHandler implements RequestHandler, Route {
   public JSONDataHandler(
       String path, Class<? extends Record> dataClass, Class<? extends Proxy> proxyClass)
       throws Exception {
-    this.dataPath = path;
+    this(path, dataClass, proxyClass, null);
+  }
+
+  /**
+   * Constructor for JSONDataHandler.
+   *
+   * @param path the path to the JSON file.
+   * @param dataClass the Record class that the JSON file should be parsed into.
+   * @param proxyClass the class of the proxy that specifies behavior needed to generate a
+   *     particular response.
+   * @param compute the executor that filtering and serialization run on, so the thread serving the
+   *     request only waits for the result and writes it out, or null to compute on that thread.
+   * @throws Exception if the proxy class does not have a constructor that takes a dataClass object.
+   */
+  public JSONDataHandler(
+      String path,
+      Class<? extends Record> dataClass,
+      Class<? extends Proxy> proxyClass,
+      Executor compute)
+      throws Exception {
+    this(path, dataClass, proxyClass, compute, null);
+  }
+
+  /**
+   * Constructor for JSONDataHandler.
+   *
+   * @param path the path to the JSON file.
+   * @param dataClass the Record class that the JSON file should be parsed into.
+   * @param proxyClass the class of the proxy that specifies behavior needed to generate a
+   *     particular response.
+   * @param compute the executor that filtering and serialization run on, so the thread serving the
+   *     request only waits for the result and writes it out, or null to compute on that thread.
+   * @param limiter the limiter that decides whether requests are admitted, usually shared by every
+   *     handler of the server, or null to admit every request.
+   * @throws Exception if the proxy class does not have a constructor that takes a dataClass object.
+   */
+  public JSONDataHandler(
+      String path,
+      Class<? extends Record> dataClass,
+      Class<? extends Proxy> proxyClass,
+      Executor compute,
+      ConcurrencyLimiter limiter)
+      throws Exception {
+    this(new LayerRegistry(path, dataClass), proxyClass, compute, limiter);
+  }
+
+  /**
+   * Constructor for JSONDataHandler serving the layers of a registry, which is usually shared by
+   * every handler of the server so that each layer is loaded once. The default layer is loaded
+   * right away; the others are loaded when first requested.
+   *
+   * @param layers the layers that requests can pick from.
+   * @param proxyClass the class of the proxy that specifies behavior needed to generate a
+   *     particular response.
+   * @param compute the executor that filtering and serialization run on, so the thread serving the
+   *     request only waits for the result and writes it out, or null to compute on that thread.
+   * @param limiter the limiter that decides whether requests are admitted, usually shared by every
+   *     handler of the server, or null to admit every request.
+   * @throws Exception if the proxy class does not have a constructor that takes a layer's data.
+   */
+  public JSONDataHandler(
+      LayerRegistry layers,
+      Class<? extends Proxy> proxyClass,
+      Executor compute,
+      ConcurrencyLimiter limiter)
+      throws Exception {
+    this(layers, proxyClass, compute, limiter, null);
+  }
+
+  /**
+   * Constructor for JSONDataHandler serving the layers of a registry as one node of a cluster.
+   * Requests that another node owns are forwarded to it, and answered here only if it cannot be
+   * reached.
+   *
+   * @param layers the layers that requests can pick from.
+   * @param proxyClass the class of the proxy that specifies behavior needed to generate a
+   *     particular response.
+   * @param compute the executor that filtering and serialization run on, so the thread serving the
+   *     request only waits for the result and writes it out, or null to compute on that thread.
+   * @param limiter the limiter that decides whether requests are admitted, usually shared by every
+   *     handler of the server, or null to admit every request.
+   * @param router the router that decides which node answers a request, or null if the server runs
+   *     alone.
+   * @throws Exception if the proxy class does not have a constructor that takes a layer's data.
+   */
+  public JSONDataHandler(
+      LayerRegistry layers,
+      Class<? extends Proxy> proxyClass,
+      Executor compute,
+      ConcurrencyLimiter limiter,
+      ClusterRouter router)
+      throws Exception {
+    this(layers, proxyClass, compute, limiter, router, null);
+  }
+
+  /**
+   * Constructor for JSONDataHandler serving the layers of a registry, counting the queries it
+   * answers successfully in an access log so the most popular ones can be replayed at startup.
+   *
+   * @param layers the layers that requests can pick from.
+   * @param proxyClass the class of the proxy that specifies behavior needed to generate a
+   *     particular response.
+   * @param compute the executor that filtering and serialization run on, so the thread serving the
+   *     request only waits for the result and writes it out, or null to compute on that thread.
+   * @param limiter the limiter that decides whether requests are admitted, usually shared by every
+   *     handler of the server, or null to admit every request.
+   * @param router the router that decides which node answers a request, or null if the server runs
+   *     alone.
+   * @param accessLog the log that answered queries are counted in, usually shared by every handler
+   *     of the server, or null to count nothing.
+   * @throws Exception if the proxy class does not have a constructor that takes a layer's data.
+   */
+  public JSONDataHandler(
+      LayerRegistry layers,
+      Class<? extends Proxy> proxyClass,
+      Executor compute,
+      ConcurrencyLimiter limiter,
+      ClusterRouter router,
+      AccessLog accessLog)
+      throws Exception {
+    this.layers = layers;
+    this.router = router;
+    this.accessLog = accessLog;
+    this.proxyClass = proxyClass;
+    this.compute = compute;
+    this.limiter = limiter;
+    this.sessions = new SessionRegistry();
     try {
-      this.data = fromJsonFile(path, dataClass);
-      this.dataLoaded = true;
-      this.proxy = proxyClass.getConstructor(dataClass).newInstance(this.data);
-      this.knownParams = this.proxy.getKnownQueryParams();
+      learnParams(layers.get(layers.defaultLayer()).proxy(proxyClass));
     } catch (IOException e) {
-      this.dataLoaded = false;
+      // the default layer is loaded again by the next request for it
+    }
+  }
+
+  /**
+   * Records the parameters of the endpoint, which are the same for every proxy of the handler's
+   * proxy class.
+   *
+   * @param proxy a proxy of the handler's proxy class
+   */
+  private void learnParams(Proxy proxy) {
+    if (this.knownParams == null) {
+      Set<String> optional = new HashSet<>(proxy.getOptionalQueryParams());
+      optional.add(LAYER_PARAM);
+      this.optionalParams = optional;
+      this.knownParams = proxy.getKnownQueryParams();
     }
   }
 
   /**
-   * Called when a request is made to the endpoint.
+   * Returns the name of the layer a request is for.
+   *
+   * @param request the request
+   * @return the layer named by the request, or the default layer if it names none
+   */
+  private String layerOf(Request request) {
+    String layer = request.queryParams(LAYER_PARAM);
+    return layer == null ? this.layers.defaultLayer() : layer;
+  }
+
+  /**
+   * Called when a request is made to the endpoint. In a cluster, requests owned by another node are
+   * forwarded to it first, unless this node is already forwarding as many requests as it may, in
+   * which case they are rejected like requests to a busy server. If the server is too busy, the
+   * request is rejected right away with status 503 and a Retry-After header. Requests whose
+   * response is cached are rejected later than others, since they cost almost nothing to answer.
+   * Responses are rendered in the format the request's Accept header asks for.
    *
    * @param request the request object.
-   * @param response the response object. Not used, but required by the Route interface.
+   * @param response the response object, used to set the status of rejected requests.
    * @return the response to the request.
    * @throws Exception required by the Route interface.
    */
   @Override
   public Object handle(Request request, Response response) throws Exception {
+    String owner = this.router == null ? null : this.router.ownerOf(request);
+    if (owner != null) {
+      if (!this.router.tryAcquireForward()) {
+        return reject(request, response);
+      }
+      try {
+        HttpResponse<byte[]> forwarded = this.router.forward(owner, request);
+        response.status(forwarded.statusCode());
+        forwarded
+            .headers()
+            .firstValue("Retry-After")
+            .ifPresent(retryAfter -> response.header("Retry-After", retryAfter));
+        forwarded.headers().firstValue("Content-Type").ifPresent(response::type);
+        return forwarded.body();
+      } catch (IOException e) {
+        // the owner is unreachable, so this node answers in its place
+      } finally {
+        this.router.releaseForward();
+      }
+    }
+    Object result = admit(request, response);
+    if (result instanceof byte[]) {
+      response.type(BINARY_FEATURES_TYPE);
+    }
+    return result;
+  }
+
+  /**
+   * Renders a response in the format a request asks for: the compact binary format if its Accept
+   * header names {@link edu.brown.cs.student.sprint5.Constants#BINARY_FEATURES_TYPE}, JSON with
+   * FeatureCollections as TopoJSON topologies if it names {@link
+   * edu.brown.cs.student.sprint5.Constants#TOPOJSON_TYPE}, and plain JSON otherwise.
+   *
+   * @param request the request the response answers
+   * @param response the response to render
+   * @param token the token of the request, checked while the response is rendered
+   * @return the response as a byte array or a JSON string
+   * @throws CancellationException if the request is cancelled
+   */
+  private Object render(Request request, ServerResponse response, CancellationToken token) {
+    String accept = request.headers("Accept");
+    if (accept != null && accept.contains(BINARY_FEATURES_TYPE)) {
+      return response.encodeBinary(token);
+    }
+    if (accept != null && accept.contains(TOPOJSON_TYPE)) {
+      Layer layer = this.layers.getIfLoaded(layerOf(request));
+      Topology topology = layer == null ? null : layer.topology();
+      if (topology != null) {
+        response = TopoJson.convert(response, topology, token);
+      }
+    }
+    return response.serialize(token);
+  }
+
+  /**
+   * Answers a request if the limiter admits it, and rejects it with status 503 otherwise. Cache
+   * warm-up requests are admitted at low priority.
+   *
+   * @param request the request object.
+   * @param response the response object, used to set the status of rejected requests.
+   * @return the response to the request.
+   * @throws Exception if the proxy throws an exception.
+   */
+  private Object admit(Request request, Response response) throws Exception {
+    if (this.limiter == null) {
+      return execute(request);
+    }
+    Layer layer = this.layers.getIfLoaded(layerOf(request));
+    Proxy built = layer == null ? null : layer.builtProxy(this.proxyClass);
+    boolean cheap = built != null && built.isCached(request);
+    boolean admitted =
+        request.headers(WARMUP_HEADER) == null
+            ? this.limiter.tryAcquire(cheap)
+            : this.limiter.tryAcquireLowPriority(WARMUP_LIMIT_SHARE);
+    if (!admitted) {
+      return reject(request, response);
+    }
+    long start = System.nanoTime();
+    try {
+      return execute(request);
+    } finally {
+      this.limiter.release(System.nanoTime() - start, !cheap);
+    }
+  }
+
+  /**
+   * Rejects a request because the server is too busy, with status 503 and a Retry-After header.
+   *
+   * @param request the request object.
+   * @param response the response object, whose status is set.
+   * @return the rendered overload response.
+   */
+  private Object reject(Request request, Response response) {
+    response.status(503);
+    response.header("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+    return render(
+        request,
+        new ServerResponse(ERROR_OVERLOADED, SERVER_OVERLOADED)
+            .withParams(request.queryMap().toMap()),
+        CancellationToken.NONE);
+  }
+
+  /**
+   * Computes the rendered response to a request, on the compute executor if there is one.
+   *
+   * @param request the request object.
+   * @return the rendered response.
+   * @throws Exception if the proxy throws an exception.
+   */
+  private Object execute(Request request) throws Exception {
+    if (this.compute == null) {
+      return respond(request);
+    }
+    CompletableFuture<Object> result = new CompletableFuture<>();
+    this.compute.execute(
+        () -> {
+          try {
+            result.complete(respond(request));
+          } catch (Throwable e) {
+            result.completeExceptionally(e);
+          }
+        });
+    try {
+      return result.get();
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception cause ? cause : e;
+    }
+  }
+
+  /**
+   * Computes the rendered response to a request.
+   *
+   * @param request the request object.
+   * @return the rendered response.
+   * @throws Exception if the proxy throws an exception.
+   */
+  private Object respond(Request request) throws Exception {
     Map<String, String[]> paramsMap = request.queryMap().toMap();
     Set<String> queryParams = request.queryParams();
-    if (!this.dataLoaded) {
-      return new ServerResponse(ERROR_DATASOURCE, String.format(DATA_LOAD_FAILURE, this.dataPath))
-          .withParams(paramsMap)
-          .serialize();
-    } else if (checkParamsKnown(request)) {
-      return handleKnownParams(request).withParams(paramsMap).serialize();
+    String layer = layerOf(request);
+    if (!this.layers.contains(layer)) {
+      return render(
+          request,
+          new ServerResponse(ERROR_BAD_REQUEST, String.format(UNKNOWN_LAYER, layer))
+              .withParams(paramsMap),
+          CancellationToken.NONE);
+    }
+    Proxy proxy;
+    try {
+      proxy = this.layers.get(layer).proxy(this.proxyClass);
+    } catch (IOException e) {
+      return render(
+          request,
+          new ServerResponse(
+                  ERROR_DATASOURCE, String.format(DATA_LOAD_FAILURE, this.layers.path(layer)))
+              .withParams(paramsMap),
+          CancellationToken.NONE);
+    }
+    learnParams(proxy);
+    if (checkParamsKnown(request)) {
+      return respondKnownParams(request, proxy, paramsMap);
     } else {
       if (queryParams == null) {
-        return new ServerResponse(ERROR_BAD_REQUEST, NO_PARAMS).withParams(paramsMap).serialize();
+        return render(
+            request,
+            new ServerResponse(ERROR_BAD_REQUEST, NO_PARAMS).withParams(paramsMap),
+            CancellationToken.NONE);
       } else if (queryParams.isEmpty()) {
-        return new ServerResponse(ERROR_BAD_REQUEST, NO_PARAMS).withParams(paramsMap).serialize();
+        return render(
+            request,
+            new ServerResponse(ERROR_BAD_REQUEST, NO_PARAMS).withParams(paramsMap),
+            CancellationToken.NONE);
       } else if (!queryParams.containsAll(this.knownParams)) {
-        return new ServerResponse(ERROR_BAD_REQUEST, MISSING_PARAMS)
-            .withParams(paramsMap)
-            .serialize();
+        return render(
+            request,
+            new ServerResponse(ERROR_BAD_REQUEST, MISSING_PARAMS).withParams(paramsMap),
+            CancellationToken.NONE);
       } else {
         HashMap<String, String> unknowns = new HashMap<>();
         for (String param : queryParams) {
-          if (!this.knownParams.contains(param)) {
+          if (!this.knownParams.contains(param) && !this.optionalParams.contains(param)) {
             unknowns.put(String.format(UNKNOWN_PARAM_MESSAGE, param), request.queryParams(param));
           }
         }
         HashMap<String, Object> responseMap = new HashMap<>();
         responseMap.put(UNKNOWN_PARAMS, unknowns);
-        return new ServerResponse(ERROR_BAD_JSON, UNKNOWN_PARAMS, responseMap)
-            .withParams(paramsMap)
-            .serialize();
+        return render(
+            request,
+            new ServerResponse(ERROR_BAD_JSON, UNKNOWN_PARAMS, responseMap).withParams(paramsMap),
+            CancellationToken.NONE);
       }
     }
   }
 
   /**
-   * Checks if the request contains all known parameters.
+   * Computes the rendered response to a request that contains all known parameters, counting it in
+   * the access log if it succeeds and is not a warm-up request. If the request names a session, its
+   * work is abandoned as soon as a newer request from the same session arrives, and it is answered
+   * with ERROR_SUPERSEDED instead.
+   *
+   * @param request the request to handle
+   * @param proxy the proxy over the layer the request is for
+   * @param paramsMap the parameters of the request, to echo in the response
+   * @return the rendered response
+   * @throws Exception if the proxy throws an exception.
+   */
+  private Object respondKnownParams(Request request, Proxy proxy, Map<String, String[]> paramsMap)
+      throws Exception {
+    CancellationToken token = CancellationToken.NONE;
+    String session = request.queryParams(SESSION_PARAM);
+    if (session != null) {
+      try {
+        token = this.sessions.begin(session, Long.parseLong(request.queryParams(SEQUENCE_PARAM)));
+      } catch (NumberFormatException e) {
+        return render(
+            request,
+            new ServerResponse(ERROR_BAD_JSON, INVALID_SEQUENCE).withParams(paramsMap),
+            CancellationToken.NONE);
+      }
+    }
+    try {
+      ServerResponse response = proxy.getResponsePercolate(request, token);
+      if (this.accessLog != null
+          && SUCCESS_MESSAGE.equals(response.responseCode())
+          && request.headers(WARMUP_HEADER) == null) {
+        this.accessLog.record(AccessLog.queryKey(request.pathInfo(), paramsMap));
+      }
+      return render(request, response.withParams(paramsMap), token);
+    } catch (CancellationException e) {
+      return render(
+          request,
+          new ServerResponse(ERROR_SUPERSEDED, SUPERSEDED_REQUEST).withParams(paramsMap),
+          CancellationToken.NONE);
+    }
+  }
+
+  /**
+   * Checks if the request contains all known parameters, and no parameters other than known and
+   * optional ones.
    *
    * @param request the request to check
    * @return true if the request contains all known parameters, false otherwise.
    */
   @Override
   public boolean checkParamsKnown(Request request) {
-    return request.queryParams().containsAll(this.knownParams)
-        && request.queryParams().size() == this.knownParams.size();
+    Set<String> queryParams = request.queryParams();
+    if (!queryParams.containsAll(this.knownParams)) {
+      return false;
+    }
+    for (String param : queryParams) {
+      if (!this.knownParams.contains(param) && !this.optionalParams.contains(param)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -110,16 +496,18 @@ public class JSONDataHandler implements RequestHandler, Route {
    */
   @Override
   public ServerResponse handleKnownParams(Request request) throws Exception {
-    return this.proxy.getResponsePercolate(request);
+    return this.layers.get(layerOf(request)).proxy(this.proxyClass).getResponsePercolate(request);
   }
 
   /**
-   * Checks if the request is cached in the proxy.
+   * Checks if the request is cached in the proxy of the default layer.
    *
    * @param paramsString the string representation of the request parameters.
    * @return true if the request is cached, false otherwise.
    */
   public boolean checkInHistory(String paramsString) {
-    return this.proxy.cacheContains(paramsString);
+    Layer layer = this.layers.getIfLoaded(this.layers.defaultLayer());
+    Proxy proxy = layer == null ? null : layer.builtProxy(this.proxyClass);
+    return proxy != null && proxy.cacheContains(paramsString);
   }
 }
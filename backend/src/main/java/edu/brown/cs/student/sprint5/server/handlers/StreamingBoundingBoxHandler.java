@@ -0,0 +1,260 @@
+package edu.brown.cs.student.sprint5.server.handlers;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import com.squareup.moshi.JsonWriter;
+import edu.brown.cs.student.sprint5.server.admission.ConcurrencyLimiter;
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.layers.LayerRegistry;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.GeoJsonAdapters;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import okio.Buffer;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * Class that answers a bounding box query as a stream of batches of features, so a client can draw
+ * the first features long before the whole answer has been computed. The box is searched in rings
+ * growing out from its center, each twice as wide as the one inside it, and the features of each
+ * ring are sent nearest to the center first. The innermost ring is a tiny fraction of the box, so
+ * the first batch is sent after a correspondingly tiny search. Features are in the box by the same
+ * rule as in the bounding box endpoint, and each is sent exactly once.
+ *
+ * <p>The stream is newline-delimited JSON by default: one FeatureCollection per batch, followed by
+ * a final line with the result and the number of features sent. Clients whose Accept header asks
+ * for text/event-stream get the same lines as Server-Sent Events instead, as "features" events
+ * followed by an "end" event. Invalid requests are answered with a single line or "error" event
+ * holding the same error response the bounding box endpoint would send.
+ */
+public class StreamingBoundingBoxHandler implements Route {
+
+  private LayerRegistry layers;
+  private ConcurrencyLimiter limiter;
+
+  /**
+   * Constructor for StreamingBoundingBoxHandler.
+   *
+   * @param layers the layers that requests can pick from, usually shared by every handler
+   * @param limiter the limiter that decides whether requests are admitted, usually shared by every
+   *     handler of the server, or null to admit every request
+   */
+  public StreamingBoundingBoxHandler(LayerRegistry layers, ConcurrencyLimiter limiter) {
+    this.layers = layers;
+    this.limiter = limiter;
+  }
+
+  /**
+   * Called when a request is made to the endpoint. Streams the features in the requested box, or
+   * the reason the request cannot be answered.
+   *
+   * @param request the request object
+   * @param response the response object, whose output stream the batches are written to
+   * @return an empty body, since everything has been written to the stream already
+   * @throws Exception required by the Route interface
+   */
+  @Override
+  public Object handle(Request request, Response response) throws Exception {
+    String accept = request.headers("Accept");
+    boolean events = accept != null && accept.contains(EVENT_STREAM_TYPE);
+    response.type(events ? EVENT_STREAM_TYPE : NDJSON_TYPE);
+    response.header("Cache-Control", "no-cache");
+    Stream stream = new Stream(response.raw().getOutputStream(), events);
+
+    Map<String, String[]> paramsMap = request.queryMap().toMap();
+    ServerResponse error = validate(request);
+    if (error != null) {
+      stream.send("error", error.withParams(paramsMap).serialize());
+      return "";
+    }
+    if (this.limiter != null && !this.limiter.tryAcquire(false)) {
+      response.status(503);
+      response.header("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+      stream.send(
+          "error",
+          new ServerResponse(ERROR_OVERLOADED, SERVER_OVERLOADED)
+              .withParams(paramsMap)
+              .serialize());
+      return "";
+    }
+    long start = System.nanoTime();
+    try {
+      String layer = request.queryParams(LAYER_PARAM);
+      layer = layer == null ? this.layers.defaultLayer() : layer;
+      PartitionedDataset partitions;
+      try {
+        partitions = this.layers.get(layer).partitions();
+      } catch (IOException e) {
+        stream.send(
+            "error",
+            new ServerResponse(
+                    ERROR_DATASOURCE, String.format(DATA_LOAD_FAILURE, this.layers.path(layer)))
+                .withParams(paramsMap)
+                .serialize());
+        return "";
+      }
+      Envelope box =
+          new Envelope(
+              Double.parseDouble(request.queryParams(MIN_LAT_PARAM)),
+              Double.parseDouble(request.queryParams(MAX_LAT_PARAM)),
+              Double.parseDouble(request.queryParams(MIN_LNG_PARAM)),
+              Double.parseDouble(request.queryParams(MAX_LNG_PARAM)));
+      int count = streamFeatures(partitions, box, stream);
+      stream.send("end", "{\"result\":\"" + SUCCESS_MESSAGE + "\",\"count\":" + count + "}");
+    } catch (IOException e) {
+      // the client went away
+    } finally {
+      if (this.limiter != null) {
+        this.limiter.release(System.nanoTime() - start, false);
+      }
+    }
+    return "";
+  }
+
+  /**
+   * Checks the parameters of a request.
+   *
+   * @param request the request
+   * @return the error response to send, or null if the request is valid
+   */
+  private ServerResponse validate(Request request) {
+    if (!request.queryParams().containsAll(BOUNDING_BOX_PARAMS)) {
+      return new ServerResponse(ERROR_BAD_REQUEST, MISSING_PARAMS);
+    }
+    String layer = request.queryParams(LAYER_PARAM);
+    if (layer != null && !this.layers.contains(layer)) {
+      return new ServerResponse(ERROR_BAD_REQUEST, String.format(UNKNOWN_LAYER, layer));
+    }
+    double minLat;
+    double maxLat;
+    double minLng;
+    double maxLng;
+    try {
+      minLat = Double.parseDouble(request.queryParams(MIN_LAT_PARAM));
+      maxLat = Double.parseDouble(request.queryParams(MAX_LAT_PARAM));
+      minLng = Double.parseDouble(request.queryParams(MIN_LNG_PARAM));
+      maxLng = Double.parseDouble(request.queryParams(MAX_LNG_PARAM));
+    } catch (NumberFormatException e) {
+      return new ServerResponse(ERROR_BAD_JSON, INVALID_LAT_LNG);
+    }
+    if (minLat < LAT_LOWER_BOUND
+        || maxLat > LAT_UPPER_BOUND
+        || minLng < LNG_LOWER_BOUND
+        || maxLng > LNG_UPPER_BOUND) {
+      return new ServerResponse(ERROR_BAD_REQUEST, COORD_OUT_OF_BOUNDS);
+    }
+    if (minLat > maxLat || minLng > maxLng) {
+      return new ServerResponse(ERROR_BAD_REQUEST, MIN_GREATER_THAN_MAX);
+    }
+    return null;
+  }
+
+  /**
+   * Sends the features in a box ring by ring, nearest to the center first, in batches of at most
+   * STREAM_BATCH_SIZE features.
+   *
+   * @param partitions the dataset to search
+   * @param box the box
+   * @param stream the stream to send the batches to
+   * @return the number of features sent
+   * @throws IOException if the client went away
+   */
+  private static int streamFeatures(PartitionedDataset partitions, Envelope box, Stream stream)
+      throws IOException {
+    double centerLat = box.centerLat();
+    double centerLng = box.centerLng();
+    Comparator<Feature> nearestFirst =
+        Comparator.comparingDouble(
+            feature -> {
+              double[] anchor = feature.geometry().coordinates()[0][0][0];
+              double dLat = anchor[1] - centerLat;
+              double dLng = anchor[0] - centerLng;
+              return dLat * dLat + dLng * dLng;
+            });
+
+    int count = 0;
+    Envelope inner = null;
+    for (int ring = STREAM_RINGS - 1; ring >= 0; ring--) {
+      double scale = 1.0 / (1L << ring);
+      double halfLat = (box.maxLat() - box.minLat()) / 2 * scale;
+      double halfLng = (box.maxLng() - box.minLng()) / 2 * scale;
+      Envelope outer =
+          ring == 0
+              ? box
+              : new Envelope(
+                  centerLat - halfLat,
+                  centerLat + halfLat,
+                  centerLng - halfLng,
+                  centerLng + halfLng);
+      List<Feature> found = new ArrayList<>(partitions.boxDifference(outer, inner));
+      found.sort(nearestFirst);
+      for (int from = 0; from < found.size(); from += STREAM_BATCH_SIZE) {
+        stream.sendFeatures(found.subList(from, Math.min(found.size(), from + STREAM_BATCH_SIZE)));
+      }
+      count += found.size();
+      inner = outer;
+    }
+    return count;
+  }
+
+  /** Class that frames and writes the messages of one streamed response. */
+  private static class Stream {
+
+    private final OutputStream out;
+    private final boolean events;
+
+    /**
+     * Constructor for Stream.
+     *
+     * @param out the output stream of the response
+     * @param events true to frame messages as Server-Sent Events, false for one line per message
+     */
+    Stream(OutputStream out, boolean events) {
+      this.out = out;
+      this.events = events;
+    }
+
+    /**
+     * Sends a batch of features as a FeatureCollection.
+     *
+     * @param features the features
+     * @throws IOException if the client went away
+     */
+    void sendFeatures(List<Feature> features) throws IOException {
+      Buffer buffer = new Buffer();
+      JsonWriter writer = JsonWriter.of(buffer);
+      writer.beginObject();
+      writer.name("type").value("FeatureCollection");
+      writer.name("features").beginArray();
+      for (Feature feature : features) {
+        GeoJsonAdapters.writeFeature(writer, feature);
+      }
+      writer.endArray();
+      writer.endObject();
+      writer.flush();
+      send("features", buffer.readUtf8());
+    }
+
+    /**
+     * Sends one message and flushes it to the client.
+     *
+     * @param event the name of the event, used when framing as Server-Sent Events
+     * @param json the message, a single line of JSON
+     * @throws IOException if the client went away
+     */
+    void send(String event, String json) throws IOException {
+      String framed = this.events ? "event: " + event + "\ndata: " + json + "\n\n" : json + "\n";
+      this.out.write(framed.getBytes(StandardCharsets.UTF_8));
+      this.out.flush();
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package edu.brown.cs.student.sprint5.server.index;
+
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Immutable index of the terms in the area_description_data fields of a set of features, and the
+ * number of features each term appears in, for completing prefixes as they are typed. The terms are
+ * stored in sorted order, which is the leaf order of a trie over them, so the subtree of every trie
+ * node is a contiguous range of terms found by binary search. The terms' characters are packed into
+ * one array, and a tournament tree over the document frequencies returns the most frequent terms of
+ * any range in order, reading O(k log n) entries for k completions.
+ */
+public class CompletionIndex {
+
+  private final char[] chars;
+  // term i is chars[offsets[i]] up to chars[offsets[i + 1]]
+  private final int[] offsets;
+  private final int[] frequencies;
+  // tree[1] is the most frequent term, and tree[i] the most frequent of tree[2i] and tree[2i + 1];
+  // leaves start at index leaves, and leaves past the last term hold -1
+  private final int[] tree;
+  private final int leaves;
+
+  /**
+   * Constructor for CompletionIndex. Terms are found like {@link KeywordIndex#tokenize} finds them,
+   * and a feature counts once toward each term it contains, however many times it contains it.
+   *
+   * @param features the features whose descriptions should be indexed
+   */
+  public CompletionIndex(Collection<Feature> features) {
+    Map<String, Integer> counts = new HashMap<>();
+    for (Feature feature : features) {
+      if (feature == null
+          || feature.properties() == null
+          || feature.properties().area_description_data() == null) {
+        continue;
+      }
+      Set<String> terms = new HashSet<>();
+      for (String text : feature.properties().area_description_data().values()) {
+        terms.addAll(KeywordIndex.tokenize(text));
+      }
+      for (String term : terms) {
+        counts.merge(term, 1, Integer::sum);
+      }
+    }
+
+    List<String> terms = new ArrayList<>(counts.keySet());
+    terms.sort(null);
+    int length = 0;
+    for (String term : terms) {
+      length += term.length();
+    }
+    this.chars = new char[length];
+    this.offsets = new int[terms.size() + 1];
+    this.frequencies = new int[terms.size()];
+    for (int i = 0; i < terms.size(); i++) {
+      String term = terms.get(i);
+      term.getChars(0, term.length(), this.chars, this.offsets[i]);
+      this.offsets[i + 1] = this.offsets[i] + term.length();
+      this.frequencies[i] = counts.get(term);
+    }
+
+    int leaves = 1;
+    while (leaves < terms.size()) {
+      leaves *= 2;
+    }
+    this.leaves = leaves;
+    this.tree = new int[2 * leaves];
+    for (int i = 0; i < leaves; i++) {
+      this.tree[leaves + i] = i < terms.size() ? i : -1;
+    }
+    for (int i = leaves - 1; i >= 1; i--) {
+      this.tree[i] = better(this.tree[2 * i], this.tree[2 * i + 1]);
+    }
+  }
+
+  /**
+   * Returns the most frequent terms that start with a prefix, most frequent first. Terms that are
+   * equally frequent are returned in alphabetical order.
+   *
+   * @param prefix the lower-cased prefix
+   * @param k the most terms to return
+   * @return the completions of the prefix
+   */
+  public List<Completion> complete(String prefix, int k) {
+    int from = lowerBound(prefix, false);
+    int to = lowerBound(prefix, true);
+    List<Completion> results = new ArrayList<>(Math.min(k, to - from));
+    // each range holds the best term not yet returned from part of [from, to); taking a range's
+    // best term splits it into the ranges on either side
+    PriorityQueue<int[]> ranges =
+        new PriorityQueue<>((a, b) -> a[2] == b[2] ? 0 : better(a[2], b[2]) == a[2] ? -1 : 1);
+    if (from < to) {
+      ranges.add(new int[] {from, to, best(from, to)});
+    }
+    while (results.size() < k && !ranges.isEmpty()) {
+      int[] range = ranges.poll();
+      int term = range[2];
+      results.add(new Completion(term(term), this.frequencies[term]));
+      if (range[0] < term) {
+        ranges.add(new int[] {range[0], term, best(range[0], term)});
+      }
+      if (term + 1 < range[1]) {
+        ranges.add(new int[] {term + 1, range[1], best(term + 1, range[1])});
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Returns the number of distinct terms in the index.
+   *
+   * @return the number of terms
+   */
+  public int size() {
+    return this.frequencies.length;
+  }
+
+  /**
+   * Finds the first term that is not less than a prefix, or, if past is true, the first term that
+   * neither starts with the prefix nor is less than it.
+   *
+   * @param prefix the prefix
+   * @param past whether terms starting with the prefix count as less than it
+   * @return the index of the term, or the number of terms if there is none
+   */
+  private int lowerBound(String prefix, boolean past) {
+    int low = 0;
+    int high = this.frequencies.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      int comparison = comparePrefix(mid, prefix);
+      if (comparison < 0 || (past && comparison == 0)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Compares the first characters of a term with a prefix.
+   *
+   * @param term the index of the term
+   * @param prefix the prefix
+   * @return 0 if the term starts with the prefix, otherwise a negative or positive number as the
+   *     term sorts before or after every term that does
+   */
+  private int comparePrefix(int term, String prefix) {
+    int start = this.offsets[term];
+    int length = this.offsets[term + 1] - start;
+    for (int i = 0; i < prefix.length(); i++) {
+      if (i == length) {
+        return -1;
+      }
+      int difference = this.chars[start + i] - prefix.charAt(i);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the most frequent term in a range, reading the tournament tree bottom up.
+   *
+   * @param from the first term of the range
+   * @param to one past the last term of the range, greater than from
+   * @return the index of the most frequent term
+   */
+  private int best(int from, int to) {
+    int result = -1;
+    for (int low = from + this.leaves, high = to + this.leaves; low < high; low /= 2, high /= 2) {
+      if ((low & 1) == 1) {
+        result = better(result, this.tree[low++]);
+      }
+      if ((high & 1) == 1) {
+        result = better(result, this.tree[--high]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the better of two terms: the more frequent one, or the one that sorts first if they are
+   * equally frequent.
+   *
+   * @param a the index of a term, or -1 for none
+   * @param b the index of a term, or -1 for none
+   * @return the index of the better term, or -1 if neither is a term
+   */
+  private int better(int a, int b) {
+    if (a < 0) {
+      return b;
+    }
+    if (b < 0) {
+      return a;
+    }
+    if (this.frequencies[a] != this.frequencies[b]) {
+      return this.frequencies[a] > this.frequencies[b] ? a : b;
+    }
+    return Math.min(a, b);
+  }
+
+  /**
+   * Returns a term of the index.
+   *
+   * @param term the index of the term
+   * @return the term
+   */
+  private String term(int term) {
+    return new String(this.chars, this.offsets[term], this.offsets[term + 1] - this.offsets[term]);
+  }
+
+  /**
+   * Record for a completion of a prefix.
+   *
+   * @param term the completed term
+   * @param frequency the number of features whose descriptions contain the term
+   */
+  public record Completion(String term, int frequency) {}
+}
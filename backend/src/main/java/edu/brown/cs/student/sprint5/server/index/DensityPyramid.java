@@ -0,0 +1,181 @@
+package edu.brown.cs.student.sprint5.server.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class holding per-grade feature counts on a stack of square latitude/longitude grids, built once
+ * at load time. Level L divides the world into cells of 360 / 2^L degrees, and each level is the
+ * sum of the level below it, so a density grid of any resolution can be answered by reading about
+ * as many cells as it returns, regardless of how many features fall in the box.
+ */
+public class DensityPyramid {
+
+  /** The finest level of the pyramid; its cells are 360 / 2^14 (about 0.022) degrees wide. */
+  public static final int MAX_LEVEL = 14;
+
+  private final List<String> grades;
+  // levels[L] maps a packed (row, col) cell key to the per-grade counts of that cell
+  private final List<Map<Long, int[]>> levels;
+
+  /**
+   * Constructor for DensityPyramid. Each feature is counted in the cell containing its envelope
+   * center, the same rule {@link SpatialIndex#summarize} uses.
+   *
+   * @param index the index whose features should be counted
+   */
+  public DensityPyramid(SpatialIndex index) {
+    Map<String, Integer> gradeIds = new LinkedHashMap<>();
+    for (IndexedFeature item : index.items()) {
+      gradeIds.putIfAbsent(gradeOf(item), gradeIds.size());
+    }
+    this.grades = new ArrayList<>(gradeIds.keySet());
+
+    Map<Long, int[]> finest = new HashMap<>();
+    double cellSize = cellSize(MAX_LEVEL);
+    for (IndexedFeature item : index.items()) {
+      int row = (int) Math.floor((item.envelope().centerLat() + 90) / cellSize);
+      int col = (int) Math.floor((item.envelope().centerLng() + 180) / cellSize);
+      int[] counts = finest.computeIfAbsent(key(row, col), k -> new int[this.grades.size()]);
+      counts[gradeIds.get(gradeOf(item))]++;
+    }
+
+    // built from the finest level up, then reversed so that levels.get(L) is level L
+    List<Map<Long, int[]>> built = new ArrayList<>(MAX_LEVEL + 1);
+    built.add(finest);
+    for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+      Map<Long, int[]> coarser = new HashMap<>();
+      for (Map.Entry<Long, int[]> cell : built.get(built.size() - 1).entrySet()) {
+        int row = (int) (cell.getKey() >> 32) / 2;
+        int col = (int) (long) cell.getKey() / 2;
+        int[] counts = coarser.computeIfAbsent(key(row, col), k -> new int[this.grades.size()]);
+        for (int g = 0; g < counts.length; g++) {
+          counts[g] += cell.getValue()[g];
+        }
+      }
+      built.add(coarser);
+    }
+    Collections.reverse(built);
+    this.levels = List.copyOf(built);
+  }
+
+  /**
+   * Counts the features per grade in each cell of a grid laid over the query envelope. The grid has
+   * square cells of the given size, anchored at the envelope's minimum corner. The counts are read
+   * from the coarsest pyramid level whose cells are no larger than the requested cells, and a
+   * pyramid cell is assigned to the grid cell containing its center. Cells smaller than those of
+   * the finest level would leave most grid cells empty and pile a whole pyramid cell's count into
+   * the rest, so the cell size is raised to the finest level's.
+   *
+   * @param query the envelope to cover
+   * @param cellSizeDegrees the width and height of a grid cell in degrees, at least {@link
+   *     #minCellSize()} or raised to it
+   * @return the non-empty grid cells
+   */
+  public List<DensityCell> grid(Envelope query, double cellSizeDegrees) {
+    cellSizeDegrees = Math.max(cellSizeDegrees, minCellSize());
+    int level = MAX_LEVEL;
+    while (level > 0 && cellSize(level - 1) <= cellSizeDegrees) {
+      level--;
+    }
+    double levelSize = cellSize(level);
+    Map<Long, int[]> cells = this.levels.get(level);
+
+    int minRow = (int) Math.floor((query.minLat() + 90) / levelSize);
+    int maxRow = (int) Math.floor((query.maxLat() + 90) / levelSize);
+    int minCol = (int) Math.floor((query.minLng() + 180) / levelSize);
+    int maxCol = (int) Math.floor((query.maxLng() + 180) / levelSize);
+
+    int lastGridRow =
+        Math.max(0, (int) Math.ceil((query.maxLat() - query.minLat()) / cellSizeDegrees) - 1);
+    int lastGridCol =
+        Math.max(0, (int) Math.ceil((query.maxLng() - query.minLng()) / cellSizeDegrees) - 1);
+    Map<Long, int[]> binned = new LinkedHashMap<>();
+    for (int row = minRow; row <= maxRow; row++) {
+      for (int col = minCol; col <= maxCol; col++) {
+        int[] counts = cells.get(key(row, col));
+        if (counts == null) {
+          continue;
+        }
+        double centerLat = (row + 0.5) * levelSize - 90;
+        double centerLng = (col + 0.5) * levelSize - 180;
+        if (!query.contains(centerLat, centerLng)) {
+          continue;
+        }
+        int gridRow = Math.min(lastGridRow, (int) ((centerLat - query.minLat()) / cellSizeDegrees));
+        int gridCol = Math.min(lastGridCol, (int) ((centerLng - query.minLng()) / cellSizeDegrees));
+        int[] total = binned.computeIfAbsent(key(gridRow, gridCol), k -> new int[counts.length]);
+        for (int g = 0; g < counts.length; g++) {
+          total[g] += counts[g];
+        }
+      }
+    }
+
+    List<DensityCell> result = new ArrayList<>();
+    for (Map.Entry<Long, int[]> cell : binned.entrySet()) {
+      Map<String, Integer> counts = new LinkedHashMap<>();
+      for (int g = 0; g < this.grades.size(); g++) {
+        if (cell.getValue()[g] > 0) {
+          counts.put(this.grades.get(g), cell.getValue()[g]);
+        }
+      }
+      result.add(new DensityCell((int) (cell.getKey() >> 32), (int) (long) cell.getKey(), counts));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the width and height in degrees of the cells of a level.
+   *
+   * @param level the level of the pyramid
+   * @return the cell size in degrees
+   */
+  public static double cellSize(int level) {
+    return 360.0 / (1L << level);
+  }
+
+  /**
+   * Returns the size in degrees of the smallest grid cells that the pyramid can count exactly.
+   *
+   * @return the cell size of the finest level
+   */
+  public static double minCellSize() {
+    return cellSize(MAX_LEVEL);
+  }
+
+  /**
+   * Packs a cell's row and column into a single map key.
+   *
+   * @param row the row of the cell
+   * @param col the column of the cell
+   * @return the packed key
+   */
+  private static long key(int row, int col) {
+    return ((long) row << 32) | (col & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Returns the grade that a feature is counted under.
+   *
+   * @param item the feature
+   * @return its HOLC grade, or {@link GradeSummary#UNGRADED} if it has none
+   */
+  private static String gradeOf(IndexedFeature item) {
+    String grade =
+        item.feature().properties() == null ? null : item.feature().properties().holc_grade();
+    return grade == null || grade.isBlank() ? GradeSummary.UNGRADED : grade;
+  }
+
+  /**
+   * Record for one non-empty cell of a density grid.
+   *
+   * @param row the row of the cell, counted from the grid's minimum latitude
+   * @param col the column of the cell, counted from the grid's minimum longitude
+   * @param counts the number of features of each grade in the cell
+   */
+  public record DensityCell(int row, int col, Map<String, Integer> counts) {}
+}
@@ -0,0 +1,130 @@
+package edu.brown.cs.student.sprint5.server.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Record for an axis-aligned bounding rectangle in latitude/longitude space.
+ *
+ * @param minLat the minimum latitude of the rectangle
+ * @param maxLat the maximum latitude of the rectangle
+ * @param minLng the minimum longitude of the rectangle
+ * @param maxLng the maximum longitude of the rectangle
+ */
+public record Envelope(double minLat, double maxLat, double minLng, double maxLng) {
+
+  /**
+   * Returns the smallest envelope that contains both this envelope and another.
+   *
+   * @param other the envelope to merge with
+   * @return the merged envelope
+   */
+  public Envelope union(Envelope other) {
+    return new Envelope(
+        Math.min(this.minLat, other.minLat),
+        Math.max(this.maxLat, other.maxLat),
+        Math.min(this.minLng, other.minLng),
+        Math.max(this.maxLng, other.maxLng));
+  }
+
+  /**
+   * Checks if this envelope shares any point with another.
+   *
+   * @param other the envelope to check
+   * @return true if the envelopes intersect, false otherwise
+   */
+  public boolean intersects(Envelope other) {
+    return this.minLat <= other.maxLat
+        && this.maxLat >= other.minLat
+        && this.minLng <= other.maxLng
+        && this.maxLng >= other.minLng;
+  }
+
+  /**
+   * Checks if another envelope lies entirely within this envelope.
+   *
+   * @param other the envelope to check
+   * @return true if other is contained in this envelope, false otherwise
+   */
+  public boolean contains(Envelope other) {
+    return this.minLat <= other.minLat
+        && this.maxLat >= other.maxLat
+        && this.minLng <= other.minLng
+        && this.maxLng >= other.maxLng;
+  }
+
+  /**
+   * Covers the part of this envelope outside another with at most four envelopes: a band below and
+   * a band above the other envelope, spanning this envelope's full width, and a piece on either
+   * side of it between the bands. The pieces include their boundaries, so points on the other
+   * envelope's edge may be covered too.
+   *
+   * @param other the envelope to remove
+   * @return envelopes covering this envelope minus other, empty if other contains this envelope
+   */
+  public List<Envelope> minus(Envelope other) {
+    if (!intersects(other)) {
+      return List.of(this);
+    }
+    List<Envelope> pieces = new ArrayList<>();
+    if (this.minLat < other.minLat) {
+      pieces.add(new Envelope(this.minLat, other.minLat, this.minLng, this.maxLng));
+    }
+    if (this.maxLat > other.maxLat) {
+      pieces.add(new Envelope(other.maxLat, this.maxLat, this.minLng, this.maxLng));
+    }
+    double bandMinLat = Math.max(this.minLat, other.minLat);
+    double bandMaxLat = Math.min(this.maxLat, other.maxLat);
+    if (this.minLng < other.minLng) {
+      pieces.add(new Envelope(bandMinLat, bandMaxLat, this.minLng, other.minLng));
+    }
+    if (this.maxLng > other.maxLng) {
+      pieces.add(new Envelope(bandMinLat, bandMaxLat, other.maxLng, this.maxLng));
+    }
+    return pieces;
+  }
+
+  /**
+   * Checks if a point lies within this envelope (boundary included).
+   *
+   * @param lat the latitude of the point
+   * @param lng the longitude of the point
+   * @return true if the point is contained in this envelope, false otherwise
+   */
+  public boolean contains(double lat, double lng) {
+    return lat >= this.minLat && lat <= this.maxLat && lng >= this.minLng && lng <= this.maxLng;
+  }
+
+  /**
+   * Returns the latitude of the center of this envelope.
+   *
+   * @return the center latitude
+   */
+  public double centerLat() {
+    return (this.minLat + this.maxLat) / 2;
+  }
+
+  /**
+   * Returns the longitude of the center of this envelope.
+   *
+   * @return the center longitude
+   */
+  public double centerLng() {
+    return (this.minLng + this.maxLng) / 2;
+  }
+
+  /**
+   * Returns the distance in meters from a point to the closest point of this envelope. Because it
+   * uses the same local projection as {@link PreparedGeometry#distanceMeters}, it is a lower bound
+   * on the distance from the point to any geometry inside the envelope.
+   *
+   * @param lat the latitude of the point
+   * @param lng the longitude of the point
+   * @return the distance in meters, or 0 if the point is inside the envelope
+   */
+  public double distanceMeters(double lat, double lng) {
+    double dLat = Math.max(0, Math.max(this.minLat - lat, lat - this.maxLat));
+    double dLng = Math.max(0, Math.max(this.minLng - lng, lng - this.maxLng));
+    return GeoMath.planarDistanceMeters(dLat, dLng, lat);
+  }
+}
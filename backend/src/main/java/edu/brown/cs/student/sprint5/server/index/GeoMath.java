@@ -0,0 +1,55 @@
+package edu.brown.cs.student.sprint5.server.index;
+
+/**
+ * Utility class for the small amount of geodesy the index needs. Distances and areas are computed
+ * on a local equirectangular projection, which is accurate to well under a percent at the scale of
+ * a city and keeps every computation linear in the coordinates.
+ */
+public class GeoMath {
+
+  /** The mean radius of the Earth in meters. */
+  public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+  /** The number of meters in one degree of latitude. */
+  public static final double METERS_PER_DEGREE = Math.toRadians(1) * EARTH_RADIUS_METERS;
+
+  /**
+   * Converts a latitude/longitude offset in degrees into a distance in meters.
+   *
+   * @param dLat the latitude offset in degrees
+   * @param dLng the longitude offset in degrees
+   * @param refLat the latitude at which longitude degrees are scaled
+   * @return the length of the offset in meters
+   */
+  public static double planarDistanceMeters(double dLat, double dLng, double refLat) {
+    double x = dLng * Math.cos(Math.toRadians(refLat));
+    return Math.hypot(dLat, x) * METERS_PER_DEGREE;
+  }
+
+  /**
+   * Returns the distance in meters from a point to a segment, measured on the local projection
+   * centered on the point.
+   *
+   * @param lat the latitude of the point
+   * @param lng the longitude of the point
+   * @param lat1 the latitude of the segment's first end
+   * @param lng1 the longitude of the segment's first end
+   * @param lat2 the latitude of the segment's second end
+   * @param lng2 the longitude of the segment's second end
+   * @return the distance in meters
+   */
+  public static double segmentDistanceMeters(
+      double lat, double lng, double lat1, double lng1, double lat2, double lng2) {
+    double scale = Math.cos(Math.toRadians(lat));
+    double ax = (lng1 - lng) * scale;
+    double ay = lat1 - lat;
+    double bx = (lng2 - lng) * scale;
+    double by = lat2 - lat;
+    double dx = bx - ax;
+    double dy = by - ay;
+    double lengthSquared = dx * dx + dy * dy;
+    double t =
+        lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+    return Math.hypot(ax + t * dx, ay + t * dy) * METERS_PER_DEGREE;
+  }
+}
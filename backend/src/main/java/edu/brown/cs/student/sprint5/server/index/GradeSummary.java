@@ -0,0 +1,58 @@
+package edu.brown.cs.student.sprint5.server.index;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class that accumulates the number of features and their total area for each HOLC grade. The
+ * spatial index stores one per node so that whole subtrees can be summed without visiting their
+ * features.
+ */
+public class GradeSummary {
+
+  /** The grade under which features without a HOLC grade are counted. */
+  public static final String UNGRADED = "ungraded";
+
+  private final Map<String, Long> counts = new TreeMap<>();
+  private final Map<String, Double> areas = new TreeMap<>();
+
+  /**
+   * Adds a single feature to the summary.
+   *
+   * @param grade the HOLC grade of the feature, or null if it has none
+   * @param areaSqMeters the area of the feature in square meters
+   */
+  public void add(String grade, double areaSqMeters) {
+    String key = grade == null || grade.isBlank() ? UNGRADED : grade;
+    this.counts.merge(key, 1L, Long::sum);
+    this.areas.merge(key, areaSqMeters, Double::sum);
+  }
+
+  /**
+   * Adds every feature of another summary to this summary.
+   *
+   * @param other the summary to add
+   */
+  public void addAll(GradeSummary other) {
+    other.counts.forEach((grade, count) -> this.counts.merge(grade, count, Long::sum));
+    other.areas.forEach((grade, area) -> this.areas.merge(grade, area, Double::sum));
+  }
+
+  /**
+   * Returns the number of features for each grade.
+   *
+   * @return a map from grade to the number of features with that grade
+   */
+  public Map<String, Long> counts() {
+    return this.counts;
+  }
+
+  /**
+   * Returns the total area in square meters of the features of each grade.
+   *
+   * @return a map from grade to the total area of the features with that grade
+   */
+  public Map<String, Double> areas() {
+    return this.areas;
+  }
+}
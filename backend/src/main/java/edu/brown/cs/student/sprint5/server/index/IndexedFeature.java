@@ -0,0 +1,21 @@
+package edu.brown.cs.student.sprint5.server.index;
+
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+
+/**
+ * Record pairing a feature with the load-time preprocessing of its geometry.
+ *
+ * @param feature the original feature
+ * @param geometry the prepared form of the feature's geometry
+ */
+public record IndexedFeature(Feature feature, PreparedGeometry geometry) {
+
+  /**
+   * Returns the bounding envelope of the feature's geometry.
+   *
+   * @return the envelope of the feature
+   */
+  public Envelope envelope() {
+    return this.geometry.envelope();
+  }
+}
@@ -0,0 +1,319 @@
+package edu.brown.cs.student.sprint5.server.index;
+
+import static edu.brown.cs.student.sprint5.Constants.CANCELLATION_CHECK_INTERVAL;
+
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Immutable inverted index over the area_description_data fields of a set of features, scoring
+ * matches with BM25. Each field of a feature is scored on its own, against the average length of
+ * that field, and the field scores are summed with per-field boosts.
+ *
+ * <p>Since a feature's score for a term depends only on the index, it is computed once when the
+ * index is built, and each term's postings are kept sorted by score, best first. A search reads the
+ * query terms' lists in that order, one rank at a time, and completes the score of each feature it
+ * meets by looking it up in the other lists. No feature it has not met can score more than the sum
+ * of the scores at the current rank, so it stops as soon as the k-th best score reaches that sum. A
+ * search for a single term therefore reads k postings however many features match it.
+ */
+public class KeywordIndex {
+
+  private final Feature[] features;
+  private final Map<String, Postings> postings;
+
+  /**
+   * Constructor for KeywordIndex.
+   *
+   * @param features the features to index, numbered in iteration order
+   * @param boosts the weight of each field, by key; fields that are not listed weigh 1
+   * @param k1 the BM25 term frequency saturation parameter
+   * @param b the BM25 length normalization parameter
+   */
+  public KeywordIndex(
+      Collection<Feature> features, Map<String, Double> boosts, double k1, double b) {
+    this.features = features.toArray(new Feature[0]);
+
+    // first pass: the average length of each field, over the features that have it
+    Map<String, long[]> fieldTotals = new HashMap<>();
+    List<Map<String, List<String>>> tokenized = new ArrayList<>(this.features.length);
+    for (Feature feature : this.features) {
+      Map<String, List<String>> fields = new HashMap<>();
+      Map<String, String> descriptions = descriptions(feature);
+      if (descriptions != null) {
+        for (Map.Entry<String, String> field : descriptions.entrySet()) {
+          List<String> tokens = tokenize(field.getValue());
+          fields.put(field.getKey(), tokens);
+          long[] totals = fieldTotals.computeIfAbsent(field.getKey(), f -> new long[2]);
+          totals[0] += tokens.size();
+          totals[1]++;
+        }
+      }
+      tokenized.add(fields);
+    }
+
+    // second pass: each feature's boosted, length-normalized term frequency for each term
+    Map<String, List<Weight>> weights = new HashMap<>();
+    for (int doc = 0; doc < this.features.length; doc++) {
+      Map<String, Double> docWeights = new HashMap<>();
+      for (Map.Entry<String, List<String>> field : tokenized.get(doc).entrySet()) {
+        long[] totals = fieldTotals.get(field.getKey());
+        double averageLength = totals[0] == 0 ? 1 : (double) totals[0] / totals[1];
+        double norm = k1 * (1 - b + b * field.getValue().size() / averageLength);
+        double boost = boosts.getOrDefault(field.getKey(), 1.0);
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : field.getValue()) {
+          frequencies.merge(token, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> term : frequencies.entrySet()) {
+          int tf = term.getValue();
+          docWeights.merge(term.getKey(), boost * tf * (k1 + 1) / (tf + norm), Double::sum);
+        }
+      }
+      for (Map.Entry<String, Double> term : docWeights.entrySet()) {
+        weights
+            .computeIfAbsent(term.getKey(), t -> new ArrayList<>())
+            .add(new Weight(doc, term.getValue()));
+      }
+    }
+
+    this.postings = new HashMap<>();
+    int total = this.features.length;
+    for (Map.Entry<String, List<Weight>> term : weights.entrySet()) {
+      int df = term.getValue().size();
+      double idf = Math.log(1 + (total - df + 0.5) / (df + 0.5));
+      this.postings.put(term.getKey(), new Postings(term.getValue(), idf));
+    }
+  }
+
+  /**
+   * Finds the features that best match a query.
+   *
+   * @param query the query; its terms are found like {@link #tokenize} finds them
+   * @param k the most features to return
+   * @param token the token of the request the search is for, checked between chunks of postings
+   * @return the best matching features, best first
+   * @throws java.util.concurrent.CancellationException if the request is cancelled
+   */
+  public List<ScoredFeature> search(String query, int k, CancellationToken token) {
+    List<Postings> lists = new ArrayList<>();
+    for (String term : new LinkedHashSet<>(tokenize(query))) {
+      Postings list = this.postings.get(term);
+      if (list != null) {
+        lists.add(list);
+      }
+    }
+
+    // the worst of the best k so far is at the head; of equal scores, the later feature is worse
+    Comparator<ScoredDoc> worstFirst =
+        Comparator.comparingDouble(ScoredDoc::score)
+            .thenComparing(Comparator.comparingInt(ScoredDoc::doc).reversed());
+    PriorityQueue<ScoredDoc> best = new PriorityQueue<>(worstFirst);
+    Set<Integer> seen = new HashSet<>();
+    for (int rank = 0; k > 0; rank++) {
+      if (rank % CANCELLATION_CHECK_INTERVAL == 0) {
+        token.throwIfCancelled();
+      }
+      double threshold = 0;
+      boolean more = false;
+      for (Postings list : lists) {
+        if (rank >= list.size()) {
+          continue;
+        }
+        more = true;
+        threshold += list.scoreAtRank(rank);
+        int doc = list.docAtRank(rank);
+        if (!seen.add(doc)) {
+          continue;
+        }
+        double score = 0;
+        for (Postings other : lists) {
+          score += other.scoreOf(doc);
+        }
+        best.add(new ScoredDoc(doc, score));
+        if (best.size() > k) {
+          best.poll();
+        }
+      }
+      if (!more || (best.size() == k && best.peek().score() >= threshold)) {
+        break;
+      }
+    }
+
+    List<ScoredDoc> ranked = new ArrayList<>(best);
+    ranked.sort(worstFirst.reversed());
+    List<ScoredFeature> results = new ArrayList<>(ranked.size());
+    for (ScoredDoc scored : ranked) {
+      results.add(new ScoredFeature(this.features[scored.doc()], scored.score()));
+    }
+    return results;
+  }
+
+  /**
+   * Splits text into lower-cased terms at every character that is not a letter or digit.
+   *
+   * @param text the text, possibly null
+   * @return the terms of the text, in order
+   */
+  public static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    if (text == null) {
+      return tokens;
+    }
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (word && start < 0) {
+        start = i;
+      } else if (!word && start >= 0) {
+        tokens.add(text.substring(start, i).toLowerCase());
+        start = -1;
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * Parses per-field boosts written as comma-separated field=weight pairs, e.g. "8=2,1a=1.5".
+   *
+   * @param spec the boosts, possibly null or empty
+   * @return the weight of each listed field
+   * @throws IllegalArgumentException if a pair is malformed
+   */
+  public static Map<String, Double> parseBoosts(String spec) {
+    Map<String, Double> boosts = new HashMap<>();
+    if (spec == null || spec.isBlank()) {
+      return boosts;
+    }
+    for (String pair : spec.split(",")) {
+      int equals = pair.indexOf('=');
+      if (equals <= 0) {
+        throw new IllegalArgumentException("field boost is not field=weight: " + pair);
+      }
+      boosts.put(
+          pair.substring(0, equals).trim(), Double.parseDouble(pair.substring(equals + 1).trim()));
+    }
+    return boosts;
+  }
+
+  /**
+   * Returns the descriptions of a feature.
+   *
+   * @param feature the feature, possibly null
+   * @return its area_description_data, or null if it has none
+   */
+  private static Map<String, String> descriptions(Feature feature) {
+    return feature == null || feature.properties() == null
+        ? null
+        : feature.properties().area_description_data();
+  }
+
+  /**
+   * Record for a feature found by a search.
+   *
+   * @param feature the feature
+   * @param score its BM25 score for the query
+   */
+  public record ScoredFeature(Feature feature, double score) {}
+
+  /**
+   * Record for a feature's boosted, length-normalized term frequency for one term, before it is
+   * multiplied by the term's inverse document frequency.
+   *
+   * @param doc the feature's number
+   * @param weight the weight
+   */
+  private record Weight(int doc, double weight) {}
+
+  /**
+   * Record for a feature number and its score, while a search is running.
+   *
+   * @param doc the feature's number
+   * @param score its score
+   */
+  private record ScoredDoc(int doc, double score) {}
+
+  /**
+   * Class for the postings of one term, kept both by feature number, for looking up a feature's
+   * score, and by score, for reading the best features first.
+   */
+  private static class Postings {
+
+    private final int[] docs;
+    private final float[] scores;
+    private final int[] byScore;
+
+    /**
+     * Constructor for Postings.
+     *
+     * @param weights the weights of the features that contain the term, in feature number order
+     * @param idf the term's inverse document frequency, which every weight is multiplied by
+     */
+    Postings(List<Weight> weights, double idf) {
+      this.docs = new int[weights.size()];
+      this.scores = new float[weights.size()];
+      Integer[] order = new Integer[weights.size()];
+      for (int i = 0; i < this.docs.length; i++) {
+        this.docs[i] = weights.get(i).doc();
+        this.scores[i] = (float) (weights.get(i).weight() * idf);
+        order[i] = i;
+      }
+      Arrays.sort(order, (x, y) -> Float.compare(this.scores[y], this.scores[x]));
+      this.byScore = new int[order.length];
+      for (int i = 0; i < order.length; i++) {
+        this.byScore[i] = order[i];
+      }
+    }
+
+    /**
+     * Returns the number of features that contain the term.
+     *
+     * @return the number of postings
+     */
+    int size() {
+      return this.docs.length;
+    }
+
+    /**
+     * Returns the feature with the given rank by score.
+     *
+     * @param rank the rank, 0 for the best
+     * @return the feature's number
+     */
+    int docAtRank(int rank) {
+      return this.docs[this.byScore[rank]];
+    }
+
+    /**
+     * Returns the score with the given rank.
+     *
+     * @param rank the rank, 0 for the best
+     * @return the score
+     */
+    double scoreAtRank(int rank) {
+      return this.scores[this.byScore[rank]];
+    }
+
+    /**
+     * Returns a feature's score for the term.
+     *
+     * @param doc the feature's number
+     * @return the score, or 0 if the feature does not contain the term
+     */
+    double scoreOf(int doc) {
+      int i = Arrays.binarySearch(this.docs, doc);
+      return i < 0 ? 0 : this.scores[i];
+    }
+  }
+}
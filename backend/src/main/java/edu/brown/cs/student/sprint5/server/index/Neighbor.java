@@ -0,0 +1,9 @@
+package edu.brown.cs.student.sprint5.server.index;
+
+/**
+ * Record for a result of a nearest-neighbor search.
+ *
+ * @param item the feature that was found
+ * @param distanceMeters the distance in meters from the query point to the feature's geometry
+ */
+public record Neighbor(IndexedFeature item, double distanceMeters) {}
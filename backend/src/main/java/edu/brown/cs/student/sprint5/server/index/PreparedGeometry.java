@@ -0,0 +1,280 @@
+package edu.brown.cs.student.sprint5.server.index;
+
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Geometry;
+
+/**
+ * Class that preprocesses the rings of a (Multi)Polygon geometry so that point-in-polygon tests
+ * only look at the few edges that can cross the query latitude instead of every edge of the shape.
+ */
+public class PreparedGeometry {
+
+  /** The average number of edges that should fall into one latitude bucket of a ring. */
+  private static final int EDGES_PER_BUCKET = 4;
+
+  private final Envelope envelope;
+  private final double areaSqMeters;
+  // polygons[p][r] is ring r of polygon p; ring 0 is the exterior, the others are holes
+  private final Ring[][] polygons;
+
+  /**
+   * Constructor for PreparedGeometry.
+   *
+   * @param geometry the geometry to prepare. Coordinates are GeoJSON [lng, lat] pairs.
+   */
+  public PreparedGeometry(Geometry geometry) {
+    double[][][][] coordinates = geometry.coordinates();
+    this.polygons = new Ring[coordinates.length][];
+    Envelope bounds = null;
+    for (int p = 0; p < coordinates.length; p++) {
+      this.polygons[p] = new Ring[coordinates[p].length];
+      for (int r = 0; r < coordinates[p].length; r++) {
+        Ring ring = new Ring(coordinates[p][r]);
+        this.polygons[p][r] = ring;
+        if (r == 0 && ring.envelope != null) {
+          bounds = bounds == null ? ring.envelope : bounds.union(ring.envelope);
+        }
+      }
+    }
+    this.envelope = bounds;
+    this.areaSqMeters = bounds == null ? 0 : this.computeArea(bounds.centerLat());
+  }
+
+  /**
+   * Computes the area of the geometry: the area of each exterior ring minus the area of its holes.
+   *
+   * @param refLat the latitude at which longitude degrees are scaled
+   * @return the area in square meters
+   */
+  private double computeArea(double refLat) {
+    double total = 0;
+    for (Ring[] polygon : this.polygons) {
+      for (int r = 0; r < polygon.length; r++) {
+        double ringArea = polygon[r].areaSqMeters(refLat);
+        total += r == 0 ? ringArea : -ringArea;
+      }
+    }
+    return Math.max(0, total);
+  }
+
+  /**
+   * Returns the bounding envelope of the geometry.
+   *
+   * @return the envelope, or null if the geometry has no coordinates
+   */
+  public Envelope envelope() {
+    return this.envelope;
+  }
+
+  /**
+   * Returns the area of the geometry, computed once when it was prepared.
+   *
+   * @return the area in square meters
+   */
+  public double areaSqMeters() {
+    return this.areaSqMeters;
+  }
+
+  /**
+   * Checks if a point lies inside the geometry, i.e. inside the exterior ring of one of its
+   * polygons and outside all of that polygon's holes.
+   *
+   * @param lat the latitude of the point
+   * @param lng the longitude of the point
+   * @return true if the geometry contains the point, false otherwise
+   */
+  public boolean contains(double lat, double lng) {
+    if (this.envelope == null || !this.envelope.contains(lat, lng)) {
+      return false;
+    }
+    for (Ring[] polygon : this.polygons) {
+      if (polygon.length == 0 || !polygon[0].contains(lat, lng)) {
+        continue;
+      }
+      boolean inHole = false;
+      for (int r = 1; r < polygon.length && !inHole; r++) {
+        inHole = polygon[r].contains(lat, lng);
+      }
+      if (!inHole) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the distance in meters from a point to the geometry: 0 if the point is inside, and
+   * otherwise the distance to the closest edge of any ring.
+   *
+   * @param lat the latitude of the point
+   * @param lng the longitude of the point
+   * @return the distance in meters
+   */
+  public double distanceMeters(double lat, double lng) {
+    if (this.contains(lat, lng)) {
+      return 0;
+    }
+    double best = Double.POSITIVE_INFINITY;
+    for (Ring[] polygon : this.polygons) {
+      for (Ring ring : polygon) {
+        best = Math.min(best, ring.distanceMeters(lat, lng));
+      }
+    }
+    return best;
+  }
+
+  /**
+   * A single closed ring, stored as flat coordinate arrays with an index of which edges span each
+   * latitude bucket.
+   */
+  private static class Ring {
+
+    private final double[] lats;
+    private final double[] lngs;
+    private final Envelope envelope;
+    private final int numBuckets;
+    private final double bucketHeight;
+    // edges of bucket b are bucketEdges[bucketStarts[b] .. bucketStarts[b + 1])
+    private final int[] bucketStarts;
+    private final int[] bucketEdges;
+
+    /**
+     * Constructor for Ring.
+     *
+     * @param points the [lng, lat] positions of the ring
+     */
+    Ring(double[][] points) {
+      int n = points.length;
+      this.lats = new double[n];
+      this.lngs = new double[n];
+      double minLat = Double.POSITIVE_INFINITY;
+      double maxLat = Double.NEGATIVE_INFINITY;
+      double minLng = Double.POSITIVE_INFINITY;
+      double maxLng = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < n; i++) {
+        this.lngs[i] = points[i][0];
+        this.lats[i] = points[i][1];
+        minLat = Math.min(minLat, this.lats[i]);
+        maxLat = Math.max(maxLat, this.lats[i]);
+        minLng = Math.min(minLng, this.lngs[i]);
+        maxLng = Math.max(maxLng, this.lngs[i]);
+      }
+      this.envelope = n == 0 ? null : new Envelope(minLat, maxLat, minLng, maxLng);
+
+      int buckets = maxLat > minLat ? Math.max(1, n / EDGES_PER_BUCKET) : 1;
+      this.numBuckets = buckets;
+      this.bucketHeight = buckets == 1 ? 0 : (maxLat - minLat) / buckets;
+
+      // first pass counts the edges per bucket, second pass fills them in
+      int[] counts = new int[buckets + 1];
+      for (int i = 0; i < n; i++) {
+        int j = (i + 1) % n;
+        int from = this.bucketOf(Math.min(this.lats[i], this.lats[j]));
+        int to = this.bucketOf(Math.max(this.lats[i], this.lats[j]));
+        for (int b = from; b <= to; b++) {
+          counts[b + 1]++;
+        }
+      }
+      for (int b = 0; b < buckets; b++) {
+        counts[b + 1] += counts[b];
+      }
+      this.bucketStarts = counts.clone();
+      this.bucketEdges = new int[counts[buckets]];
+      for (int i = 0; i < n; i++) {
+        int j = (i + 1) % n;
+        int from = this.bucketOf(Math.min(this.lats[i], this.lats[j]));
+        int to = this.bucketOf(Math.max(this.lats[i], this.lats[j]));
+        for (int b = from; b <= to; b++) {
+          this.bucketEdges[counts[b]++] = i;
+        }
+      }
+    }
+
+    /**
+     * Returns the bucket that a latitude falls into, clamped to the ring's buckets.
+     *
+     * @param lat the latitude
+     * @return the index of the bucket
+     */
+    private int bucketOf(double lat) {
+      if (this.bucketHeight == 0) {
+        return 0;
+      }
+      int bucket = (int) ((lat - this.envelope.minLat()) / this.bucketHeight);
+      return Math.max(0, Math.min(bucket, this.numBuckets - 1));
+    }
+
+    /**
+     * Returns the unsigned area enclosed by the ring, using the shoelace formula on the local
+     * projection.
+     *
+     * @param refLat the latitude at which longitude degrees are scaled
+     * @return the area in square meters
+     */
+    double areaSqMeters(double refLat) {
+      int n = this.lats.length;
+      double twiceArea = 0;
+      for (int i = 0; i < n; i++) {
+        int j = (i + 1) % n;
+        twiceArea += this.lngs[i] * this.lats[j] - this.lngs[j] * this.lats[i];
+      }
+      double scale = Math.cos(Math.toRadians(refLat));
+      return Math.abs(twiceArea)
+          / 2
+          * scale
+          * GeoMath.METERS_PER_DEGREE
+          * GeoMath.METERS_PER_DEGREE;
+    }
+
+    /**
+     * Returns the distance in meters from a point to the closest edge of the ring.
+     *
+     * @param lat the latitude of the point
+     * @param lng the longitude of the point
+     * @return the distance in meters
+     */
+    double distanceMeters(double lat, double lng) {
+      int n = this.lats.length;
+      double best = Double.POSITIVE_INFINITY;
+      for (int i = 0; i < n; i++) {
+        int j = (i + 1) % n;
+        best =
+            Math.min(
+                best,
+                GeoMath.segmentDistanceMeters(
+                    lat, lng, this.lats[i], this.lngs[i], this.lats[j], this.lngs[j]));
+      }
+      return best;
+    }
+
+    /**
+     * Checks if a point lies inside the ring using the even-odd rule, only testing the edges in the
+     * point's latitude bucket.
+     *
+     * @param lat the latitude of the point
+     * @param lng the longitude of the point
+     * @return true if the point is inside the ring, false otherwise
+     */
+    boolean contains(double lat, double lng) {
+      if (this.envelope == null || !this.envelope.contains(lat, lng)) {
+        return false;
+      }
+      int n = this.lats.length;
+      int bucket = this.bucketOf(lat);
+      boolean inside = false;
+      for (int k = this.bucketStarts[bucket]; k < this.bucketStarts[bucket + 1]; k++) {
+        int i = this.bucketEdges[k];
+        int j = (i + 1) % n;
+        double latI = this.lats[i];
+        double latJ = this.lats[j];
+        if ((latI > lat) != (latJ > lat)) {
+          double crossLng =
+              this.lngs[i] + (lat - latI) / (latJ - latI) * (this.lngs[j] - this.lngs[i]);
+          if (lng < crossLng) {
+            inside = !inside;
+          }
+        }
+      }
+      return inside;
+    }
+  }
+}
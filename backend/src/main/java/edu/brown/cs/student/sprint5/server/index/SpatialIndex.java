@@ -0,0 +1,320 @@
+package edu.brown.cs.student.sprint5.server.index;
+
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Immutable R-tree over the features of a FeatureCollection, bulk loaded once with
+ * Sort-Tile-Recursive packing. Features without a geometry are not indexed.
+ */
+public class SpatialIndex {
+
+  /** The maximum number of children (or features) held by a single node of the tree. */
+  public static final int NODE_CAPACITY = 16;
+
+  private final Node root;
+  private final List<IndexedFeature> items;
+
+  /**
+   * Constructor for SpatialIndex.
+   *
+   * @param data the FeatureCollection to index
+   */
+  public SpatialIndex(FeatureCollection data) {
+    List<IndexedFeature> items = new ArrayList<>();
+    if (data != null && data.features() != null) {
+      for (Feature feature : data.features()) {
+        if (feature.geometry() == null || feature.geometry().coordinates() == null) {
+          continue;
+        }
+        IndexedFeature item = new IndexedFeature(feature, new PreparedGeometry(feature.geometry()));
+        if (item.envelope() != null) {
+          items.add(item);
+        }
+      }
+    }
+    this.items = Collections.unmodifiableList(items);
+    this.root = items.isEmpty() ? null : build(items);
+  }
+
+  /**
+   * Returns the number of features in the index.
+   *
+   * @return the number of indexed features
+   */
+  public int size() {
+    return this.items.size();
+  }
+
+  /**
+   * Returns every indexed feature, in no particular order.
+   *
+   * @return an unmodifiable list of the indexed features
+   */
+  public List<IndexedFeature> items() {
+    return this.items;
+  }
+
+  /**
+   * Passes every indexed feature whose envelope intersects the query envelope to the consumer.
+   *
+   * @param query the envelope to search
+   * @param consumer the consumer receiving candidate features
+   */
+  public void search(Envelope query, Consumer<IndexedFeature> consumer) {
+    if (this.root != null) {
+      search(this.root, query, consumer);
+    }
+  }
+
+  /**
+   * Returns every indexed feature whose geometry contains the given point.
+   *
+   * @param lat the latitude of the point
+   * @param lng the longitude of the point
+   * @return the features containing the point
+   */
+  public List<IndexedFeature> featuresAt(double lat, double lng) {
+    List<IndexedFeature> hits = new ArrayList<>();
+    this.search(
+        new Envelope(lat, lat, lng, lng),
+        item -> {
+          if (item.geometry().contains(lat, lng)) {
+            hits.add(item);
+          }
+        });
+    return hits;
+  }
+
+  /**
+   * Finds the k features closest to a point, using a best-first traversal of the tree. Nodes and
+   * features are expanded in order of the distance to their envelopes, and a feature's exact
+   * distance is only computed once its envelope reaches the front of the queue, so most of the tree
+   * is never visited.
+   *
+   * @param lat the latitude of the point
+   * @param lng the longitude of the point
+   * @param k the maximum number of features to return
+   * @param maxDistanceMeters features farther than this are not returned
+   * @param filter only features passing this predicate are returned
+   * @return up to k features ordered by increasing distance
+   */
+  public List<Neighbor> nearest(
+      double lat, double lng, int k, double maxDistanceMeters, Predicate<Feature> filter) {
+    List<Neighbor> results = new ArrayList<>();
+    if (this.root == null || k <= 0) {
+      return results;
+    }
+    PriorityQueue<QueueEntry> queue =
+        new PriorityQueue<>(Comparator.comparingDouble(QueueEntry::distance));
+    queue.add(new QueueEntry(this.root.envelope.distanceMeters(lat, lng), this.root, null, false));
+    while (!queue.isEmpty() && results.size() < k) {
+      QueueEntry entry = queue.poll();
+      if (entry.distance() > maxDistanceMeters) {
+        break;
+      }
+      if (entry.exact()) {
+        results.add(new Neighbor(entry.item(), entry.distance()));
+      } else if (entry.item() != null) {
+        double exact = entry.item().geometry().distanceMeters(lat, lng);
+        queue.add(new QueueEntry(exact, null, entry.item(), true));
+      } else if (entry.node().items != null) {
+        for (IndexedFeature item : entry.node().items) {
+          if (filter.test(item.feature())) {
+            queue.add(new QueueEntry(item.envelope().distanceMeters(lat, lng), null, item, false));
+          }
+        }
+      } else {
+        for (Node child : entry.node().children) {
+          queue.add(new QueueEntry(child.envelope.distanceMeters(lat, lng), child, null, false));
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Summarizes, by HOLC grade, the features whose envelope center lies inside the query envelope.
+   * Subtrees that lie entirely inside the query contribute their precomputed summary, so only the
+   * nodes straddling the query's boundary are descended into.
+   *
+   * @param query the envelope to summarize
+   * @return the counts and areas per grade
+   */
+  public GradeSummary summarize(Envelope query) {
+    GradeSummary summary = new GradeSummary();
+    if (this.root != null) {
+      summarize(this.root, query, summary);
+    }
+    return summary;
+  }
+
+  /**
+   * Recursively adds the part of the subtree rooted at node that lies in query to the summary.
+   *
+   * @param node the root of the subtree
+   * @param query the envelope to summarize
+   * @param summary the summary to add to
+   */
+  private static void summarize(Node node, Envelope query, GradeSummary summary) {
+    if (query.contains(node.envelope)) {
+      summary.addAll(node.summary);
+    } else if (node.items != null) {
+      for (IndexedFeature item : node.items) {
+        if (query.contains(item.envelope().centerLat(), item.envelope().centerLng())) {
+          addTo(summary, item);
+        }
+      }
+    } else {
+      for (Node child : node.children) {
+        if (query.intersects(child.envelope)) {
+          summarize(child, query, summary);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds a single feature to a summary.
+   *
+   * @param summary the summary to add to
+   * @param item the feature to add
+   */
+  private static void addTo(GradeSummary summary, IndexedFeature item) {
+    String grade =
+        item.feature().properties() == null ? null : item.feature().properties().holc_grade();
+    summary.add(grade, item.geometry().areaSqMeters());
+  }
+
+  /**
+   * Recursively visits the subtree rooted at node.
+   *
+   * @param node the root of the subtree
+   * @param query the envelope to search
+   * @param consumer the consumer receiving candidate features
+   */
+  private static void search(Node node, Envelope query, Consumer<IndexedFeature> consumer) {
+    if (node.items != null) {
+      for (IndexedFeature item : node.items) {
+        if (query.intersects(item.envelope())) {
+          consumer.accept(item);
+        }
+      }
+    } else {
+      for (Node child : node.children) {
+        if (query.intersects(child.envelope)) {
+          search(child, query, consumer);
+        }
+      }
+    }
+  }
+
+  /**
+   * Packs the features into leaves and then packs each level into parents until one root remains.
+   *
+   * @param items the features to index
+   * @return the root of the tree
+   */
+  private static Node build(List<IndexedFeature> items) {
+    List<Node> level = new ArrayList<>();
+    for (List<IndexedFeature> group : tile(items, IndexedFeature::envelope)) {
+      level.add(new Node(group.toArray(new IndexedFeature[0])));
+    }
+    while (level.size() > 1) {
+      List<Node> parents = new ArrayList<>();
+      for (List<Node> group : tile(level, node -> node.envelope)) {
+        parents.add(new Node(group.toArray(new Node[0])));
+      }
+      level = parents;
+    }
+    return level.get(0);
+  }
+
+  /**
+   * Groups entries into runs of at most NODE_CAPACITY using Sort-Tile-Recursive: entries are sorted
+   * into vertical slices by longitude, and each slice is sorted by latitude before being cut.
+   *
+   * @param entries the entries to group
+   * @param envelopeOf function returning the envelope of an entry
+   * @return the groups of entries
+   * @param <T> the type of the entries
+   */
+  private static <T> List<List<T>> tile(List<T> entries, Function<T, Envelope> envelopeOf) {
+    int numGroups = (int) Math.ceil(entries.size() / (double) NODE_CAPACITY);
+    int numSlices = (int) Math.ceil(Math.sqrt(numGroups));
+    int sliceSize = numSlices * NODE_CAPACITY;
+
+    List<T> sorted = new ArrayList<>(entries);
+    sorted.sort(Comparator.comparingDouble(entry -> envelopeOf.apply(entry).centerLng()));
+    List<List<T>> groups = new ArrayList<>();
+    for (int s = 0; s < sorted.size(); s += sliceSize) {
+      List<T> slice = new ArrayList<>(sorted.subList(s, Math.min(s + sliceSize, sorted.size())));
+      slice.sort(Comparator.comparingDouble(entry -> envelopeOf.apply(entry).centerLat()));
+      for (int g = 0; g < slice.size(); g += NODE_CAPACITY) {
+        groups.add(slice.subList(g, Math.min(g + NODE_CAPACITY, slice.size())));
+      }
+    }
+    return groups;
+  }
+
+  /**
+   * Record for an entry of the nearest-neighbor priority queue.
+   *
+   * @param distance the lower bound (or exact, if exact is set) distance to the entry
+   * @param node the node of the entry, or null if the entry is a feature
+   * @param item the feature of the entry, or null if the entry is a node
+   * @param exact true if distance is the exact distance to item's geometry
+   */
+  private record QueueEntry(double distance, Node node, IndexedFeature item, boolean exact) {}
+
+  /** A node of the tree. Leaves hold features; inner nodes hold child nodes. */
+  private static class Node {
+
+    private final Envelope envelope;
+    private final Node[] children;
+    private final IndexedFeature[] items;
+    private final GradeSummary summary = new GradeSummary();
+
+    /**
+     * Constructor for a leaf node.
+     *
+     * @param items the features held by the leaf
+     */
+    Node(IndexedFeature[] items) {
+      this.items = items;
+      this.children = null;
+      this.envelope =
+          Arrays.stream(items).map(IndexedFeature::envelope).reduce(Envelope::union).orElseThrow();
+      for (IndexedFeature item : items) {
+        addTo(this.summary, item);
+      }
+    }
+
+    /**
+     * Constructor for an inner node. Its summary is the sum of its children's summaries.
+     *
+     * @param children the child nodes
+     */
+    Node(Node[] children) {
+      this.items = null;
+      this.children = children;
+      this.envelope =
+          Arrays.stream(children)
+              .map(child -> child.envelope)
+              .reduce(Envelope::union)
+              .orElseThrow();
+      for (Node child : children) {
+        this.summary.addAll(child.summary);
+      }
+    }
+  }
+}
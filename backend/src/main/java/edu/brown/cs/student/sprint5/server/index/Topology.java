@@ -0,0 +1,318 @@
+package edu.brown.cs.student.sprint5.server.index;
+
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable set of arcs shared between the rings of a FeatureCollection, extracted once in the
+ * style of TopoJSON. Coordinates are quantized to a fixed grid, and a point is a junction if the
+ * rings passing through it do not all continue to the same neighbors. Every ring is cut at its
+ * junctions, so a boundary that two adjacent neighborhoods share becomes one arc, which one ring
+ * follows forwards and the other backwards. Rings without junctions become a single closed arc.
+ *
+ * <p>Rings are looked up by their quantized points rather than by identity, so features parsed
+ * again from a serialized response still find their arcs.
+ */
+public class Topology {
+
+  private final long scale;
+  private final List<long[]> arcs;
+  private final String[] arcJson;
+  private final Map<Points, int[]> rings;
+
+  /**
+   * Constructor for Topology.
+   *
+   * @param data the FeatureCollection whose rings should share arcs
+   * @param digits the number of decimal digits of a degree that coordinates are quantized to, at
+   *     most 7 so that every quantized coordinate fits in an int
+   * @throws IllegalArgumentException if digits is not between 0 and 7
+   */
+  public Topology(FeatureCollection data, int digits) {
+    if (digits < 0 || digits > 7) {
+      throw new IllegalArgumentException("coordinates can be quantized to at most 7 digits");
+    }
+    long scale = 1;
+    for (int i = 0; i < digits; i++) {
+      scale *= 10;
+    }
+    this.scale = scale;
+
+    List<long[]> quantized = new ArrayList<>();
+    if (data != null && data.features() != null) {
+      for (Feature feature : data.features()) {
+        if (feature == null
+            || feature.geometry() == null
+            || feature.geometry().coordinates() == null) {
+          continue;
+        }
+        for (double[][][] polygon : feature.geometry().coordinates()) {
+          for (double[][] ring : polygon) {
+            quantized.add(quantize(ring));
+          }
+        }
+      }
+    }
+
+    Set<Long> junctions = junctions(quantized);
+    this.arcs = new ArrayList<>();
+    this.rings = new HashMap<>();
+    Map<Points, Integer> arcIndex = new HashMap<>();
+    for (long[] ring : quantized) {
+      Points key = new Points(ring);
+      if (this.rings.containsKey(key)) {
+        continue;
+      }
+      List<long[]> pieces = cut(ring, junctions);
+      int[] refs = new int[pieces.size()];
+      for (int i = 0; i < refs.length; i++) {
+        long[] piece = pieces.get(i);
+        Integer forward = arcIndex.get(new Points(piece));
+        Integer backward = forward == null ? arcIndex.get(new Points(reversed(piece))) : null;
+        if (forward != null) {
+          refs[i] = forward;
+        } else if (backward != null) {
+          refs[i] = ~backward;
+        } else {
+          refs[i] = this.arcs.size();
+          arcIndex.put(new Points(piece), this.arcs.size());
+          this.arcs.add(piece);
+        }
+      }
+      this.rings.put(key, refs);
+    }
+
+    this.arcJson = new String[this.arcs.size()];
+    for (int i = 0; i < this.arcJson.length; i++) {
+      this.arcJson[i] = encode(this.arcs.get(i));
+    }
+  }
+
+  /**
+   * Returns the size in degrees of one step of the quantization grid.
+   *
+   * @return the size of a step
+   */
+  public double step() {
+    return 1.0 / this.scale;
+  }
+
+  /**
+   * Returns the number of arcs.
+   *
+   * @return the number of arcs
+   */
+  public int arcCount() {
+    return this.arcs.size();
+  }
+
+  /**
+   * Returns the arcs that a ring is made of. A reference r &gt;= 0 is arc r followed forwards, and
+   * a reference r &lt; 0 is arc ~r followed backwards.
+   *
+   * @param ring the ring
+   * @return the references to the ring's arcs in order, or null if the ring is not in this topology
+   */
+  public int[] ringArcs(double[][] ring) {
+    return this.rings.get(new Points(quantize(ring)));
+  }
+
+  /**
+   * Returns an arc as a JSON array of quantized positions, the first absolute and the rest as
+   * differences from the position before, as TopoJSON encodes them. The JSON is built once, when
+   * the topology is.
+   *
+   * @param arc the index of the arc
+   * @return the encoded arc
+   */
+  public String arcJson(int arc) {
+    return this.arcJson[arc];
+  }
+
+  /**
+   * Encodes a ring that is not in this topology as a single closed arc, like {@link #arcJson}.
+   *
+   * @param ring the ring
+   * @return the encoded arc
+   */
+  public String encodeRing(double[][] ring) {
+    long[] points = quantize(ring);
+    if (points.length > 0) {
+      points = Arrays.copyOf(points, points.length + 1);
+      points[points.length - 1] = points[0];
+    }
+    return encode(points);
+  }
+
+  /**
+   * Quantizes a ring's positions to the grid, dropping repeated consecutive positions and the
+   * closing position. Values beyond longitude and latitude are ignored.
+   *
+   * @param ring the ring
+   * @return the quantized positions, each packed into a long
+   */
+  private long[] quantize(double[][] ring) {
+    long[] points = new long[ring.length];
+    int count = 0;
+    for (double[] position : ring) {
+      long point =
+          pack(
+              (int) Math.round(position[0] * this.scale),
+              (int) Math.round(position[1] * this.scale));
+      if (count == 0 || points[count - 1] != point) {
+        points[count++] = point;
+      }
+    }
+    if (count > 1 && points[count - 1] == points[0]) {
+      count--;
+    }
+    return Arrays.copyOf(points, count);
+  }
+
+  /**
+   * Finds the junctions of a set of rings: the points that some two passes through do not share
+   * both neighbors.
+   *
+   * @param rings the quantized rings, without closing positions
+   * @return the junctions
+   */
+  private static Set<Long> junctions(List<long[]> rings) {
+    Map<Long, long[]> neighbors = new HashMap<>();
+    Set<Long> junctions = new HashSet<>();
+    for (long[] ring : rings) {
+      int n = ring.length;
+      if (n < 3) {
+        continue;
+      }
+      for (int i = 0; i < n; i++) {
+        long previous = ring[(i + n - 1) % n];
+        long next = ring[(i + 1) % n];
+        long[] pair = {Math.min(previous, next), Math.max(previous, next)};
+        long[] seen = neighbors.putIfAbsent(ring[i], pair);
+        if (seen != null && !Arrays.equals(seen, pair)) {
+          junctions.add(ring[i]);
+        }
+      }
+    }
+    return junctions;
+  }
+
+  /**
+   * Cuts a ring into arcs at its junctions. Each arc includes the junctions at both of its ends. A
+   * ring without junctions becomes one closed arc, starting from its smallest point so that the
+   * same ring always gives the same arc.
+   *
+   * @param ring the quantized ring, without its closing position
+   * @param junctions the junctions of every ring
+   * @return the arcs of the ring, in order
+   */
+  private static List<long[]> cut(long[] ring, Set<Long> junctions) {
+    int n = ring.length;
+    List<long[]> pieces = new ArrayList<>();
+    if (n == 0) {
+      return pieces;
+    }
+    int start = -1;
+    for (int i = 0; i < n && start < 0; i++) {
+      if (junctions.contains(ring[i])) {
+        start = i;
+      }
+    }
+    if (start < 0) {
+      start = 0;
+      for (int i = 1; i < n; i++) {
+        if (ring[i] < ring[start]) {
+          start = i;
+        }
+      }
+      long[] closed = new long[n + 1];
+      for (int i = 0; i <= n; i++) {
+        closed[i] = ring[(start + i) % n];
+      }
+      pieces.add(closed);
+      return pieces;
+    }
+
+    List<Long> piece = new ArrayList<>();
+    piece.add(ring[start]);
+    for (int i = 1; i <= n; i++) {
+      long point = ring[(start + i) % n];
+      piece.add(point);
+      if (i == n || junctions.contains(point)) {
+        pieces.add(piece.stream().mapToLong(Long::longValue).toArray());
+        piece = new ArrayList<>();
+        piece.add(point);
+      }
+    }
+    return pieces;
+  }
+
+  /**
+   * Returns the points of an arc in the opposite order.
+   *
+   * @param arc the arc
+   * @return a reversed copy of the arc
+   */
+  private static long[] reversed(long[] arc) {
+    long[] reversed = new long[arc.length];
+    for (int i = 0; i < arc.length; i++) {
+      reversed[i] = arc[arc.length - 1 - i];
+    }
+    return reversed;
+  }
+
+  /**
+   * Encodes quantized points as a JSON array of delta-encoded positions.
+   *
+   * @param points the packed points
+   * @return the encoded points
+   */
+  private static String encode(long[] points) {
+    StringBuilder json = new StringBuilder(points.length * 12).append('[');
+    long x = 0;
+    long y = 0;
+    for (int i = 0; i < points.length; i++) {
+      int px = (int) (points[i] >> 32);
+      int py = (int) points[i];
+      json.append(i == 0 ? "[" : ",[").append(px - x).append(',').append(py - y).append(']');
+      x = px;
+      y = py;
+    }
+    return json.append(']').toString();
+  }
+
+  /**
+   * Packs a quantized position into a long.
+   *
+   * @param x the quantized longitude
+   * @param y the quantized latitude
+   * @return the packed position
+   */
+  private static long pack(int x, int y) {
+    return ((long) x << 32) | (y & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Record wrapping an array of packed points so that it can key a map by its contents.
+   *
+   * @param packed the packed points
+   */
+  private record Points(long[] packed) {
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Points points && Arrays.equals(this.packed, points.packed);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(this.packed);
+    }
+  }
+}
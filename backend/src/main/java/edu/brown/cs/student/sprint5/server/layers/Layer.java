@@ -0,0 +1,175 @@
+package edu.brown.cs.student.sprint5.server.layers;
+
+import static edu.brown.cs.student.sprint5.Constants.TOPOLOGY_COORDINATE_DIGITS;
+
+import edu.brown.cs.student.sprint5.server.index.Topology;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
+import edu.brown.cs.student.sprint5.server.proxies.Proxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class for one loaded dataset that the server can serve, along with the proxies built over it.
+ * Each proxy is built the first time an endpoint needs it, so the indexes behind endpoints that
+ * nobody queries on this layer are never built. The spatial indexes of the layer's partitions are
+ * the exception: {@link LayerRegistry} builds them in parallel while the layer loads. Concurrent
+ * first requests for a proxy wait for a single construction.
+ */
+public class Layer {
+
+  private final String name;
+  private volatile Record data;
+  private final String version;
+  // the version of the source that the layer's data was last read from
+  private volatile String sourceVersion;
+  private final long estimatedBytes;
+  private final Map<Class<? extends Proxy>, Proxy> proxies;
+  private PartitionedDataset partitions;
+  private Topology topology;
+
+  /**
+   * Constructor for Layer.
+   *
+   * @param name the name that requests use to pick this layer
+   * @param data the parsed dataset
+   * @param version a string that changes whenever the dataset's source changes, or null if unknown
+   * @param estimatedBytes how much heap the dataset and its proxies are expected to take up
+   */
+  public Layer(String name, Record data, String version, long estimatedBytes) {
+    this.name = name;
+    this.data = data;
+    this.version = version;
+    this.sourceVersion = version;
+    this.estimatedBytes = estimatedBytes;
+    this.proxies = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Returns the proxy of a class over this layer's data, building it on first use.
+   *
+   * @param proxyClass the class of the proxy
+   * @return the proxy
+   * @throws IllegalArgumentException if the proxy class has no constructor taking the data
+   */
+  public Proxy proxy(Class<? extends Proxy> proxyClass) {
+    return this.proxies.computeIfAbsent(proxyClass, this::newProxy);
+  }
+
+  /**
+   * Returns the proxy of a class over this layer's data if it has already been built.
+   *
+   * @param proxyClass the class of the proxy
+   * @return the proxy, or null if it has not been built
+   */
+  public Proxy builtProxy(Class<? extends Proxy> proxyClass) {
+    return this.proxies.get(proxyClass);
+  }
+
+  /**
+   * Builds a proxy over this layer's data.
+   *
+   * @param proxyClass the class of the proxy
+   * @return the new proxy
+   */
+  private Proxy newProxy(Class<? extends Proxy> proxyClass) {
+    try {
+      if (this.data instanceof FeatureCollection) {
+        try {
+          return proxyClass.getConstructor(PartitionedDataset.class).newInstance(partitions());
+        } catch (NoSuchMethodException e) {
+          // proxies that index the whole collection at once are built from it below
+        }
+      }
+      return proxyClass.getConstructor(this.data.getClass()).newInstance(this.data);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException(
+          proxyClass.getSimpleName() + " cannot be built over layer " + this.name, e);
+    }
+  }
+
+  /**
+   * Returns this layer's data split into partitions, which every partition-aware proxy of the layer
+   * shares. The partitions are built on first use.
+   *
+   * @return the partitioned dataset
+   * @throws ClassCastException if this layer's data is not a FeatureCollection
+   */
+  public synchronized PartitionedDataset partitions() {
+    if (this.partitions == null) {
+      this.partitions = new PartitionedDataset((FeatureCollection) this.data, this.version);
+      this.partitions.onReplace(this::dropTopology);
+    }
+    return this.partitions;
+  }
+
+  /**
+   * Returns the arcs shared between the rings of this layer's features, for answering requests in
+   * TopoJSON. The topology is built on first use, from the layer's current features, and built
+   * again after a partition is replaced.
+   *
+   * @return the topology, or null if this layer's data is not a FeatureCollection
+   */
+  public synchronized Topology topology() {
+    if (this.topology == null && this.data instanceof FeatureCollection collection) {
+      FeatureCollection current =
+          this.partitions == null
+              ? collection
+              : new FeatureCollection(this.partitions.type(), this.partitions.all());
+      this.topology = new Topology(current, TOPOLOGY_COORDINATE_DIGITS);
+    }
+    return this.topology;
+  }
+
+  /**
+   * Drops the topology once a partition is replaced, so that the next request in TopoJSON builds it
+   * over the new features. A topology still being built waits for the lock and is dropped too.
+   */
+  private synchronized void dropTopology() {
+    this.topology = null;
+  }
+
+  /**
+   * Brings this layer up to date with a new copy of its source. Only the partitions whose features
+   * changed are replaced, so the other partitions keep their indexes and cached responses, and the
+   * proxies built over the partitions answer from the new features from then on.
+   *
+   * @param data the new copy of the source
+   * @param sourceVersion the version of the source the copy was read from
+   * @return the keys of the partitions that were replaced or removed
+   */
+  public synchronized List<String> reload(FeatureCollection data, String sourceVersion) {
+    List<String> changed = partitions().reload(data);
+    this.data = data;
+    this.sourceVersion = sourceVersion;
+    return changed;
+  }
+
+  /**
+   * Returns the version of the source that this layer's data was last read from.
+   *
+   * @return the version, or null if unknown
+   */
+  public String sourceVersion() {
+    return this.sourceVersion;
+  }
+
+  /**
+   * Returns the name of this layer.
+   *
+   * @return the name that requests use to pick this layer
+   */
+  public String name() {
+    return this.name;
+  }
+
+  /**
+   * Returns how much heap this layer is expected to take up once its proxies are built.
+   *
+   * @return the estimate in bytes
+   */
+  public long estimatedBytes() {
+    return this.estimatedBytes;
+  }
+}
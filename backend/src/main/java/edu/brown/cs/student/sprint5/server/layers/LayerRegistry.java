@@ -0,0 +1,311 @@
+package edu.brown.cs.student.sprint5.server.layers;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromGeoJsonFile;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class for the set of datasets, or layers, that the server can serve. A layer is parsed the first
+ * time a request asks for it, and concurrent first requests share that one load. Loaded layers are
+ * kept under a memory budget: when loading a layer would exceed it, the least recently used layers
+ * are dropped and will be loaded again if they are asked for. A layer's size is estimated from its
+ * file size, since measuring the heap that a parsed dataset and its indexes hold is not practical.
+ * A FeatureCollection layer is parsed as its file is read, with its features parsed on a pool of
+ * worker threads, and the same threads then build the spatial indexes of its partitions.
+ */
+public class LayerRegistry {
+
+  private final Class<? extends Record> dataClass;
+  private final String defaultLayer;
+  // layer name -> path of the file it is loaded from
+  private final Map<String, String> paths;
+  private final LoadingCache<String, Layer> loaded;
+
+  /**
+   * Constructor for LayerRegistry serving a single dataset that is never evicted.
+   *
+   * @param defaultPath the path of the dataset
+   * @param dataClass the Record class that the dataset should be parsed into
+   */
+  public LayerRegistry(String defaultPath, Class<? extends Record> dataClass) {
+    this(defaultPath, null, dataClass, -1);
+  }
+
+  /**
+   * Constructor for LayerRegistry.
+   *
+   * @param defaultPath the path of the dataset served to requests that do not name a layer
+   * @param layerDirectory a directory whose .json files are each served as the layer named after
+   *     the file, or null to serve only the default dataset
+   * @param dataClass the Record class that every dataset should be parsed into
+   * @param budgetBytes the most heap, in bytes, that loaded layers may take up, or a negative
+   *     number for no limit
+   */
+  public LayerRegistry(
+      String defaultPath,
+      String layerDirectory,
+      Class<? extends Record> dataClass,
+      long budgetBytes) {
+    this.dataClass = dataClass;
+    this.defaultLayer = layerName(defaultPath);
+    Map<String, String> paths = new LinkedHashMap<>();
+    paths.put(this.defaultLayer, defaultPath);
+    File[] files = layerDirectory == null ? null : new File(layerDirectory).listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isFile() && file.getName().endsWith(".json")) {
+          paths.putIfAbsent(layerName(file.getPath()), file.getPath());
+        }
+      }
+    }
+    this.paths = Collections.unmodifiableMap(paths);
+
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+    if (budgetBytes >= 0) {
+      // a single segment, so that the budget applies to all layers together rather than being
+      // split evenly between segments
+      builder
+          .concurrencyLevel(1)
+          .maximumWeight(Math.max(1, budgetBytes / 1024))
+          .<String, Layer>weigher(
+              (name, layer) -> (int) Math.min(Integer.MAX_VALUE, layer.estimatedBytes() / 1024));
+    }
+    this.loaded =
+        builder.build(
+            new CacheLoader<>() {
+              @Override
+              public Layer load(String name) throws IOException {
+                return loadLayer(name);
+              }
+            });
+  }
+
+  /**
+   * Returns the name of the layer that a file is served as: the file name without its extension.
+   *
+   * @param path the path of the file
+   * @return the layer name
+   */
+  public static String layerName(String path) {
+    String fileName = new File(path).getName();
+    int dot = fileName.lastIndexOf('.');
+    return dot > 0 ? fileName.substring(0, dot) : fileName;
+  }
+
+  /**
+   * Parses the dataset of a layer, building the spatial indexes of a FeatureCollection's
+   * partitions.
+   *
+   * @param name the name of the layer
+   * @return the loaded layer
+   * @throws IOException if the dataset cannot be read
+   */
+  private Layer loadLayer(String name) throws IOException {
+    String path = this.paths.get(name);
+    File file = new File(path);
+    // read before parsing, so a file that changes while it is parsed gets a new version next time
+    String version = fileVersion(file);
+    if (this.dataClass != FeatureCollection.class) {
+      Record data = fromJsonFile(path, this.dataClass);
+      return new Layer(name, data, version, file.length() * LAYER_MEMORY_FACTOR);
+    }
+    ExecutorService workers = newIngestPool(name);
+    try {
+      FeatureCollection data =
+          fromGeoJsonFile(path, workers, INGEST_THREADS * INGEST_BATCHES_PER_THREAD);
+      Layer layer = new Layer(name, data, version, file.length() * LAYER_MEMORY_FACTOR);
+      layer.partitions().buildIndexes(workers);
+      return layer;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while loading layer " + name);
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the version of a layer's file, which changes whenever the file is written.
+   *
+   * @param file the file
+   * @return the version, built from the file's path, size and modification time
+   */
+  private static String fileVersion(File file) {
+    return file.getAbsolutePath() + "@" + file.length() + "@" + file.lastModified();
+  }
+
+  /**
+   * Reloads every loaded FeatureCollection layer whose file has changed since it was read. Each
+   * changed file is parsed again, and only the partitions whose features differ are replaced, so
+   * the indexes and cached responses of the rest are kept. Layers that are not loaded are left
+   * alone, as they are read afresh when next asked for.
+   *
+   * @return the name of each reloaded layer, mapped to the keys of its replaced partitions
+   * @throws IOException if a changed file cannot be read; layers before it are still reloaded
+   */
+  public Map<String, List<String>> reloadChanged() throws IOException {
+    Map<String, List<String>> reloaded = new LinkedHashMap<>();
+    if (this.dataClass != FeatureCollection.class) {
+      return reloaded;
+    }
+    for (Map.Entry<String, Layer> entry : this.loaded.asMap().entrySet()) {
+      File file = new File(this.paths.get(entry.getKey()));
+      String version = fileVersion(file);
+      if (version.equals(entry.getValue().sourceVersion())) {
+        continue;
+      }
+      ExecutorService workers = newIngestPool(entry.getKey());
+      try {
+        FeatureCollection data =
+            fromGeoJsonFile(file.getPath(), workers, INGEST_THREADS * INGEST_BATCHES_PER_THREAD);
+        reloaded.put(entry.getKey(), entry.getValue().reload(data, version));
+        entry.getValue().partitions().buildIndexes(workers);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while reloading layer " + entry.getKey());
+      } finally {
+        workers.shutdownNow();
+      }
+    }
+    return reloaded;
+  }
+
+  /**
+   * Starts checking the files of loaded layers for changes, on a daemon thread, and reloading the
+   * ones that changed.
+   *
+   * @param periodMillis how long to wait between the end of one check and the start of the next
+   * @return the thread's executor, which can be shut down to stop checking
+   */
+  public ScheduledExecutorService startReloading(long periodMillis) {
+    ScheduledExecutorService reloader =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "layer-reload");
+              thread.setDaemon(true);
+              return thread;
+            });
+    reloader.scheduleWithFixedDelay(
+        () -> {
+          try {
+            Map<String, List<String>> reloaded = reloadChanged();
+            if (!reloaded.isEmpty()) {
+              System.out.println("Reloaded partitions of layers: " + reloaded);
+            }
+          } catch (IOException | RuntimeException e) {
+            // an exception would cancel every later check, so report it and check again later
+            System.out.println("Failed to reload layers: " + e.getMessage());
+          }
+        },
+        periodMillis,
+        periodMillis,
+        TimeUnit.MILLISECONDS);
+    return reloader;
+  }
+
+  /**
+   * Creates the threads that parse and index a layer while it loads.
+   *
+   * @param name the name of the layer
+   * @return the pool, with INGEST_THREADS daemon threads
+   */
+  private static ExecutorService newIngestPool(String name) {
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newFixedThreadPool(
+        Math.max(1, INGEST_THREADS),
+        runnable -> {
+          Thread thread = new Thread(runnable, "ingest-" + name + "-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Returns a layer, loading it if it is not loaded.
+   *
+   * @param name the name of the layer
+   * @return the layer
+   * @throws IOException if the layer's dataset cannot be read
+   * @throws IllegalArgumentException if there is no layer with this name
+   */
+  public Layer get(String name) throws IOException {
+    if (!this.paths.containsKey(name)) {
+      throw new IllegalArgumentException("No layer named " + name);
+    }
+    try {
+      return this.loaded.get(name);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException cause) {
+        throw cause;
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Returns a layer if it is currently loaded, without loading it.
+   *
+   * @param name the name of the layer
+   * @return the layer, or null if it is not loaded
+   */
+  public Layer getIfLoaded(String name) {
+    return this.loaded.getIfPresent(name);
+  }
+
+  /**
+   * Checks if there is a layer with a name.
+   *
+   * @param name the name to check
+   * @return true if a layer with this name can be served, false otherwise
+   */
+  public boolean contains(String name) {
+    return this.paths.containsKey(name);
+  }
+
+  /**
+   * Returns the path of the file a layer is loaded from.
+   *
+   * @param name the name of the layer
+   * @return the path, or null if there is no layer with this name
+   */
+  public String path(String name) {
+    return this.paths.get(name);
+  }
+
+  /**
+   * Returns the name of the layer served to requests that do not name one.
+   *
+   * @return the name of the default layer
+   */
+  public String defaultLayer() {
+    return this.defaultLayer;
+  }
+
+  /**
+   * Returns the names of every layer that can be served, loaded or not.
+   *
+   * @return the layer names, default layer first
+   */
+  public Set<String> names() {
+    return this.paths.keySet();
+  }
+}
@@ -0,0 +1,110 @@
+package edu.brown.cs.student.sprint5.server.loadtest;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Properties;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports how much heap the properties of a dataset's features retain once they are loaded, as the
+ * server loads them, with repeated strings shared and descriptions dictionary-encoded, and as an
+ * unshared copy with a distinct string per occurrence and a LinkedHashMap per description, the way
+ * they were loaded before. Retained sizes are measured as the growth of the used heap after full
+ * garbage collections, so they are approximate.
+ *
+ * <p>Usage: mvn compile exec:java
+ * -Dexec.mainClass=edu.brown.cs.student.sprint5.server.loadtest.HeapReport -Dexec.args="<path>"
+ * (the path defaults to the redlining dataset)
+ */
+public class HeapReport {
+
+  public static void main(String[] args) throws Exception {
+    String path = args.length > 0 ? args[0] : REDLINING_PATH;
+    long empty = usedHeap();
+    FeatureCollection data = fromJsonFile(path, FeatureCollection.class);
+    List<Properties> encoded = new ArrayList<>();
+    for (Feature feature : data.features()) {
+      if (feature != null && feature.properties() != null) {
+        encoded.add(feature.properties());
+      }
+    }
+    // only the properties should stay reachable
+    data = null;
+    long afterEncoded = usedHeap();
+    List<Properties> unshared = new ArrayList<>(encoded.size());
+    for (Properties properties : encoded) {
+      unshared.add(unshared(properties));
+    }
+    long afterUnshared = usedHeap();
+
+    long encodedBytes = afterEncoded - empty;
+    long unsharedBytes = afterUnshared - afterEncoded;
+    System.out.println("dataset: " + path);
+    System.out.println("features with properties: " + encoded.size());
+    System.out.printf("retained before (unshared): %,d bytes%n", unsharedBytes);
+    System.out.printf("retained after (encoded):   %,d bytes%n", encodedBytes);
+    if (unsharedBytes > 0) {
+      System.out.printf(
+          "reduction: %.1f%%%n", 100.0 * (unsharedBytes - encodedBytes) / unsharedBytes);
+    }
+    Reference.reachabilityFence(encoded);
+    Reference.reachabilityFence(unshared);
+  }
+
+  /**
+   * Copies properties the way they were loaded before dictionary encoding: every string a distinct
+   * object, and the descriptions in a LinkedHashMap.
+   *
+   * @param properties the properties to copy
+   * @return the copy
+   */
+  private static Properties unshared(Properties properties) {
+    Map<String, String> descriptions = null;
+    if (properties.area_description_data() != null) {
+      descriptions = new LinkedHashMap<>();
+      for (Map.Entry<String, String> entry : properties.area_description_data().entrySet()) {
+        descriptions.put(copy(entry.getKey()), copy(entry.getValue()));
+      }
+    }
+    return new Properties(
+        copy(properties.city()),
+        copy(properties.state()),
+        copy(properties.name()),
+        copy(properties.holc_id()),
+        copy(properties.holc_grade()),
+        properties.neighborhood_id(),
+        descriptions);
+  }
+
+  /**
+   * Copies a string, including its characters, which new String(String) would share.
+   *
+   * @param string the string, possibly null
+   * @return an equal string sharing nothing with the original, or null
+   */
+  private static String copy(String string) {
+    return string == null ? null : new String(string.toCharArray());
+  }
+
+  /**
+   * Returns the heap in use once garbage has been collected.
+   *
+   * @return the used heap in bytes
+   * @throws InterruptedException if interrupted while waiting for the collections
+   */
+  private static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,127 @@
+package edu.brown.cs.student.sprint5.server.loadtest;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Class that records request latencies from many threads without contention. Each thread appends to
+ * its own buffer, and the buffers are only merged when a report is requested.
+ */
+public class LatencyRecorder {
+
+  private final Queue<Buffer> buffers = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<Buffer> local =
+      ThreadLocal.withInitial(
+          () -> {
+            Buffer buffer = new Buffer();
+            this.buffers.add(buffer);
+            return buffer;
+          });
+
+  /**
+   * Records one latency.
+   *
+   * @param nanos the latency in nanoseconds
+   */
+  public void record(long nanos) {
+    this.local.get().add(nanos);
+  }
+
+  /**
+   * Records one request whose response was an error. Errors are counted separately and are not part
+   * of the latency distribution.
+   */
+  public void recordError() {
+    this.local.get().errors++;
+  }
+
+  /**
+   * Records one request that the server rejected because it was overloaded. Rejections are counted
+   * separately and are not part of the latency distribution.
+   */
+  public void recordRejected() {
+    this.local.get().rejected++;
+  }
+
+  /**
+   * Merges every thread's latencies into one sorted array.
+   *
+   * @return the recorded latencies in nanoseconds, sorted ascending
+   */
+  public long[] sorted() {
+    int total = 0;
+    for (Buffer buffer : this.buffers) {
+      total += buffer.size;
+    }
+    long[] all = new long[total];
+    int offset = 0;
+    for (Buffer buffer : this.buffers) {
+      System.arraycopy(buffer.values, 0, all, offset, buffer.size);
+      offset += buffer.size;
+    }
+    Arrays.sort(all);
+    return all;
+  }
+
+  /**
+   * Returns the number of requests that ended in an error.
+   *
+   * @return the number of errors
+   */
+  public long errors() {
+    long errors = 0;
+    for (Buffer buffer : this.buffers) {
+      errors += buffer.errors;
+    }
+    return errors;
+  }
+
+  /**
+   * Returns the number of requests that the server rejected because it was overloaded.
+   *
+   * @return the number of rejections
+   */
+  public long rejected() {
+    long rejected = 0;
+    for (Buffer buffer : this.buffers) {
+      rejected += buffer.rejected;
+    }
+    return rejected;
+  }
+
+  /**
+   * Returns the value at a percentile of a sorted array, using the nearest-rank method.
+   *
+   * @param sorted the sorted values
+   * @param percentile the percentile, between 0 and 100
+   * @return the value at the percentile, or 0 if there are no values
+   */
+  public static long percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+  }
+
+  /** A growable array of latencies owned by one thread. */
+  private static class Buffer {
+    private long[] values = new long[1024];
+    private int size;
+    private long errors;
+    private long rejected;
+
+    /**
+     * Appends a latency, growing the array if it is full.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    void add(long nanos) {
+      if (this.size == this.values.length) {
+        this.values = Arrays.copyOf(this.values, this.size * 2);
+      }
+      this.values[this.size++] = nanos;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package edu.brown.cs.student.sprint5.server.loadtest;
+
+import static edu.brown.cs.student.sprint5.Constants.REDLINING_PATH;
+
+import edu.brown.cs.student.sprint5.server.main.ExecutionMode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Record for the settings of a load test run.
+ *
+ * @param fixedRate true to send requests at a fixed arrival rate, false to keep a fixed number of
+ *     requests in flight
+ * @param concurrency the number of client threads, i.e. the most requests that can be in flight
+ * @param rate the target number of requests per second when fixedRate is set
+ * @param warmupSeconds how long to run before measuring
+ * @param durationSeconds how long to measure
+ * @param panWeight the relative share of requests that are viewport pans
+ * @param keywordWeight the relative share of requests that are keyword searches
+ * @param fuzzWeight the relative share of requests that are random (often invalid) bounding boxes
+ * @param panSteps the number of consecutive boxes in one pan sequence
+ * @param dataPath the GeoJSON file the server should load
+ * @param serverMode how the server under test executes requests
+ */
+public record LoadConfig(
+    boolean fixedRate,
+    int concurrency,
+    double rate,
+    int warmupSeconds,
+    int durationSeconds,
+    int panWeight,
+    int keywordWeight,
+    int fuzzWeight,
+    int panSteps,
+    String dataPath,
+    ExecutionMode serverMode) {
+
+  /**
+   * Parses command line arguments of the form --name=value. Recognized names are mode (concurrency
+   * or rate), concurrency, rate, warmup, duration, mix (e.g. pan:70,keyword:20,fuzz:10), panSteps,
+   * and data. Anything not given keeps its default.
+   *
+   * @param args the command line arguments
+   * @return the parsed configuration
+   * @throws IllegalArgumentException if an argument is not recognized or not well-formed
+   */
+  public static LoadConfig parse(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("expected --name=value but got " + arg);
+      }
+      options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+    }
+
+    Map<String, Integer> mix = new HashMap<>(Map.of("pan", 70, "keyword", 20, "fuzz", 10));
+    if (options.containsKey("mix")) {
+      mix.replaceAll((kind, weight) -> 0);
+      for (String part : options.remove("mix").split(",")) {
+        String[] kindAndWeight = part.split(":");
+        if (kindAndWeight.length != 2 || !mix.containsKey(kindAndWeight[0])) {
+          throw new IllegalArgumentException("unknown traffic mix entry " + part);
+        }
+        mix.put(kindAndWeight[0], Integer.parseInt(kindAndWeight[1]));
+      }
+    }
+
+    String mode = options.getOrDefault("mode", "concurrency");
+    if (!mode.equals("concurrency") && !mode.equals("rate")) {
+      throw new IllegalArgumentException("mode must be concurrency or rate");
+    }
+    LoadConfig config =
+        new LoadConfig(
+            mode.equals("rate"),
+            Integer.parseInt(options.getOrDefault("concurrency", "16")),
+            Double.parseDouble(options.getOrDefault("rate", "200")),
+            Integer.parseInt(options.getOrDefault("warmup", "5")),
+            Integer.parseInt(options.getOrDefault("duration", "30")),
+            mix.get("pan"),
+            mix.get("keyword"),
+            mix.get("fuzz"),
+            Integer.parseInt(options.getOrDefault("panSteps", "20")),
+            options.getOrDefault("data", REDLINING_PATH),
+            ExecutionMode.parse(options.get("serverMode")));
+    options
+        .keySet()
+        .removeAll(
+            List.of(
+                "mode",
+                "concurrency",
+                "rate",
+                "warmup",
+                "duration",
+                "panSteps",
+                "data",
+                "serverMode"));
+    if (!options.isEmpty()) {
+      throw new IllegalArgumentException("unknown options " + options.keySet());
+    }
+    if (config.panWeight + config.keywordWeight + config.fuzzWeight <= 0) {
+      throw new IllegalArgumentException("the traffic mix must have a positive total weight");
+    }
+    return config;
+  }
+}
@@ -0,0 +1,288 @@
+package edu.brown.cs.student.sprint5.server.loadtest;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.index.IndexedFeature;
+import edu.brown.cs.student.sprint5.server.index.SpatialIndex;
+import edu.brown.cs.student.sprint5.server.main.Server;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Properties;
+import edu.brown.cs.student.sprint5.server.testutils.FuzzUtils;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import spark.Spark;
+
+/**
+ * Closed-loop HTTP load test for the server. It starts the server in-process on a free port and
+ * drives it with a mix of realistic traffic: viewport pans (overlapping bounding boxes that drift
+ * across a city), keyword searches over words that actually occur in the data, and random bounding
+ * boxes from {@link FuzzUtils}, many of which are invalid. It reports throughput, errors, requests
+ * shed by the server with status 503, and the tail latencies of the requests that were answered.
+ *
+ * <p>In concurrency mode, each client thread sends its next request as soon as the previous one
+ * returns. In rate mode, requests are scheduled at a fixed arrival rate and latency is measured
+ * from when a request was due to be sent rather than from when it was sent, so a stalled server is
+ * charged for the requests that queued up behind the stall (correcting for coordinated omission).
+ *
+ * <p>Usage: mvn exec:java -Dexec.mainClass=edu.brown.cs.student.sprint5.server.loadtest.LoadTest
+ * -Dexec.args="--mode=rate --rate=500 --duration=30" (see {@link LoadConfig#parse} for all options)
+ */
+public class LoadTest {
+
+  private static final int MAX_KEYWORDS = 50;
+  private static final double PAN_SPAN_DEGREES = 0.05;
+
+  private final LoadConfig config;
+  private final HttpClient client;
+  private final String baseUrl;
+  private final List<Envelope> centers;
+  private final List<String> keywords;
+
+  /**
+   * Constructor for LoadTest.
+   *
+   * @param config the settings of the run
+   * @param port the port the server is listening on
+   * @param data the dataset the server is serving, used to pick where to pan and what to search
+   */
+  public LoadTest(LoadConfig config, int port, FeatureCollection data) {
+    this.config = config;
+    this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    this.baseUrl = "http://localhost:" + port + "/";
+    this.centers = new ArrayList<>();
+    for (IndexedFeature item : new SpatialIndex(data).items()) {
+      this.centers.add(item.envelope());
+    }
+    if (this.centers.isEmpty()) {
+      // nothing to pan over, so pan over Providence
+      this.centers.add(new Envelope(41.82, 41.82, -71.41, -71.41));
+    }
+    this.keywords = commonWords(data);
+  }
+
+  public static void main(String[] args) throws Exception {
+    LoadConfig config = LoadConfig.parse(args);
+    FeatureCollection data = fromJsonFile(config.dataPath(), FeatureCollection.class);
+
+    Spark.port(0);
+    Server.start(config.dataPath(), config.serverMode());
+    LoadTest test = new LoadTest(config, Spark.port(), data);
+
+    System.out.println("warming up for " + config.warmupSeconds() + "s");
+    test.run(config.warmupSeconds());
+    System.out.println("measuring for " + config.durationSeconds() + "s");
+    LatencyRecorder recorder = test.run(config.durationSeconds());
+    test.report(recorder, config.durationSeconds());
+
+    Spark.stop();
+    Spark.awaitStop();
+  }
+
+  /**
+   * Drives the server for a period of time.
+   *
+   * @param seconds how long to send requests for
+   * @return the latencies and errors recorded during the period
+   * @throws InterruptedException if interrupted while waiting for the client threads
+   */
+  public LatencyRecorder run(int seconds) throws InterruptedException {
+    LatencyRecorder recorder = new LatencyRecorder();
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+    long interval = this.config.fixedRate() ? (long) (1e9 / this.config.rate()) : 0;
+    AtomicLong nextSlot = new AtomicLong();
+
+    ExecutorService clients = Executors.newFixedThreadPool(this.config.concurrency());
+    for (int i = 0; i < this.config.concurrency(); i++) {
+      clients.execute(
+          () -> {
+            Deque<String> pan = new ArrayDeque<>();
+            while (true) {
+              long intended;
+              if (this.config.fixedRate()) {
+                intended = start + nextSlot.getAndIncrement() * interval;
+                if (intended >= deadline) {
+                  return;
+                }
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                  LockSupport.parkNanos(wait);
+                }
+              } else {
+                intended = System.nanoTime();
+                if (intended >= deadline) {
+                  return;
+                }
+              }
+              this.send(this.nextUrl(pan), recorder, intended);
+            }
+          });
+    }
+    clients.shutdown();
+    // in rate mode the last scheduled requests may still be waiting on a slow server
+    clients.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+    return recorder;
+  }
+
+  /**
+   * Sends one request and records how long it took. In concurrency mode, a rejected request makes
+   * the thread wait as long as the server's Retry-After header asks.
+   *
+   * @param url the URL to request
+   * @param recorder where to record the outcome
+   * @param intended when, in System.nanoTime, the request was due to be sent
+   */
+  private void send(String url, LatencyRecorder recorder, long intended) {
+    try {
+      HttpResponse<String> response =
+          this.client.send(
+              HttpRequest.newBuilder(URI.create(url)).GET().build(),
+              HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() == 200) {
+        recorder.record(System.nanoTime() - intended);
+      } else if (response.statusCode() == 503) {
+        recorder.recordRejected();
+        // a closed-loop client is a real user, who backs off as told; an open-loop arrival
+        // schedule does not
+        if (!this.config.fixedRate()) {
+          long retryAfter =
+              response.headers().firstValueAsLong("Retry-After").orElse(RETRY_AFTER_SECONDS);
+          Thread.sleep(TimeUnit.SECONDS.toMillis(retryAfter));
+        }
+      } else {
+        recorder.recordError();
+      }
+    } catch (IOException e) {
+      recorder.recordError();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      recorder.recordError();
+    }
+  }
+
+  /**
+   * Picks the next request to send according to the traffic mix. A pan is a sequence of requests,
+   * so once one starts, the thread keeps sending its boxes until the sequence is used up.
+   *
+   * @param pan the remaining URLs of this thread's current pan sequence
+   * @return the URL of the next request
+   */
+  private String nextUrl(Deque<String> pan) {
+    if (!pan.isEmpty()) {
+      return pan.poll();
+    }
+    ThreadLocalRandom r = ThreadLocalRandom.current();
+    int pick =
+        r.nextInt(this.config.panWeight() + this.config.keywordWeight() + this.config.fuzzWeight());
+    if (pick < this.config.panWeight()) {
+      Envelope center = this.centers.get(r.nextInt(this.centers.size()));
+      for (Map<String, String> box :
+          FuzzUtils.generateViewportPan(
+              center.centerLat(),
+              center.centerLng(),
+              PAN_SPAN_DEGREES,
+              PAN_SPAN_DEGREES,
+              this.config.panSteps())) {
+        pan.add(this.url(BOUNDING_BOX_ENDPOINT, box));
+      }
+      return pan.poll();
+    }
+    if (pick < this.config.panWeight() + this.config.keywordWeight()) {
+      String keyword = this.keywords.get(r.nextInt(this.keywords.size()));
+      return this.url(KEYWORD_ENDPOINT, Map.of(KEYWORD_PARAM, keyword));
+    }
+    return this.url(BOUNDING_BOX_ENDPOINT, FuzzUtils.generateRandomBoundingBox());
+  }
+
+  /**
+   * Builds the URL of a request.
+   *
+   * @param endpoint the endpoint to request
+   * @param params the query parameters
+   * @return the URL
+   */
+  private String url(String endpoint, Map<String, String> params) {
+    StringJoiner query = new StringJoiner("&", this.baseUrl + endpoint + "?", "");
+    for (Map.Entry<String, String> param : params.entrySet()) {
+      query.add(param.getKey() + "=" + URLEncoder.encode(param.getValue(), StandardCharsets.UTF_8));
+    }
+    return query.toString();
+  }
+
+  /**
+   * Prints throughput, errors, and latency percentiles.
+   *
+   * @param recorder the outcomes of the measured period
+   * @param seconds the length of the measured period
+   */
+  private void report(LatencyRecorder recorder, int seconds) {
+    long[] latencies = recorder.sorted();
+    long errors = recorder.errors();
+    long rejected = recorder.rejected();
+    System.out.printf(
+        "server=%s mode=%s concurrency=%d%s%n",
+        this.config.serverMode().name().toLowerCase(),
+        this.config.fixedRate() ? "rate" : "concurrency",
+        this.config.concurrency(),
+        this.config.fixedRate() ? " rate=" + this.config.rate() + "/s" : "");
+    System.out.printf(
+        "requests=%d errors=%d rejected=%d throughput=%.1f/s goodput=%.1f/s%n",
+        latencies.length + errors + rejected,
+        errors,
+        rejected,
+        (latencies.length + errors + rejected) / (double) seconds,
+        latencies.length / (double) seconds);
+    System.out.printf(
+        "latency ms: p50=%.2f p99=%.2f p999=%.2f max=%.2f%n",
+        LatencyRecorder.percentile(latencies, 50) / 1e6,
+        LatencyRecorder.percentile(latencies, 99) / 1e6,
+        LatencyRecorder.percentile(latencies, 99.9) / 1e6,
+        LatencyRecorder.percentile(latencies, 100) / 1e6);
+  }
+
+  /**
+   * Finds the most common longer words in the area descriptions of a dataset, to use as search
+   * keywords that actually match something.
+   *
+   * @param data the dataset
+   * @return up to MAX_KEYWORDS words, most common first
+   */
+  private static List<String> commonWords(FeatureCollection data) {
+    Map<String, Integer> counts = new HashMap<>();
+    for (var feature : data.features()) {
+      Properties properties = feature.properties();
+      if (properties == null || properties.area_description_data() == null) {
+        continue;
+      }
+      for (String description : properties.area_description_data().values()) {
+        for (String word : description.toLowerCase().split("[^a-z]+")) {
+          if (word.length() >= 5) {
+            counts.merge(word, 1, Integer::sum);
+          }
+        }
+      }
+    }
+    List<String> words =
+        counts.entrySet().stream()
+            .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+            .limit(MAX_KEYWORDS)
+            .map(Map.Entry::getKey)
+            .toList();
+    return words.isEmpty() ? List.of("residential") : words;
+  }
+}
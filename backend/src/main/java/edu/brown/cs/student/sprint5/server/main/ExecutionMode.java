@@ -0,0 +1,27 @@
+package edu.brown.cs.student.sprint5.server.main;
+
+/** Enum for the ways the server can run the requests it receives. */
+public enum ExecutionMode {
+  /**
+   * Spark's default: each request is handled start to finish on a thread of Jetty's bounded pool,
+   * so a burst of slow clients reading large responses can hold every thread and queue the rest.
+   */
+  POOLED,
+  /**
+   * Requests are accepted on a much larger, elastic pool of threads that mostly wait on I/O, while
+   * the CPU-heavy filtering and serialization run on a compute pool with one thread per core. Slow
+   * clients then only hold cheap waiting threads, and CPU work is never oversubscribed.
+   */
+  ELASTIC;
+
+  /**
+   * Parses an execution mode, ignoring case.
+   *
+   * @param name the name of the mode, or null for the default
+   * @return the named mode, or POOLED if name is null
+   * @throws IllegalArgumentException if name does not name a mode
+   */
+  public static ExecutionMode parse(String name) {
+    return name == null ? POOLED : valueOf(name.trim().toUpperCase());
+  }
+}
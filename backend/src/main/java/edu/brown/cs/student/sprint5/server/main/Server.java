@@ -3,10 +3,25 @@ package edu.brown.cs.student.sprint5.server.main;
 import static edu.brown.cs.student.sprint5.Constants.*;
 import static spark.Spark.after;
 
+import edu.brown.cs.student.sprint5.server.admission.ConcurrencyLimiter;
+import edu.brown.cs.student.sprint5.server.cluster.ClusterRouter;
 import edu.brown.cs.student.sprint5.server.handlers.JSONDataHandler;
+import edu.brown.cs.student.sprint5.server.handlers.StreamingBoundingBoxHandler;
+import edu.brown.cs.student.sprint5.server.layers.LayerRegistry;
+import edu.brown.cs.student.sprint5.server.proxies.AggregateProxy;
 import edu.brown.cs.student.sprint5.server.proxies.BoundingBoxProxy;
+import edu.brown.cs.student.sprint5.server.proxies.DensityProxy;
+import edu.brown.cs.student.sprint5.server.proxies.FeatureAtProxy;
 import edu.brown.cs.student.sprint5.server.proxies.KeywordSearchProxy;
+import edu.brown.cs.student.sprint5.server.proxies.NearestProxy;
+import edu.brown.cs.student.sprint5.server.proxies.SuggestProxy;
+import edu.brown.cs.student.sprint5.server.proxies.ViewportDeltaProxy;
 import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.warmup.AccessLog;
+import edu.brown.cs.student.sprint5.server.warmup.CacheWarmer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import spark.Spark;
 
 /**
@@ -16,7 +31,62 @@ import spark.Spark;
  */
 public class Server {
   public static void main(String[] args) {
-    Spark.port(3232);
+    Spark.port(Integer.getInteger(SERVER_PORT_PROPERTY, DEFAULT_PORT));
+    start(REDLINING_PATH, ExecutionMode.parse(System.getProperty(SERVER_MODE_PROPERTY)));
+  }
+
+  /**
+   * Registers every endpoint over the dataset at dataPath and starts the server in the default
+   * execution mode.
+   *
+   * @param dataPath the path of the GeoJSON file to serve
+   */
+  public static void start(String dataPath) {
+    start(dataPath, ExecutionMode.POOLED);
+  }
+
+  /**
+   * Registers every endpoint over the dataset at dataPath and starts the server on the port that
+   * was previously configured with Spark.port. Returns once the server is listening. Unless the
+   * server.admission system property is "off", every endpoint shares one adaptive concurrency
+   * limiter that sheds excess load. If the server.layerDir system property names a directory, its
+   * .json files are served as further layers, loaded on first use within the layer memory budget.
+   * If the server.cluster system property lists the nodes of a cluster, this server runs as the
+   * node named by server.self and forwards requests that other nodes own. If the server.accessLog
+   * system property names a file, the queries the server answers are counted in it, and once the
+   * server is listening the most popular ones are replayed in the background to warm its caches.
+   * The files of loaded layers are checked for changes every server.layerReloadSeconds, and the
+   * partitions whose features changed are reloaded.
+   *
+   * @param dataPath the path of the GeoJSON file served to requests that do not name a layer
+   * @param mode how requests should be executed
+   */
+  public static void start(String dataPath, ExecutionMode mode) {
+    ExecutorService compute = null;
+    if (mode == ExecutionMode.ELASTIC) {
+      Spark.threadPool(ELASTIC_MAX_THREADS, ELASTIC_MIN_THREADS, ELASTIC_IDLE_TIMEOUT_MILLIS);
+      compute = newComputePool();
+    }
+    ConcurrencyLimiter limiter =
+        "off".equalsIgnoreCase(System.getProperty(ADMISSION_PROPERTY))
+            ? null
+            : new ConcurrencyLimiter(
+                ADMISSION_INITIAL_LIMIT,
+                ADMISSION_MIN_LIMIT,
+                ADMISSION_MAX_LIMIT,
+                ADMISSION_CHEAP_HEADROOM);
+    LayerRegistry layers =
+        new LayerRegistry(
+            dataPath,
+            System.getProperty(LAYER_DIRECTORY_PROPERTY),
+            FeatureCollection.class,
+            LAYER_BUDGET_MB * 1024 * 1024);
+    if (LAYER_RELOAD_SECONDS > 0) {
+      layers.startReloading(LAYER_RELOAD_SECONDS * 1000);
+    }
+    ClusterRouter router = ClusterRouter.fromProperties();
+    AccessLog accessLog = AccessLog.fromProperties();
+
     /* Sets up CORS headers for responses
 
        More info on CORS:
@@ -32,10 +102,34 @@ public class Server {
     try {
       Spark.get(
           "/" + BOUNDING_BOX_ENDPOINT,
-          new JSONDataHandler(REDLINING_PATH, FeatureCollection.class, BoundingBoxProxy.class));
+          new JSONDataHandler(layers, BoundingBoxProxy.class, compute, limiter, router, accessLog));
+      // streamed answers are not cached, so every node answers them itself rather than forwarding
+      // them to the owner of the box
+      Spark.get(
+          "/" + BOUNDING_BOX_STREAM_ENDPOINT, new StreamingBoundingBoxHandler(layers, limiter));
+      Spark.get(
+          "/" + VIEWPORT_DELTA_ENDPOINT,
+          new JSONDataHandler(
+              layers, ViewportDeltaProxy.class, compute, limiter, router, accessLog));
       Spark.get(
           "/" + KEYWORD_ENDPOINT,
-          new JSONDataHandler(REDLINING_PATH, FeatureCollection.class, KeywordSearchProxy.class));
+          new JSONDataHandler(
+              layers, KeywordSearchProxy.class, compute, limiter, router, accessLog));
+      Spark.get(
+          "/" + SUGGEST_ENDPOINT,
+          new JSONDataHandler(layers, SuggestProxy.class, compute, limiter, router, accessLog));
+      Spark.get(
+          "/" + FEATURE_AT_ENDPOINT,
+          new JSONDataHandler(layers, FeatureAtProxy.class, compute, limiter, router, accessLog));
+      Spark.get(
+          "/" + NEAREST_ENDPOINT,
+          new JSONDataHandler(layers, NearestProxy.class, compute, limiter, router, accessLog));
+      Spark.get(
+          "/" + AGGREGATE_ENDPOINT,
+          new JSONDataHandler(layers, AggregateProxy.class, compute, limiter, router, accessLog));
+      Spark.get(
+          "/" + DENSITY_ENDPOINT,
+          new JSONDataHandler(layers, DensityProxy.class, compute, limiter, router, accessLog));
     } catch (Exception e) {
       e.printStackTrace();
       System.out.println("Failed to initialize server");
@@ -44,5 +138,29 @@ public class Server {
     // initiate server
     Spark.init();
     Spark.awaitInitialization();
+
+    if (accessLog != null) {
+      CacheWarmer.start(
+          accessLog,
+          "http://localhost:" + Spark.port(),
+          key -> router == null || router.owns(AccessLog.path(key), AccessLog.params(key)));
+    }
+  }
+
+  /**
+   * Creates the pool that filtering and serialization run on in elastic mode, with one daemon
+   * thread per core.
+   *
+   * @return the compute pool
+   */
+  private static ExecutorService newComputePool() {
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(),
+        runnable -> {
+          Thread thread = new Thread(runnable, "compute-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
   }
 }
@@ -0,0 +1,154 @@
+package edu.brown.cs.student.sprint5.server.partitions;
+
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.index.SpatialIndex;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Geometry;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Class for one partition of a dataset: its features, the envelope around all of their coordinates,
+ * and a spatial index over them that is built the first time it is needed. Partitions are
+ * immutable; reloading one replaces it with a new Partition.
+ */
+public class Partition {
+
+  private final String key;
+  private final String type;
+  private final long generation;
+  private final Feature[] features;
+  private final Envelope extent;
+  private volatile SpatialIndex index;
+
+  /**
+   * Constructor for Partition, for a partition that has never been replaced.
+   *
+   * @param key the key that the partition's features share
+   * @param type the type of the collection the features came from
+   * @param features the features of the partition
+   */
+  public Partition(String key, String type, Collection<Feature> features) {
+    this(key, type, 0, features);
+  }
+
+  /**
+   * Constructor for Partition.
+   *
+   * @param key the key that the partition's features share
+   * @param type the type of the collection the features came from
+   * @param generation a number that differs from that of every earlier partition with this key
+   * @param features the features of the partition
+   */
+  public Partition(String key, String type, long generation, Collection<Feature> features) {
+    this.key = key;
+    this.type = type;
+    this.generation = generation;
+    this.features = features.toArray(new Feature[0]);
+    Envelope extent = null;
+    for (Feature feature : this.features) {
+      Envelope bounds = extentOf(feature.geometry());
+      if (bounds != null) {
+        extent = extent == null ? bounds : extent.union(bounds);
+      }
+    }
+    this.extent = extent;
+  }
+
+  /**
+   * Returns the envelope around every coordinate of a geometry.
+   *
+   * @param geometry the geometry, possibly null
+   * @return the envelope, or null if the geometry has no coordinates
+   */
+  private static Envelope extentOf(Geometry geometry) {
+    if (geometry == null || geometry.coordinates() == null) {
+      return null;
+    }
+    double minLat = Double.POSITIVE_INFINITY;
+    double maxLat = Double.NEGATIVE_INFINITY;
+    double minLng = Double.POSITIVE_INFINITY;
+    double maxLng = Double.NEGATIVE_INFINITY;
+    for (double[][][] polygon : geometry.coordinates()) {
+      for (double[][] ring : polygon) {
+        for (double[] coordinate : ring) {
+          minLng = Math.min(minLng, coordinate[0]);
+          maxLng = Math.max(maxLng, coordinate[0]);
+          minLat = Math.min(minLat, coordinate[1]);
+          maxLat = Math.max(maxLat, coordinate[1]);
+        }
+      }
+    }
+    return minLat > maxLat ? null : new Envelope(minLat, maxLat, minLng, maxLng);
+  }
+
+  /**
+   * Checks if any feature of this partition could touch an envelope.
+   *
+   * @param query the envelope to check
+   * @return false if no coordinate of any feature lies in the envelope, true otherwise
+   */
+  public boolean mayIntersect(Envelope query) {
+    return this.extent != null && this.extent.intersects(query);
+  }
+
+  /**
+   * Returns the spatial index over this partition's features, building it on first use.
+   *
+   * @return the spatial index
+   */
+  public SpatialIndex index() {
+    SpatialIndex index = this.index;
+    if (index == null) {
+      synchronized (this) {
+        index = this.index;
+        if (index == null) {
+          index =
+              new SpatialIndex(
+                  new FeatureCollection(this.type, new LinkedHashSet<>(List.of(this.features))));
+          this.index = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns the key that this partition's features share.
+   *
+   * @return the partition key
+   */
+  public String key() {
+    return this.key;
+  }
+
+  /**
+   * Returns the generation of this partition, which differs from that of every earlier partition
+   * with the same key.
+   *
+   * @return the generation
+   */
+  public long generation() {
+    return this.generation;
+  }
+
+  /**
+   * Returns this partition's features. The array must not be modified.
+   *
+   * @return the features
+   */
+  public Feature[] features() {
+    return this.features;
+  }
+
+  /**
+   * Returns the envelope around all coordinates of this partition's features.
+   *
+   * @return the extent, or null if no feature has coordinates
+   */
+  public Envelope extent() {
+    return this.extent;
+  }
+}
@@ -0,0 +1,371 @@
+package edu.brown.cs.student.sprint5.server.partitions;
+
+import edu.brown.cs.student.sprint5.server.filters.BoundingBoxFilter;
+import edu.brown.cs.student.sprint5.server.filters.ConcatenatedFeatureSet;
+import edu.brown.cs.student.sprint5.server.filters.FeatureFilter;
+import edu.brown.cs.student.sprint5.server.filters.FilterExecutor;
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.index.SpatialIndex;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Geometry;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Class for a dataset split into partitions by state. A query is only sent to the partitions whose
+ * extent intersects it, and the partitions it reaches are scanned in parallel with their results
+ * merged in partition order. Each partition keeps its own index, so replacing one partition leaves
+ * the others, and their indexes, untouched.
+ */
+public class PartitionedDataset {
+
+  private final String type;
+  private final String baseVersion;
+  // partition key -> partition; replaced as a whole, never modified, so readers need no locking
+  private volatile Map<String, Partition> partitions;
+  private final List<Runnable> replaceListeners;
+
+  /**
+   * Constructor for PartitionedDataset, for data without a version.
+   *
+   * @param data the FeatureCollection to partition
+   */
+  public PartitionedDataset(FeatureCollection data) {
+    this(data, null);
+  }
+
+  /**
+   * Constructor for PartitionedDataset.
+   *
+   * @param data the FeatureCollection to partition
+   * @param version a string that changes whenever the source of the data changes, e.g. built from
+   *     its file's size and modification time, or null if the data has no version
+   */
+  public PartitionedDataset(FeatureCollection data, String version) {
+    this.type = data.type();
+    this.baseVersion = version;
+    this.replaceListeners = new CopyOnWriteArrayList<>();
+    Map<String, Partition> partitions = new LinkedHashMap<>();
+    for (Map.Entry<String, List<Feature>> group : group(data).entrySet()) {
+      partitions.put(group.getKey(), new Partition(group.getKey(), this.type, group.getValue()));
+    }
+    this.partitions = Collections.unmodifiableMap(partitions);
+  }
+
+  /**
+   * Groups the features of a collection by the partition they belong in.
+   *
+   * @param data the collection
+   * @return the features of each partition key, in the order the keys were first seen
+   */
+  private static Map<String, List<Feature>> group(FeatureCollection data) {
+    Map<String, List<Feature>> grouped = new LinkedHashMap<>();
+    if (data.features() != null) {
+      for (Feature feature : data.features()) {
+        grouped.computeIfAbsent(partitionKey(feature), k -> new ArrayList<>()).add(feature);
+      }
+    }
+    return grouped;
+  }
+
+  /**
+   * Returns the key of the partition a feature belongs in: its upper-cased state.
+   *
+   * @param feature the feature
+   * @return the partition key, or the empty string if the feature has no state
+   */
+  public static String partitionKey(Feature feature) {
+    if (feature.properties() == null || feature.properties().state() == null) {
+      return "";
+    }
+    return feature.properties().state().trim().toUpperCase();
+  }
+
+  /**
+   * Returns the partitions that a query could match features in.
+   *
+   * @param query the envelope of the query, or null to reach every partition
+   * @return the partitions whose extent intersects the query, in partition order
+   */
+  public List<Partition> route(Envelope query) {
+    List<Partition> routed = new ArrayList<>();
+    for (Partition partition : this.partitions.values()) {
+      if (query == null || partition.mayIntersect(query)) {
+        routed.add(partition);
+      }
+    }
+    return routed;
+  }
+
+  /**
+   * Returns the features that meet a filter's criteria, scanning only the partitions that the
+   * filter could match features in.
+   *
+   * @param query an envelope that every feature matching the filter has a coordinate in, or null if
+   *     the filter is not spatial
+   * @param filter the filter to apply
+   * @param token the token of the request that the filtering is for
+   * @return the features that meet the filter's criteria, in partition order
+   * @throws java.util.concurrent.CancellationException if the request is cancelled
+   */
+  public Set<Feature> filter(Envelope query, FeatureFilter filter, CancellationToken token) {
+    List<Feature[]> arrays = new ArrayList<>();
+    for (Partition partition : route(query)) {
+      arrays.add(partition.features());
+    }
+    return FilterExecutor.filter(arrays, filter, token);
+  }
+
+  /**
+   * Returns the features that are in one box but not in another, by the rule of {@link
+   * BoundingBoxFilter}. Only the parts of the first box that the second does not cover are
+   * searched, with the spatial indexes of the partitions they reach, so the work is proportional to
+   * the size of that difference rather than to the size of the first box.
+   *
+   * @param in the box the features should be in
+   * @param out the box the features should not be in, or null to find every feature in the first
+   * @return the features, in partition order
+   */
+  public Set<Feature> boxDifference(Envelope in, Envelope out) {
+    BoundingBoxFilter inFilter =
+        new BoundingBoxFilter(in.minLat(), in.maxLat(), in.minLng(), in.maxLng());
+    BoundingBoxFilter outFilter =
+        out == null
+            ? null
+            : new BoundingBoxFilter(out.minLat(), out.maxLat(), out.minLng(), out.maxLng());
+    Set<Feature> found = new LinkedHashSet<>();
+    for (Envelope piece : out == null ? List.of(in) : in.minus(out)) {
+      for (Partition partition : route(piece)) {
+        partition
+            .index()
+            .search(
+                piece,
+                item -> {
+                  Feature feature = item.feature();
+                  if (inFilter.featureMeetsCriteria(feature)
+                      && (outFilter == null || !outFilter.featureMeetsCriteria(feature))) {
+                    found.add(feature);
+                  }
+                });
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Returns every feature of the dataset, without copying them.
+   *
+   * @return the features, in partition order
+   */
+  public Set<Feature> all() {
+    List<List<Feature>> parts = new ArrayList<>();
+    for (Partition partition : this.partitions.values()) {
+      parts.add(Arrays.asList(partition.features()));
+    }
+    return new ConcatenatedFeatureSet(parts);
+  }
+
+  /**
+   * Builds the spatial index of every partition now rather than on first use, one partition per
+   * worker at a time, and waits for them all.
+   *
+   * @param workers the threads that build the indexes
+   * @throws InterruptedException if the waiting thread is interrupted
+   */
+  public void buildIndexes(ExecutorService workers) throws InterruptedException {
+    List<Future<SpatialIndex>> built = new ArrayList<>();
+    for (Partition partition : this.partitions.values()) {
+      built.add(workers.submit(partition::index));
+    }
+    for (Future<SpatialIndex> index : built) {
+      try {
+        index.get();
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Failed to build a partition's index", e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Replaces the features of one partition, e.g. after its source data was updated. Queries that
+   * are already running finish on the old partition. Every replace listener is run afterwards. The
+   * new partition gets a new generation, so the stamps of the queries that reach it change.
+   *
+   * @param key the key of the partition to replace
+   * @param features the new features of the partition; if empty, the partition is removed
+   */
+  public synchronized void replace(String key, Collection<Feature> features) {
+    Map<String, Partition> partitions = new LinkedHashMap<>(this.partitions);
+    if (features.isEmpty()) {
+      partitions.remove(key);
+    } else {
+      partitions.put(key, new Partition(key, this.type, newGeneration(), features));
+    }
+    this.partitions = Collections.unmodifiableMap(partitions);
+    for (Runnable listener : this.replaceListeners) {
+      listener.run();
+    }
+  }
+
+  /**
+   * Returns the generation of a replaced partition. It is random rather than counted, so that
+   * partitions replaced in different runs of the server, which share the disk cache under the same
+   * base version, never share a stamp.
+   *
+   * @return a nonzero generation
+   */
+  private static long newGeneration() {
+    long generation;
+    do {
+      generation = ThreadLocalRandom.current().nextLong();
+    } while (generation == 0);
+    return generation;
+  }
+
+  /**
+   * Brings the dataset up to date with a new copy of its source, replacing only the partitions
+   * whose features changed and removing those that no longer have any. Partitions whose features
+   * are all the same, in the same order, are kept along with their indexes and the cached responses
+   * that reach only them.
+   *
+   * @param data the new copy of the source
+   * @return the keys of the partitions that were replaced or removed
+   */
+  public synchronized List<String> reload(FeatureCollection data) {
+    Map<String, List<Feature>> grouped = group(data);
+    List<String> changed = new ArrayList<>();
+    for (Map.Entry<String, List<Feature>> group : grouped.entrySet()) {
+      Partition current = this.partitions.get(group.getKey());
+      if (current == null || !sameFeatures(current.features(), group.getValue())) {
+        changed.add(group.getKey());
+        replace(group.getKey(), group.getValue());
+      }
+    }
+    for (String key : List.copyOf(this.partitions.keySet())) {
+      if (!grouped.containsKey(key)) {
+        changed.add(key);
+        replace(key, List.of());
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Checks if two lists of features hold equal features in the same order.
+   *
+   * @param current the features of a partition
+   * @param reloaded the features read for it again
+   * @return true if the features are equal, false otherwise
+   */
+  private static boolean sameFeatures(Feature[] current, List<Feature> reloaded) {
+    if (current.length != reloaded.size()) {
+      return false;
+    }
+    for (int i = 0; i < current.length; i++) {
+      Feature a = current[i];
+      Feature b = reloaded.get(i);
+      if (!Objects.equals(a.type(), b.type())
+          || !Objects.equals(a.properties(), b.properties())
+          || !sameGeometry(a.geometry(), b.geometry())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks if two geometries are equal, comparing their coordinates by value.
+   *
+   * @param a a geometry, possibly null
+   * @param b another geometry, possibly null
+   * @return true if the geometries are equal, false otherwise
+   */
+  private static boolean sameGeometry(Geometry a, Geometry b) {
+    if (a == null || b == null) {
+      return a == b;
+    }
+    return Objects.equals(a.type(), b.type())
+        && Arrays.deepEquals(a.coordinates(), b.coordinates());
+  }
+
+  /**
+   * Registers code to run whenever a partition is replaced, e.g. to drop cached responses.
+   *
+   * @param listener the code to run
+   */
+  public void onReplace(Runnable listener) {
+    this.replaceListeners.add(listener);
+  }
+
+  /**
+   * Returns a partition.
+   *
+   * @param key the key of the partition
+   * @return the partition, or null if there is none with this key
+   */
+  public Partition partition(String key) {
+    return this.partitions.get(key);
+  }
+
+  /**
+   * Returns every partition.
+   *
+   * @return the partitions, in the order their keys were first seen
+   */
+  public Collection<Partition> partitions() {
+    return this.partitions.values();
+  }
+
+  /**
+   * Returns a string that identifies the partitions a query was routed to as they are now. It
+   * changes whenever one of them is replaced, and when a partition is added or removed in the
+   * query's reach, but not when any other partition is replaced. Responses cached under it are
+   * never served once the partitions they were computed from have changed.
+   *
+   * @param routed the partitions a query was routed to
+   * @return the stamp, e.g. "RI@0,MA@3"
+   */
+  public static String stamp(List<Partition> routed) {
+    StringJoiner stamp = new StringJoiner(",");
+    for (Partition partition : routed) {
+      stamp.add(partition.key() + "@" + partition.generation());
+    }
+    return stamp.toString();
+  }
+
+  /**
+   * Returns the version of the data's source, which does not change when a partition is replaced.
+   * Responses computed from some partitions can be stored under it together with the stamp of those
+   * partitions, and reused for as long as both are current.
+   *
+   * @return the version, or null if the data has no version
+   */
+  public String version() {
+    return this.baseVersion;
+  }
+
+  /**
+   * Returns the type of the collection the dataset came from.
+   *
+   * @return the collection type, e.g. "FeatureCollection"
+   */
+  public String type() {
+    return this.type;
+  }
+}
@@ -0,0 +1,296 @@
+package edu.brown.cs.student.sprint5.server.proxies;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import edu.brown.cs.student.sprint5.server.datasources.CacheUtils;
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.index.GradeSummary;
+import edu.brown.cs.student.sprint5.server.index.IndexedFeature;
+import edu.brown.cs.student.sprint5.server.partitions.Partition;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Properties;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import spark.Request;
+
+/**
+ * Proxy class for summarizing the features of a FeatureCollection by HOLC grade, either within a
+ * bounding box or within a city and/or state. Box summaries come from the aggregates stored in the
+ * spatial index of each partition the box reaches; city and state summaries are computed per
+ * partition the first time they are needed, and again only for a partition that was replaced.
+ */
+public class AggregateProxy implements Proxy {
+
+  private PartitionedDataset partitions;
+  // partition key -> the city and state summaries of the partition's latest generation seen
+  private Map<String, RegionSummaries> regions;
+  private LoadingCache<String, ServerResponse> cache;
+
+  /**
+   * Constructor for AggregateProxy.
+   *
+   * @param data FeatureCollection to be summarized
+   */
+  public AggregateProxy(FeatureCollection data) {
+    this(new PartitionedDataset(data));
+  }
+
+  /**
+   * Constructor for AggregateProxy over a partitioned dataset, usually shared with other proxies.
+   * Responses are cached under the stamp of the partitions they summarize, so replacing a partition
+   * only misses the regions that reach it.
+   *
+   * @param partitions the partitioned dataset to be summarized
+   */
+  public AggregateProxy(PartitionedDataset partitions) {
+    this.partitions = partitions;
+    this.regions = new ConcurrentHashMap<>();
+    this.cache =
+        CacheUtils.generateCache(
+            new CacheLoader<>() {
+              @Override
+              public ServerResponse load(String cacheKey) throws Exception {
+                return getResponse(cacheKey.substring(cacheKey.indexOf('|') + 1));
+              }
+            },
+            CACHE_MAX_SIZE,
+            CACHE_EXPIRE_TIME,
+            CACHE_EXPIRE_UNIT);
+  }
+
+  /**
+   * Returns the city and state summaries of a partition, computing them if the partition has not
+   * been seen in its current generation.
+   *
+   * @param partition the partition
+   * @return the partition's summaries
+   */
+  private RegionSummaries regions(Partition partition) {
+    RegionSummaries regions = this.regions.get(partition.key());
+    if (regions == null || regions.generation() != partition.generation()) {
+      regions =
+          new RegionSummaries(
+              partition.generation(), new HashMap<>(), new HashMap<>(), new HashMap<>());
+      for (IndexedFeature item : partition.index().items()) {
+        Properties properties = item.feature().properties();
+        if (properties == null) {
+          continue;
+        }
+        String city = normalize(properties.city());
+        String state = normalize(properties.state());
+        double area = item.geometry().areaSqMeters();
+        regions
+            .byCity()
+            .computeIfAbsent(city, c -> new GradeSummary())
+            .add(properties.holc_grade(), area);
+        regions
+            .byState()
+            .computeIfAbsent(state, s -> new GradeSummary())
+            .add(properties.holc_grade(), area);
+        regions
+            .byCityState()
+            .computeIfAbsent(city + "&" + state, cs -> new GradeSummary())
+            .add(properties.holc_grade(), area);
+      }
+      this.regions.put(partition.key(), regions);
+    }
+    return regions;
+  }
+
+  /**
+   * Returns a ServerResponse containing the counts and areas per grade for the requested region.
+   *
+   * @param paramsString string containing the parameters (minLat, minLng, maxLat, maxLng, city,
+   *     state) separated by '&'. Absent parameters are the string "null".
+   * @return ServerResponse containing the summary of the region
+   */
+  private ServerResponse getResponse(String paramsString) {
+    String[] params = paramsString.split("&", -1);
+    int boxParams = 0;
+    for (int i = 0; i < 4; i++) {
+      boxParams += params[i].equals("null") ? 0 : 1;
+    }
+    boolean hasCity = !params[4].equals("null");
+    boolean hasState = !params[5].equals("null");
+
+    GradeSummary summary = new GradeSummary();
+    if (boxParams == 4 && !hasCity && !hasState) {
+      try {
+        double minLat = Double.parseDouble(params[0]);
+        double minLng = Double.parseDouble(params[1]);
+        double maxLat = Double.parseDouble(params[2]);
+        double maxLng = Double.parseDouble(params[3]);
+        if (minLat < LAT_LOWER_BOUND
+            || maxLat > LAT_UPPER_BOUND
+            || minLng < LNG_LOWER_BOUND
+            || maxLng > LNG_UPPER_BOUND) {
+          return new ServerResponse(ERROR_BAD_REQUEST, COORD_OUT_OF_BOUNDS);
+        }
+        if (minLat > maxLat || minLng > maxLng) {
+          return new ServerResponse(ERROR_BAD_REQUEST, MIN_GREATER_THAN_MAX);
+        }
+        Envelope box = new Envelope(minLat, maxLat, minLng, maxLng);
+        for (Partition partition : this.partitions.route(box)) {
+          summary.addAll(partition.index().summarize(box));
+        }
+      } catch (NumberFormatException e) {
+        return new ServerResponse(ERROR_BAD_JSON, INVALID_LAT_LNG);
+      }
+    } else if (boxParams == 0 && (hasCity || hasState)) {
+      String city = normalize(params[4]);
+      String state = normalize(params[5]);
+      for (Partition partition : this.partitions.route(null)) {
+        RegionSummaries regions = regions(partition);
+        GradeSummary found;
+        if (hasCity && hasState) {
+          found = regions.byCityState().get(city + "&" + state);
+        } else if (hasCity) {
+          found = regions.byCity().get(city);
+        } else {
+          found = regions.byState().get(state);
+        }
+        if (found != null) {
+          summary.addAll(found);
+        }
+      }
+    } else {
+      return new ServerResponse(ERROR_BAD_REQUEST, INVALID_AGGREGATE_SCOPE);
+    }
+
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put(GRADE_COUNTS, summary.counts());
+    responseMap.put(GRADE_AREAS, summary.areas());
+    return new ServerResponse(responseMap);
+  }
+
+  /**
+   * Normalizes a city or state name for lookups.
+   *
+   * @param name the name to normalize, possibly null
+   * @return the trimmed, lower-cased name, or the empty string if name is null
+   */
+  private static String normalize(String name) {
+    return name == null ? "" : name.trim().toLowerCase();
+  }
+
+  /**
+   * Returns a ServerResponse containing the counts and areas per grade for the requested region.
+   *
+   * @param request Request object containing either a bounding box or a city and/or state
+   * @return ServerResponse containing the summary of the region
+   * @throws Exception if there is an error in retrieval from the cache
+   */
+  @Override
+  public ServerResponse getResponsePercolate(Request request) throws Exception {
+    return this.cache.get(cacheKey(paramsString(request)));
+  }
+
+  /**
+   * Builds the key that the response to a request is cached under now: the stamp of the partitions
+   * a box reaches, or of every partition for a city or state, followed by the parameters. The key
+   * is built before the summary, so a partition replaced in between can never put an older response
+   * under the current key.
+   *
+   * @param paramsString string containing the parameters separated by '&'
+   * @return the cache key
+   */
+  private String cacheKey(String paramsString) {
+    Envelope box = null;
+    try {
+      String[] params = paramsString.split("&", -1);
+      box =
+          new Envelope(
+              Double.parseDouble(params[0]),
+              Double.parseDouble(params[2]),
+              Double.parseDouble(params[1]),
+              Double.parseDouble(params[3]));
+    } catch (NumberFormatException e) {
+      // not a box: a city or state, which can be in any partition, or an error
+    }
+    return PartitionedDataset.stamp(this.partitions.route(box)) + "|" + paramsString;
+  }
+
+  /**
+   * Builds the cache key of a request.
+   *
+   * @param request the request
+   * @return string containing the parameters (minLat, minLng, maxLat, maxLng, city, state)
+   *     separated by '&'
+   */
+  private static String paramsString(Request request) {
+    return request.queryParams(MIN_LAT_PARAM)
+        + "&"
+        + request.queryParams(MIN_LNG_PARAM)
+        + "&"
+        + request.queryParams(MAX_LAT_PARAM)
+        + "&"
+        + request.queryParams(MAX_LNG_PARAM)
+        + "&"
+        + request.queryParams(CITY_PARAM)
+        + "&"
+        + request.queryParams(STATE_PARAM);
+  }
+
+  /**
+   * Checks if the response to a request is cached, without computing it.
+   *
+   * @param request the request to check for
+   * @return true if the response is cached, false otherwise
+   */
+  @Override
+  public boolean isCached(Request request) {
+    return cacheContains(paramsString(request));
+  }
+
+  /**
+   * Checks if the response to the request corresponding to paramsString is cached for the current
+   * partitions.
+   *
+   * @param paramsString string containing the parameters (minLat, minLng, maxLat, maxLng, city,
+   *     state) separated by '&' (e.g. "null&null&null&null&Providence&RI")
+   * @return true if the response is cached, false otherwise
+   */
+  @Override
+  public boolean cacheContains(String paramsString) {
+    return this.cache.asMap().containsKey(cacheKey(paramsString));
+  }
+
+  /**
+   * Returns a set of the known parameters for this proxy. Every parameter of this endpoint is
+   * optional, so this set is empty.
+   *
+   * @return Set of known parameters
+   */
+  @Override
+  public Set<String> getKnownQueryParams() {
+    return Set.of();
+  }
+
+  /**
+   * Returns a set of the optional parameters for this proxy.
+   *
+   * @return Set of optional parameters
+   */
+  @Override
+  public Set<String> getOptionalQueryParams() {
+    return AGGREGATE_OPTIONAL_PARAMS;
+  }
+
+  /**
+   * Record for the city and state summaries of one partition.
+   *
+   * @param generation the generation of the partition summarized
+   * @param byCity the summaries by normalized city
+   * @param byState the summaries by normalized state
+   * @param byCityState the summaries by normalized city and state, joined by '&'
+   */
+  private record RegionSummaries(
+      long generation,
+      Map<String, GradeSummary> byCity,
+      Map<String, GradeSummary> byState,
+      Map<String, GradeSummary> byCityState) {}
+}
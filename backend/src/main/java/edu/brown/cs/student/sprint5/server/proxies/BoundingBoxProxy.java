@@ -4,19 +4,28 @@ import static edu.brown.cs.student.sprint5.Constants.*;
 
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import edu.brown.cs.student.sprint5.server.datasources.CacheUtils;
+import edu.brown.cs.student.sprint5.server.diskcache.DiskCache;
 import edu.brown.cs.student.sprint5.server.filters.BoundingBoxFilter;
 import edu.brown.cs.student.sprint5.server.filters.FeatureFilter;
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.partitions.Partition;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
 import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat;
 import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.*;
 import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import spark.Request;
 
 /** Proxy class for bounding box filtering a FeatureCollection. */
 public class BoundingBoxProxy implements Proxy {
 
-  private FeatureCollection data;
+  private PartitionedDataset partitions;
+  private DiskCache diskCache;
   private LoadingCache<String, ServerResponse> cache;
 
   /**
@@ -25,13 +34,37 @@ public class BoundingBoxProxy implements Proxy {
    * @param data FeatureCollection to be filtered
    */
   public BoundingBoxProxy(FeatureCollection data) {
-    this.data = data;
+    this(new PartitionedDataset(data));
+  }
+
+  /**
+   * Constructor for BoundingBoxProxy over a partitioned dataset, usually shared with other proxies,
+   * backed by the server's disk cache if one is configured. Responses are cached under the stamp of
+   * the partitions their box reaches, so replacing a partition only misses the boxes that reach it.
+   *
+   * @param partitions the partitioned dataset to be filtered
+   */
+  public BoundingBoxProxy(PartitionedDataset partitions) {
+    this(partitions, DiskCache.shared());
+  }
+
+  /**
+   * Constructor for BoundingBoxProxy over a partitioned dataset, backed by a disk cache. Responses
+   * missing from memory are looked up in the disk cache before filtering, under the version of the
+   * partitions their box reaches, so responses to an older version are never served.
+   *
+   * @param partitions the partitioned dataset to be filtered
+   * @param diskCache the disk cache, or null to cache responses in memory only
+   */
+  public BoundingBoxProxy(PartitionedDataset partitions, DiskCache diskCache) {
+    this.partitions = partitions;
+    this.diskCache = diskCache;
     this.cache =
         CacheUtils.generateCache(
             new CacheLoader<>() {
               @Override
-              public ServerResponse load(String paramsString) throws Exception {
-                return getResponse(paramsString);
+              public ServerResponse load(String cacheKey) throws Exception {
+                return loadThroughDisk(cacheKey, CancellationToken.NONE);
               }
             },
             CACHE_MAX_SIZE,
@@ -39,13 +72,71 @@ public class BoundingBoxProxy implements Proxy {
             CACHE_EXPIRE_UNIT);
   }
 
+  /**
+   * Builds the key that the response to a box is cached under now: the stamp of the partitions the
+   * box reaches, followed by the box. The key is built before the box is filtered, so a partition
+   * replaced in between can only put a newer response under an older key, which is never looked up
+   * again, and never an older response under the current key.
+   *
+   * @param paramsString string containing the parameters (minLat, minLng, maxLat, maxLng) separated
+   *     by '&'
+   * @return the cache key
+   */
+  private String cacheKey(String paramsString) {
+    Envelope box = null;
+    try {
+      String[] params = paramsString.split("&");
+      box =
+          new Envelope(
+              Double.parseDouble(params[0]),
+              Double.parseDouble(params[2]),
+              Double.parseDouble(params[1]),
+              Double.parseDouble(params[3]));
+    } catch (NumberFormatException e) {
+      // the response is an error that does not depend on the data
+    }
+    // the world box is answered with every feature, including those of partitions without an extent
+    boolean world =
+        box != null
+            && box.minLat() == LAT_LOWER_BOUND
+            && box.maxLat() == LAT_UPPER_BOUND
+            && box.minLng() == LNG_LOWER_BOUND
+            && box.maxLng() == LNG_UPPER_BOUND;
+    List<Partition> routed = box == null ? List.of() : this.partitions.route(world ? null : box);
+    return PartitionedDataset.stamp(routed) + "|" + paramsString;
+  }
+
+  /**
+   * Returns the response to a request that is not cached in memory, from the disk cache if it is
+   * stored there, or by filtering.
+   *
+   * @param cacheKey the stamp of the partitions the box reaches, then '|' and the parameters
+   * @param token the token of the request, checked while filtering
+   * @return ServerResponse containing the filtered FeatureCollection
+   * @throws CancellationException if the request is cancelled while filtering
+   */
+  private ServerResponse loadThroughDisk(String cacheKey, CancellationToken token) {
+    int bar = cacheKey.indexOf('|');
+    String stamp = cacheKey.substring(0, bar);
+    String paramsString = cacheKey.substring(bar + 1);
+    String version = this.partitions.version();
+    if (this.diskCache == null || version == null) {
+      return getResponse(paramsString, token);
+    }
+    return this.diskCache.getOrCompute(
+        version + "#" + stamp + "|" + BOUNDING_BOX_ENDPOINT + "|" + paramsString,
+        () -> getResponse(paramsString, token));
+  }
+
   /**
    * Returns a ServerResponse containing the filtered FeatureCollection.
    *
    * @param paramsString string containing the parameters
+   * @param token the token of the request, checked while filtering
    * @return ServerResponse containing the filtered FeatureCollection
+   * @throws CancellationException if the request is cancelled while filtering
    */
-  private ServerResponse getResponse(String paramsString) {
+  private ServerResponse getResponse(String paramsString, CancellationToken token) {
     try {
       String[] params = paramsString.split("&");
       double minLat = Double.parseDouble(params[0]);
@@ -68,14 +159,15 @@ public class BoundingBoxProxy implements Proxy {
           && minLng == LNG_LOWER_BOUND
           && maxLng == LNG_UPPER_BOUND) {
         Map<String, Object> responseMap = new HashMap<>();
-        responseMap.put(FEATURES, this.data);
+        responseMap.put(
+            FEATURES, new FeatureCollection(this.partitions.type(), this.partitions.all()));
         return new ServerResponse(responseMap);
       } else {
         FeatureFilter filter = new BoundingBoxFilter(minLat, maxLat, minLng, maxLng);
         Set<FeatureCollectionFormat.Feature> filteredFeatures =
-            this.data.filterFeatureCollection(filter);
+            this.partitions.filter(new Envelope(minLat, maxLat, minLng, maxLng), filter, token);
         Map<String, Object> responseMap = new HashMap<>();
-        responseMap.put(FEATURES, new FeatureCollection(this.data.type(), filteredFeatures));
+        responseMap.put(FEATURES, new FeatureCollection(this.partitions.type(), filteredFeatures));
         return new ServerResponse(responseMap);
       }
     } catch (NumberFormatException e) {
@@ -92,15 +184,39 @@ public class BoundingBoxProxy implements Proxy {
    */
   @Override
   public ServerResponse getResponsePercolate(Request request) throws Exception {
-    String paramsString =
-        request.queryParams(MIN_LAT_PARAM)
-            + "&"
-            + request.queryParams(MIN_LNG_PARAM)
-            + "&"
-            + request.queryParams(MAX_LAT_PARAM)
-            + "&"
-            + request.queryParams(MAX_LNG_PARAM);
-    return this.cache.get(paramsString);
+    return getResponsePercolate(request, CancellationToken.NONE);
+  }
+
+  /**
+   * Returns a ServerResponse containing the filtered FeatureCollection, abandoning the filtering if
+   * the request is cancelled. A filtering pass that is abandoned leaves nothing in the cache, but
+   * one that finishes is cached even if the request is cancelled afterwards (e.g. while its
+   * response is being serialized), so panning back to the same box is answered from the cache.
+   *
+   * @param request Request object containing the bounding box coordinates
+   * @param token the token to check for whether the request has been cancelled
+   * @return ServerResponse containing the filtered FeatureCollection
+   * @throws Exception if there is an error in retrieval from the cache
+   * @throws CancellationException if the request is cancelled
+   */
+  @Override
+  public ServerResponse getResponsePercolate(Request request, CancellationToken token)
+      throws Exception {
+    String cacheKey = cacheKey(paramsString(request));
+    while (true) {
+      try {
+        return this.cache.get(cacheKey, () -> loadThroughDisk(cacheKey, token));
+      } catch (ExecutionException | UncheckedExecutionException e) {
+        if (!(e.getCause() instanceof CancellationException cancelled)) {
+          throw e;
+        }
+        // a load of the same box by another, now cancelled, request was in flight; unless this
+        // request was cancelled too, load the box again
+        if (token.isCancelled()) {
+          throw cancelled;
+        }
+      }
+    }
   }
 
   /**
@@ -114,7 +230,46 @@ public class BoundingBoxProxy implements Proxy {
   }
 
   /**
-   * Checks if the response to the request corresponding to paramsString is cached.
+   * Returns a set of the optional parameters, which identify the client session and the request's
+   * position in it.
+   *
+   * @return set of the optional parameters
+   */
+  @Override
+  public Set<String> getOptionalQueryParams() {
+    return BOUNDING_BOX_OPTIONAL_PARAMS;
+  }
+
+  /**
+   * Builds the cache key of a request.
+   *
+   * @param request the request
+   * @return string containing the parameters (minLat, minLng, maxLat, maxLng) separated by '&'
+   */
+  private static String paramsString(Request request) {
+    return request.queryParams(MIN_LAT_PARAM)
+        + "&"
+        + request.queryParams(MIN_LNG_PARAM)
+        + "&"
+        + request.queryParams(MAX_LAT_PARAM)
+        + "&"
+        + request.queryParams(MAX_LNG_PARAM);
+  }
+
+  /**
+   * Checks if the response to a request is cached, without computing it.
+   *
+   * @param request the request to check for
+   * @return true if the response is cached, false otherwise
+   */
+  @Override
+  public boolean isCached(Request request) {
+    return cacheContains(paramsString(request));
+  }
+
+  /**
+   * Checks if the response to the request corresponding to paramsString is cached for the current
+   * partitions.
    *
    * @param paramsString string containing the parameters (minLat, minLng, maxLat, maxLng) separated
    *     by '&' (e.g. "42.0&-71.0&43.0&-70.0")
@@ -122,7 +277,7 @@ public class BoundingBoxProxy implements Proxy {
    */
   @Override
   public boolean cacheContains(String paramsString) {
-    return this.cache.asMap().containsKey(paramsString);
+    return this.cache.asMap().containsKey(cacheKey(paramsString));
   }
 
   /**
@@ -0,0 +1,300 @@
+package edu.brown.cs.student.sprint5.server.proxies;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import edu.brown.cs.student.sprint5.server.datasources.CacheUtils;
+import edu.brown.cs.student.sprint5.server.index.DensityPyramid;
+import edu.brown.cs.student.sprint5.server.index.DensityPyramid.DensityCell;
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.partitions.Partition;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import spark.Request;
+
+/**
+ * Proxy class for counting the features of a FeatureCollection per HOLC grade on a regular grid
+ * over a bounding box, for overview rendering at zoom levels where drawing polygons is wasteful.
+ * Each partition has its own pyramid, built the first time a box reaches it and again only once it
+ * is replaced, and the grids of the partitions a box reaches are added up cell by cell.
+ */
+public class DensityProxy implements Proxy {
+
+  // orders grid cells, given as [row, col], by row and then column
+  private static final Comparator<List<Integer>> CELL_ORDER =
+      Comparator.<List<Integer>>comparingInt(cell -> cell.get(0))
+          .thenComparingInt(cell -> cell.get(1));
+
+  private PartitionedDataset partitions;
+  // partition key -> the pyramid of the partition's latest generation seen
+  private Map<String, PartitionPyramid> pyramids;
+  private LoadingCache<String, ServerResponse> cache;
+
+  /**
+   * Constructor for DensityProxy.
+   *
+   * @param data FeatureCollection to be counted
+   */
+  public DensityProxy(FeatureCollection data) {
+    this(new PartitionedDataset(data));
+  }
+
+  /**
+   * Constructor for DensityProxy over a partitioned dataset, usually shared with other proxies.
+   * Responses are cached under the stamp of the partitions their box reaches, so replacing a
+   * partition only misses the boxes that reach it.
+   *
+   * @param partitions the partitioned dataset to be counted
+   */
+  public DensityProxy(PartitionedDataset partitions) {
+    this.partitions = partitions;
+    this.pyramids = new ConcurrentHashMap<>();
+    this.cache =
+        CacheUtils.generateCache(
+            new CacheLoader<>() {
+              @Override
+              public ServerResponse load(String cacheKey) throws Exception {
+                return getResponse(cacheKey.substring(cacheKey.indexOf('|') + 1));
+              }
+            },
+            CACHE_MAX_SIZE,
+            CACHE_EXPIRE_TIME,
+            CACHE_EXPIRE_UNIT);
+  }
+
+  /**
+   * Returns the pyramid of a partition, building it if the partition has not been seen in its
+   * current generation.
+   *
+   * @param partition the partition
+   * @return the partition's pyramid
+   */
+  private DensityPyramid pyramid(Partition partition) {
+    PartitionPyramid pyramid = this.pyramids.get(partition.key());
+    if (pyramid == null || pyramid.generation() != partition.generation()) {
+      pyramid = new PartitionPyramid(partition.generation(), new DensityPyramid(partition.index()));
+      this.pyramids.put(partition.key(), pyramid);
+    }
+    return pyramid.pyramid();
+  }
+
+  /**
+   * Returns the partitions whose features a grid over a box could count. A pyramid cell is counted
+   * when its center is in the box, and it is never larger than a grid cell, so its features can lie
+   * up to a grid cell outside the box.
+   *
+   * @param box the box to cover
+   * @param cellSize the width and height of a grid cell in degrees
+   * @return the partitions whose extent intersects the box grown by a grid cell on every side
+   */
+  private List<Partition> route(Envelope box, double cellSize) {
+    return this.partitions.route(
+        new Envelope(
+            box.minLat() - cellSize,
+            box.maxLat() + cellSize,
+            box.minLng() - cellSize,
+            box.maxLng() + cellSize));
+  }
+
+  /**
+   * Returns the size of the square cells of a grid over a box, with the resolution applying to the
+   * longer side of the box. Boxes too small for the requested resolution get fewer, larger cells,
+   * as the pyramid cannot count finer ones.
+   *
+   * @param box the box to cover
+   * @param resolution the number of cells along the longer side of the box
+   * @return the width and height of a grid cell in degrees
+   */
+  private static double cellSize(Envelope box, int resolution) {
+    double span = Math.max(box.maxLat() - box.minLat(), box.maxLng() - box.minLng());
+    return Math.max(span / resolution, DensityPyramid.minCellSize());
+  }
+
+  /**
+   * Counts the features per grade in each cell of a grid over a box, adding up the grids of the
+   * partitions the box reaches.
+   *
+   * @param box the box to cover
+   * @param cellSize the width and height of a grid cell in degrees
+   * @return the non-empty grid cells, by row and then column
+   */
+  private List<DensityCell> grid(Envelope box, double cellSize) {
+    List<Partition> routed = route(box, cellSize);
+    if (routed.size() == 1) {
+      return pyramid(routed.get(0)).grid(box, cellSize);
+    }
+    Map<List<Integer>, Map<String, Integer>> merged = new TreeMap<>(CELL_ORDER);
+    for (Partition partition : routed) {
+      for (DensityCell cell : pyramid(partition).grid(box, cellSize)) {
+        Map<String, Integer> counts =
+            merged.computeIfAbsent(List.of(cell.row(), cell.col()), k -> new LinkedHashMap<>());
+        cell.counts().forEach((grade, count) -> counts.merge(grade, count, Integer::sum));
+      }
+    }
+    List<DensityCell> cells = new ArrayList<>();
+    for (Map.Entry<List<Integer>, Map<String, Integer>> cell : merged.entrySet()) {
+      cells.add(new DensityCell(cell.getKey().get(0), cell.getKey().get(1), cell.getValue()));
+    }
+    return cells;
+  }
+
+  /**
+   * Returns a ServerResponse containing the density grid for the requested box.
+   *
+   * @param paramsString string containing the parameters (minLat, minLng, maxLat, maxLng,
+   *     resolution) separated by '&'
+   * @return ServerResponse containing the grid's dimensions and its non-empty cells
+   */
+  private ServerResponse getResponse(String paramsString) {
+    String[] params = paramsString.split("&");
+    double minLat;
+    double minLng;
+    double maxLat;
+    double maxLng;
+    try {
+      minLat = Double.parseDouble(params[0]);
+      minLng = Double.parseDouble(params[1]);
+      maxLat = Double.parseDouble(params[2]);
+      maxLng = Double.parseDouble(params[3]);
+    } catch (NumberFormatException e) {
+      return new ServerResponse(ERROR_BAD_JSON, INVALID_LAT_LNG);
+    }
+    if (minLat < LAT_LOWER_BOUND
+        || maxLat > LAT_UPPER_BOUND
+        || minLng < LNG_LOWER_BOUND
+        || maxLng > LNG_UPPER_BOUND) {
+      return new ServerResponse(ERROR_BAD_REQUEST, COORD_OUT_OF_BOUNDS);
+    }
+    if (minLat > maxLat || minLng > maxLng) {
+      return new ServerResponse(ERROR_BAD_REQUEST, MIN_GREATER_THAN_MAX);
+    }
+
+    int resolution;
+    try {
+      resolution = Integer.parseInt(params[4]);
+    } catch (NumberFormatException e) {
+      return new ServerResponse(ERROR_BAD_JSON, INVALID_RESOLUTION);
+    }
+    if (resolution < 1 || resolution > DENSITY_MAX_RESOLUTION) {
+      return new ServerResponse(ERROR_BAD_REQUEST, INVALID_RESOLUTION);
+    }
+
+    Envelope box = new Envelope(minLat, maxLat, minLng, maxLng);
+    double cellSize = cellSize(box, resolution);
+    int rows = Math.max(1, (int) Math.ceil((maxLat - minLat) / cellSize));
+    int cols = Math.max(1, (int) Math.ceil((maxLng - minLng) / cellSize));
+
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put(CELL_SIZE, cellSize);
+    responseMap.put(ROWS, rows);
+    responseMap.put(COLS, cols);
+    responseMap.put(CELLS, grid(box, cellSize));
+    return new ServerResponse(responseMap);
+  }
+
+  /**
+   * Returns a ServerResponse containing the density grid for the requested box.
+   *
+   * @param request Request object containing the bounding box and resolution
+   * @return ServerResponse containing the grid's dimensions and its non-empty cells
+   * @throws Exception if there is an error in retrieval from the cache
+   */
+  @Override
+  public ServerResponse getResponsePercolate(Request request) throws Exception {
+    return this.cache.get(cacheKey(paramsString(request)));
+  }
+
+  /**
+   * Builds the key that the response to a box is cached under now: the stamp of the partitions its
+   * grid could count, followed by the parameters. The key is built before the cells are counted, so
+   * a partition replaced in between can never put an older response under the current key.
+   *
+   * @param paramsString string containing the parameters (minLat, minLng, maxLat, maxLng,
+   *     resolution) separated by '&'
+   * @return the cache key
+   */
+  private String cacheKey(String paramsString) {
+    List<Partition> routed = List.of();
+    try {
+      String[] params = paramsString.split("&");
+      Envelope box =
+          new Envelope(
+              Double.parseDouble(params[0]),
+              Double.parseDouble(params[2]),
+              Double.parseDouble(params[1]),
+              Double.parseDouble(params[3]));
+      int resolution = Integer.parseInt(params[4]);
+      if (resolution >= 1) {
+        routed = route(box, cellSize(box, resolution));
+      }
+    } catch (NumberFormatException e) {
+      // the response is an error that does not depend on the data
+    }
+    return PartitionedDataset.stamp(routed) + "|" + paramsString;
+  }
+
+  /**
+   * Builds the cache key of a request.
+   *
+   * @param request the request
+   * @return string containing the parameters (minLat, minLng, maxLat, maxLng, resolution) separated
+   *     by '&'
+   */
+  private static String paramsString(Request request) {
+    return request.queryParams(MIN_LAT_PARAM)
+        + "&"
+        + request.queryParams(MIN_LNG_PARAM)
+        + "&"
+        + request.queryParams(MAX_LAT_PARAM)
+        + "&"
+        + request.queryParams(MAX_LNG_PARAM)
+        + "&"
+        + request.queryParams(RESOLUTION_PARAM);
+  }
+
+  /**
+   * Checks if the response to a request is cached, without computing it.
+   *
+   * @param request the request to check for
+   * @return true if the response is cached, false otherwise
+   */
+  @Override
+  public boolean isCached(Request request) {
+    return cacheContains(paramsString(request));
+  }
+
+  /**
+   * Checks if the response to the request corresponding to paramsString is cached for the current
+   * partitions.
+   *
+   * @param paramsString string containing the parameters (minLat, minLng, maxLat, maxLng,
+   *     resolution) separated by '&' (e.g. "24.0&-125.0&50.0&-66.0&128")
+   * @return true if the response is cached, false otherwise
+   */
+  @Override
+  public boolean cacheContains(String paramsString) {
+    return this.cache.asMap().containsKey(cacheKey(paramsString));
+  }
+
+  /**
+   * Returns a set of the known parameters for this proxy.
+   *
+   * @return Set of known parameters
+   */
+  @Override
+  public Set<String> getKnownQueryParams() {
+    return DENSITY_PARAMS;
+  }
+
+  /**
+   * Record for the pyramid of one partition.
+   *
+   * @param generation the generation of the partition counted
+   * @param pyramid the pyramid
+   */
+  private record PartitionPyramid(long generation, DensityPyramid pyramid) {}
+}
@@ -0,0 +1,167 @@
+package edu.brown.cs.student.sprint5.server.proxies;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import edu.brown.cs.student.sprint5.server.datasources.CacheUtils;
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.index.IndexedFeature;
+import edu.brown.cs.student.sprint5.server.partitions.Partition;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.util.*;
+import spark.Request;
+
+/**
+ * Proxy class for finding the features of a FeatureCollection that contain a point, e.g. the
+ * location a user clicked on the map.
+ */
+public class FeatureAtProxy implements Proxy {
+
+  private PartitionedDataset partitions;
+  private LoadingCache<String, ServerResponse> cache;
+
+  /**
+   * Constructor for FeatureAtProxy.
+   *
+   * @param data FeatureCollection to be searched
+   */
+  public FeatureAtProxy(FeatureCollection data) {
+    this(new PartitionedDataset(data));
+  }
+
+  /**
+   * Constructor for FeatureAtProxy over a partitioned dataset, usually shared with other proxies.
+   * Each partition's index is built the first time a point falls within its extent, and responses
+   * are cached under the stamp of the partitions their point reaches, so replacing a partition only
+   * misses the points that reach it.
+   *
+   * @param partitions the partitioned dataset to be searched
+   */
+  public FeatureAtProxy(PartitionedDataset partitions) {
+    this.partitions = partitions;
+    this.cache =
+        CacheUtils.generateCache(
+            new CacheLoader<>() {
+              @Override
+              public ServerResponse load(String cacheKey) throws Exception {
+                return getResponse(cacheKey.substring(cacheKey.indexOf('|') + 1));
+              }
+            },
+            CACHE_MAX_SIZE,
+            CACHE_EXPIRE_TIME,
+            CACHE_EXPIRE_UNIT);
+  }
+
+  /**
+   * Builds the key that the response to a point is cached under now: the stamp of the partitions
+   * the point reaches, followed by the point. The key is built before the point is looked up, so a
+   * partition replaced in between can never put an older response under the current key.
+   *
+   * @param paramsString string containing the parameters (lat, lng) separated by '&'
+   * @return the cache key
+   */
+  private String cacheKey(String paramsString) {
+    List<Partition> routed = List.of();
+    try {
+      String[] params = paramsString.split("&");
+      double lat = Double.parseDouble(params[0]);
+      double lng = Double.parseDouble(params[1]);
+      routed = this.partitions.route(new Envelope(lat, lat, lng, lng));
+    } catch (NumberFormatException e) {
+      // the response is an error that does not depend on the data
+    }
+    return PartitionedDataset.stamp(routed) + "|" + paramsString;
+  }
+
+  /**
+   * Returns a ServerResponse containing the features that contain the requested point.
+   *
+   * @param paramsString string containing the parameters (lat, lng) separated by '&'
+   * @return ServerResponse containing a FeatureCollection of the features at the point
+   */
+  private ServerResponse getResponse(String paramsString) {
+    try {
+      String[] params = paramsString.split("&");
+      double lat = Double.parseDouble(params[0]);
+      double lng = Double.parseDouble(params[1]);
+      if (lat < LAT_LOWER_BOUND
+          || lat > LAT_UPPER_BOUND
+          || lng < LNG_LOWER_BOUND
+          || lng > LNG_UPPER_BOUND) {
+        return new ServerResponse(ERROR_BAD_REQUEST, COORD_OUT_OF_BOUNDS);
+      }
+
+      Set<Feature> hits = new LinkedHashSet<>();
+      for (Partition partition : this.partitions.route(new Envelope(lat, lat, lng, lng))) {
+        for (IndexedFeature item : partition.index().featuresAt(lat, lng)) {
+          hits.add(item.feature());
+        }
+      }
+      Map<String, Object> responseMap = new HashMap<>();
+      responseMap.put(FEATURES, new FeatureCollection(this.partitions.type(), hits));
+      return new ServerResponse(responseMap);
+    } catch (NumberFormatException e) {
+      return new ServerResponse(ERROR_BAD_JSON, INVALID_LAT_LNG);
+    }
+  }
+
+  /**
+   * Returns a ServerResponse containing the features that contain the requested point.
+   *
+   * @param request Request object containing the point's coordinates
+   * @return ServerResponse containing a FeatureCollection of the features at the point
+   * @throws Exception if there is an error in retrieval from the cache
+   */
+  @Override
+  public ServerResponse getResponsePercolate(Request request) throws Exception {
+    return this.cache.get(cacheKey(paramsString(request)));
+  }
+
+  /**
+   * Builds the cache key of a request.
+   *
+   * @param request the request
+   * @return string containing the parameters (lat, lng) separated by '&'
+   */
+  private static String paramsString(Request request) {
+    return request.queryParams(LAT_PARAM) + "&" + request.queryParams(LNG_PARAM);
+  }
+
+  /**
+   * Checks if the response to a request is cached, without computing it.
+   *
+   * @param request the request to check for
+   * @return true if the response is cached, false otherwise
+   */
+  @Override
+  public boolean isCached(Request request) {
+    return cacheContains(paramsString(request));
+  }
+
+  /**
+   * Checks if the response to the request corresponding to paramsString is cached for the current
+   * partitions.
+   *
+   * @param paramsString string containing the parameters (lat, lng) separated by '&' (e.g.
+   *     "41.82&-71.41")
+   * @return true if the response is cached, false otherwise
+   */
+  @Override
+  public boolean cacheContains(String paramsString) {
+    return this.cache.asMap().containsKey(cacheKey(paramsString));
+  }
+
+  /**
+   * Returns a set of the known parameters for this proxy.
+   *
+   * @return Set of known parameters
+   */
+  @Override
+  public Set<String> getKnownQueryParams() {
+    return FEATURE_AT_PARAMS;
+  }
+}
@@ -4,19 +4,41 @@ import static edu.brown.cs.student.sprint5.Constants.*;
 
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import edu.brown.cs.student.sprint5.server.datasources.CacheUtils;
+import edu.brown.cs.student.sprint5.server.diskcache.DiskCache;
 import edu.brown.cs.student.sprint5.server.filters.DescriptionKeywordFilter;
+import edu.brown.cs.student.sprint5.server.index.KeywordIndex;
+import edu.brown.cs.student.sprint5.server.index.KeywordIndex.ScoredFeature;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
 import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat;
 import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
 import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 import spark.Request;
 
-/** Proxy class for keyword filtering the area_description_data field on a FeatureCollection. */
+/**
+ * Proxy class for keyword filtering the area_description_data field on a FeatureCollection. By
+ * default every feature containing the keyword is returned, in no particular order. With
+ * ranked=true, the keyword's terms are instead scored with BM25 and only the best k features are
+ * returned, best first, along with their scores. Ranked responses are cached under the generation
+ * of the index they were computed from, so a search still running when a partition is replaced
+ * cannot leave a stale response behind.
+ */
 public class KeywordSearchProxy implements Proxy {
 
-  private FeatureCollection data;
+  private PartitionedDataset partitions;
+  private DiskCache diskCache;
   private LoadingCache<String, ServerResponse> cache;
+  private LoadingCache<String, ServerResponse> rankedCache;
+  // the generation is incremented whenever a partition is replaced and is part of every ranked
+  // cache key; the index is null until a ranked search of that generation builds it
+  private final AtomicReference<IndexSnapshot> current =
+      new AtomicReference<>(new IndexSnapshot(0, null));
 
   /**
    * Constructor for KeywordSearchProxy.
@@ -24,18 +46,156 @@ public class KeywordSearchProxy implements Proxy {
    * @param data FeatureCollection to be filtered
    */
   public KeywordSearchProxy(FeatureCollection data) {
-    this.data = data;
+    this(new PartitionedDataset(data));
+  }
+
+  /**
+   * Constructor for KeywordSearchProxy over a partitioned dataset, usually shared with other
+   * proxies, backed by the server's disk cache if one is configured. Unranked responses are cached
+   * under the stamp of every partition, and ranked ones under the generation of the index, so
+   * neither is served once a partition is replaced.
+   *
+   * @param partitions the partitioned dataset to be filtered
+   */
+  public KeywordSearchProxy(PartitionedDataset partitions) {
+    this(partitions, DiskCache.shared());
+  }
+
+  /**
+   * Constructor for KeywordSearchProxy over a partitioned dataset, backed by a disk cache.
+   * Responses missing from memory are looked up in the disk cache before filtering, under the
+   * version of the dataset and the stamp of its partitions.
+   *
+   * @param partitions the partitioned dataset to be filtered
+   * @param diskCache the disk cache, or null to cache responses in memory only
+   */
+  public KeywordSearchProxy(PartitionedDataset partitions, DiskCache diskCache) {
+    this.partitions = partitions;
+    this.diskCache = diskCache;
     this.cache =
         CacheUtils.generateCache(
             new CacheLoader<>() {
               @Override
-              public ServerResponse load(String keyword) throws Exception {
-                return getResponse(keyword);
+              public ServerResponse load(String cacheKey) throws Exception {
+                return loadThroughDisk(cacheKey);
+              }
+            },
+            CACHE_MAX_SIZE,
+            CACHE_EXPIRE_TIME,
+            CACHE_EXPIRE_UNIT);
+    this.rankedCache =
+        CacheUtils.generateCache(
+            new CacheLoader<>() {
+              @Override
+              public ServerResponse load(String rankedKey) throws Exception {
+                String[] params = rankedKey.split("&", 3);
+                IndexSnapshot snapshot = snapshot();
+                if (snapshot.generation() != Long.parseLong(params[0])) {
+                  throw new IllegalStateException("stale ranked search key " + rankedKey);
+                }
+                return getRankedResponse(
+                    snapshot.index(),
+                    params[2],
+                    Integer.parseInt(params[1]),
+                    CancellationToken.NONE);
               }
             },
             CACHE_MAX_SIZE,
             CACHE_EXPIRE_TIME,
             CACHE_EXPIRE_UNIT);
+    partitions.onReplace(this::onReplace);
+  }
+
+  /**
+   * Drops the ranked search index and its cached responses once a partition is replaced, and starts
+   * a new generation so that ranked searches still running on the old index are cached under keys
+   * that are never looked up again.
+   */
+  private void onReplace() {
+    this.current.updateAndGet(snapshot -> new IndexSnapshot(snapshot.generation() + 1, null));
+    this.rankedCache.invalidateAll();
+  }
+
+  /**
+   * Builds the key that the unranked response to a keyword is cached under now: the stamp of every
+   * partition, followed by the keyword. The key is built before the features are filtered, so a
+   * partition replaced in between can never put an older response under the current key.
+   *
+   * @param keyword the lower-cased keyword
+   * @return the cache key
+   */
+  private String cacheKey(String keyword) {
+    return PartitionedDataset.stamp(this.partitions.route(null)) + "|" + keyword;
+  }
+
+  /**
+   * Returns the index that ranked searches run on, building it over the current features on first
+   * use, along with the generation it belongs to. The index is built without holding a lock, so
+   * replacing a partition or checking the cache never waits on it. It is only published if no
+   * partition was replaced while it was built; otherwise it is returned under its now stale
+   * generation, whose responses are never looked up again. Ranked searches arriving together before
+   * the first one finishes may each build an index, and all but one are dropped.
+   *
+   * @return the index and its generation
+   */
+  private IndexSnapshot snapshot() {
+    IndexSnapshot seen = this.current.get();
+    if (seen.index() != null) {
+      return seen;
+    }
+    IndexSnapshot built =
+        new IndexSnapshot(
+            seen.generation(),
+            new KeywordIndex(
+                this.partitions.all(),
+                KeywordIndex.parseBoosts(System.getProperty(SEARCH_BOOSTS_PROPERTY)),
+                BM25_K1,
+                BM25_B));
+    if (this.current.compareAndSet(seen, built)) {
+      return built;
+    }
+    IndexSnapshot now = this.current.get();
+    return now.generation() == seen.generation() && now.index() != null ? now : built;
+  }
+
+  /**
+   * Returns the current generation of the ranked search index.
+   *
+   * @return the generation
+   */
+  private long generation() {
+    return this.current.get().generation();
+  }
+
+  /**
+   * Builds the key of a ranked search in the ranked cache.
+   *
+   * @param generation the generation of the index searched
+   * @param k the most features to return
+   * @param keyword the lower-cased keyword
+   * @return the key
+   */
+  private static String rankedKey(long generation, Object k, String keyword) {
+    return generation + "&" + k + "&" + keyword;
+  }
+
+  /**
+   * Returns the response to a keyword that is not cached in memory, from the disk cache if it is
+   * stored there, or by filtering.
+   *
+   * @param cacheKey the stamp of every partition, then '|' and the lower-cased keyword
+   * @return ServerResponse containing the filtered FeatureCollection
+   */
+  private ServerResponse loadThroughDisk(String cacheKey) {
+    int bar = cacheKey.indexOf('|');
+    String stamp = cacheKey.substring(0, bar);
+    String keyword = cacheKey.substring(bar + 1);
+    String version = this.partitions.version();
+    if (this.diskCache == null || version == null) {
+      return getResponse(keyword);
+    }
+    return this.diskCache.getOrCompute(
+        version + "#" + stamp + "|" + KEYWORD_ENDPOINT + "|" + keyword, () -> getResponse(keyword));
   }
 
   /**
@@ -48,37 +208,138 @@ public class KeywordSearchProxy implements Proxy {
     if (keyword.equals("")) return new ServerResponse(ERROR_BAD_REQUEST, NO_KEYWORD);
     DescriptionKeywordFilter filter = new DescriptionKeywordFilter(keyword);
     Set<FeatureCollectionFormat.Feature> filteredFeatures =
-        this.data.filterFeatureCollection(filter);
+        this.partitions.filter(null, filter, CancellationToken.NONE);
     Map<String, Object> responseMap = new HashMap<>();
-    responseMap.put(FEATURES, new FeatureCollection(this.data.type(), filteredFeatures));
+    responseMap.put(FEATURES, new FeatureCollection(this.partitions.type(), filteredFeatures));
     return new ServerResponse(responseMap);
   }
 
   /**
-   * Returns a ServerResponse containing the filtered FeatureCollection.
+   * Returns a ServerResponse containing the features that best match a keyword, best first, and
+   * their scores.
+   *
+   * @param index the index to search
+   * @param keyword the lower-cased keyword
+   * @param k the most features to return
+   * @param token the token of the request, checked while searching
+   * @return ServerResponse containing the ranked FeatureCollection and the scores
+   * @throws CancellationException if the request is cancelled
+   */
+  private ServerResponse getRankedResponse(
+      KeywordIndex index, String keyword, int k, CancellationToken token) {
+    if (keyword.equals("")) return new ServerResponse(ERROR_BAD_REQUEST, NO_KEYWORD);
+    Set<FeatureCollectionFormat.Feature> rankedFeatures = new LinkedHashSet<>();
+    List<Double> scores = new ArrayList<>();
+    for (ScoredFeature result : index.search(keyword, k, token)) {
+      rankedFeatures.add(result.feature());
+      scores.add(result.score());
+    }
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put(FEATURES, new FeatureCollection(this.partitions.type(), rankedFeatures));
+    responseMap.put(SCORES, scores);
+    return new ServerResponse(responseMap);
+  }
+
+  /**
+   * Returns a ServerResponse containing the filtered FeatureCollection, or the ranked one if the
+   * request asks for ranking.
    *
-   * @param request Request object containing the keyword
+   * @param request Request object containing the keyword, and optionally ranked and k
    * @return ServerResponse containing the filtered FeatureCollection
    * @throws Exception if there is an error in retrieval from the cache
    */
   @Override
   public ServerResponse getResponsePercolate(Request request) throws Exception {
+    return getResponsePercolate(request, CancellationToken.NONE);
+  }
+
+  /**
+   * Returns a ServerResponse containing the filtered FeatureCollection, or the ranked one if the
+   * request asks for ranking, abandoning a ranked search if the request is cancelled. An abandoned
+   * search leaves nothing in the cache.
+   *
+   * @param request Request object containing the keyword, and optionally ranked and k
+   * @param token the token to check for whether the request has been cancelled
+   * @return ServerResponse containing the filtered FeatureCollection
+   * @throws Exception if there is an error in retrieval from the cache
+   * @throws CancellationException if the request is cancelled
+   */
+  @Override
+  public ServerResponse getResponsePercolate(Request request, CancellationToken token)
+      throws Exception {
     String keyword = request.queryParams(KEYWORD_PARAM);
     if (keyword == null) {
       return new ServerResponse(ERROR_BAD_REQUEST, NO_KEYWORD);
     }
-    return this.cache.get(keyword.toLowerCase());
+    String ranked = request.queryParams(RANKED_PARAM);
+    if (ranked == null || ranked.equalsIgnoreCase("false")) {
+      return this.cache.get(cacheKey(keyword.toLowerCase()));
+    }
+    if (!ranked.equalsIgnoreCase("true")) {
+      return new ServerResponse(ERROR_BAD_JSON, INVALID_RANKED);
+    }
+    int k;
+    try {
+      String kParam = request.queryParams(K_PARAM);
+      k = kParam == null ? SEARCH_DEFAULT_K : Integer.parseInt(kParam);
+    } catch (NumberFormatException e) {
+      return new ServerResponse(ERROR_BAD_JSON, INVALID_SEARCH_K);
+    }
+    if (k < 1 || k > SEARCH_MAX_K) {
+      return new ServerResponse(ERROR_BAD_REQUEST, INVALID_SEARCH_K);
+    }
+    String lowerKeyword = keyword.toLowerCase();
+    while (true) {
+      IndexSnapshot snapshot = snapshot();
+      try {
+        return this.rankedCache.get(
+            rankedKey(snapshot.generation(), k, lowerKeyword),
+            () -> getRankedResponse(snapshot.index(), lowerKeyword, k, token));
+      } catch (ExecutionException | UncheckedExecutionException e) {
+        if (!(e.getCause() instanceof CancellationException cancelled)) {
+          throw e;
+        }
+        // a search for the same keyword by another, now cancelled, request was in flight; unless
+        // this request was cancelled too, search again
+        if (token.isCancelled()) {
+          throw cancelled;
+        }
+      }
+    }
   }
 
   /**
-   * Checks if the cache contains a response for a certain keyword search
+   * Checks if the response to a request is cached, without computing it.
+   *
+   * @param request the request to check for
+   * @return true if the response is cached, false otherwise
+   */
+  @Override
+  public boolean isCached(Request request) {
+    String keyword = request.queryParams(KEYWORD_PARAM);
+    if (keyword == null) {
+      return false;
+    }
+    if ("true".equalsIgnoreCase(request.queryParams(RANKED_PARAM))) {
+      String k = request.queryParams(K_PARAM);
+      return this.rankedCache
+          .asMap()
+          .containsKey(
+              rankedKey(generation(), k == null ? SEARCH_DEFAULT_K : k, keyword.toLowerCase()));
+    }
+    return cacheContains(keyword);
+  }
+
+  /**
+   * Checks if the cache contains a response for a certain keyword search, for the current
+   * partitions
    *
    * @param keyword the query parameters of the request to check for
    * @return
    */
   @Override
   public boolean cacheContains(String keyword) {
-    return this.cache.asMap().containsKey(keyword.toLowerCase());
+    return this.cache.asMap().containsKey(cacheKey(keyword.toLowerCase()));
   }
 
   /**
@@ -90,4 +351,22 @@ public class KeywordSearchProxy implements Proxy {
   public Set<String> getKnownQueryParams() {
     return KEYWORD_PARAMS;
   }
+
+  /**
+   * Returns a set of the optional parameters for this proxy.
+   *
+   * @return Set of optional parameters
+   */
+  @Override
+  public Set<String> getOptionalQueryParams() {
+    return KEYWORD_OPTIONAL_PARAMS;
+  }
+
+  /**
+   * Record for the ranked search index together with the generation it was built in.
+   *
+   * @param generation the generation of the index
+   * @param index the index, or null if it has not been built yet
+   */
+  private record IndexSnapshot(long generation, KeywordIndex index) {}
 }
@@ -0,0 +1,277 @@
+package edu.brown.cs.student.sprint5.server.proxies;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import edu.brown.cs.student.sprint5.server.datasources.CacheUtils;
+import edu.brown.cs.student.sprint5.server.index.Neighbor;
+import edu.brown.cs.student.sprint5.server.partitions.Partition;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Properties;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.util.*;
+import java.util.function.Predicate;
+import spark.Request;
+
+/**
+ * Proxy class for finding the k features of a FeatureCollection closest to a point, optionally
+ * limited to a maximum distance and to features with matching city, state, or HOLC grade.
+ */
+public class NearestProxy implements Proxy {
+
+  private PartitionedDataset partitions;
+  private LoadingCache<String, ServerResponse> cache;
+
+  /**
+   * Constructor for NearestProxy.
+   *
+   * @param data FeatureCollection to be searched
+   */
+  public NearestProxy(FeatureCollection data) {
+    this(new PartitionedDataset(data));
+  }
+
+  /**
+   * Constructor for NearestProxy over a partitioned dataset, usually shared with other proxies.
+   * Every partition is searched with its own index, and responses are cached under the stamp of
+   * every partition, so none is served once a partition is replaced.
+   *
+   * @param partitions the partitioned dataset to be searched
+   */
+  public NearestProxy(PartitionedDataset partitions) {
+    this.partitions = partitions;
+    this.cache =
+        CacheUtils.generateCache(
+            new CacheLoader<>() {
+              @Override
+              public ServerResponse load(String cacheKey) throws Exception {
+                return getResponse(cacheKey.substring(cacheKey.indexOf('|') + 1));
+              }
+            },
+            CACHE_MAX_SIZE,
+            CACHE_EXPIRE_TIME,
+            CACHE_EXPIRE_UNIT);
+  }
+
+  /**
+   * Returns a ServerResponse containing the nearest features and their distances.
+   *
+   * @param paramsString string containing the parameters (lat, lng, k, maxDistance, city, state,
+   *     grade) separated by '&'. Absent optional parameters are the string "null".
+   * @return ServerResponse containing the nearest features ordered by distance
+   */
+  private ServerResponse getResponse(String paramsString) {
+    String[] params = paramsString.split("&", -1);
+    double lat;
+    double lng;
+    try {
+      lat = Double.parseDouble(params[0]);
+      lng = Double.parseDouble(params[1]);
+    } catch (NumberFormatException e) {
+      return new ServerResponse(ERROR_BAD_JSON, INVALID_LAT_LNG);
+    }
+    if (lat < LAT_LOWER_BOUND
+        || lat > LAT_UPPER_BOUND
+        || lng < LNG_LOWER_BOUND
+        || lng > LNG_UPPER_BOUND) {
+      return new ServerResponse(ERROR_BAD_REQUEST, COORD_OUT_OF_BOUNDS);
+    }
+
+    int k;
+    try {
+      k = Integer.parseInt(params[2]);
+    } catch (NumberFormatException e) {
+      return new ServerResponse(ERROR_BAD_JSON, INVALID_K);
+    }
+    if (k < 1 || k > NEAREST_MAX_K) {
+      return new ServerResponse(ERROR_BAD_REQUEST, INVALID_K);
+    }
+
+    double maxDistance = Double.POSITIVE_INFINITY;
+    if (!params[3].equals("null")) {
+      try {
+        maxDistance = Double.parseDouble(params[3]);
+      } catch (NumberFormatException e) {
+        return new ServerResponse(ERROR_BAD_JSON, INVALID_MAX_DISTANCE);
+      }
+      if (!(maxDistance >= 0)) {
+        return new ServerResponse(ERROR_BAD_REQUEST, INVALID_MAX_DISTANCE);
+      }
+    }
+
+    Predicate<Feature> filter = propertyFilter(params[4], params[5], params[6]);
+    Set<Feature> features = new LinkedHashSet<>();
+    List<Double> distances = new ArrayList<>();
+    for (Neighbor neighbor : nearest(lat, lng, k, maxDistance, filter)) {
+      features.add(neighbor.item().feature());
+      distances.add(neighbor.distanceMeters());
+    }
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put(FEATURES, new FeatureCollection(this.partitions.type(), features));
+    responseMap.put(DISTANCES, distances);
+    return new ServerResponse(responseMap);
+  }
+
+  /**
+   * Finds the k features closest to a point across every partition. Partitions are searched in
+   * order of the distance to their extents, and once k features have been found, the partitions
+   * farther away than the k-th of them are skipped.
+   *
+   * @param lat the latitude of the point
+   * @param lng the longitude of the point
+   * @param k the maximum number of features to return
+   * @param maxDistanceMeters features farther than this are not returned
+   * @param filter only features passing this predicate are returned
+   * @return up to k features ordered by increasing distance
+   */
+  private List<Neighbor> nearest(
+      double lat, double lng, int k, double maxDistanceMeters, Predicate<Feature> filter) {
+    List<Partition> routed = new ArrayList<>();
+    for (Partition partition : this.partitions.route(null)) {
+      if (partition.extent() != null) {
+        routed.add(partition);
+      }
+    }
+    routed.sort(
+        Comparator.comparingDouble(partition -> partition.extent().distanceMeters(lat, lng)));
+    List<Neighbor> found = new ArrayList<>();
+    for (Partition partition : routed) {
+      double bound = found.size() < k ? maxDistanceMeters : found.get(k - 1).distanceMeters();
+      if (partition.extent().distanceMeters(lat, lng) > bound) {
+        break;
+      }
+      found.addAll(partition.index().nearest(lat, lng, k, bound, filter));
+      found.sort(Comparator.comparingDouble(Neighbor::distanceMeters));
+      if (found.size() > k) {
+        found.subList(k, found.size()).clear();
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Builds a predicate that matches features whose properties equal (ignoring case) each of the
+   * given values. A value of "null" places no restriction on its property.
+   *
+   * @param city the city to match
+   * @param state the state to match
+   * @param grade the HOLC grade to match
+   * @return the predicate
+   */
+  private static Predicate<Feature> propertyFilter(String city, String state, String grade) {
+    return feature -> {
+      Properties properties = feature.properties();
+      if (properties == null) {
+        return city.equals("null") && state.equals("null") && grade.equals("null");
+      }
+      return matches(city, properties.city())
+          && matches(state, properties.state())
+          && matches(grade, properties.holc_grade());
+    };
+  }
+
+  /**
+   * Checks if a property value satisfies a requested value.
+   *
+   * @param requested the requested value, or "null" if any value is allowed
+   * @param actual the value of the property
+   * @return true if the property satisfies the request, false otherwise
+   */
+  private static boolean matches(String requested, String actual) {
+    return requested.equals("null") || requested.equalsIgnoreCase(actual);
+  }
+
+  /**
+   * Returns a ServerResponse containing the nearest features and their distances.
+   *
+   * @param request Request object containing the point, k, and any optional restrictions
+   * @return ServerResponse containing the nearest features ordered by distance
+   * @throws Exception if there is an error in retrieval from the cache
+   */
+  @Override
+  public ServerResponse getResponsePercolate(Request request) throws Exception {
+    return this.cache.get(cacheKey(paramsString(request)));
+  }
+
+  /**
+   * Builds the key that the response to a request is cached under now: the stamp of every
+   * partition, followed by the parameters. The key is built before the search, so a partition
+   * replaced in between can never put an older response under the current key.
+   *
+   * @param paramsString string containing the parameters separated by '&'
+   * @return the cache key
+   */
+  private String cacheKey(String paramsString) {
+    return PartitionedDataset.stamp(this.partitions.route(null)) + "|" + paramsString;
+  }
+
+  /**
+   * Builds the cache key of a request.
+   *
+   * @param request the request
+   * @return string containing the parameters (lat, lng, k, maxDistance, city, state, grade)
+   *     separated by '&'
+   */
+  private static String paramsString(Request request) {
+    return request.queryParams(LAT_PARAM)
+        + "&"
+        + request.queryParams(LNG_PARAM)
+        + "&"
+        + request.queryParams(K_PARAM)
+        + "&"
+        + request.queryParams(MAX_DISTANCE_PARAM)
+        + "&"
+        + request.queryParams(CITY_PARAM)
+        + "&"
+        + request.queryParams(STATE_PARAM)
+        + "&"
+        + request.queryParams(GRADE_PARAM);
+  }
+
+  /**
+   * Checks if the response to a request is cached, without computing it.
+   *
+   * @param request the request to check for
+   * @return true if the response is cached, false otherwise
+   */
+  @Override
+  public boolean isCached(Request request) {
+    return cacheContains(paramsString(request));
+  }
+
+  /**
+   * Checks if the response to the request corresponding to paramsString is cached for the current
+   * partitions.
+   *
+   * @param paramsString string containing the parameters (lat, lng, k, maxDistance, city, state,
+   *     grade) separated by '&' (e.g. "41.82&-71.41&5&null&null&null&A")
+   * @return true if the response is cached, false otherwise
+   */
+  @Override
+  public boolean cacheContains(String paramsString) {
+    return this.cache.asMap().containsKey(cacheKey(paramsString));
+  }
+
+  /**
+   * Returns a set of the known parameters for this proxy.
+   *
+   * @return Set of known parameters
+   */
+  @Override
+  public Set<String> getKnownQueryParams() {
+    return NEAREST_PARAMS;
+  }
+
+  /**
+   * Returns a set of the optional parameters for this proxy.
+   *
+   * @return Set of optional parameters
+   */
+  @Override
+  public Set<String> getOptionalQueryParams() {
+    return NEAREST_OPTIONAL_PARAMS;
+  }
+}
@@ -1,6 +1,7 @@
 package edu.brown.cs.student.sprint5.server.proxies;
 
 import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
 import java.util.Set;
 import spark.Request;
 
@@ -16,6 +17,21 @@ public interface Proxy {
    */
   ServerResponse getResponsePercolate(Request request) throws Exception;
 
+  /**
+   * Gets the response for a given request by sending a request to the cache, stopping early if the
+   * request is cancelled. Proxies whose work is too short to be worth cancelling ignore the token.
+   *
+   * @param request The request to get the response for.
+   * @param token The token to check for whether the request has been cancelled.
+   * @return The response for the given request.
+   * @throws Exception If there is an error in retrieving from the cache.
+   * @throws java.util.concurrent.CancellationException If the request was cancelled.
+   */
+  default ServerResponse getResponsePercolate(Request request, CancellationToken token)
+      throws Exception {
+    return getResponsePercolate(request);
+  }
+
   /**
    * Returns true if the cache contains the response for the request dictated by the query
    * parameters passed in params. Used for testing purposes.
@@ -25,10 +41,31 @@ public interface Proxy {
    */
   boolean cacheContains(String paramsString);
 
+  /**
+   * Returns true if the response to a request is cached, so answering it is cheap. Used to admit
+   * cheap requests ahead of expensive ones under load.
+   *
+   * @param request the request to check for
+   * @return true if the cache contains the response to the request, false otherwise
+   */
+  default boolean isCached(Request request) {
+    return false;
+  }
+
   /**
    * Gets the query parameters for the endpoint this proxy is used for.
    *
    * @return The query parameters of the endpoint this proxy is used for.
    */
   Set<String> getKnownQueryParams();
+
+  /**
+   * Gets the query parameters that the endpoint this proxy is used for accepts but does not
+   * require.
+   *
+   * @return The optional query parameters of the endpoint this proxy is used for.
+   */
+  default Set<String> getOptionalQueryParams() {
+    return Set.of();
+  }
 }
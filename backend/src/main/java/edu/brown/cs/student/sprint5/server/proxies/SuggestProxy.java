@@ -0,0 +1,153 @@
+package edu.brown.cs.student.sprint5.server.proxies;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import edu.brown.cs.student.sprint5.server.index.CompletionIndex;
+import edu.brown.cs.student.sprint5.server.index.CompletionIndex.Completion;
+import edu.brown.cs.student.sprint5.server.index.KeywordIndex;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.util.*;
+import spark.Request;
+
+/**
+ * Proxy class for completing the last word of a description keyword as it is typed, with the terms
+ * of the area_description_data fields of a FeatureCollection that the most features contain. The
+ * terms are indexed by the first request, and again whenever a partition is replaced. Once the
+ * index is built, answering a request reads a handful of array entries, so responses are not
+ * cached.
+ */
+public class SuggestProxy implements Proxy {
+
+  private final PartitionedDataset partitions;
+  private volatile CompletionIndex index;
+
+  /**
+   * Constructor for SuggestProxy.
+   *
+   * @param data FeatureCollection whose descriptions should be completed
+   */
+  public SuggestProxy(FeatureCollection data) {
+    this(new PartitionedDataset(data));
+  }
+
+  /**
+   * Constructor for SuggestProxy over a partitioned dataset, usually shared with other proxies.
+   *
+   * @param partitions the partitioned dataset whose descriptions should be completed
+   */
+  public SuggestProxy(PartitionedDataset partitions) {
+    this.partitions = partitions;
+    partitions.onReplace(this::onReplace);
+  }
+
+  /**
+   * Indexes the terms of the current features once a partition is replaced, if they were indexed
+   * before. Otherwise the first request indexes the current features anyway.
+   */
+  private synchronized void onReplace() {
+    if (this.index != null) {
+      this.index = new CompletionIndex(this.partitions.all());
+    }
+  }
+
+  /**
+   * Returns the index of the terms, building it over the current features on first use. Concurrent
+   * first requests wait for a single build.
+   *
+   * @return the index
+   */
+  private CompletionIndex index() {
+    CompletionIndex index = this.index;
+    if (index == null) {
+      synchronized (this) {
+        if (this.index == null) {
+          this.index = new CompletionIndex(this.partitions.all());
+        }
+        index = this.index;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns a ServerResponse containing the most frequent completions of the last word of the
+   * prefix, and the number of features containing each.
+   *
+   * @param request Request object containing the prefix, and optionally k
+   * @return ServerResponse containing the completions and their frequencies
+   */
+  @Override
+  public ServerResponse getResponsePercolate(Request request) {
+    List<String> words = KeywordIndex.tokenize(request.queryParams(PREFIX_PARAM));
+    if (words.isEmpty()) {
+      return new ServerResponse(ERROR_BAD_REQUEST, NO_PREFIX);
+    }
+    int k;
+    try {
+      String kParam = request.queryParams(K_PARAM);
+      k = kParam == null ? SUGGEST_DEFAULT_K : Integer.parseInt(kParam);
+    } catch (NumberFormatException e) {
+      return new ServerResponse(ERROR_BAD_JSON, INVALID_SUGGEST_K);
+    }
+    if (k < 1 || k > SUGGEST_MAX_K) {
+      return new ServerResponse(ERROR_BAD_REQUEST, INVALID_SUGGEST_K);
+    }
+
+    List<String> suggestions = new ArrayList<>();
+    List<Integer> frequencies = new ArrayList<>();
+    for (Completion completion : index().complete(words.get(words.size() - 1), k)) {
+      suggestions.add(completion.term());
+      frequencies.add(completion.frequency());
+    }
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put(SUGGESTIONS, suggestions);
+    responseMap.put(FREQUENCIES, frequencies);
+    return new ServerResponse(responseMap);
+  }
+
+  /**
+   * Reports a request as cached once the index is built, since it is then answered in microseconds
+   * and should be admitted ahead of expensive requests under load. The request that builds the
+   * index is not cheap, so it is admitted like any other expensive request.
+   *
+   * @param request the request to check for
+   * @return true if the index is built, false otherwise
+   */
+  @Override
+  public boolean isCached(Request request) {
+    return this.index != null;
+  }
+
+  /**
+   * Responses are not cached, so no request's response is in the cache.
+   *
+   * @param paramsString the query parameters of the request to check for
+   * @return false
+   */
+  @Override
+  public boolean cacheContains(String paramsString) {
+    return false;
+  }
+
+  /**
+   * Returns a set of the known parameters for this proxy.
+   *
+   * @return Set of known parameters
+   */
+  @Override
+  public Set<String> getKnownQueryParams() {
+    return SUGGEST_PARAMS;
+  }
+
+  /**
+   * Returns a set of the optional parameters for this proxy.
+   *
+   * @return Set of optional parameters
+   */
+  @Override
+  public Set<String> getOptionalQueryParams() {
+    return SUGGEST_OPTIONAL_PARAMS;
+  }
+}
@@ -0,0 +1,220 @@
+package edu.brown.cs.student.sprint5.server.proxies;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import edu.brown.cs.student.sprint5.server.datasources.CacheUtils;
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.partitions.Partition;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.util.*;
+import spark.Request;
+
+/**
+ * Proxy class for the change in a bounding box query's answer when the viewport moves. A client
+ * that holds the answer for its previous box gets only the features that entered the new box, and
+ * the ids of those that left it, instead of every feature of the new box. Both are found with index
+ * lookups on the parts of each box that the other does not cover, so the work is proportional to
+ * what changed rather than to the size of the viewport. Features are in a box by the same rule as
+ * in the bounding box endpoint, so a client applying the delta ends up with exactly the features
+ * that endpoint would return for the new box, except for features without properties. Those have no
+ * id to report when they leave, so they are left out of deltas in both directions.
+ */
+public class ViewportDeltaProxy implements Proxy {
+
+  private PartitionedDataset partitions;
+  private LoadingCache<String, ServerResponse> cache;
+
+  /**
+   * Constructor for ViewportDeltaProxy.
+   *
+   * @param data FeatureCollection to be filtered
+   */
+  public ViewportDeltaProxy(FeatureCollection data) {
+    this(new PartitionedDataset(data));
+  }
+
+  /**
+   * Constructor for ViewportDeltaProxy over a partitioned dataset, usually shared with other
+   * proxies. Responses are cached under the stamp of the partitions that either box reaches, so
+   * replacing a partition only misses the moves that reach it.
+   *
+   * @param partitions the partitioned dataset to be filtered
+   */
+  public ViewportDeltaProxy(PartitionedDataset partitions) {
+    this.partitions = partitions;
+    this.cache =
+        CacheUtils.generateCache(
+            new CacheLoader<>() {
+              @Override
+              public ServerResponse load(String cacheKey) throws Exception {
+                return getResponse(cacheKey.substring(cacheKey.indexOf('|') + 1));
+              }
+            },
+            CACHE_MAX_SIZE,
+            CACHE_EXPIRE_TIME,
+            CACHE_EXPIRE_UNIT);
+  }
+
+  /**
+   * Builds the key that the response to a move is cached under now: the stamp of the partitions
+   * that the envelope around both boxes reaches, followed by the boxes. The key is built before the
+   * delta is computed, so a partition replaced in between can never put an older response under the
+   * current key.
+   *
+   * @param paramsString string containing the parameters (prevMinLat, prevMinLng, prevMaxLat,
+   *     prevMaxLng, minLat, minLng, maxLat, maxLng) separated by '&'
+   * @return the cache key
+   */
+  private String cacheKey(String paramsString) {
+    List<Partition> routed = List.of();
+    try {
+      String[] params = paramsString.split("&");
+      double[] values = new double[8];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = Double.parseDouble(params[i]);
+      }
+      routed =
+          this.partitions.route(
+              new Envelope(values[0], values[2], values[1], values[3])
+                  .union(new Envelope(values[4], values[6], values[5], values[7])));
+    } catch (NumberFormatException e) {
+      // the response is an error that does not depend on the data
+    }
+    return PartitionedDataset.stamp(routed) + "|" + paramsString;
+  }
+
+  /**
+   * Returns a ServerResponse containing the features that entered the viewport and the ids of those
+   * that left it.
+   *
+   * @param paramsString string containing the parameters (prevMinLat, prevMinLng, prevMaxLat,
+   *     prevMaxLng, minLat, minLng, maxLat, maxLng) separated by '&'
+   * @return ServerResponse containing a FeatureCollection of the entering features and a list of
+   *     the neighborhood ids of the leaving ones
+   */
+  private ServerResponse getResponse(String paramsString) {
+    String[] params = paramsString.split("&");
+    double[] values = new double[8];
+    try {
+      for (int i = 0; i < values.length; i++) {
+        values[i] = Double.parseDouble(params[i]);
+      }
+    } catch (NumberFormatException e) {
+      return new ServerResponse(ERROR_BAD_JSON, INVALID_LAT_LNG);
+    }
+    Envelope previous = new Envelope(values[0], values[2], values[1], values[3]);
+    Envelope next = new Envelope(values[4], values[6], values[5], values[7]);
+    for (Envelope box : List.of(previous, next)) {
+      if (box.minLat() < LAT_LOWER_BOUND
+          || box.maxLat() > LAT_UPPER_BOUND
+          || box.minLng() < LNG_LOWER_BOUND
+          || box.maxLng() > LNG_UPPER_BOUND) {
+        return new ServerResponse(ERROR_BAD_REQUEST, COORD_OUT_OF_BOUNDS);
+      }
+      if (box.minLat() > box.maxLat() || box.minLng() > box.maxLng()) {
+        return new ServerResponse(ERROR_BAD_REQUEST, MIN_GREATER_THAN_MAX);
+      }
+    }
+
+    // a feature without properties has no id to report once it leaves, so it is never sent
+    List<Integer> left = new ArrayList<>();
+    for (Feature feature : this.partitions.boxDifference(previous, next)) {
+      if (feature.properties() != null) {
+        left.add(feature.properties().neighborhood_id());
+      }
+    }
+    Set<Feature> entered = this.partitions.boxDifference(next, previous);
+    entered.removeIf(feature -> feature.properties() == null);
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put(ENTERED, new FeatureCollection(this.partitions.type(), entered));
+    responseMap.put(LEFT, left);
+    return new ServerResponse(responseMap);
+  }
+
+  /**
+   * Returns a ServerResponse containing the features that entered the viewport and the ids of those
+   * that left it.
+   *
+   * @param request Request object containing the previous and the new bounding box
+   * @return ServerResponse containing the entering features and the ids of the leaving ones
+   * @throws Exception if there is an error in retrieval from the cache
+   */
+  @Override
+  public ServerResponse getResponsePercolate(Request request) throws Exception {
+    return this.cache.get(cacheKey(paramsString(request)));
+  }
+
+  /**
+   * Builds the cache key of a request.
+   *
+   * @param request the request
+   * @return string containing the parameters (prevMinLat, prevMinLng, prevMaxLat, prevMaxLng,
+   *     minLat, minLng, maxLat, maxLng) separated by '&'
+   */
+  private static String paramsString(Request request) {
+    StringJoiner joiner = new StringJoiner("&");
+    for (String param :
+        List.of(
+            PREV_MIN_LAT_PARAM,
+            PREV_MIN_LNG_PARAM,
+            PREV_MAX_LAT_PARAM,
+            PREV_MAX_LNG_PARAM,
+            MIN_LAT_PARAM,
+            MIN_LNG_PARAM,
+            MAX_LAT_PARAM,
+            MAX_LNG_PARAM)) {
+      joiner.add(request.queryParams(param));
+    }
+    return joiner.toString();
+  }
+
+  /**
+   * Checks if the response to a request is cached, without computing it.
+   *
+   * @param request the request to check for
+   * @return true if the response is cached, false otherwise
+   */
+  @Override
+  public boolean isCached(Request request) {
+    return cacheContains(paramsString(request));
+  }
+
+  /**
+   * Checks if the response to the request corresponding to paramsString is cached for the current
+   * partitions.
+   *
+   * @param paramsString string containing the parameters (prevMinLat, prevMinLng, prevMaxLat,
+   *     prevMaxLng, minLat, minLng, maxLat, maxLng) separated by '&'
+   * @return true if the response is cached, false otherwise
+   */
+  @Override
+  public boolean cacheContains(String paramsString) {
+    return this.cache.asMap().containsKey(cacheKey(paramsString));
+  }
+
+  /**
+   * Returns a set of the known parameters for this proxy.
+   *
+   * @return Set of known parameters
+   */
+  @Override
+  public Set<String> getKnownQueryParams() {
+    return VIEWPORT_DELTA_PARAMS;
+  }
+
+  /**
+   * Returns a set of the optional parameters, which identify the client session and the request's
+   * position in it.
+   *
+   * @return set of the optional parameters
+   */
+  @Override
+  public Set<String> getOptionalQueryParams() {
+    return BOUNDING_BOX_OPTIONAL_PARAMS;
+  }
+}
@@ -0,0 +1,217 @@
+package edu.brown.cs.student.sprint5.server.responseformatting;
+
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.*;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import okio.Buffer;
+
+/**
+ * Class that decodes responses in the compact binary format written by {@link BinaryEncoder}, for
+ * Java clients of the server and for checking the format. Coordinates come back rounded to the
+ * precision the response was encoded with.
+ */
+public final class BinaryDecoder {
+
+  private BinaryDecoder() {}
+
+  /**
+   * Decodes a response.
+   *
+   * @param bytes the encoded response
+   * @return the response's JSON without its FeatureCollection, and the FeatureCollection
+   * @throws IOException if the bytes are not a complete response in a known version of the format
+   */
+  public static BinaryResponse decode(byte[] bytes) throws IOException {
+    Buffer in = new Buffer().write(bytes);
+    if (in.size() < BinaryEncoder.MAGIC.length
+        || !Arrays.equals(in.readByteArray(BinaryEncoder.MAGIC.length), BinaryEncoder.MAGIC)) {
+      throw new IOException("not a binary feature response");
+    }
+    double scale = BinaryEncoder.pow10((int) readVarint(in));
+    String envelope = readString(in);
+    FeatureCollection collection = in.readByte() == 0 ? null : readCollection(in, scale);
+    if (!in.exhausted()) {
+      throw new IOException("trailing bytes after binary feature response");
+    }
+    return new BinaryResponse(envelope, collection);
+  }
+
+  /**
+   * Reads a FeatureCollection.
+   *
+   * @param in the bytes to read from
+   * @param scale the factor coordinates were multiplied by before rounding
+   * @return the collection
+   * @throws IOException if the bytes end early
+   */
+  private static FeatureCollection readCollection(Buffer in, double scale) throws IOException {
+    String[] strings = new String[(int) readVarint(in)];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = readString(in);
+    }
+    String type = readRef(in, strings);
+    long count = readVarint(in);
+    if (count == 0) {
+      return new FeatureCollection(type, null);
+    }
+    Set<Feature> features = new LinkedHashSet<>();
+    for (long i = 1; i < count; i++) {
+      features.add(readFeature(in, strings, scale));
+    }
+    return new FeatureCollection(type, features);
+  }
+
+  /**
+   * Reads one feature.
+   *
+   * @param in the bytes to read from
+   * @param strings the string table
+   * @param scale the factor coordinates were multiplied by before rounding
+   * @return the feature, possibly null
+   * @throws IOException if the bytes end early
+   */
+  private static Feature readFeature(Buffer in, String[] strings, double scale) throws IOException {
+    if (in.readByte() == 0) {
+      return null;
+    }
+    String type = readRef(in, strings);
+
+    Properties properties = null;
+    if (in.readByte() != 0) {
+      String city = readRef(in, strings);
+      String state = readRef(in, strings);
+      String name = readRef(in, strings);
+      String holcId = readRef(in, strings);
+      String holcGrade = readRef(in, strings);
+      int neighborhoodId = (int) readSignedVarint(in);
+      long descriptionCount = readVarint(in);
+      Map<String, String> descriptions = null;
+      if (descriptionCount > 0) {
+        descriptions = new LinkedHashMap<>();
+        for (long i = 1; i < descriptionCount; i++) {
+          descriptions.put(readRef(in, strings), readRef(in, strings));
+        }
+      }
+      properties =
+          new Properties(city, state, name, holcId, holcGrade, neighborhoodId, descriptions);
+    }
+
+    Geometry geometry = null;
+    if (in.readByte() != 0) {
+      String geometryType = readRef(in, strings);
+      geometry = new Geometry(readCoordinates(in, scale), geometryType);
+    }
+    return new Feature(type, geometry, properties);
+  }
+
+  /**
+   * Reads the coordinates of a geometry, undoing the differences between consecutive positions.
+   *
+   * @param in the bytes to read from
+   * @param scale the factor coordinates were multiplied by before rounding
+   * @return the coordinates, possibly null
+   * @throws IOException if the bytes end early
+   */
+  private static double[][][][] readCoordinates(Buffer in, double scale) throws IOException {
+    long dimensionsPlusOne = readVarint(in);
+    if (dimensionsPlusOne == 0) {
+      return null;
+    }
+    int dimensions = (int) dimensionsPlusOne - 1;
+    long[] previous = new long[dimensions];
+    double[][][][] coordinates = new double[(int) readVarint(in)][][][];
+    for (int p = 0; p < coordinates.length; p++) {
+      double[][][] polygon = new double[(int) readVarint(in)][][];
+      for (int r = 0; r < polygon.length; r++) {
+        double[][] ring = new double[(int) readVarint(in)][];
+        for (int i = 0; i < ring.length; i++) {
+          double[] position = new double[dimensions];
+          for (int d = 0; d < dimensions; d++) {
+            previous[d] += readSignedVarint(in);
+            position[d] = previous[d] / scale;
+          }
+          ring[i] = position;
+        }
+        polygon[r] = ring;
+      }
+      coordinates[p] = polygon;
+    }
+    return coordinates;
+  }
+
+  /**
+   * Reads a reference to a string of the table.
+   *
+   * @param in the bytes to read from
+   * @param strings the table
+   * @return the string, or null for a null reference
+   * @throws IOException if the bytes end early or the reference is outside the table
+   */
+  private static String readRef(Buffer in, String[] strings) throws IOException {
+    long ref = readVarint(in);
+    if (ref > strings.length) {
+      throw new IOException("string reference outside the string table");
+    }
+    return ref == 0 ? null : strings[(int) ref - 1];
+  }
+
+  /**
+   * Reads a string written as its length in UTF-8 bytes followed by the bytes.
+   *
+   * @param in the bytes to read from
+   * @return the string
+   * @throws IOException if the bytes end early
+   */
+  private static String readString(Buffer in) throws IOException {
+    long length = readVarint(in);
+    if (length > in.size()) {
+      throw new EOFException();
+    }
+    return in.readString(length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads an unsigned LEB128 varint.
+   *
+   * @param in the bytes to read from
+   * @return the integer
+   * @throws IOException if the bytes end early
+   */
+  private static long readVarint(Buffer in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("varint is too long");
+  }
+
+  /**
+   * Reads a zigzag-encoded varint.
+   *
+   * @param in the bytes to read from
+   * @return the integer
+   * @throws IOException if the bytes end early
+   */
+  private static long readSignedVarint(Buffer in) throws IOException {
+    long zigzag = readVarint(in);
+    return (zigzag >>> 1) ^ -(zigzag & 1);
+  }
+
+  /**
+   * Record for a decoded response.
+   *
+   * @param envelopeJson the response as JSON, without the FeatureCollection under its features key
+   * @param features the FeatureCollection of the response, or null if it has none
+   */
+  public record BinaryResponse(String envelopeJson, FeatureCollection features) {}
+}
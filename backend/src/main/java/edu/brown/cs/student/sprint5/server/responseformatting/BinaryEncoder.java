@@ -0,0 +1,343 @@
+package edu.brown.cs.student.sprint5.server.responseformatting;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.*;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import okio.Buffer;
+
+/**
+ * Class that encodes responses in the compact binary format that clients can ask for instead of
+ * JSON. A response is encoded as:
+ *
+ * <ol>
+ *   <li>the magic bytes "FCB" and a format version byte;
+ *   <li>the power of ten that coordinates are scaled by before being rounded to integers;
+ *   <li>the response without its FeatureCollection, as length-prefixed JSON;
+ *   <li>the FeatureCollection, if the response has one: a table of every string its features use,
+ *       then the features, whose strings are indexes into the table.
+ * </ol>
+ *
+ * <p>Integers are unsigned LEB128 varints, and signed ones are zigzag-encoded first. Each ring's
+ * coordinates are stored as differences from the previous position, so the small steps between the
+ * vertices of a polygon take a byte or two each rather than the dozen or more characters of a JSON
+ * number. A string reference is 0 for null and the string's index in the table plus one otherwise.
+ *
+ * <p>Encoding a geometry is most of the cost, so each geometry's bytes are kept once encoded and
+ * copied into every later response that includes it. The blocks are held weakly, by geometry
+ * identity, so they go away with the layer they belong to.
+ */
+public final class BinaryEncoder {
+
+  /** The bytes every binary response starts with. */
+  static final byte[] MAGIC = {'F', 'C', 'B', 1};
+
+  private static final long SCALE = pow10(BINARY_COORDINATE_DIGITS);
+  private static final Cache<Geometry, byte[]> GEOMETRY_BLOCKS =
+      CacheBuilder.newBuilder()
+          .weakKeys()
+          .maximumWeight(BINARY_BLOCK_CACHE_MB * 1024 * 1024)
+          .<Geometry, byte[]>weigher((geometry, block) -> block.length)
+          .build();
+
+  private BinaryEncoder() {}
+
+  /**
+   * Encodes a response.
+   *
+   * @param response the response to encode
+   * @param token the token of the request the response answers, checked between chunks of features
+   * @return the encoded response
+   * @throws java.util.concurrent.CancellationException if the request is cancelled
+   */
+  public static byte[] encode(ServerResponse response, CancellationToken token) {
+    FeatureCollection collection = null;
+    Map<String, Object> rest = response.data();
+    if (response.data() != null && response.data().containsKey(FEATURES)) {
+      Object features = response.data().get(FEATURES);
+      collection =
+          features instanceof RawJson raw
+              ? raw.toFeatureCollection()
+              : (FeatureCollection) features;
+      rest = new LinkedHashMap<>(response.data());
+      rest.remove(FEATURES);
+    }
+
+    Buffer out = new Buffer();
+    out.write(MAGIC);
+    writeVarint(out, BINARY_COORDINATE_DIGITS);
+    byte[] envelope =
+        new ServerResponse(response.responseCode(), response.errorSpecs(), rest, response.params())
+            .serialize()
+            .getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, envelope.length);
+    out.write(envelope);
+    out.writeByte(collection == null ? 0 : 1);
+    if (collection != null) {
+      writeCollection(out, collection, token);
+    }
+    return out.readByteArray();
+  }
+
+  /**
+   * Writes a FeatureCollection: its string table, its type, and its features.
+   *
+   * @param out the buffer to write to
+   * @param collection the collection
+   * @param token the token of the request the collection answers
+   */
+  private static void writeCollection(
+      Buffer out, FeatureCollection collection, CancellationToken token) {
+    Map<String, Integer> strings = new LinkedHashMap<>();
+    intern(strings, collection.type());
+    if (collection.features() != null) {
+      for (Feature feature : collection.features()) {
+        if (feature != null) {
+          internFeature(strings, feature);
+        }
+      }
+    }
+    writeVarint(out, strings.size());
+    for (String string : strings.keySet()) {
+      writeString(out, string);
+    }
+
+    writeRef(out, strings, collection.type());
+    if (collection.features() == null) {
+      writeVarint(out, 0);
+      return;
+    }
+    writeVarint(out, collection.features().size() + 1L);
+    int written = 0;
+    for (Feature feature : collection.features()) {
+      if (written++ % CANCELLATION_CHECK_INTERVAL == 0) {
+        token.throwIfCancelled();
+      }
+      writeFeature(out, strings, feature);
+    }
+  }
+
+  /**
+   * Adds every string of a feature to a string table.
+   *
+   * @param strings the table
+   * @param feature the feature
+   */
+  private static void internFeature(Map<String, Integer> strings, Feature feature) {
+    intern(strings, feature.type());
+    if (feature.geometry() != null) {
+      intern(strings, feature.geometry().type());
+    }
+    Properties properties = feature.properties();
+    if (properties != null) {
+      intern(strings, properties.city());
+      intern(strings, properties.state());
+      intern(strings, properties.name());
+      intern(strings, properties.holc_id());
+      intern(strings, properties.holc_grade());
+      if (properties.area_description_data() != null) {
+        for (Map.Entry<String, String> entry : properties.area_description_data().entrySet()) {
+          intern(strings, entry.getKey());
+          intern(strings, entry.getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds a string to a string table if it is not in it already.
+   *
+   * @param strings the table
+   * @param string the string, possibly null
+   */
+  private static void intern(Map<String, Integer> strings, String string) {
+    if (string != null) {
+      strings.putIfAbsent(string, strings.size());
+    }
+  }
+
+  /**
+   * Writes one feature.
+   *
+   * @param out the buffer to write to
+   * @param strings the string table
+   * @param feature the feature, possibly null
+   */
+  private static void writeFeature(Buffer out, Map<String, Integer> strings, Feature feature) {
+    if (feature == null) {
+      out.writeByte(0);
+      return;
+    }
+    out.writeByte(1);
+    writeRef(out, strings, feature.type());
+
+    Properties properties = feature.properties();
+    if (properties == null) {
+      out.writeByte(0);
+    } else {
+      out.writeByte(1);
+      writeRef(out, strings, properties.city());
+      writeRef(out, strings, properties.state());
+      writeRef(out, strings, properties.name());
+      writeRef(out, strings, properties.holc_id());
+      writeRef(out, strings, properties.holc_grade());
+      writeSignedVarint(out, properties.neighborhood_id());
+      Map<String, String> descriptions = properties.area_description_data();
+      if (descriptions == null) {
+        writeVarint(out, 0);
+      } else {
+        writeVarint(out, descriptions.size() + 1L);
+        for (Map.Entry<String, String> entry : descriptions.entrySet()) {
+          writeRef(out, strings, entry.getKey());
+          writeRef(out, strings, entry.getValue());
+        }
+      }
+    }
+
+    Geometry geometry = feature.geometry();
+    if (geometry == null) {
+      out.writeByte(0);
+    } else {
+      out.writeByte(1);
+      writeRef(out, strings, geometry.type());
+      out.write(geometryBlock(geometry));
+    }
+  }
+
+  /**
+   * Returns the encoded coordinates of a geometry, encoding them on first use.
+   *
+   * @param geometry the geometry
+   * @return the encoded coordinates
+   */
+  static byte[] geometryBlock(Geometry geometry) {
+    byte[] block = GEOMETRY_BLOCKS.getIfPresent(geometry);
+    if (block == null) {
+      block = encodeCoordinates(geometry.coordinates());
+      GEOMETRY_BLOCKS.put(geometry, block);
+    }
+    return block;
+  }
+
+  /**
+   * Encodes the coordinates of a geometry: the number of values per position, then the number of
+   * polygons, and for each polygon its rings, each as a count of positions followed by the scaled
+   * differences between consecutive positions. The first position of the geometry is a difference
+   * from zero.
+   *
+   * @param coordinates the coordinates, possibly null
+   * @return the encoded coordinates
+   * @throws IllegalArgumentException if the positions do not all have the same number of values
+   */
+  private static byte[] encodeCoordinates(double[][][][] coordinates) {
+    Buffer out = new Buffer();
+    if (coordinates == null) {
+      writeVarint(out, 0);
+      return out.readByteArray();
+    }
+    int dimensions = dimensions(coordinates);
+    writeVarint(out, dimensions + 1L);
+    writeVarint(out, coordinates.length);
+    long[] previous = new long[dimensions];
+    for (double[][][] polygon : coordinates) {
+      writeVarint(out, polygon.length);
+      for (double[][] ring : polygon) {
+        writeVarint(out, ring.length);
+        for (double[] position : ring) {
+          if (position.length != dimensions) {
+            throw new IllegalArgumentException("positions of a geometry differ in dimensions");
+          }
+          for (int d = 0; d < dimensions; d++) {
+            long scaled = Math.round(position[d] * SCALE);
+            writeSignedVarint(out, scaled - previous[d]);
+            previous[d] = scaled;
+          }
+        }
+      }
+    }
+    return out.readByteArray();
+  }
+
+  /**
+   * Returns the number of values in the first position of a geometry.
+   *
+   * @param coordinates the coordinates
+   * @return the number of values per position, or 0 if the geometry has no positions
+   */
+  private static int dimensions(double[][][][] coordinates) {
+    for (double[][][] polygon : coordinates) {
+      for (double[][] ring : polygon) {
+        if (ring.length > 0) {
+          return ring[0].length;
+        }
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Writes a reference to a string of the table.
+   *
+   * @param out the buffer to write to
+   * @param strings the table
+   * @param string the string, possibly null
+   */
+  private static void writeRef(Buffer out, Map<String, Integer> strings, String string) {
+    writeVarint(out, string == null ? 0 : strings.get(string) + 1L);
+  }
+
+  /**
+   * Writes a string as its length in UTF-8 bytes followed by the bytes.
+   *
+   * @param out the buffer to write to
+   * @param string the string
+   */
+  private static void writeString(Buffer out, String string) {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Writes a non-negative integer as an unsigned LEB128 varint.
+   *
+   * @param out the buffer to write to
+   * @param value the integer
+   */
+  static void writeVarint(Buffer out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  /**
+   * Writes an integer as a zigzag-encoded varint, so that small negative numbers stay small.
+   *
+   * @param out the buffer to write to
+   * @param value the integer
+   */
+  static void writeSignedVarint(Buffer out, long value) {
+    writeVarint(out, (value << 1) ^ (value >> 63));
+  }
+
+  /**
+   * Returns a power of ten.
+   *
+   * @param exponent the exponent
+   * @return 10 to the exponent
+   */
+  static long pow10(int exponent) {
+    long result = 1;
+    for (int i = 0; i < exponent; i++) {
+      result *= 10;
+    }
+    return result;
+  }
+}
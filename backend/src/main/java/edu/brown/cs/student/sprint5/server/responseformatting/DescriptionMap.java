@@ -0,0 +1,132 @@
+package edu.brown.cs.student.sprint5.server.responseformatting;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable map holding a feature's area_description_data as an array of keys, usually shared with
+ * every feature whose descriptions have the same fields, and an array of values in the same order.
+ * Descriptions have a handful of fields, so lookups scan the keys rather than hashing. Iteration
+ * follows the order of the keys, like the LinkedHashMap the descriptions used to be read into.
+ */
+public final class DescriptionMap extends AbstractMap<String, String> {
+
+  private final String[] keys;
+  private final String[] values;
+
+  /**
+   * Constructor for DescriptionMap.
+   *
+   * @param keys the distinct keys; the array is kept, not copied, and must not be modified
+   * @param values the value of each key, in the same order
+   * @throws IllegalArgumentException if there are not as many values as keys
+   */
+  public DescriptionMap(String[] keys, String[] values) {
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException(keys.length + " keys but " + values.length + " values");
+    }
+    this.keys = keys;
+    this.values = values;
+  }
+
+  /**
+   * Returns the number of description fields.
+   *
+   * @return the number of keys
+   */
+  @Override
+  public int size() {
+    return this.keys.length;
+  }
+
+  /**
+   * Returns the value of a description field.
+   *
+   * @param key the field's key
+   * @return the value, or null if there is no such field
+   */
+  @Override
+  public String get(Object key) {
+    int index = indexOf(key);
+    return index < 0 ? null : this.values[index];
+  }
+
+  /**
+   * Checks if there is a description field with a key.
+   *
+   * @param key the key
+   * @return true if the field exists, false otherwise
+   */
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  /**
+   * Returns the values of the description fields, without copying them.
+   *
+   * @return an unmodifiable view of the values, in key order
+   */
+  @Override
+  public Collection<String> values() {
+    return Collections.unmodifiableList(Arrays.asList(this.values));
+  }
+
+  /**
+   * Returns the description fields as entries, in key order.
+   *
+   * @return an unmodifiable view of the fields
+   */
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public int size() {
+        return DescriptionMap.this.keys.length;
+      }
+
+      @Override
+      public Iterator<Entry<String, String>> iterator() {
+        return new Iterator<>() {
+          private int next = 0;
+
+          @Override
+          public boolean hasNext() {
+            return this.next < DescriptionMap.this.keys.length;
+          }
+
+          @Override
+          public Entry<String, String> next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            int index = this.next++;
+            return new SimpleImmutableEntry<>(
+                DescriptionMap.this.keys[index], DescriptionMap.this.values[index]);
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Finds the position of a key. Interned keys usually match by reference before equals is tried.
+   *
+   * @param key the key
+   * @return its index in the key array, or -1 if it is not a key of this map
+   */
+  private int indexOf(Object key) {
+    for (int i = 0; i < this.keys.length; i++) {
+      if (this.keys[i] == key || this.keys[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
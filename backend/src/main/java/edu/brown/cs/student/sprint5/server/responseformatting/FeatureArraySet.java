@@ -0,0 +1,89 @@
+package edu.brown.cs.student.sprint5.server.responseformatting;
+
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Class for the read-only set of features held by a FeatureCollection. Besides the set, it keeps
+ * the features in an array, made the first time it is asked for and reused afterwards, so filters
+ * run over the same array on every call instead of copying the set each time. The wrapped set must
+ * not be modified once the collection is built.
+ */
+public final class FeatureArraySet extends AbstractSet<Feature> {
+
+  private static final Feature[] EMPTY = new Feature[0];
+
+  private final Set<Feature> features;
+  private volatile Feature[] array;
+
+  /**
+   * Constructor for FeatureArraySet.
+   *
+   * @param features the features, which are not copied
+   */
+  private FeatureArraySet(Set<Feature> features) {
+    this.features = features;
+  }
+
+  /**
+   * Wraps a set of features, unless it is already wrapped.
+   *
+   * @param features the features, possibly null
+   * @return the wrapped set, or null if features is null
+   */
+  public static Set<Feature> of(Set<Feature> features) {
+    if (features == null || features instanceof FeatureArraySet) {
+      return features;
+    }
+    return new FeatureArraySet(features);
+  }
+
+  /**
+   * Returns the features as an array, in iteration order. The array is shared and must not be
+   * modified.
+   *
+   * @return the features
+   */
+  public Feature[] array() {
+    Feature[] array = this.array;
+    if (array == null) {
+      array = this.features.isEmpty() ? EMPTY : this.features.toArray(EMPTY);
+      this.array = array;
+    }
+    return array;
+  }
+
+  /**
+   * Returns an iterator over the features that cannot remove them.
+   *
+   * @return the iterator
+   */
+  @Override
+  public Iterator<Feature> iterator() {
+    return Collections.unmodifiableSet(this.features).iterator();
+  }
+
+  /**
+   * Returns the number of features in the set.
+   *
+   * @return the size of the set
+   */
+  @Override
+  public int size() {
+    return this.features.size();
+  }
+
+  /**
+   * Checks if a feature is in the set, using the wrapped set's lookup.
+   *
+   * @param o the feature
+   * @return true if the feature is in the set, false otherwise
+   */
+  @Override
+  public boolean contains(Object o) {
+    return this.features.contains(o);
+  }
+}
@@ -2,27 +2,44 @@ package edu.brown.cs.student.sprint5.server.responseformatting;
 
 import com.squareup.moshi.Json;
 import edu.brown.cs.student.sprint5.server.filters.FeatureFilter;
+import edu.brown.cs.student.sprint5.server.filters.FilterExecutor;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /** Class for the format of the feature collection. */
 public class FeatureCollectionFormat {
 
   /**
-   * Class for the feature collection.
+   * Class for the feature collection. The features are wrapped in a {@link FeatureArraySet} when
+   * the collection is built, so filtering the same collection again reuses one array of them.
    *
    * @param type The type of the feature collection.
-   * @param features The features in the feature collection.
+   * @param features The features in the feature collection, not to be modified afterwards.
    */
   public record FeatureCollection(
       @Json(name = "type") String type, @Json(name = "features") Set<Feature> features) {
+    public FeatureCollection {
+      features = FeatureArraySet.of(features);
+    }
+
     public Set<Feature> filterFeatureCollection(FeatureFilter filterStrategy) {
-      Set<Feature> feats =
-          this.features.parallelStream()
-              .filter(filterStrategy::featureMeetsCriteria)
-              .collect(Collectors.toSet());
-      return feats;
+      return filterFeatureCollection(filterStrategy, CancellationToken.NONE);
+    }
+
+    /**
+     * Filters the features like {@link #filterFeatureCollection(FeatureFilter)}, checking between
+     * chunks of features whether the request has been cancelled.
+     *
+     * @param filterStrategy the filter to apply
+     * @param token the token of the request that the filtering is for
+     * @return the features that meet the filter's criteria
+     * @throws java.util.concurrent.CancellationException if the request is cancelled
+     */
+    public Set<Feature> filterFeatureCollection(
+        FeatureFilter filterStrategy, CancellationToken token) {
+      return FilterExecutor.filter(
+          ((FeatureArraySet) this.features).array(), filterStrategy, token);
     }
   }
 
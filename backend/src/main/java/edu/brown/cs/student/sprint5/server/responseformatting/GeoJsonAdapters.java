@@ -0,0 +1,641 @@
+package edu.brown.cs.student.sprint5.server.responseformatting;
+
+import static edu.brown.cs.student.sprint5.Constants.CANCELLATION_CHECK_INTERVAL;
+import static edu.brown.cs.student.sprint5.Constants.DICTIONARY_MAX_VALUE_LENGTH;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonReader;
+import com.squareup.moshi.JsonWriter;
+import com.squareup.moshi.Moshi;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Geometry;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Properties;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Hand-written Moshi adapters for the GeoJSON records of {@link FeatureCollectionFormat}. They read
+ * and write each field directly rather than through Moshi's reflective record adapter, and read
+ * coordinates straight into primitive arrays rather than through lists of boxed numbers. The output
+ * is the same as the reflective adapters': fields in declaration order, nulls left out. Reading a
+ * whole FeatureCollection dictionary-encodes its properties: repeated strings are stored once, and
+ * descriptions are read into compact {@link DescriptionMap}s whose key arrays are shared.
+ */
+public class GeoJsonAdapters {
+
+  private static final JsonReader.Options FEATURE_COLLECTION_NAMES =
+      JsonReader.Options.of("type", "features");
+  private static final JsonReader.Options FEATURE_NAMES =
+      JsonReader.Options.of("type", "geometry", "properties");
+  private static final JsonReader.Options GEOMETRY_NAMES =
+      JsonReader.Options.of("coordinates", "type");
+  private static final JsonReader.Options PROPERTIES_NAMES =
+      JsonReader.Options.of(
+          "city",
+          "state",
+          "name",
+          "holc_id",
+          "holc_grade",
+          "neighborhood_id",
+          "area_description_data");
+
+  /**
+   * Adds the adapters to a Moshi builder.
+   *
+   * @param builder the builder to add to
+   * @return the builder
+   */
+  public static Moshi.Builder register(Moshi.Builder builder) {
+    return builder
+        .add(
+            FeatureCollection.class,
+            adapter(
+                GeoJsonAdapters::readFeatureCollection,
+                (writer, value) -> writeFeatureCollection(writer, value, CancellationToken.NONE)))
+        .add(Feature.class, adapter(GeoJsonAdapters::readFeature, GeoJsonAdapters::writeFeature))
+        .add(Geometry.class, adapter(GeoJsonAdapters::readGeometry, GeoJsonAdapters::writeGeometry))
+        .add(
+            Properties.class,
+            adapter(GeoJsonAdapters::readProperties, GeoJsonAdapters::writeProperties));
+  }
+
+  /**
+   * Reads a FeatureCollection.
+   *
+   * @param reader the reader, positioned at the collection's object
+   * @return the collection
+   * @throws IOException if the JSON is malformed
+   */
+  public static FeatureCollection readFeatureCollection(JsonReader reader) throws IOException {
+    return readFeatureCollection(reader, null, 0, 0);
+  }
+
+  /**
+   * Reads a FeatureCollection, parsing its features on worker threads. This thread only finds where
+   * each feature starts and ends, and hands the features' text to the workers in batches. Strings
+   * repeated across the features are shared through one {@link StringDictionary} for the
+   * collection. At most a given number of batches are read ahead of the features already parsed, so
+   * the text held at once stays small however large the collection is. The features keep the order
+   * they are written in.
+   *
+   * @param reader the reader, positioned at the collection's object
+   * @param workers the threads that parse the features, or null to parse them on this thread
+   * @param batchSize the number of features in a batch
+   * @param inFlightBatches the most batches that may be read but not yet collected at once
+   * @return the collection
+   * @throws IOException if the JSON is malformed
+   */
+  public static FeatureCollection readFeatureCollection(
+      JsonReader reader, ExecutorService workers, int batchSize, int inFlightBatches)
+      throws IOException {
+    String type = null;
+    Set<Feature> features = null;
+    StringDictionary dictionary = new StringDictionary();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.selectName(FEATURE_COLLECTION_NAMES)) {
+        case 0 -> type = readString(reader);
+        case 1 -> {
+          if (reader.peek() == JsonReader.Token.NULL) {
+            features = reader.nextNull();
+          } else if (workers == null) {
+            features = new LinkedHashSet<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+              features.add(readNullable(reader, r -> readFeature(r, dictionary)));
+            }
+            reader.endArray();
+          } else {
+            features =
+                readFeaturesInParallel(reader, workers, batchSize, inFlightBatches, dictionary);
+          }
+        }
+        default -> skip(reader);
+      }
+    }
+    reader.endObject();
+    return new FeatureCollection(type, features);
+  }
+
+  /**
+   * Reads an array of features, parsing batches of them on worker threads.
+   *
+   * @param reader the reader, positioned at the array
+   * @param workers the threads that parse the features
+   * @param batchSize the number of features in a batch
+   * @param inFlightBatches the most batches that may be read but not yet collected at once
+   * @param dictionary the dictionary of the collection's strings
+   * @return the features, in the order they are written in
+   * @throws IOException if the JSON is malformed or the reading thread is interrupted
+   */
+  private static Set<Feature> readFeaturesInParallel(
+      JsonReader reader,
+      ExecutorService workers,
+      int batchSize,
+      int inFlightBatches,
+      StringDictionary dictionary)
+      throws IOException {
+    Set<Feature> features = new LinkedHashSet<>();
+    Deque<Future<List<Feature>>> pending = new ArrayDeque<>();
+    try {
+      reader.beginArray();
+      Buffer batch = new Buffer();
+      int batched = 0;
+      while (reader.hasNext()) {
+        batch.writeByte(batched == 0 ? '[' : ',');
+        try (BufferedSource text = reader.nextSource()) {
+          batch.writeAll(text);
+        }
+        if (++batched == batchSize) {
+          Buffer full = batch;
+          pending.add(workers.submit(() -> readFeatureBatch(full, dictionary)));
+          batch = new Buffer();
+          batched = 0;
+          if (pending.size() >= inFlightBatches) {
+            features.addAll(await(pending.poll()));
+          }
+        }
+      }
+      reader.endArray();
+      if (batched > 0) {
+        Buffer last = batch;
+        pending.add(workers.submit(() -> readFeatureBatch(last, dictionary)));
+      }
+      while (!pending.isEmpty()) {
+        features.addAll(await(pending.poll()));
+      }
+      return features;
+    } finally {
+      for (Future<List<Feature>> batch : pending) {
+        batch.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Parses a batch of features.
+   *
+   * @param batch the features' text, as the elements of an array that is missing its closing
+   *     bracket
+   * @param dictionary the dictionary of the collection's strings
+   * @return the features, in order
+   * @throws IOException if the JSON is malformed
+   */
+  private static List<Feature> readFeatureBatch(Buffer batch, StringDictionary dictionary)
+      throws IOException {
+    batch.writeByte(']');
+    List<Feature> features = new ArrayList<>();
+    JsonReader reader = JsonReader.of(batch);
+    reader.beginArray();
+    while (reader.hasNext()) {
+      features.add(readNullable(reader, r -> readFeature(r, dictionary)));
+    }
+    reader.endArray();
+    return features;
+  }
+
+  /**
+   * Waits for a batch of features to be parsed, rethrowing the parser's exception if it failed.
+   *
+   * @param batch the batch
+   * @return the batch's features
+   * @throws IOException if the batch's JSON is malformed or the waiting thread is interrupted
+   */
+  private static List<Feature> await(Future<List<Feature>> batch) throws IOException {
+    try {
+      return batch.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while parsing features");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Writes a FeatureCollection, checking between chunks of features whether the request it answers
+   * has been cancelled.
+   *
+   * @param writer the writer
+   * @param collection the collection to write
+   * @param token the token of the request the collection answers
+   * @throws IOException if the writer fails
+   * @throws java.util.concurrent.CancellationException if the request is cancelled
+   */
+  public static void writeFeatureCollection(
+      JsonWriter writer, FeatureCollection collection, CancellationToken token) throws IOException {
+    writer.beginObject();
+    writer.name("type").value(collection.type());
+    if (collection.features() != null) {
+      writer.name("features").beginArray();
+      int written = 0;
+      for (Feature feature : collection.features()) {
+        if (written++ % CANCELLATION_CHECK_INTERVAL == 0) {
+          token.throwIfCancelled();
+        }
+        writeNullable(writer, feature, GeoJsonAdapters::writeFeature);
+      }
+      writer.endArray();
+    }
+    writer.endObject();
+  }
+
+  /**
+   * Reads a Feature.
+   *
+   * @param reader the reader, positioned at the feature's object
+   * @return the feature
+   * @throws IOException if the JSON is malformed
+   */
+  public static Feature readFeature(JsonReader reader) throws IOException {
+    return readFeature(reader, null);
+  }
+
+  /**
+   * Reads a Feature, sharing its repeated strings through a dictionary.
+   *
+   * @param reader the reader, positioned at the feature's object
+   * @param dictionary the dictionary of the dataset's strings, or null to share none
+   * @return the feature
+   * @throws IOException if the JSON is malformed
+   */
+  public static Feature readFeature(JsonReader reader, StringDictionary dictionary)
+      throws IOException {
+    String type = null;
+    Geometry geometry = null;
+    Properties properties = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.selectName(FEATURE_NAMES)) {
+        case 0 -> type = intern(dictionary, readString(reader));
+        case 1 -> geometry = readNullable(reader, r -> readGeometry(r, dictionary));
+        case 2 -> properties = readNullable(reader, r -> readProperties(r, dictionary));
+        default -> skip(reader);
+      }
+    }
+    reader.endObject();
+    return new Feature(type, geometry, properties);
+  }
+
+  /**
+   * Writes a Feature.
+   *
+   * @param writer the writer
+   * @param feature the feature to write
+   * @throws IOException if the writer fails
+   */
+  public static void writeFeature(JsonWriter writer, Feature feature) throws IOException {
+    writer.beginObject();
+    writer.name("type").value(feature.type());
+    if (feature.geometry() != null) {
+      writer.name("geometry");
+      writeGeometry(writer, feature.geometry());
+    }
+    if (feature.properties() != null) {
+      writer.name("properties");
+      writeProperties(writer, feature.properties());
+    }
+    writer.endObject();
+  }
+
+  /**
+   * Reads a Geometry.
+   *
+   * @param reader the reader, positioned at the geometry's object
+   * @return the geometry
+   * @throws IOException if the JSON is malformed
+   */
+  public static Geometry readGeometry(JsonReader reader) throws IOException {
+    return readGeometry(reader, null);
+  }
+
+  /**
+   * Reads a Geometry, sharing its type string through a dictionary.
+   *
+   * @param reader the reader, positioned at the geometry's object
+   * @param dictionary the dictionary of the dataset's strings, or null to share none
+   * @return the geometry
+   * @throws IOException if the JSON is malformed
+   */
+  public static Geometry readGeometry(JsonReader reader, StringDictionary dictionary)
+      throws IOException {
+    double[][][][] coordinates = null;
+    String type = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.selectName(GEOMETRY_NAMES)) {
+        case 0 -> coordinates = readNullable(reader, GeoJsonAdapters::readCoordinates);
+        case 1 -> type = intern(dictionary, readString(reader));
+        default -> skip(reader);
+      }
+    }
+    reader.endObject();
+    return new Geometry(coordinates, type);
+  }
+
+  /**
+   * Writes a Geometry, writing its coordinates directly from the primitive arrays.
+   *
+   * @param writer the writer
+   * @param geometry the geometry to write
+   * @throws IOException if the writer fails
+   */
+  public static void writeGeometry(JsonWriter writer, Geometry geometry) throws IOException {
+    writer.beginObject();
+    if (geometry.coordinates() != null) {
+      writer.name("coordinates").beginArray();
+      for (double[][][] polygon : geometry.coordinates()) {
+        writer.beginArray();
+        for (double[][] ring : polygon) {
+          writer.beginArray();
+          for (double[] position : ring) {
+            writer.beginArray();
+            for (double value : position) {
+              writer.value(value);
+            }
+            writer.endArray();
+          }
+          writer.endArray();
+        }
+        writer.endArray();
+      }
+      writer.endArray();
+    }
+    writer.name("type").value(geometry.type());
+    writer.endObject();
+  }
+
+  /**
+   * Reads the coordinates of a MultiPolygon: polygons of rings of positions.
+   *
+   * @param reader the reader, positioned at the outermost array
+   * @return the coordinates
+   * @throws IOException if the JSON is malformed
+   */
+  private static double[][][][] readCoordinates(JsonReader reader) throws IOException {
+    List<double[][][]> polygons = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      List<double[][]> rings = new ArrayList<>();
+      reader.beginArray();
+      while (reader.hasNext()) {
+        List<double[]> positions = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          positions.add(readPosition(reader));
+        }
+        reader.endArray();
+        rings.add(positions.toArray(new double[0][]));
+      }
+      reader.endArray();
+      polygons.add(rings.toArray(new double[0][][]));
+    }
+    reader.endArray();
+    return polygons.toArray(new double[0][][][]);
+  }
+
+  /**
+   * Reads one position, usually a longitude and latitude pair.
+   *
+   * @param reader the reader, positioned at the position's array
+   * @return the position
+   * @throws IOException if the JSON is malformed
+   */
+  private static double[] readPosition(JsonReader reader) throws IOException {
+    double[] position = new double[2];
+    int size = 0;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (size == position.length) {
+        position = Arrays.copyOf(position, size * 2);
+      }
+      position[size++] = reader.nextDouble();
+    }
+    reader.endArray();
+    return size == position.length ? position : Arrays.copyOf(position, size);
+  }
+
+  /**
+   * Reads a feature's Properties.
+   *
+   * @param reader the reader, positioned at the properties' object
+   * @return the properties
+   * @throws IOException if the JSON is malformed
+   */
+  public static Properties readProperties(JsonReader reader) throws IOException {
+    return readProperties(reader, null);
+  }
+
+  /**
+   * Reads a feature's Properties, sharing its repeated strings through a dictionary. Every string
+   * field and every description key is shared, as is every description value no longer than
+   * DICTIONARY_MAX_VALUE_LENGTH. The descriptions are read into a {@link DescriptionMap}.
+   *
+   * @param reader the reader, positioned at the properties' object
+   * @param dictionary the dictionary of the dataset's strings, or null to share none
+   * @return the properties
+   * @throws IOException if the JSON is malformed
+   */
+  public static Properties readProperties(JsonReader reader, StringDictionary dictionary)
+      throws IOException {
+    String city = null;
+    String state = null;
+    String name = null;
+    String holcId = null;
+    String holcGrade = null;
+    int neighborhoodId = 0;
+    Map<String, String> areaDescriptionData = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.selectName(PROPERTIES_NAMES)) {
+        case 0 -> city = intern(dictionary, readString(reader));
+        case 1 -> state = intern(dictionary, readString(reader));
+        case 2 -> name = intern(dictionary, readString(reader));
+        case 3 -> holcId = intern(dictionary, readString(reader));
+        case 4 -> holcGrade = intern(dictionary, readString(reader));
+        case 5 -> neighborhoodId = reader.nextInt();
+        case 6 -> areaDescriptionData = readNullable(reader, r -> readDescriptions(r, dictionary));
+        default -> skip(reader);
+      }
+    }
+    reader.endObject();
+    return new Properties(
+        city, state, name, holcId, holcGrade, neighborhoodId, areaDescriptionData);
+  }
+
+  /**
+   * Writes a feature's Properties.
+   *
+   * @param writer the writer
+   * @param properties the properties to write
+   * @throws IOException if the writer fails
+   */
+  public static void writeProperties(JsonWriter writer, Properties properties) throws IOException {
+    writer.beginObject();
+    writer.name("city").value(properties.city());
+    writer.name("state").value(properties.state());
+    writer.name("name").value(properties.name());
+    writer.name("holc_id").value(properties.holc_id());
+    writer.name("holc_grade").value(properties.holc_grade());
+    writer.name("neighborhood_id").value(properties.neighborhood_id());
+    if (properties.area_description_data() != null) {
+      writer.name("area_description_data").beginObject();
+      for (Map.Entry<String, String> entry : properties.area_description_data().entrySet()) {
+        writer.name(entry.getKey()).value(entry.getValue());
+      }
+      writer.endObject();
+    }
+    writer.endObject();
+  }
+
+  /**
+   * Reads a feature's area_description_data, an object whose values are all strings. A repeated
+   * field keeps its first position and its last value.
+   *
+   * @param reader the reader, positioned at the object
+   * @param dictionary the dictionary of the dataset's strings, or null to share none
+   * @return the object as a map, in the order of its fields
+   * @throws IOException if the JSON is malformed
+   */
+  private static Map<String, String> readDescriptions(
+      JsonReader reader, StringDictionary dictionary) throws IOException {
+    List<String> keys = new ArrayList<>();
+    List<String> values = new ArrayList<>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String key = intern(dictionary, reader.nextName());
+      String value = readString(reader);
+      if (value != null && value.length() <= DICTIONARY_MAX_VALUE_LENGTH) {
+        value = intern(dictionary, value);
+      }
+      int existing = keys.indexOf(key);
+      if (existing >= 0) {
+        values.set(existing, value);
+      } else {
+        keys.add(key);
+        values.add(value);
+      }
+    }
+    reader.endObject();
+    return new DescriptionMap(
+        dictionary == null ? keys.toArray(new String[0]) : dictionary.keys(keys),
+        values.toArray(new String[0]));
+  }
+
+  /**
+   * Returns a dictionary's copy of a string.
+   *
+   * @param dictionary the dictionary, or null to share no strings
+   * @param string the string, possibly null
+   * @return the dictionary's copy, or string itself if there is no dictionary
+   */
+  private static String intern(StringDictionary dictionary, String string) {
+    return dictionary == null ? string : dictionary.intern(string);
+  }
+
+  /**
+   * Reads a string that may be null.
+   *
+   * @param reader the reader, positioned at the value
+   * @return the string, or null
+   * @throws IOException if the JSON is malformed
+   */
+  private static String readString(JsonReader reader) throws IOException {
+    return reader.peek() == JsonReader.Token.NULL ? reader.nextNull() : reader.nextString();
+  }
+
+  /**
+   * Skips an unknown field.
+   *
+   * @param reader the reader, positioned at the field's name
+   * @throws IOException if the JSON is malformed
+   */
+  private static void skip(JsonReader reader) throws IOException {
+    reader.skipName();
+    reader.skipValue();
+  }
+
+  /**
+   * Reads a value that may be null.
+   *
+   * @param reader the reader, positioned at the value
+   * @param read how to read the value if it is not null
+   * @return the value, or null
+   * @param <T> the type of the value
+   * @throws IOException if the JSON is malformed
+   */
+  private static <T> T readNullable(JsonReader reader, Read<T> read) throws IOException {
+    return reader.peek() == JsonReader.Token.NULL ? reader.nextNull() : read.read(reader);
+  }
+
+  /**
+   * Writes a value that may be null.
+   *
+   * @param writer the writer
+   * @param value the value, or null
+   * @param write how to write the value if it is not null
+   * @param <T> the type of the value
+   * @throws IOException if the writer fails
+   */
+  private static <T> void writeNullable(JsonWriter writer, T value, Write<T> write)
+      throws IOException {
+    if (value == null) {
+      writer.nullValue();
+    } else {
+      write.write(writer, value);
+    }
+  }
+
+  /**
+   * Builds a null-safe Moshi adapter from a pair of read and write functions.
+   *
+   * @param read how to read a value
+   * @param write how to write a value
+   * @return the adapter
+   * @param <T> the type of the values
+   */
+  private static <T> JsonAdapter<T> adapter(Read<T> read, Write<T> write) {
+    return new JsonAdapter<T>() {
+      @Override
+      public T fromJson(JsonReader reader) throws IOException {
+        return read.read(reader);
+      }
+
+      @Override
+      public void toJson(JsonWriter writer, T value) throws IOException {
+        write.write(writer, value);
+      }
+    }.nullSafe();
+  }
+
+  /** Interface for a function that reads a value from JSON. */
+  private interface Read<T> {
+    T read(JsonReader reader) throws IOException;
+  }
+
+  /** Interface for a function that writes a value as JSON. */
+  private interface Write<T> {
+    void write(JsonWriter writer, T value) throws IOException;
+  }
+}
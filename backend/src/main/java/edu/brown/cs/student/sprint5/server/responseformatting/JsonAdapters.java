@@ -0,0 +1,42 @@
+package edu.brown.cs.student.sprint5.server.responseformatting;
+
+import static edu.brown.cs.student.sprint5.Constants.RESPONSE_TYPE;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Class holding the one Moshi instance that all of the server's JSON goes through. Moshi caches
+ * every adapter it builds, so sharing an instance means each adapter is built once instead of on
+ * every call. The GeoJSON records use the hand-written adapters of {@link GeoJsonAdapters}.
+ */
+public class JsonAdapters {
+
+  /** The shared Moshi instance. */
+  public static final Moshi MOSHI = GeoJsonAdapters.register(new Moshi.Builder()).build();
+
+  /** The adapter for maps of strings to arbitrary values, e.g. the data of a response. */
+  public static final JsonAdapter<Map<String, Object>> RESPONSE_ADAPTER =
+      MOSHI.adapter(RESPONSE_TYPE);
+
+  /** The adapter for arbitrary values, which picks an adapter by each value's class. */
+  public static final JsonAdapter<Object> VALUE_ADAPTER = MOSHI.adapter(Object.class);
+
+  /** The adapter for the query parameters echoed in a response. */
+  public static final JsonAdapter<Map<String, String[]>> PARAMS_ADAPTER =
+      MOSHI.adapter(Types.newParameterizedType(Map.class, String.class, String[].class));
+
+  /**
+   * Returns the shared adapter for a type.
+   *
+   * @param type the type to convert
+   * @return the adapter
+   * @param <T> the type to convert
+   */
+  public static <T> JsonAdapter<T> adapter(Type type) {
+    return MOSHI.adapter(type);
+  }
+}
@@ -0,0 +1,111 @@
+package edu.brown.cs.student.sprint5.server.responseformatting;
+
+import com.squareup.moshi.JsonReader;
+import com.squareup.moshi.JsonWriter;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.io.IOException;
+import okio.Buffer;
+
+/**
+ * Class for a value of a response that is already serialized, e.g. one read back from the disk
+ * cache. It is copied into the response as is, without being parsed or serialized again. When a
+ * format other than JSON needs the FeatureCollection it holds, the value is parsed once and the
+ * collection is kept beside it, so a response held in a memory cache is not parsed again for every
+ * request.
+ */
+public final class RawJson {
+
+  private final String json;
+  private volatile FeatureCollection collection;
+
+  /**
+   * Constructor for RawJson.
+   *
+   * @param json the serialized value
+   */
+  public RawJson(String json) {
+    this.json = json;
+  }
+
+  /**
+   * Serializes a FeatureCollection as GeoJSON.
+   *
+   * @param collection the collection to serialize
+   * @return the serialized collection
+   */
+  public static RawJson of(FeatureCollection collection) {
+    try {
+      Buffer buffer = new Buffer();
+      JsonWriter writer = JsonWriter.of(buffer);
+      GeoJsonAdapters.writeFeatureCollection(writer, collection, CancellationToken.NONE);
+      writer.flush();
+      return new RawJson(buffer.readUtf8());
+    } catch (IOException e) {
+      // writing to an in-memory buffer does not fail
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Returns the serialized value.
+   *
+   * @return the serialized value
+   */
+  public String json() {
+    return this.json;
+  }
+
+  /**
+   * Parses this value back into a FeatureCollection, the first time it is asked for, and returns
+   * the same collection afterwards. Two threads asking at once may both parse it, which is harmless
+   * since either result is equal.
+   *
+   * @return the collection, which must not be modified
+   * @throws IllegalStateException if this value is not a serialized FeatureCollection
+   */
+  public FeatureCollection toFeatureCollection() {
+    FeatureCollection collection = this.collection;
+    if (collection == null) {
+      try {
+        collection =
+            GeoJsonAdapters.readFeatureCollection(JsonReader.of(new Buffer().writeUtf8(this.json)));
+      } catch (IOException e) {
+        throw new IllegalStateException("not a serialized FeatureCollection", e);
+      }
+      this.collection = collection;
+    }
+    return collection;
+  }
+
+  /**
+   * Checks if another object is a RawJson holding the same serialized value.
+   *
+   * @param o the other object
+   * @return true if both hold the same value, false otherwise
+   */
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof RawJson other && this.json.equals(other.json);
+  }
+
+  /**
+   * Returns the hash code of the serialized value.
+   *
+   * @return the hash code
+   */
+  @Override
+  public int hashCode() {
+    return this.json.hashCode();
+  }
+
+  /**
+   * Returns the serialized value wrapped like a record's string form.
+   *
+   * @return the string form
+   */
+  @Override
+  public String toString() {
+    return "RawJson[json=" + this.json + "]";
+  }
+}
@@ -1,12 +1,16 @@
 package edu.brown.cs.student.sprint5.server.responseformatting;
 
-import static edu.brown.cs.student.sprint5.Constants.RESPONSE_TYPE;
 import static edu.brown.cs.student.sprint5.Constants.SUCCESS_MESSAGE;
 
 import com.squareup.moshi.Json;
-import com.squareup.moshi.Moshi;
-import java.util.HashMap;
+import com.squareup.moshi.JsonWriter;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import okio.Buffer;
+import okio.BufferedSink;
 
 /**
  * A record class that represents a generalized response from the server.
@@ -88,21 +92,55 @@ public record ServerResponse(
 
   @Override
   public String serialize() {
+    return serialize(CancellationToken.NONE);
+  }
+
+  /**
+   * Serializes this response, checking between chunks of features whether the request it answers
+   * has been cancelled. The response is streamed straight into a buffer with the shared adapters,
+   * rather than first being copied into a map.
+   *
+   * @param token the token of the request this response answers
+   * @return the response as a JSON string
+   * @throws CancellationException if the request is cancelled
+   */
+  public String serialize(CancellationToken token) {
     try {
-      Map<String, Object> responseMap = new HashMap<>();
-      responseMap.put("result", this.responseCode);
+      Buffer buffer = new Buffer();
+      JsonWriter writer = JsonWriter.of(buffer);
+      writer.beginObject();
+      writer.name("result").value(this.responseCode);
       if (this.params != null) {
-        responseMap.put("paramsUsed", this.params);
+        writer.name("paramsUsed");
+        JsonAdapters.PARAMS_ADAPTER.toJson(writer, this.params);
       }
       if (this.errorSpecs != null) {
-        responseMap.put("errorReason", this.errorSpecs);
+        writer.name("errorReason").value(this.errorSpecs);
       }
       if (this.data != null) {
-        responseMap.put("data", this.data);
+        writer.name("data").beginObject();
+        for (Map.Entry<String, Object> entry : this.data.entrySet()) {
+          writer.name(entry.getKey());
+          if (entry.getValue() instanceof FeatureCollection collection) {
+            GeoJsonAdapters.writeFeatureCollection(writer, collection, token);
+          } else if (entry.getValue() instanceof RawJson raw) {
+            try (BufferedSink sink = writer.valueSink()) {
+              sink.writeUtf8(raw.json());
+            }
+          } else {
+            JsonAdapters.VALUE_ADAPTER.toJson(writer, entry.getValue());
+          }
+        }
+        writer.endObject();
       }
-      Moshi moshi = new Moshi.Builder().build();
-      return moshi.adapter(RESPONSE_TYPE).toJson(responseMap);
-    } catch (Exception e) {
+      writer.endObject();
+      return buffer.readUtf8();
+    } catch (CancellationException e) {
+      throw e;
+    } catch (IOException e) {
+      // writing to an in-memory buffer does not fail
+      throw new AssertionError(e);
+    } catch (RuntimeException e) {
       // print stack trace for debugging purposes (Spark normally will catch an exception to keep
       // the server
       // running, but we want to see the stack trace)
@@ -110,4 +148,15 @@ public record ServerResponse(
       throw e;
     }
   }
+
+  /**
+   * Encodes this response in the compact binary format described in {@link BinaryEncoder}.
+   *
+   * @param token the token of the request this response answers
+   * @return the encoded response
+   * @throws CancellationException if the request is cancelled
+   */
+  public byte[] encodeBinary(CancellationToken token) {
+    return BinaryEncoder.encode(this, token);
+  }
 }
@@ -0,0 +1,55 @@
+package edu.brown.cs.student.sprint5.server.responseformatting;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe table of the strings read while one dataset loads, so that a string repeated across
+ * thousands of features, like a city, a grade, or a description key, is held once instead of once
+ * per feature. Lists of description keys are shared the same way, so features whose descriptions
+ * have the same fields share one key array. The dictionary is only needed while the dataset loads;
+ * the shared strings stay referenced by the features afterwards.
+ */
+public class StringDictionary {
+
+  private final Map<String, String> strings = new ConcurrentHashMap<>();
+  private final Map<List<String>, String[]> keyLists = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the dictionary's copy of a string, adding the string if it is new.
+   *
+   * @param string the string, possibly null
+   * @return an equal string shared by every caller, or null if string is null
+   */
+  public String intern(String string) {
+    if (string == null) {
+      return null;
+    }
+    String existing = this.strings.putIfAbsent(string, string);
+    return existing == null ? string : existing;
+  }
+
+  /**
+   * Returns the dictionary's array of a list of keys, adding the list if it is new.
+   *
+   * @param keys the keys, none of them null
+   * @return an array holding the keys in order, shared by every caller; it must not be modified
+   */
+  public String[] keys(List<String> keys) {
+    String[] existing = this.keyLists.get(keys);
+    if (existing != null) {
+      return existing;
+    }
+    return this.keyLists.computeIfAbsent(List.copyOf(keys), k -> k.toArray(new String[0]));
+  }
+
+  /**
+   * Returns the number of distinct strings in the dictionary.
+   *
+   * @return the number of strings
+   */
+  public int size() {
+    return this.strings.size();
+  }
+}
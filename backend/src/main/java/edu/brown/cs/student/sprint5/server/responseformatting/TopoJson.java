@@ -0,0 +1,179 @@
+package edu.brown.cs.student.sprint5.server.responseformatting;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import com.squareup.moshi.JsonWriter;
+import edu.brown.cs.student.sprint5.server.index.Topology;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.*;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import okio.Buffer;
+import okio.BufferedSink;
+
+/**
+ * Class that writes FeatureCollections as TopoJSON topologies over the arcs of a layer's {@link
+ * Topology}. A topology holds one GeometryCollection object named "features", whose geometries
+ * refer to the arcs by index and carry the features' properties, followed by the arcs the response
+ * uses. Arcs are copied in already encoded, and renumbered so that the response only holds the ones
+ * its features need.
+ */
+public final class TopoJson {
+
+  private TopoJson() {}
+
+  /**
+   * Returns a copy of a response with every FeatureCollection in its data written as a topology.
+   * Features read back from the disk cache as RawJson are parsed by {@link
+   * RawJson#toFeatureCollection}, which keeps the parsed collection, so a cached response is only
+   * parsed once however often it is asked for as TopoJSON.
+   *
+   * @param response the response
+   * @param topology the topology of the layer the response is about
+   * @param token the token of the request the response answers, checked between chunks of features
+   * @return the converted response
+   * @throws java.util.concurrent.CancellationException if the request is cancelled
+   */
+  public static ServerResponse convert(
+      ServerResponse response, Topology topology, CancellationToken token) {
+    if (response.data() == null) {
+      return response;
+    }
+    Map<String, Object> data = new LinkedHashMap<>(response.data());
+    for (Map.Entry<String, Object> entry : data.entrySet()) {
+      if (entry.getValue() instanceof FeatureCollection collection) {
+        entry.setValue(encode(collection, topology, token));
+      } else if (entry.getKey().equals(FEATURES) && entry.getValue() instanceof RawJson raw) {
+        entry.setValue(encode(raw.toFeatureCollection(), topology, token));
+      }
+    }
+    return new ServerResponse(
+        response.responseCode(), response.errorSpecs(), data, response.params());
+  }
+
+  /**
+   * Writes a FeatureCollection as a topology. Rings that are not in the topology, e.g. those of
+   * features added to the layer after it was built, are written as arcs of their own.
+   *
+   * @param collection the collection
+   * @param topology the topology of the layer the collection comes from
+   * @param token the token of the request the collection answers
+   * @return the topology as JSON
+   * @throws java.util.concurrent.CancellationException if the request is cancelled
+   */
+  public static RawJson encode(
+      FeatureCollection collection, Topology topology, CancellationToken token) {
+    try {
+      List<String> arcs = new ArrayList<>();
+      Map<Integer, Integer> renumbered = new HashMap<>();
+      Buffer geometries = new Buffer();
+      JsonWriter writer = JsonWriter.of(geometries);
+      writer.beginArray();
+      if (collection.features() != null) {
+        int written = 0;
+        for (Feature feature : collection.features()) {
+          if (written++ % CANCELLATION_CHECK_INTERVAL == 0) {
+            token.throwIfCancelled();
+          }
+          writeGeometryObject(writer, feature, topology, arcs, renumbered);
+        }
+      }
+      writer.endArray();
+      writer.flush();
+
+      Buffer buffer = new Buffer();
+      writer = JsonWriter.of(buffer);
+      writer.beginObject();
+      writer.name("type").value("Topology");
+      writer.name("transform").beginObject();
+      writer.name("scale").beginArray().value(topology.step()).value(topology.step()).endArray();
+      writer.name("translate").beginArray().value(0).value(0).endArray();
+      writer.endObject();
+      writer.name("objects").beginObject();
+      writer.name("features").beginObject();
+      writer.name("type").value("GeometryCollection");
+      writer.name("geometries");
+      try (BufferedSink sink = writer.valueSink()) {
+        sink.writeAll(geometries);
+      }
+      writer.endObject();
+      writer.endObject();
+      writer.name("arcs").beginArray();
+      for (String arc : arcs) {
+        try (BufferedSink sink = writer.valueSink()) {
+          sink.writeUtf8(arc);
+        }
+      }
+      writer.endArray();
+      writer.endObject();
+      writer.flush();
+      return new RawJson(buffer.readUtf8());
+    } catch (IOException e) {
+      // writing to an in-memory buffer does not fail
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Writes one feature as a TopoJSON geometry object, adding the arcs it uses to the response.
+   *
+   * @param writer the writer
+   * @param feature the feature, possibly null
+   * @param topology the topology of the layer the feature comes from
+   * @param arcs the encoded arcs of the response so far
+   * @param renumbered the index in the response of each arc of the topology used so far
+   * @throws IOException if the writer fails
+   */
+  private static void writeGeometryObject(
+      JsonWriter writer,
+      Feature feature,
+      Topology topology,
+      List<String> arcs,
+      Map<Integer, Integer> renumbered)
+      throws IOException {
+    Geometry geometry = feature == null ? null : feature.geometry();
+    writer.beginObject();
+    // TopoJSON marks a geometry object without a geometry with a null type
+    boolean serializeNulls = writer.getSerializeNulls();
+    writer.setSerializeNulls(true);
+    writer.name("type").value(geometry == null ? null : geometry.type());
+    writer.setSerializeNulls(serializeNulls);
+    if (geometry != null && geometry.coordinates() != null) {
+      writer.name("arcs").beginArray();
+      for (double[][][] polygon : geometry.coordinates()) {
+        writer.beginArray();
+        for (double[][] ring : polygon) {
+          writer.beginArray();
+          int[] refs = topology.ringArcs(ring);
+          if (refs == null) {
+            writer.value(arcs.size());
+            arcs.add(topology.encodeRing(ring));
+          } else {
+            for (int ref : refs) {
+              int arc = ref >= 0 ? ref : ~ref;
+              Integer index = renumbered.get(arc);
+              if (index == null) {
+                index = arcs.size();
+                renumbered.put(arc, index);
+                arcs.add(topology.arcJson(arc));
+              }
+              writer.value(ref >= 0 ? index : ~index);
+            }
+          }
+          writer.endArray();
+        }
+        writer.endArray();
+      }
+      writer.endArray();
+    }
+    if (feature != null && feature.properties() != null) {
+      writer.name("properties");
+      GeoJsonAdapters.writeProperties(writer, feature.properties());
+    }
+    writer.endObject();
+  }
+}
@@ -0,0 +1,43 @@
+package edu.brown.cs.student.sprint5.server.sessions;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Class for a flag that long-running work checks periodically to find out that its result is no
+ * longer wanted. Cancellation is cooperative: nothing is interrupted, the work simply stops at its
+ * next check.
+ */
+public class CancellationToken {
+
+  /** A token that is never cancelled, for work that does not belong to a session. */
+  public static final CancellationToken NONE = new CancellationToken();
+
+  private volatile boolean cancelled;
+
+  /** Cancels the work holding this token. Has no effect on {@link #NONE}. */
+  public void cancel() {
+    if (this != NONE) {
+      this.cancelled = true;
+    }
+  }
+
+  /**
+   * Returns whether the work holding this token has been cancelled.
+   *
+   * @return true if the work has been cancelled, false otherwise
+   */
+  public boolean isCancelled() {
+    return this.cancelled;
+  }
+
+  /**
+   * Stops the work holding this token if it has been cancelled.
+   *
+   * @throws CancellationException if the work has been cancelled
+   */
+  public void throwIfCancelled() {
+    if (this.cancelled) {
+      throw new CancellationException("superseded by a newer request from the same session");
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package edu.brown.cs.student.sprint5.server.sessions;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Class that tracks the latest request of each client session, so that when a client sends a newer
+ * request (e.g. the next viewport while dragging the map), the work for its older requests can be
+ * cancelled. Sessions that stop sending requests are forgotten after a while.
+ */
+public class SessionRegistry {
+
+  private final Cache<String, Latest> sessions =
+      CacheBuilder.newBuilder()
+          .maximumSize(SESSION_MAX_COUNT)
+          .expireAfterAccess(SESSION_EXPIRE_TIME, SESSION_EXPIRE_UNIT)
+          .build();
+
+  /**
+   * Registers a request and returns the token its work should check. If the request is newer than
+   * every earlier request of its session, the earlier requests' tokens are cancelled. If a newer
+   * request of the session has already arrived, the returned token is already cancelled.
+   *
+   * @param session the id of the client session that sent the request
+   * @param sequence the request's position in the session, increasing with every request
+   * @return the token for the request's work
+   */
+  public CancellationToken begin(String session, long sequence) {
+    CancellationToken token = new CancellationToken();
+    Latest latest =
+        this.sessions
+            .asMap()
+            .merge(
+                session,
+                new Latest(sequence, token),
+                (older, newer) -> {
+                  if (older.sequence() > newer.sequence()) {
+                    return older;
+                  }
+                  older.token().cancel();
+                  return newer;
+                });
+    if (latest.token() != token) {
+      token.cancel();
+    }
+    return token;
+  }
+
+  /**
+   * Record for the latest request of a session.
+   *
+   * @param sequence the request's position in the session
+   * @param token the token of the request's work
+   */
+  private record Latest(long sequence, CancellationToken token) {}
+}
@@ -52,6 +52,50 @@ public class FuzzUtils {
     return params;
   }
 
+  /**
+   * Generates the bounding boxes of a user panning a map viewport: starting centered on a point,
+   * each step moves the viewport by up to a fifth of its size in a direction that drifts slowly, so
+   * consecutive boxes overlap heavily the way real drag sequences do.
+   *
+   * @param centerLat the latitude the viewport starts centered on
+   * @param centerLng the longitude the viewport starts centered on
+   * @param latSpan the height of the viewport in degrees
+   * @param lngSpan the width of the viewport in degrees
+   * @param steps the number of boxes to generate
+   * @return the bounding boxes, each keyed by minLat, minLng, maxLat, and maxLng
+   */
+  public static List<Map<String, String>> generateViewportPan(
+      double centerLat, double centerLng, double latSpan, double lngSpan, int steps) {
+    ThreadLocalRandom r = ThreadLocalRandom.current();
+    List<Map<String, String>> boxes = new ArrayList<>();
+    double heading = r.nextDouble(0, 2 * Math.PI);
+    double lat = centerLat;
+    double lng = centerLng;
+    for (int i = 0; i < steps; i++) {
+      double minLat = Math.max(LAT_LOWER_BOUND, lat - latSpan / 2);
+      double maxLat = Math.min(LAT_UPPER_BOUND, lat + latSpan / 2);
+      double minLng = Math.max(LNG_LOWER_BOUND, lng - lngSpan / 2);
+      double maxLng = Math.min(LNG_UPPER_BOUND, lng + lngSpan / 2);
+      boxes.add(
+          Map.of(
+              MIN_LAT_PARAM, String.valueOf(minLat),
+              MIN_LNG_PARAM, String.valueOf(minLng),
+              MAX_LAT_PARAM, String.valueOf(maxLat),
+              MAX_LNG_PARAM, String.valueOf(maxLng)));
+      heading += r.nextDouble(-0.5, 0.5);
+      double stride = r.nextDouble(0, 0.2);
+      lat =
+          Math.max(
+              LAT_LOWER_BOUND,
+              Math.min(LAT_UPPER_BOUND, lat + Math.sin(heading) * stride * latSpan));
+      lng =
+          Math.max(
+              LNG_LOWER_BOUND,
+              Math.min(LNG_UPPER_BOUND, lng + Math.cos(heading) * stride * lngSpan));
+    }
+    return boxes;
+  }
+
   /**
    * Generates a random String that is URL-safe.
    *
@@ -64,5 +64,4 @@ public class RequestUtils {
             + coords.get(3);
     return tryServerRequest(endpointWithParams);
   }
-
 }
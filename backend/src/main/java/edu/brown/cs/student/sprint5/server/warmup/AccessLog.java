@@ -0,0 +1,259 @@
+package edu.brown.cs.student.sprint5.server.warmup;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that counts how often each query is asked, so the most popular ones can be replayed to warm
+ * the caches after a restart. Each query is kept as a replayable path and query string. The counts
+ * are periodically halved, so they follow recent traffic rather than all-time traffic, and only the
+ * most frequent queries are kept, so the log stays small. The log is saved to a file, with the most
+ * frequent queries first, and read back from it when the server starts.
+ */
+public class AccessLog {
+
+  private final Path file;
+  private final int maxKeys;
+  private final Map<String, Long> counts;
+  private ScheduledExecutorService saver;
+
+  /**
+   * Constructor for AccessLog, which reads the counts saved in the file if it exists.
+   *
+   * @param file the file the log is saved to
+   * @param maxKeys how many queries the log keeps
+   * @throws IOException if the file exists but cannot be read
+   */
+  public AccessLog(Path file, int maxKeys) throws IOException {
+    this.file = file;
+    this.maxKeys = maxKeys;
+    this.counts = new ConcurrentHashMap<>();
+    if (Files.exists(file)) {
+      for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+        int space = line.indexOf(' ');
+        if (space <= 0) {
+          continue;
+        }
+        try {
+          this.counts.put(line.substring(space + 1), Long.parseLong(line.substring(0, space)));
+        } catch (NumberFormatException e) {
+          // a line cut off by a crash while saving
+        }
+      }
+    }
+  }
+
+  /**
+   * Opens the access log configured by the server.accessLog system property and starts saving it
+   * periodically.
+   *
+   * @return the access log, or null if none is configured or its file cannot be read
+   */
+  public static AccessLog fromProperties() {
+    String file = System.getProperty(ACCESS_LOG_PROPERTY);
+    if (file == null || file.isBlank()) {
+      return null;
+    }
+    try {
+      AccessLog log = new AccessLog(Path.of(file), ACCESS_LOG_MAX_KEYS);
+      log.startSaving(ACCESS_LOG_SAVE_SECONDS, ACCESS_LOG_HALF_LIFE_SECONDS);
+      return log;
+    } catch (IOException e) {
+      e.printStackTrace();
+      System.out.println("Failed to read the access log at " + file);
+      return null;
+    }
+  }
+
+  /**
+   * Builds the key of a query: its path and a query string with its parameters in sorted order,
+   * without the session parameters, which do not change the answer. The key can be requested as is
+   * to ask the query again.
+   *
+   * @param path the path of the endpoint, e.g. "/boundingBox"
+   * @param params the query parameters of the request
+   * @return the key of the query
+   */
+  public static String queryKey(String path, Map<String, String[]> params) {
+    StringBuilder key = new StringBuilder(path);
+    char separator = '?';
+    for (Map.Entry<String, String[]> param : new TreeMap<>(params).entrySet()) {
+      if (param.getKey().equals(SESSION_PARAM) || param.getKey().equals(SEQUENCE_PARAM)) {
+        continue;
+      }
+      for (String value : param.getValue()) {
+        key.append(separator)
+            .append(URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8))
+            .append('=')
+            .append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+        separator = '&';
+      }
+    }
+    return key.toString();
+  }
+
+  /**
+   * Returns the path of a query.
+   *
+   * @param key the key of the query, from queryKey
+   * @return the path of its endpoint
+   */
+  public static String path(String key) {
+    int question = key.indexOf('?');
+    return question < 0 ? key : key.substring(0, question);
+  }
+
+  /**
+   * Returns the parameters of a query, the inverse of queryKey.
+   *
+   * @param key the key of the query, from queryKey
+   * @return the query parameters, in sorted order
+   */
+  public static Map<String, String[]> params(String key) {
+    Map<String, List<String>> values = new LinkedHashMap<>();
+    int question = key.indexOf('?');
+    if (question >= 0) {
+      for (String pair : key.substring(question + 1).split("&")) {
+        int equals = pair.indexOf('=');
+        String name = equals < 0 ? pair : pair.substring(0, equals);
+        String value = equals < 0 ? "" : pair.substring(equals + 1);
+        values
+            .computeIfAbsent(
+                URLDecoder.decode(name, StandardCharsets.UTF_8), n -> new ArrayList<>())
+            .add(URLDecoder.decode(value, StandardCharsets.UTF_8));
+      }
+    }
+    Map<String, String[]> params = new LinkedHashMap<>();
+    values.forEach((name, list) -> params.put(name, list.toArray(new String[0])));
+    return params;
+  }
+
+  /**
+   * Counts one request for a query.
+   *
+   * @param key the key of the query, from queryKey
+   */
+  public void record(String key) {
+    this.counts.merge(key, 1L, Long::sum);
+    if (this.counts.size() > 2 * this.maxKeys) {
+      trim();
+    }
+  }
+
+  /** Drops every query but the most frequent ones, down to the log's capacity. */
+  private synchronized void trim() {
+    if (this.counts.size() <= this.maxKeys) {
+      return;
+    }
+    List<String> top = top(this.maxKeys);
+    this.counts.keySet().retainAll(new HashSet<>(top));
+  }
+
+  /**
+   * Halves every count, dropping the queries whose count reaches zero, so that older traffic weighs
+   * less than recent traffic.
+   */
+  public synchronized void decay() {
+    for (Map.Entry<String, Long> entry : this.counts.entrySet()) {
+      this.counts.computeIfPresent(
+          entry.getKey(), (key, count) -> count / 2 == 0 ? null : count / 2);
+    }
+  }
+
+  /**
+   * Returns the most frequent queries.
+   *
+   * @param n how many queries to return
+   * @return the keys of up to n queries, most frequent first
+   */
+  public List<String> top(int n) {
+    List<Map.Entry<String, Long>> entries = new ArrayList<>(this.counts.entrySet());
+    entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+    List<String> keys = new ArrayList<>();
+    for (Map.Entry<String, Long> entry : entries.subList(0, Math.min(n, entries.size()))) {
+      keys.add(entry.getKey());
+    }
+    return keys;
+  }
+
+  /**
+   * Returns how often a query has been counted, after decay.
+   *
+   * @param key the key of the query
+   * @return its count, or 0 if the log does not hold it
+   */
+  public long count(String key) {
+    return this.counts.getOrDefault(key, 0L);
+  }
+
+  /**
+   * Writes the log to its file, most frequent queries first. The file is replaced at once, so a
+   * crash while saving leaves the previous version intact.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  public synchronized void save() throws IOException {
+    Path directory = this.file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path temporary = Files.createTempFile(directory, this.file.getFileName().toString(), ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+      for (String key : top(this.maxKeys)) {
+        writer.write(this.count(key) + " " + key);
+        writer.newLine();
+      }
+    }
+    Files.move(
+        temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Starts saving the log and halving its counts periodically, on a daemon thread.
+   *
+   * @param saveSeconds the number of seconds between saves
+   * @param halfLifeSeconds the number of seconds between halvings of the counts
+   */
+  public synchronized void startSaving(long saveSeconds, long halfLifeSeconds) {
+    if (this.saver != null) {
+      return;
+    }
+    this.saver =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "access-log");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.saver.scheduleWithFixedDelay(
+        () -> {
+          try {
+            save();
+          } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Failed to save the access log to " + this.file);
+          }
+        },
+        saveSeconds,
+        saveSeconds,
+        TimeUnit.SECONDS);
+    this.saver.scheduleWithFixedDelay(
+        this::decay, halfLifeSeconds, halfLifeSeconds, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,129 @@
+package edu.brown.cs.student.sprint5.server.warmup;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Class that warms the server's caches by asking it the most popular queries of its access log, one
+ * at a time on a background thread. The queries go through the server's own endpoints, so every
+ * cache a live request would fill is filled, but they are spaced out to a fixed rate. Warm-up
+ * requests are marked with a header, so the server admits them at low priority and does not count
+ * them in the access log. A query the server turns away is asked again once the server's
+ * Retry-After has passed.
+ */
+public class CacheWarmer implements Runnable {
+
+  private final String baseUrl;
+  private final List<String> keys;
+  private final double requestsPerSecond;
+  private final HttpClient client;
+  private volatile int warmed;
+
+  /**
+   * Constructor for CacheWarmer.
+   *
+   * @param baseUrl the base URL of the server to warm, e.g. "http://localhost:3232"
+   * @param keys the keys of the queries to ask, from AccessLog.queryKey, in the order to ask them
+   * @param requestsPerSecond the most queries to ask per second
+   */
+  public CacheWarmer(String baseUrl, List<String> keys, double requestsPerSecond) {
+    this.baseUrl = baseUrl;
+    this.keys = List.copyOf(keys);
+    this.requestsPerSecond = requestsPerSecond;
+    this.client =
+        HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(CLUSTER_CONNECT_TIMEOUT_MILLIS))
+            .build();
+  }
+
+  /**
+   * Starts warming the server with the most popular queries of an access log, on a daemon thread.
+   *
+   * @param log the access log
+   * @param baseUrl the base URL of the server to warm
+   * @param owns decides whether this server answers a query itself, so queries that another node of
+   *     a cluster owns are left to that node
+   * @return the started warmer
+   */
+  public static CacheWarmer start(AccessLog log, String baseUrl, Predicate<String> owns) {
+    List<String> keys = log.top(WARMUP_QUERIES).stream().filter(owns).toList();
+    CacheWarmer warmer = new CacheWarmer(baseUrl, keys, WARMUP_REQUESTS_PER_SECOND);
+    Thread thread = new Thread(warmer, "warmup");
+    thread.setDaemon(true);
+    thread.start();
+    return warmer;
+  }
+
+  /**
+   * Asks every query in turn. Stops early if the server cannot be reached or the thread is
+   * interrupted.
+   */
+  @Override
+  public void run() {
+    long intervalNanos = (long) (1_000_000_000L / this.requestsPerSecond);
+    long next = System.nanoTime();
+    try {
+      for (String key : this.keys) {
+        while (true) {
+          long wait = next - System.nanoTime();
+          if (wait > 0) {
+            Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+          }
+          next = System.nanoTime() + intervalNanos;
+          HttpResponse<Void> response = send(key);
+          if (response.statusCode() != 503) {
+            break;
+          }
+          // the server has no room to spare, so ask again once it says to
+          next +=
+              1_000_000_000L
+                  * response
+                      .headers()
+                      .firstValue("Retry-After")
+                      .map(Long::parseLong)
+                      .orElse((long) RETRY_AFTER_SECONDS);
+        }
+        this.warmed++;
+      }
+    } catch (IOException e) {
+      System.out.println("Stopped warming the caches: " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Asks the server one query, discarding the answer.
+   *
+   * @param key the key of the query
+   * @return the server's response
+   * @throws IOException if the server cannot be reached or does not answer in time
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  private HttpResponse<Void> send(String key) throws IOException, InterruptedException {
+    HttpRequest request =
+        HttpRequest.newBuilder(URI.create(this.baseUrl + key))
+            .timeout(Duration.ofMillis(CLUSTER_FORWARD_TIMEOUT_MILLIS))
+            .header(WARMUP_HEADER, "true")
+            .GET()
+            .build();
+    return this.client.send(request, HttpResponse.BodyHandlers.discarding());
+  }
+
+  /**
+   * Returns how many queries have been answered so far.
+   *
+   * @return the number of queries warmed
+   */
+  public int warmed() {
+    return this.warmed;
+  }
+}
@@ -0,0 +1,100 @@
+package edu.brown.cs32.server;
+
+import edu.brown.cs.student.sprint5.server.admission.ConcurrencyLimiter;
+import org.junit.jupiter.api.*;
+
+/** This class contains unit tests for the adaptive concurrency limiter. */
+public class TestAdmission {
+
+  private static final long MILLIS = 1_000_000;
+
+  /** This method tests that requests over the limit are rejected, and cheap ones get headroom. */
+  @Test
+  public void testAdmission() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10, 0.5);
+    Assertions.assertTrue(limiter.tryAcquire(false));
+    Assertions.assertTrue(limiter.tryAcquire(false));
+    Assertions.assertFalse(limiter.tryAcquire(false));
+    Assertions.assertTrue(limiter.tryAcquire(true));
+    Assertions.assertFalse(limiter.tryAcquire(true));
+    Assertions.assertEquals(3, limiter.getInFlight());
+
+    // the cheap request counts against the limit too
+    limiter.release(0, false);
+    Assertions.assertFalse(limiter.tryAcquire(false));
+    limiter.release(0, false);
+    Assertions.assertTrue(limiter.tryAcquire(false));
+  }
+
+  /**
+   * This method tests that low-priority requests are admitted while live requests are in flight,
+   * but only fill their share of the limit.
+   */
+  @Test
+  public void testLowPriority() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 1, 10, 0);
+    Assertions.assertTrue(limiter.tryAcquire(false));
+    Assertions.assertTrue(limiter.tryAcquireLowPriority(0.25));
+    Assertions.assertFalse(limiter.tryAcquireLowPriority(0.25));
+    // live requests may still use the rest of the limit
+    for (int i = 0; i < 6; i++) {
+      Assertions.assertTrue(limiter.tryAcquire(false));
+    }
+    Assertions.assertFalse(limiter.tryAcquire(false));
+  }
+
+  /** This method tests that the limit grows while latency is steady and shrinks when it rises. */
+  @Test
+  public void testAdaptation() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 100, 0);
+    for (int i = 0; i < 200; i++) {
+      fill(limiter);
+      release(limiter, 10 * MILLIS);
+    }
+    int grown = limiter.getLimit();
+    Assertions.assertTrue(grown > 10);
+
+    for (int i = 0; i < 5; i++) {
+      fill(limiter);
+      release(limiter, 100 * MILLIS);
+    }
+    Assertions.assertTrue(limiter.getLimit() < grown);
+    Assertions.assertTrue(limiter.getLimit() >= 2);
+  }
+
+  /** This method tests that cheap requests do not move the limit. */
+  @Test
+  public void testCheapRequestsNotSampled() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 100, 0);
+    for (int i = 0; i < 200; i++) {
+      fill(limiter);
+      while (limiter.getInFlight() > 0) {
+        limiter.release(100 * MILLIS, false);
+      }
+    }
+    Assertions.assertEquals(10, limiter.getLimit());
+  }
+
+  /**
+   * Admits requests until the limiter is full.
+   *
+   * @param limiter the limiter to fill
+   */
+  private static void fill(ConcurrencyLimiter limiter) {
+    while (limiter.tryAcquire(false)) {
+      // keep admitting
+    }
+  }
+
+  /**
+   * Releases every request in flight with the same latency.
+   *
+   * @param limiter the limiter to release
+   * @param latencyNanos the latency of each request
+   */
+  private static void release(ConcurrencyLimiter limiter, long latencyNanos) {
+    while (limiter.getInFlight() > 0) {
+      limiter.release(latencyNanos, true);
+    }
+  }
+}
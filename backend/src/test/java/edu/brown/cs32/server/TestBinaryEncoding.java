@@ -0,0 +1,173 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import edu.brown.cs.student.sprint5.server.handlers.JSONDataHandler;
+import edu.brown.cs.student.sprint5.server.proxies.BoundingBoxProxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.BinaryDecoder;
+import edu.brown.cs.student.sprint5.server.responseformatting.BinaryDecoder.BinaryResponse;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Geometry;
+import edu.brown.cs.student.sprint5.server.responseformatting.RawJson;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.*;
+import spark.Service;
+
+/**
+ * This class contains tests for the compact binary response format and for choosing it with the
+ * Accept header, using the small mocked GeoJSON file.
+ */
+public class TestBinaryEncoding {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+
+  private FeatureCollection data;
+
+  /**
+   * This method is run before each test. It loads the mocked data.
+   *
+   * @throws Exception if the mocked data cannot be read
+   */
+  @BeforeEach
+  public void setup() throws Exception {
+    this.data = fromJsonFile(MOCK_GEOJSON_PATH, FeatureCollection.class);
+  }
+
+  /**
+   * This method tests that a response decodes to the same features, in the same order, and to the
+   * same JSON for the rest of the response.
+   *
+   * @throws Exception if decoding fails
+   */
+  @Test
+  public void testRoundTrip() throws Exception {
+    ServerResponse response =
+        new ServerResponse(Map.of(FEATURES, this.data))
+            .withParams(Map.of(MIN_LAT_PARAM, new String[] {"41"}));
+    BinaryResponse decoded = BinaryDecoder.decode(response.encodeBinary(CancellationToken.NONE));
+
+    Assertions.assertEquals(RawJson.of(this.data).json(), RawJson.of(decoded.features()).json());
+    Assertions.assertEquals(
+        new ServerResponse(SUCCESS_MESSAGE, null, Map.of(), response.params()).serialize(),
+        decoded.envelopeJson());
+  }
+
+  /**
+   * This method tests that a response whose features were read back from the disk cache as raw JSON
+   * encodes the same as one holding the parsed features, and is only parsed once however many times
+   * it is encoded.
+   *
+   * @throws Exception if decoding fails
+   */
+  @Test
+  public void testRawJsonFeatures() throws Exception {
+    byte[] parsed =
+        new ServerResponse(Map.of(FEATURES, this.data)).encodeBinary(CancellationToken.NONE);
+    RawJson json = RawJson.of(this.data);
+    ServerResponse stored = new ServerResponse(Map.of(FEATURES, json));
+    Assertions.assertArrayEquals(parsed, stored.encodeBinary(CancellationToken.NONE));
+    FeatureCollection first = json.toFeatureCollection();
+    Assertions.assertArrayEquals(parsed, stored.encodeBinary(CancellationToken.NONE));
+    Assertions.assertSame(first, json.toFeatureCollection());
+  }
+
+  /** This method tests that the binary format is smaller than the JSON it replaces. */
+  @Test
+  public void testSmallerThanJson() {
+    ServerResponse response = new ServerResponse(Map.of(FEATURES, this.data));
+    int json = response.serialize().getBytes(StandardCharsets.UTF_8).length;
+    int binary = response.encodeBinary(CancellationToken.NONE).length;
+    Assertions.assertTrue(binary < json / 2, binary + " bytes is not under half of " + json);
+  }
+
+  /**
+   * This method tests responses without features, null features and properties, and that bytes that
+   * are not a complete response are rejected.
+   *
+   * @throws Exception if decoding fails
+   */
+  @Test
+  public void testNullsAndErrors() throws Exception {
+    ServerResponse error = new ServerResponse(ERROR_BAD_REQUEST, MISSING_PARAMS);
+    BinaryResponse decoded = BinaryDecoder.decode(error.encodeBinary(CancellationToken.NONE));
+    Assertions.assertNull(decoded.features());
+    Assertions.assertEquals(error.serialize(), decoded.envelopeJson());
+
+    Set<Feature> features = new LinkedHashSet<>();
+    features.add(null);
+    features.add(new Feature("Feature", new Geometry(null, "MultiPolygon"), null));
+    FeatureCollection sparse = new FeatureCollection("FeatureCollection", features);
+    byte[] encoded =
+        new ServerResponse(Map.of(FEATURES, sparse)).encodeBinary(CancellationToken.NONE);
+    Assertions.assertEquals(
+        RawJson.of(sparse).json(), RawJson.of(BinaryDecoder.decode(encoded).features()).json());
+
+    Assertions.assertThrows(
+        IOException.class, () -> BinaryDecoder.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+    Assertions.assertThrows(
+        IOException.class, () -> BinaryDecoder.decode("{}".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * This method tests that the bounding box endpoint answers in the binary format only when the
+   * Accept header asks for it.
+   *
+   * @throws Exception if the server cannot be started or a request fails
+   */
+  @Test
+  public void testContentNegotiation() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    Service server = Service.ignite().port(port);
+    try {
+      server.get(
+          "/" + BOUNDING_BOX_ENDPOINT,
+          new JSONDataHandler(MOCK_GEOJSON_PATH, FeatureCollection.class, BoundingBoxProxy.class));
+      server.init();
+      server.awaitInitialization();
+      URI uri =
+          URI.create(
+              "http://localhost:"
+                  + port
+                  + "/"
+                  + BOUNDING_BOX_ENDPOINT
+                  + "?minLat=41&maxLat=43&minLng=-72&maxLng=-70");
+      HttpClient client = HttpClient.newHttpClient();
+
+      HttpResponse<byte[]> binary =
+          client.send(
+              HttpRequest.newBuilder(uri).header("Accept", BINARY_FEATURES_TYPE).build(),
+              HttpResponse.BodyHandlers.ofByteArray());
+      Assertions.assertEquals(200, binary.statusCode());
+      Assertions.assertEquals(
+          BINARY_FEATURES_TYPE, binary.headers().firstValue("Content-Type").orElse(""));
+      BinaryResponse decoded = BinaryDecoder.decode(binary.body());
+      Assertions.assertEquals(6, decoded.features().features().size());
+      Assertions.assertTrue(decoded.envelopeJson().contains("\"result\":\"success\""));
+
+      HttpResponse<String> json =
+          client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+      Assertions.assertTrue(json.body().startsWith("{\"result\":\"success\""));
+      Assertions.assertTrue(json.body().contains(FEATURES));
+    } finally {
+      server.stop();
+      server.awaitStop();
+    }
+  }
+}
@@ -0,0 +1,228 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+import static edu.brown.cs.student.sprint5.server.testutils.AssertionUtils.getFeatureCollection;
+
+import edu.brown.cs.student.sprint5.server.cluster.ClusterRouter;
+import edu.brown.cs.student.sprint5.server.cluster.HashRing;
+import edu.brown.cs.student.sprint5.server.datasources.WebAPICall;
+import edu.brown.cs.student.sprint5.server.handlers.JSONDataHandler;
+import edu.brown.cs.student.sprint5.server.layers.LayerRegistry;
+import edu.brown.cs.student.sprint5.server.proxies.BoundingBoxProxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.JsonAdapters;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import spark.Service;
+
+/**
+ * This class contains tests for cluster mode: the consistent-hash ring on its own, and two nodes
+ * running on localhost that forward requests to each other.
+ */
+public class TestCluster {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+  private static final WebAPICall CALLER = new WebAPICall();
+
+  @TempDir Path dataDirectory;
+
+  private List<Service> nodes = new ArrayList<>();
+
+  /** This method is run after each test. It stops every node that is still running. */
+  @AfterEach
+  public void teardown() {
+    for (Service node : this.nodes) {
+      node.stop();
+      node.awaitStop();
+    }
+  }
+
+  /** This method tests that keys are spread evenly and that removing a node only moves its keys. */
+  @Test
+  public void testRing() {
+    List<String> three = List.of("http://a:1", "http://b:1", "http://c:1");
+    HashRing ring = new HashRing(three, CLUSTER_VIRTUAL_NODES);
+    HashRing smaller = new HashRing(List.of("http://a:1", "http://b:1"), CLUSTER_VIRTUAL_NODES);
+    Map<String, Integer> counts = new HashMap<>();
+    for (int i = 0; i < 3000; i++) {
+      String key = "/boundingBox?minLat=" + i;
+      String owner = ring.owner(key);
+      counts.merge(owner, 1, Integer::sum);
+      Assertions.assertEquals(owner, ring.owner(key));
+      if (!owner.equals("http://c:1")) {
+        Assertions.assertEquals(owner, smaller.owner(key));
+      }
+    }
+    for (String node : three) {
+      Assertions.assertTrue(counts.get(node) > 700 && counts.get(node) < 1300);
+    }
+  }
+
+  /** This method tests that canonical keys ignore parameter order and session parameters. */
+  @Test
+  public void testCanonicalKey() {
+    Map<String, String[]> params = new HashMap<>();
+    params.put(MIN_LAT_PARAM, new String[] {"41"});
+    params.put(MAX_LAT_PARAM, new String[] {"42"});
+    String key = ClusterRouter.canonicalKey("/boundingBox", params);
+    params.put(SESSION_PARAM, new String[] {"abc"});
+    params.put(SEQUENCE_PARAM, new String[] {"7"});
+    Assertions.assertEquals(key, ClusterRouter.canonicalKey("/boundingBox", params));
+    Assertions.assertEquals("/boundingBox?maxLat=42&minLat=41&", key);
+  }
+
+  /**
+   * This method tests that a node forwards the requests another node owns, answers its own, and
+   * answers in the owner's place when the owner is down. The two nodes serve different data, so the
+   * answer shows which node computed it.
+   */
+  @Test
+  public void testForwarding() throws Exception {
+    // node b only serves the Massachusetts half of the data, two features of which have geometry
+    FeatureCollection all = fromJsonFile(MOCK_GEOJSON_PATH, FeatureCollection.class);
+    Set<Feature> massachusetts = new LinkedHashSet<>();
+    for (Feature feature : all.features()) {
+      if (feature.properties() != null && "MA".equals(feature.properties().state())) {
+        massachusetts.add(feature);
+      }
+    }
+    Path massachusettsPath = this.dataDirectory.resolve("mockGeoJSON.json");
+    Files.writeString(
+        massachusettsPath,
+        JsonAdapters.<FeatureCollection>adapter(FeatureCollection.class)
+            .toJson(new FeatureCollection(all.type(), massachusetts)));
+
+    int portA = freePort();
+    int portB = freePort();
+    String a = "http://localhost:" + portA;
+    String b = "http://localhost:" + portB;
+    List<String> members = List.of(a, b);
+    startNode(portA, MOCK_GEOJSON_PATH, new ClusterRouter(a, members));
+    Service nodeB = startNode(portB, massachusettsPath.toString(), new ClusterRouter(b, members));
+
+    // find a query that each node owns; every one of them covers both states
+    String ownedByA = queryOwnedBy(a, members);
+    String ownedByB = queryOwnedBy(b, members);
+
+    // node a answers its own query from all the data, and gets b's query answered by b
+    Assertions.assertEquals(6, countFeatures(a, ownedByA));
+    Assertions.assertEquals(2, countFeatures(a, ownedByB));
+    Assertions.assertEquals(6, countFeatures(b, ownedByA));
+    Assertions.assertEquals(2, countFeatures(b, ownedByB));
+
+    // once b is down, a answers b's queries itself
+    nodeB.stop();
+    nodeB.awaitStop();
+    this.nodes.remove(nodeB);
+    Assertions.assertEquals(6, countFeatures(a, ownedByB));
+  }
+
+  /**
+   * This method tests that a node that may not forward any more requests rejects the ones another
+   * node owns as overloaded, while it still answers its own.
+   */
+  @Test
+  public void testForwardCap() throws Exception {
+    int portA = freePort();
+    int portB = freePort();
+    String a = "http://localhost:" + portA;
+    String b = "http://localhost:" + portB;
+    List<String> members = List.of(a, b);
+    startNode(portA, MOCK_GEOJSON_PATH, new ClusterRouter(a, members, 0));
+    startNode(portB, MOCK_GEOJSON_PATH, new ClusterRouter(b, members));
+
+    Assertions.assertEquals(6, countFeatures(a, queryOwnedBy(a, members)));
+    ServerResponse rejected =
+        CALLER.makeRequest(
+            a + "/" + BOUNDING_BOX_ENDPOINT + "?" + queryOwnedBy(b, members), ServerResponse.class);
+    Assertions.assertEquals(ERROR_OVERLOADED, rejected.responseCode());
+    Assertions.assertEquals(6, countFeatures(b, queryOwnedBy(a, members)));
+  }
+
+  /**
+   * Finds a bounding box query owned by a node. Every query it tries covers both states of the mock
+   * data.
+   *
+   * @param owner the base URL of the node that should own the query
+   * @param members the base URLs of every node of the cluster
+   * @return the query string
+   */
+  private static String queryOwnedBy(String owner, List<String> members) {
+    ClusterRouter router = new ClusterRouter(owner, members);
+    for (int i = 0; ; i++) {
+      Map<String, String[]> params = new HashMap<>();
+      params.put(MIN_LAT_PARAM, new String[] {"41"});
+      params.put(MIN_LNG_PARAM, new String[] {"-72"});
+      params.put(MAX_LAT_PARAM, new String[] {"43"});
+      params.put(MAX_LNG_PARAM, new String[] {String.valueOf(-70 + i)});
+      if (router.owns("/" + BOUNDING_BOX_ENDPOINT, params)) {
+        return "minLat=41&minLng=-72&maxLat=43&maxLng=" + (-70 + i);
+      }
+    }
+  }
+
+  /**
+   * Sends a bounding box query to a node and counts the features in its answer.
+   *
+   * @param node the base URL of the node
+   * @param query the query string
+   * @return the number of features in the node's answer
+   * @throws Exception if the request fails
+   */
+  private static int countFeatures(String node, String query) throws Exception {
+    ServerResponse response =
+        CALLER.makeRequest(node + "/" + BOUNDING_BOX_ENDPOINT + "?" + query, ServerResponse.class);
+    Assertions.assertEquals(SUCCESS_MESSAGE, response.responseCode());
+    return getFeatureCollection(response).features().size();
+  }
+
+  /**
+   * Starts a node serving the bounding box endpoint.
+   *
+   * @param port the port the node listens on
+   * @param dataPath the path of the GeoJSON file the node serves
+   * @param router the node's cluster router
+   * @return the running node
+   * @throws Exception if the handler cannot be created
+   */
+  private Service startNode(int port, String dataPath, ClusterRouter router) throws Exception {
+    Service node = Service.ignite().port(port);
+    node.get(
+        "/" + BOUNDING_BOX_ENDPOINT,
+        new JSONDataHandler(
+            new LayerRegistry(dataPath, FeatureCollection.class),
+            BoundingBoxProxy.class,
+            null,
+            null,
+            router));
+    node.init();
+    node.awaitInitialization();
+    this.nodes.add(node);
+    return node;
+  }
+
+  /**
+   * Finds a port that nothing is listening on.
+   *
+   * @return the port
+   * @throws IOException if no port can be opened
+   */
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
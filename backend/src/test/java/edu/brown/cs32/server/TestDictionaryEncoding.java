@@ -0,0 +1,161 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import com.squareup.moshi.JsonReader;
+import edu.brown.cs.student.sprint5.server.responseformatting.DescriptionMap;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Properties;
+import edu.brown.cs.student.sprint5.server.responseformatting.GeoJsonAdapters;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import okio.Buffer;
+import org.junit.jupiter.api.*;
+
+/**
+ * This class contains tests for the dictionary encoding of feature properties as a
+ * FeatureCollection is read.
+ */
+public class TestDictionaryEncoding {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+
+  /**
+   * This method tests that repeated strings and description keys are shared between the features of
+   * a collection, whether the features are parsed on one thread or on several.
+   *
+   * @throws IOException if the mocked GeoJSON cannot be read
+   */
+  @Test
+  public void testSharesRepeatedStrings() throws IOException {
+    FeatureCollection data = fromJsonFile(MOCK_GEOJSON_PATH, FeatureCollection.class);
+    assertShared(properties(data));
+
+    ExecutorService workers = Executors.newFixedThreadPool(3);
+    try {
+      FeatureCollection parallel =
+          GeoJsonAdapters.readFeatureCollection(
+              JsonReader.of(new Buffer().writeUtf8(Files.readString(Path.of(MOCK_GEOJSON_PATH)))),
+              workers,
+              1,
+              2);
+      assertShared(properties(parallel));
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+  /**
+   * This method tests that short description values are shared and long ones are kept as read.
+   *
+   * @throws IOException if the JSON cannot be read
+   */
+  @Test
+  public void testSharesShortValuesOnly() throws IOException {
+    String longText = "x".repeat(DICTIONARY_MAX_VALUE_LENGTH + 1);
+    String feature =
+        "{\"type\":\"Feature\",\"properties\":{\"neighborhood_id\":%d,"
+            + "\"area_description_data\":{\"1\":\"Good\",\"2\":\""
+            + longText
+            + "\"}}}";
+    FeatureCollection data =
+        GeoJsonAdapters.readFeatureCollection(
+            JsonReader.of(
+                new Buffer()
+                    .writeUtf8(
+                        "{\"features\":["
+                            + String.format(feature, 1)
+                            + ","
+                            + String.format(feature, 2)
+                            + "]}")));
+    List<Properties> properties = properties(data);
+    Assertions.assertEquals(2, properties.size());
+    Map<String, String> first = properties.get(0).area_description_data();
+    Map<String, String> second = properties.get(1).area_description_data();
+    Assertions.assertSame(first.get("1"), second.get("1"));
+    Assertions.assertEquals(first.get("2"), second.get("2"));
+    Assertions.assertNotSame(first.get("2"), second.get("2"));
+  }
+
+  /**
+   * This method tests that descriptions read into a DescriptionMap behave like the LinkedHashMap
+   * they used to be read into: same order, same lookups, equal maps, and a repeated field keeps its
+   * first position and last value. The map cannot be modified.
+   *
+   * @throws IOException if the JSON cannot be read
+   */
+  @Test
+  public void testDescriptionMap() throws IOException {
+    Properties properties =
+        GeoJsonAdapters.readProperties(
+            JsonReader.of(
+                new Buffer()
+                    .writeUtf8(
+                        "{\"area_description_data\":{\"b\":\"1\",\"a\":null,\"c\":\"3\",\"b\":\"2\"}}")));
+    Map<String, String> descriptions = properties.area_description_data();
+    Assertions.assertTrue(descriptions instanceof DescriptionMap);
+
+    Map<String, String> expected = new LinkedHashMap<>();
+    expected.put("b", "2");
+    expected.put("a", null);
+    expected.put("c", "3");
+    Assertions.assertEquals(expected, descriptions);
+    Assertions.assertEquals(expected.hashCode(), descriptions.hashCode());
+    Assertions.assertEquals(List.of("b", "a", "c"), new ArrayList<>(descriptions.keySet()));
+    Assertions.assertEquals("3", descriptions.get("c"));
+    Assertions.assertNull(descriptions.get("d"));
+    Assertions.assertTrue(descriptions.containsKey("a"));
+    Assertions.assertFalse(descriptions.containsKey("d"));
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> descriptions.put("d", "4"));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new DescriptionMap(new String[] {"a"}, new String[0]));
+  }
+
+  /**
+   * Asserts that the features of a collection share their repeated strings.
+   *
+   * @param properties the properties of the collection's features, at least two of them from the
+   *     same city with descriptions of the same fields
+   */
+  private static void assertShared(List<Properties> properties) {
+    Properties first = properties.get(0);
+    Properties second = properties.get(1);
+    Assertions.assertEquals(first.city(), second.city());
+    Assertions.assertSame(first.city(), second.city());
+    Assertions.assertSame(first.state(), second.state());
+    Assertions.assertEquals(
+        new ArrayList<>(first.area_description_data().keySet()),
+        new ArrayList<>(second.area_description_data().keySet()));
+    for (int i = 0; i < first.area_description_data().size(); i++) {
+      Assertions.assertSame(
+          new ArrayList<>(first.area_description_data().keySet()).get(i),
+          new ArrayList<>(second.area_description_data().keySet()).get(i));
+    }
+  }
+
+  /**
+   * Returns the properties of the features of a collection, in order.
+   *
+   * @param data the collection
+   * @return the non-null properties
+   */
+  private static List<Properties> properties(FeatureCollection data) {
+    List<Properties> properties = new ArrayList<>();
+    for (Feature feature : data.features()) {
+      if (feature != null && feature.properties() != null) {
+        properties.add(feature.properties());
+      }
+    }
+    return properties;
+  }
+}
@@ -0,0 +1,207 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import edu.brown.cs.student.sprint5.server.diskcache.DiskCache;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
+import edu.brown.cs.student.sprint5.server.proxies.BoundingBoxProxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.RawJson;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * This class contains unit tests for the on-disk response cache: storing and reading values,
+ * reopening the cache as a restarted server would, recovering from a torn write, compaction, and
+ * serving proxy responses from disk.
+ */
+public class TestDiskCache {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+
+  @TempDir Path directory;
+
+  /**
+   * This method tests that values read back as they were written, with and without compression, and
+   * that a later value replaces an earlier one.
+   *
+   * @throws IOException if the cache cannot be opened
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    for (boolean compress : new boolean[] {true, false}) {
+      DiskCache cache =
+          new DiskCache(this.directory.resolve("cache-" + compress), 1 << 20, 1 << 16, compress);
+      String value = "{\"type\":\"FeatureCollection\",\"features\":[]}".repeat(50);
+      cache.put("a", value);
+      cache.put("b", "second");
+      Assertions.assertEquals(value, cache.get("a"));
+      Assertions.assertEquals("second", cache.get("b"));
+      Assertions.assertNull(cache.get("c"));
+
+      cache.put("b", "replaced");
+      Assertions.assertEquals("replaced", cache.get("b"));
+      Assertions.assertEquals(2, cache.size());
+    }
+  }
+
+  /**
+   * This method tests that values written before the cache is reopened are still there, including
+   * those in sealed, memory-mapped segments.
+   *
+   * @throws IOException if the cache cannot be opened
+   */
+  @Test
+  public void testReopen() throws IOException {
+    DiskCache cache = new DiskCache(this.directory, 1 << 20, 256, true);
+    for (int i = 0; i < 20; i++) {
+      cache.put("key" + i, "value" + i);
+    }
+    cache.put("key3", "newest");
+
+    DiskCache reopened = new DiskCache(this.directory, 1 << 20, 256, true);
+    Assertions.assertEquals(20, reopened.size());
+    Assertions.assertEquals("value0", reopened.get("key0"));
+    Assertions.assertEquals("newest", reopened.get("key3"));
+    Assertions.assertEquals("value19", reopened.get("key19"));
+  }
+
+  /**
+   * This method tests that a record cut off by a crash is dropped when the cache is reopened,
+   * keeping the records before it.
+   *
+   * @throws IOException if the cache or its segment cannot be opened
+   */
+  @Test
+  public void testTornWrite() throws IOException {
+    DiskCache cache = new DiskCache(this.directory, 1 << 20, 1 << 16, false);
+    cache.put("kept", "value");
+    cache.put("torn", "a value that will be cut off");
+
+    Path segment;
+    try (Stream<Path> files = Files.list(this.directory)) {
+      segment = files.findFirst().orElseThrow();
+    }
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 5);
+    }
+
+    DiskCache reopened = new DiskCache(this.directory, 1 << 20, 1 << 16, false);
+    Assertions.assertEquals("value", reopened.get("kept"));
+    Assertions.assertNull(reopened.get("torn"));
+    reopened.put("after", "still readable");
+    Assertions.assertEquals(
+        "still readable", new DiskCache(this.directory, 1 << 20, 1 << 16, false).get("after"));
+  }
+
+  /**
+   * This method tests that compaction keeps the cache near its size bound, and that values read
+   * since they were written survive it while the others are dropped.
+   *
+   * @throws IOException if the cache cannot be opened
+   */
+  @Test
+  public void testCompaction() throws IOException {
+    String value = "x".repeat(100);
+    DiskCache cache = new DiskCache(this.directory, 2_000, 500, false);
+    cache.put("hot", value);
+    cache.put("cold", value);
+    for (int i = 0; i < 50; i++) {
+      Assertions.assertEquals(value, cache.get("hot"));
+      cache.put("filler" + i, value);
+    }
+    Assertions.assertTrue(cache.totalBytes() <= 2_000 + 500);
+    Assertions.assertEquals(value, cache.get("hot"));
+    Assertions.assertNull(cache.get("cold"));
+    Assertions.assertNull(cache.get("filler0"));
+    Assertions.assertEquals(value, cache.get("filler49"));
+  }
+
+  /**
+   * This method tests that compaction keeps sealing segments at the segment size when every value
+   * has been read, rather than copying them all into one oversized segment.
+   *
+   * @throws IOException if the cache cannot be opened
+   */
+  @Test
+  public void testCompactionAllReferenced() throws IOException {
+    String value = "x".repeat(100);
+    DiskCache cache = new DiskCache(this.directory, 2_000, 500, false);
+    for (int i = 0; i < 100; i++) {
+      cache.put("key" + i, value);
+      for (int j = Math.max(0, i - 30); j <= i; j++) {
+        cache.get("key" + j);
+      }
+    }
+    Assertions.assertEquals(value, cache.get("key99"));
+
+    long segments = 0;
+    try (Stream<Path> files = Files.list(this.directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        // a segment is sealed by the record that takes it to the segment size or past it
+        Assertions.assertTrue(Files.size(file) < 500 + 200, file + " is " + Files.size(file));
+        segments++;
+      }
+    }
+    Assertions.assertTrue(segments > 1);
+  }
+
+  /**
+   * This method tests that a proxy with an empty memory cache answers from the disk cache with the
+   * same output, and that responses to another version of the data are not served.
+   *
+   * @throws Exception if the mocked GeoJSON cannot be read or a response cannot be computed
+   */
+  @Test
+  public void testProxyFallsBackToDisk() throws Exception {
+    FeatureCollection data = fromJsonFile(MOCK_GEOJSON_PATH, FeatureCollection.class);
+    DiskCache cache = new DiskCache(this.directory, 1 << 20, 1 << 16, true);
+    TestSessions.FakeRequest request =
+        new TestSessions.FakeRequest(
+            Map.of(
+                MIN_LAT_PARAM, "41.0",
+                MIN_LNG_PARAM, "-72.0",
+                MAX_LAT_PARAM, "42.0",
+                MAX_LNG_PARAM, "-71.0"));
+
+    ServerResponse computed =
+        new BoundingBoxProxy(new PartitionedDataset(data, "v1"), cache)
+            .getResponsePercolate(request);
+    Assertions.assertEquals(1, cache.size());
+    Assertions.assertTrue(computed.data().get(FEATURES) instanceof FeatureCollection);
+
+    // a restarted server: a new proxy and a reopened cache
+    DiskCache reopened = new DiskCache(this.directory, 1 << 20, 1 << 16, true);
+    ServerResponse stored =
+        new BoundingBoxProxy(new PartitionedDataset(data, "v1"), reopened)
+            .getResponsePercolate(request);
+    Assertions.assertTrue(stored.data().get(FEATURES) instanceof RawJson);
+    Assertions.assertEquals(computed.serialize(), stored.serialize());
+
+    ServerResponse otherVersion =
+        new BoundingBoxProxy(new PartitionedDataset(data, "v2"), reopened)
+            .getResponsePercolate(request);
+    Assertions.assertTrue(otherVersion.data().get(FEATURES) instanceof FeatureCollection);
+    Assertions.assertEquals(2, reopened.size());
+
+    // errors are not stored
+    new BoundingBoxProxy(new PartitionedDataset(data, "v1"), reopened)
+        .getResponsePercolate(
+            new TestSessions.FakeRequest(
+                Map.of(
+                    MIN_LAT_PARAM, "100",
+                    MIN_LNG_PARAM, "-72.0",
+                    MAX_LAT_PARAM, "42.0",
+                    MAX_LNG_PARAM, "-71.0")));
+    Assertions.assertEquals(2, reopened.size());
+  }
+}
@@ -0,0 +1,109 @@
+package edu.brown.cs32.server;
+
+import edu.brown.cs.student.sprint5.server.filters.BoundingBoxFilter;
+import edu.brown.cs.student.sprint5.server.filters.FeatureFilter;
+import edu.brown.cs.student.sprint5.server.filters.FilterExecutor;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureArraySet;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Geometry;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Properties;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import org.junit.jupiter.api.*;
+
+/**
+ * This class contains unit tests for the chunked filter executor, over synthetic collections large
+ * enough to be split across the filter pool.
+ */
+public class TestFilterExecutor {
+
+  /**
+   * Builds a line of single-point features running east from the origin.
+   *
+   * @param count the number of features
+   * @return the features, ordered by longitude
+   */
+  private static Feature[] features(int count) {
+    Feature[] features = new Feature[count];
+    for (int i = 0; i < count; i++) {
+      double[][][][] coordinates = {{{{i * 0.001, 0}}}};
+      features[i] =
+          new Feature(
+              "Feature",
+              new Geometry(coordinates, "MultiPolygon"),
+              new Properties("city", "state", "name", "id" + i, "A", i, Map.of()));
+    }
+    return features;
+  }
+
+  /** This method tests that split and unsplit scans find the same features, in array order. */
+  @Test
+  public void testMatchesSequentialScan() {
+    for (int count : new int[] {0, 10, 5_000, 50_001}) {
+      Feature[] features = features(count);
+      FeatureFilter filter = new BoundingBoxFilter(-1, 1, 1.5, 30.5);
+      List<Feature> expected = new ArrayList<>();
+      for (Feature feature : features) {
+        if (filter.featureMeetsCriteria(feature)) {
+          expected.add(feature);
+        }
+      }
+      Set<Feature> actual = FilterExecutor.filter(features, filter, CancellationToken.NONE);
+      Assertions.assertEquals(expected, new ArrayList<>(actual));
+    }
+  }
+
+  /** This method tests that several arrays are filtered as one sequence, in order. */
+  @Test
+  public void testMultipleArrays() {
+    Feature[] features = features(30_000);
+    List<Feature[]> arrays =
+        List.of(
+            Arrays.copyOfRange(features, 0, 100),
+            new Feature[0],
+            Arrays.copyOfRange(features, 100, 20_000),
+            Arrays.copyOfRange(features, 20_000, 30_000));
+    FeatureFilter filter = new BoundingBoxFilter(-1, 1, 0.05, 25.5);
+    Assertions.assertEquals(
+        new ArrayList<>(FilterExecutor.filter(features, filter, CancellationToken.NONE)),
+        new ArrayList<>(FilterExecutor.filter(arrays, filter, CancellationToken.NONE)));
+    Assertions.assertEquals(
+        25_451, FilterExecutor.filter(arrays, filter, CancellationToken.NONE).size());
+  }
+
+  /** This method tests that a cancelled token stops the scan. */
+  @Test
+  public void testCancelled() {
+    CancellationToken token = new CancellationToken();
+    token.cancel();
+    Assertions.assertThrows(
+        CancellationException.class,
+        () -> FilterExecutor.filter(features(50_000), feature -> true, token));
+  }
+
+  /**
+   * This method tests that a collection keeps its features in one array, in order, that repeated
+   * filters reuse rather than copy.
+   */
+  @Test
+  public void testCollectionReusesArray() {
+    Feature[] features = features(1_000);
+    FeatureCollection collection =
+        new FeatureCollection("FeatureCollection", new LinkedHashSet<>(Arrays.asList(features)));
+    Feature[] array = ((FeatureArraySet) collection.features()).array();
+    Assertions.assertArrayEquals(features, array);
+    FeatureFilter filter = new BoundingBoxFilter(-1, 1, 0.1, 0.2);
+    Assertions.assertEquals(
+        collection.filterFeatureCollection(filter), collection.filterFeatureCollection(filter));
+    Assertions.assertSame(array, ((FeatureArraySet) collection.features()).array());
+    Assertions.assertThrows(
+        UnsupportedOperationException.class, () -> collection.features().add(features[0]));
+  }
+}
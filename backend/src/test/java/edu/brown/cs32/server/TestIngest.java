@@ -0,0 +1,152 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromGeoJsonFile;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.JsonReader;
+import edu.brown.cs.student.sprint5.server.datasources.JSONReader;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.GeoJsonAdapters;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import okio.Buffer;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * This class contains tests for reading GeoJSON with the features parsed on worker threads,
+ * comparing it with reading on one thread.
+ */
+public class TestIngest {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+
+  @TempDir Path directory;
+
+  private ExecutorService workers;
+
+  /** This method is run before each test. It starts the worker threads. */
+  @BeforeEach
+  public void setup() {
+    this.workers = Executors.newFixedThreadPool(4);
+  }
+
+  /** This method is run after each test. It stops the worker threads. */
+  @AfterEach
+  public void teardown() {
+    this.workers.shutdownNow();
+  }
+
+  /**
+   * This method tests that the mocked GeoJSON reads the same in parallel as on one thread, whatever
+   * the batch size and however many batches may be in flight.
+   *
+   * @throws IOException if the mocked GeoJSON cannot be read
+   */
+  @Test
+  public void testMatchesSequentialRead() throws IOException {
+    String json = Files.readString(Path.of(MOCK_GEOJSON_PATH));
+    String expected = toJson(fromJsonFile(MOCK_GEOJSON_PATH, FeatureCollection.class));
+    for (int batchSize : new int[] {1, 2, 3, 100}) {
+      for (int inFlight : new int[] {1, 2, 8}) {
+        Assertions.assertEquals(expected, toJson(readInParallel(json, batchSize, inFlight)));
+      }
+    }
+    Assertions.assertEquals(expected, toJson(fromGeoJsonFile(MOCK_GEOJSON_PATH, this.workers, 2)));
+  }
+
+  /**
+   * This method tests that many features, some of them null or without geometry, keep their order
+   * when they are parsed in parallel, along with fields the reader does not know.
+   *
+   * @throws IOException if the JSON cannot be read
+   */
+  @Test
+  public void testKeepsOrder() throws IOException {
+    Random random = new Random(3);
+    StringBuilder json = new StringBuilder("{\"bbox\":[1,2],\"features\":[");
+    for (int i = 0; i < 5000; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      if (i % 97 == 0) {
+        json.append("null");
+        continue;
+      }
+      json.append("{\"type\":\"Feature\",\"geometry\":");
+      if (i % 13 == 0) {
+        json.append("null");
+      } else {
+        double lng = -71 + random.nextDouble();
+        double lat = 41 + random.nextDouble();
+        json.append("{\"type\":\"MultiPolygon\",\"coordinates\":[[[")
+            .append("[" + lng + "," + lat + "],[" + (lng + 0.01) + "," + lat + "],")
+            .append("[" + lng + "," + (lat + 0.01) + "],[" + lng + "," + lat + "]]]]}");
+      }
+      json.append(",\"properties\":{\"state\":\"RI\",\"neighborhood_id\":")
+          .append(i)
+          .append(",\"area_description_data\":{\"1\":\"text \\\"")
+          .append(i)
+          .append("\\\" ]\"}}}");
+    }
+    json.append("],\"type\":\"FeatureCollection\"}");
+
+    FeatureCollection sequential =
+        GeoJsonAdapters.readFeatureCollection(
+            JsonReader.of(new Buffer().writeUtf8(json.toString())));
+    FeatureCollection parallel = readInParallel(json.toString(), 7, 3);
+    Assertions.assertEquals("FeatureCollection", parallel.type());
+    Assertions.assertEquals(sequential.features().size(), parallel.features().size());
+    Assertions.assertEquals(toJson(sequential), toJson(parallel));
+  }
+
+  /**
+   * This method tests that a feature a worker cannot parse fails the whole read, and that a
+   * truncated file does too.
+   *
+   * @throws IOException if the test file cannot be written
+   */
+  @Test
+  public void testMalformedInput() throws IOException {
+    String badCoordinates =
+        "{\"type\":\"FeatureCollection\",\"features\":[{\"type\":\"Feature\"},"
+            + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"MultiPolygon\",\"coordinates\":\"x\"}}]}";
+    Assertions.assertThrows(JsonDataException.class, () -> readInParallel(badCoordinates, 1, 1));
+
+    Path truncated = this.directory.resolve("truncated.json");
+    String json = Files.readString(Path.of(MOCK_GEOJSON_PATH));
+    Files.writeString(truncated, json.substring(0, json.length() / 2));
+    Assertions.assertThrows(
+        IOException.class, () -> fromGeoJsonFile(truncated.toString(), this.workers, 2));
+  }
+
+  /**
+   * Reads a FeatureCollection, parsing its features on the worker threads.
+   *
+   * @param json the collection's JSON
+   * @param batchSize the number of features in a batch
+   * @param inFlight the most batches that may be read but not yet collected at once
+   * @return the collection
+   * @throws IOException if the JSON is malformed
+   */
+  private FeatureCollection readInParallel(String json, int batchSize, int inFlight)
+      throws IOException {
+    return GeoJsonAdapters.readFeatureCollection(
+        JsonReader.of(new Buffer().writeUtf8(json)), this.workers, batchSize, inFlight);
+  }
+
+  /**
+   * Writes a FeatureCollection as JSON, for comparing collections whose coordinates are arrays.
+   *
+   * @param collection the collection
+   * @return its JSON
+   */
+  private static String toJson(FeatureCollection collection) {
+    return JSONReader.toJson(collection, FeatureCollection.class);
+  }
+}
@@ -0,0 +1,88 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.JsonAdapters;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.*;
+
+/**
+ * This class contains unit tests checking that the hand-written GeoJSON adapters read and write
+ * exactly what Moshi's reflective record adapters do.
+ */
+public class TestJsonAdapters {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+
+  private JsonAdapter<FeatureCollection> reflective;
+  private JsonAdapter<FeatureCollection> handWritten;
+  private String json;
+
+  /**
+   * This method is run before each test. It reads the mocked GeoJSON and sets up both adapters.
+   *
+   * @throws IOException if the mocked GeoJSON cannot be read
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    this.reflective = new Moshi.Builder().build().adapter(FeatureCollection.class);
+    this.handWritten = JsonAdapters.adapter(FeatureCollection.class);
+    this.json = Files.readString(Path.of(MOCK_GEOJSON_PATH));
+  }
+
+  /** This method tests that both adapters write the same JSON for the same collection. */
+  @Test
+  public void testWrite() throws IOException {
+    FeatureCollection data = this.reflective.fromJson(this.json);
+    Assertions.assertEquals(this.reflective.toJson(data), this.handWritten.toJson(data));
+  }
+
+  /** This method tests that both adapters read the same collection from the same JSON. */
+  @Test
+  public void testRead() throws IOException {
+    FeatureCollection expected = this.reflective.fromJson(this.json);
+    FeatureCollection actual = this.handWritten.fromJson(this.json);
+    Assertions.assertEquals(expected.features().size(), actual.features().size());
+    Assertions.assertEquals(this.reflective.toJson(expected), this.reflective.toJson(actual));
+
+    // unknown fields are skipped and nulls are kept
+    FeatureCollection sparse =
+        this.handWritten.fromJson(
+            "{\"type\":\"FeatureCollection\",\"bbox\":[1,2],\"features\":"
+                + "[{\"type\":\"Feature\",\"geometry\":null,\"properties\":{\"city\":null}}]}");
+    Assertions.assertEquals(1, sparse.features().size());
+    Assertions.assertNull(sparse.features().iterator().next().geometry());
+    Assertions.assertNull(sparse.features().iterator().next().properties().city());
+  }
+
+  /** This method tests that a serialized response can be read back. */
+  @Test
+  public void testServerResponse() throws IOException {
+    FeatureCollection data = this.handWritten.fromJson(this.json);
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put(FEATURES, data);
+    responseMap.put(ROWS, 3);
+    String serialized =
+        new ServerResponse(responseMap)
+            .withParams(Map.of(KEYWORD_PARAM, new String[] {"school"}))
+            .serialize();
+
+    Map<String, Object> parsed = JsonAdapters.RESPONSE_ADAPTER.fromJson(serialized);
+    Assertions.assertEquals(SUCCESS_MESSAGE, parsed.get("result"));
+    Assertions.assertNull(parsed.get("errorReason"));
+    Assertions.assertTrue(parsed.containsKey("paramsUsed"));
+    Map<?, ?> responseData = (Map<?, ?>) parsed.get("data");
+    Assertions.assertEquals(3.0, responseData.get(ROWS));
+    Assertions.assertEquals(
+        this.reflective.toJson(data),
+        this.reflective.toJson(this.handWritten.fromJsonValue(responseData.get(FEATURES))));
+  }
+}
@@ -0,0 +1,219 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+import static edu.brown.cs.student.sprint5.server.testutils.AssertionUtils.getFeatureCollection;
+
+import edu.brown.cs.student.sprint5.server.datasources.WebAPICall;
+import edu.brown.cs.student.sprint5.server.handlers.JSONDataHandler;
+import edu.brown.cs.student.sprint5.server.layers.Layer;
+import edu.brown.cs.student.sprint5.server.layers.LayerRegistry;
+import edu.brown.cs.student.sprint5.server.partitions.Partition;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
+import edu.brown.cs.student.sprint5.server.proxies.BoundingBoxProxy;
+import edu.brown.cs.student.sprint5.server.proxies.KeywordSearchProxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.JsonAdapters;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import spark.Service;
+
+/**
+ * This class contains unit tests for the layer registry, using copies of the small mocked GeoJSON
+ * file as layers.
+ */
+public class TestLayers {
+
+  private static final Path MOCK_GEOJSON_PATH = Path.of("data/mocks/mockGeoJSON.json");
+  private static final WebAPICall CALLER = new WebAPICall();
+
+  @TempDir Path layerDirectory;
+
+  private long layerBytes;
+
+  /**
+   * This method is run before each test. It copies the mocked GeoJSON into three layer files.
+   *
+   * @throws IOException if the mocked GeoJSON cannot be copied
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    for (String name : List.of("providence", "boston", "chicago")) {
+      Files.copy(MOCK_GEOJSON_PATH, this.layerDirectory.resolve(name + ".json"));
+    }
+    this.layerBytes = Files.size(MOCK_GEOJSON_PATH) * LAYER_MEMORY_FACTOR;
+  }
+
+  /**
+   * Creates a registry over the layer files, with the mocked GeoJSON as its default layer.
+   *
+   * @param budgetBytes the memory budget of the registry
+   * @return the registry
+   */
+  private LayerRegistry registry(long budgetBytes) {
+    return new LayerRegistry(
+        MOCK_GEOJSON_PATH.toString(),
+        this.layerDirectory.toString(),
+        FeatureCollection.class,
+        budgetBytes);
+  }
+
+  /** This method tests that layers are discovered by file name and only loaded when asked for. */
+  @Test
+  public void testLazyLoading() throws IOException {
+    LayerRegistry layers = registry(-1);
+    Assertions.assertEquals("mockGeoJSON", layers.defaultLayer());
+    Assertions.assertEquals(
+        Set.of("mockGeoJSON", "providence", "boston", "chicago"), Set.copyOf(layers.names()));
+    Assertions.assertFalse(layers.contains("redlining"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> layers.get("redlining"));
+
+    Assertions.assertNull(layers.getIfLoaded("boston"));
+    Layer boston = layers.get("boston");
+    Assertions.assertSame(boston, layers.getIfLoaded("boston"));
+    Assertions.assertNull(layers.getIfLoaded("chicago"));
+
+    // proxies are built per layer, once each
+    Assertions.assertNull(boston.builtProxy(BoundingBoxProxy.class));
+    Assertions.assertSame(
+        boston.proxy(BoundingBoxProxy.class), boston.proxy(BoundingBoxProxy.class));
+    Assertions.assertNotSame(
+        boston.proxy(BoundingBoxProxy.class), layers.get("chicago").proxy(BoundingBoxProxy.class));
+    Assertions.assertNull(boston.builtProxy(KeywordSearchProxy.class));
+  }
+
+  /** This method tests that concurrent first requests for a layer share a single load. */
+  @Test
+  public void testSharedLoad() throws Exception {
+    LayerRegistry layers = registry(-1);
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Layer>> loads = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        loads.add(pool.submit(() -> layers.get("providence")));
+      }
+      Layer first = loads.get(0).get();
+      for (Future<Layer> load : loads) {
+        Assertions.assertSame(first, load.get());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /** This method tests that the least recently used layers are evicted to stay within budget. */
+  @Test
+  public void testEviction() throws IOException {
+    // room for two layers, but not three
+    LayerRegistry layers = registry(this.layerBytes * 5 / 2);
+    layers.get("providence");
+    layers.get("boston");
+    layers.get("providence");
+    layers.get("chicago");
+    Assertions.assertNotNull(layers.getIfLoaded("providence"));
+    Assertions.assertNotNull(layers.getIfLoaded("chicago"));
+    Assertions.assertNull(layers.getIfLoaded("boston"));
+
+    // an evicted layer is loaded again when asked for
+    Assertions.assertNotNull(layers.get("boston"));
+    Assertions.assertNull(layers.getIfLoaded("providence"));
+  }
+
+  /**
+   * This method tests that a layer whose file cannot be read fails to load each time it is asked
+   * for.
+   */
+  @Test
+  public void testMissingFile() throws IOException {
+    LayerRegistry layers = registry(-1);
+    Files.delete(this.layerDirectory.resolve("chicago.json"));
+    Assertions.assertThrows(IOException.class, () -> layers.get("chicago"));
+    Assertions.assertThrows(IOException.class, () -> layers.get("chicago"));
+    Assertions.assertNull(layers.getIfLoaded("chicago"));
+  }
+
+  /**
+   * This method tests that a running server picks up a change to a layer's file: the partition that
+   * changed is answered from the new file, and the partition that did not is kept as it was.
+   */
+  @Test
+  public void testReloadThroughServer() throws Exception {
+    Path path = this.layerDirectory.resolve("providence.json");
+    LayerRegistry layers = new LayerRegistry(path.toString(), FeatureCollection.class);
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    Service node = Service.ignite().port(port);
+    node.get(
+        "/" + BOUNDING_BOX_ENDPOINT,
+        new JSONDataHandler(layers, BoundingBoxProxy.class, null, null, null));
+    node.init();
+    node.awaitInitialization();
+    ScheduledExecutorService reloader = null;
+    try {
+      String base = "http://localhost:" + port;
+      String providence = "minLat=41.8&minLng=-71.43&maxLat=41.84&maxLng=-71.39";
+      String boston = "minLat=42.3&minLng=-71.2&maxLat=42.4&maxLng=-71.0";
+      Assertions.assertEquals(4, countFeatures(base, providence));
+      Assertions.assertEquals(2, countFeatures(base, boston));
+      PartitionedDataset partitions = layers.get("providence").partitions();
+      Partition massachusetts = partitions.partition("MA");
+
+      // drop one Rhode Island neighborhood from the file
+      FeatureCollection all = fromJsonFile(path.toString(), FeatureCollection.class);
+      Feature removed = partitions.partition("RI").features()[0];
+      Set<Feature> kept = new LinkedHashSet<>(all.features());
+      kept.removeIf(feature -> Objects.equals(feature.properties(), removed.properties()));
+      Files.writeString(
+          path,
+          JsonAdapters.<FeatureCollection>adapter(FeatureCollection.class)
+              .toJson(new FeatureCollection(all.type(), kept)));
+      reloader = layers.startReloading(20);
+
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (countFeatures(base, providence) != 3 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      Assertions.assertEquals(3, countFeatures(base, providence));
+      Assertions.assertEquals(2, countFeatures(base, boston));
+      Assertions.assertSame(massachusetts, partitions.partition("MA"));
+    } finally {
+      if (reloader != null) {
+        reloader.shutdownNow();
+      }
+      node.stop();
+      node.awaitStop();
+    }
+  }
+
+  /**
+   * Sends a bounding box query to a server and counts the features in its answer.
+   *
+   * @param base the base URL of the server
+   * @param query the query string
+   * @return the number of features in the server's answer
+   * @throws Exception if the request fails
+   */
+  private static int countFeatures(String base, String query) throws Exception {
+    ServerResponse response =
+        CALLER.makeRequest(base + "/" + BOUNDING_BOX_ENDPOINT + "?" + query, ServerResponse.class);
+    Assertions.assertEquals(SUCCESS_MESSAGE, response.responseCode());
+    return getFeatureCollection(response).features().size();
+  }
+}
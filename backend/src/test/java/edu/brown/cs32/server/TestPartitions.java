@@ -0,0 +1,217 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import edu.brown.cs.student.sprint5.server.filters.BoundingBoxFilter;
+import edu.brown.cs.student.sprint5.server.index.DensityPyramid.DensityCell;
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.index.SpatialIndex;
+import edu.brown.cs.student.sprint5.server.layers.Layer;
+import edu.brown.cs.student.sprint5.server.partitions.Partition;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
+import edu.brown.cs.student.sprint5.server.proxies.AggregateProxy;
+import edu.brown.cs.student.sprint5.server.proxies.BoundingBoxProxy;
+import edu.brown.cs.student.sprint5.server.proxies.DensityProxy;
+import edu.brown.cs.student.sprint5.server.proxies.NearestProxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.*;
+
+/**
+ * This class contains unit tests for partitioned datasets, using the small mocked GeoJSON file,
+ * whose neighborhoods are split between Rhode Island and Massachusetts.
+ */
+public class TestPartitions {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+  private static final Envelope PROVIDENCE = new Envelope(41.8, 41.84, -71.43, -71.39);
+
+  private FeatureCollection data;
+  private PartitionedDataset partitions;
+
+  /**
+   * This method is run before each test. It loads and partitions the mocked GeoJSON.
+   *
+   * @throws IOException if the mocked GeoJSON cannot be read
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    this.data = fromJsonFile(MOCK_GEOJSON_PATH, FeatureCollection.class);
+    this.partitions = new PartitionedDataset(this.data);
+  }
+
+  /** This method tests that features are split by state and that queries reach only nearby ones. */
+  @Test
+  public void testRouting() {
+    Assertions.assertEquals(2, this.partitions.partitions().size());
+    Assertions.assertEquals(4, this.partitions.partition("RI").features().length);
+    Assertions.assertEquals(3, this.partitions.partition("MA").features().length);
+    Assertions.assertEquals(7, this.partitions.all().size());
+
+    List<Partition> routed = this.partitions.route(PROVIDENCE);
+    Assertions.assertEquals(1, routed.size());
+    Assertions.assertEquals("RI", routed.get(0).key());
+    Assertions.assertEquals(2, this.partitions.route(null).size());
+    Assertions.assertTrue(this.partitions.route(new Envelope(0, 1, 0, 1)).isEmpty());
+  }
+
+  /** This method tests that routed, partitioned filtering finds what scanning everything finds. */
+  @Test
+  public void testFilterMatchesFullScan() {
+    for (Envelope box :
+        List.of(PROVIDENCE, new Envelope(41, 43, -72, -70), new Envelope(0, 1, 0, 1))) {
+      BoundingBoxFilter filter =
+          new BoundingBoxFilter(box.minLat(), box.maxLat(), box.minLng(), box.maxLng());
+      Assertions.assertEquals(
+          this.data.filterFeatureCollection(filter),
+          Set.copyOf(this.partitions.filter(box, filter, CancellationToken.NONE)));
+    }
+  }
+
+  /** This method tests that replacing a partition leaves the others and their indexes alone. */
+  @Test
+  public void testReplace() throws Exception {
+    BoundingBoxProxy proxy = new BoundingBoxProxy(this.partitions);
+    String params = "41.8&-71.43&41.84&-71.39";
+    proxy.getResponsePercolate(
+        new TestSessions.FakeRequest(
+            Map.of(
+                MIN_LAT_PARAM, "41.8",
+                MIN_LNG_PARAM, "-71.43",
+                MAX_LAT_PARAM, "41.84",
+                MAX_LNG_PARAM, "-71.39")));
+    Assertions.assertTrue(proxy.cacheContains(params));
+
+    Partition massachusetts = this.partitions.partition("MA");
+    SpatialIndex index = massachusetts.index();
+    Feature kept = this.partitions.partition("RI").features()[0];
+    this.partitions.replace("RI", List.of(kept));
+
+    Assertions.assertSame(massachusetts, this.partitions.partition("MA"));
+    Assertions.assertSame(index, this.partitions.partition("MA").index());
+    Assertions.assertEquals(1, this.partitions.partition("RI").features().length);
+    Assertions.assertFalse(proxy.cacheContains(params));
+
+    this.partitions.replace("RI", List.of());
+    Assertions.assertNull(this.partitions.partition("RI"));
+    Assertions.assertTrue(this.partitions.route(PROVIDENCE).isEmpty());
+  }
+
+  /**
+   * This method tests that a replaced partition only changes the stamps, and so the cached
+   * responses, of the queries that reach it.
+   */
+  @Test
+  public void testReplaceKeepsOtherResponses() throws Exception {
+    BoundingBoxProxy proxy = new BoundingBoxProxy(this.partitions, null);
+    String providence = "41.8&-71.43&41.84&-71.39";
+    String boston = "42.3&-71.2&42.4&-71.0";
+    for (String params : List.of(providence, boston)) {
+      String[] bounds = params.split("&");
+      proxy.getResponsePercolate(
+          new TestSessions.FakeRequest(
+              Map.of(
+                  MIN_LAT_PARAM, bounds[0],
+                  MIN_LNG_PARAM, bounds[1],
+                  MAX_LAT_PARAM, bounds[2],
+                  MAX_LNG_PARAM, bounds[3])));
+    }
+    Assertions.assertEquals("RI@0", PartitionedDataset.stamp(this.partitions.route(PROVIDENCE)));
+
+    this.partitions.replace("RI", List.of(this.partitions.partition("RI").features()[0]));
+
+    Assertions.assertNotEquals("RI@0", PartitionedDataset.stamp(this.partitions.route(PROVIDENCE)));
+    Assertions.assertFalse(proxy.cacheContains(providence));
+    Assertions.assertTrue(proxy.cacheContains(boston));
+  }
+
+  /**
+   * This method tests that the proxies which index the data their own way, and a layer's topology,
+   * answer from a partition's new features once it is replaced.
+   */
+  @Test
+  public void testReplaceReachesEveryProxy() throws Exception {
+    Layer layer = new Layer("mock", this.data, null, 0);
+    PartitionedDataset partitions = layer.partitions();
+    NearestProxy nearest = new NearestProxy(partitions);
+    AggregateProxy aggregate = new AggregateProxy(partitions);
+    DensityProxy density = new DensityProxy(partitions);
+    Map<String, String> nearestParams =
+        Map.of(LAT_PARAM, "41.825", LNG_PARAM, "-71.415", K_PARAM, "10");
+    Map<String, String> aggregateParams = Map.of(STATE_PARAM, "RI");
+    Map<String, String> densityParams =
+        Map.of(
+            MIN_LAT_PARAM, String.valueOf(LAT_LOWER_BOUND),
+            MIN_LNG_PARAM, String.valueOf(LNG_LOWER_BOUND),
+            MAX_LAT_PARAM, String.valueOf(LAT_UPPER_BOUND),
+            MAX_LNG_PARAM, String.valueOf(LNG_UPPER_BOUND),
+            RESOLUTION_PARAM, "1");
+    Feature removed = partitions.partition("RI").features()[0];
+    double[][] removedRing = removed.geometry().coordinates()[0][0];
+
+    Assertions.assertEquals(6, nearestCount(nearest, nearestParams));
+    Assertions.assertEquals(4, aggregateTotal(aggregate, aggregateParams));
+    Assertions.assertEquals(6, densityTotal(density, densityParams));
+    Assertions.assertNotNull(layer.topology().ringArcs(removedRing));
+
+    partitions.replace("RI", List.of(partitions.partition("RI").features()[1]));
+
+    Assertions.assertEquals(3, nearestCount(nearest, nearestParams));
+    Assertions.assertEquals(1, aggregateTotal(aggregate, aggregateParams));
+    Assertions.assertEquals(3, densityTotal(density, densityParams));
+    Assertions.assertNull(layer.topology().ringArcs(removedRing));
+  }
+
+  /**
+   * Asks a nearest proxy for the features closest to a point.
+   *
+   * @param proxy the proxy
+   * @param params the parameters of the request
+   * @return the number of features found
+   * @throws Exception if the response cannot be computed
+   */
+  private static int nearestCount(NearestProxy proxy, Map<String, String> params) throws Exception {
+    ServerResponse response = proxy.getResponsePercolate(new TestSessions.FakeRequest(params));
+    return ((FeatureCollection) response.data().get(FEATURES)).features().size();
+  }
+
+  /**
+   * Asks an aggregate proxy for the number of features in a region.
+   *
+   * @param proxy the proxy
+   * @param params the parameters naming the region
+   * @return the number of features of any grade in the region
+   * @throws Exception if the response cannot be computed
+   */
+  @SuppressWarnings("unchecked")
+  private static long aggregateTotal(AggregateProxy proxy, Map<String, String> params)
+      throws Exception {
+    ServerResponse response = proxy.getResponsePercolate(new TestSessions.FakeRequest(params));
+    return ((Map<String, Long>) response.data().get(GRADE_COUNTS))
+        .values().stream().mapToLong(Long::longValue).sum();
+  }
+
+  /**
+   * Asks a density proxy for a grid and adds up its cells.
+   *
+   * @param proxy the proxy
+   * @param params the parameters of the grid
+   * @return the number of features counted in the grid
+   * @throws Exception if the response cannot be computed
+   */
+  private static int densityTotal(DensityProxy proxy, Map<String, String> params) throws Exception {
+    ServerResponse response = proxy.getResponsePercolate(new TestSessions.FakeRequest(params));
+    int total = 0;
+    for (Object cell : (List<?>) response.data().get(CELLS)) {
+      total += ((DensityCell) cell).counts().values().stream().mapToInt(Integer::intValue).sum();
+    }
+    return total;
+  }
+}
@@ -0,0 +1,232 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import edu.brown.cs.student.sprint5.server.index.KeywordIndex;
+import edu.brown.cs.student.sprint5.server.index.KeywordIndex.ScoredFeature;
+import edu.brown.cs.student.sprint5.server.partitions.Partition;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
+import edu.brown.cs.student.sprint5.server.proxies.KeywordSearchProxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Properties;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import org.junit.jupiter.api.*;
+
+/**
+ * This class contains tests for ranked keyword search, through the keyword search proxy on the
+ * small mocked GeoJSON file and on the index directly.
+ */
+public class TestRankedSearch {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+
+  private PartitionedDataset partitions;
+  private KeywordSearchProxy proxy;
+
+  /**
+   * This method is run before each test. It loads the mocked GeoJSON into a keyword search proxy.
+   *
+   * @throws IOException if the mocked GeoJSON cannot be read
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    FeatureCollection data = fromJsonFile(MOCK_GEOJSON_PATH, FeatureCollection.class);
+    this.partitions = new PartitionedDataset(data);
+    this.proxy = new KeywordSearchProxy(this.partitions, null);
+  }
+
+  /**
+   * This method tests that features matching more of the terms rank first, that shorter
+   * descriptions rank above longer ones, and that k limits the results.
+   *
+   * @throws Exception if the search fails
+   */
+  @Test
+  public void testRanking() throws Exception {
+    ServerResponse response = search(Map.of(KEYWORD_PARAM, "Park school", RANKED_PARAM, "true"));
+    Assertions.assertEquals(SUCCESS_MESSAGE, response.responseCode());
+    Assertions.assertEquals(List.of("B2", "A1", "B1"), holcIds(response));
+    List<?> scores = (List<?>) response.data().get(SCORES);
+    Assertions.assertEquals(3, scores.size());
+    Assertions.assertTrue((Double) scores.get(0) > (Double) scores.get(1));
+    Assertions.assertTrue((Double) scores.get(1) > (Double) scores.get(2));
+
+    response = search(Map.of(KEYWORD_PARAM, "park school", RANKED_PARAM, "true", K_PARAM, "1"));
+    Assertions.assertEquals(List.of("B2"), holcIds(response));
+
+    // unranked searches still return every feature containing the keyword
+    response = search(Map.of(KEYWORD_PARAM, "school"));
+    Assertions.assertEquals(
+        3, ((FeatureCollection) response.data().get(FEATURES)).features().size());
+    Assertions.assertNull(response.data().get(SCORES));
+  }
+
+  /**
+   * This method tests the errors of ranked searches.
+   *
+   * @throws Exception if the search fails
+   */
+  @Test
+  public void testErrors() throws Exception {
+    Assertions.assertEquals(
+        INVALID_RANKED, search(Map.of(KEYWORD_PARAM, "park", RANKED_PARAM, "maybe")).errorSpecs());
+    Assertions.assertEquals(
+        INVALID_SEARCH_K,
+        search(Map.of(KEYWORD_PARAM, "park", RANKED_PARAM, "true", K_PARAM, "0")).errorSpecs());
+    Assertions.assertEquals(
+        INVALID_SEARCH_K,
+        search(Map.of(KEYWORD_PARAM, "park", RANKED_PARAM, "true", K_PARAM, "many")).errorSpecs());
+    ServerResponse none = search(Map.of(KEYWORD_PARAM, "lana del rey", RANKED_PARAM, "true"));
+    Assertions.assertEquals(SUCCESS_MESSAGE, none.responseCode());
+    Assertions.assertTrue(holcIds(none).isEmpty());
+  }
+
+  /**
+   * This method tests that a cancelled ranked search stops, caches nothing, and does not stop a
+   * later search for the same keyword.
+   *
+   * @throws Exception if the search fails for another reason
+   */
+  @Test
+  public void testCancelledRankedSearch() throws Exception {
+    Map<String, String> params = Map.of(KEYWORD_PARAM, "park", RANKED_PARAM, "true");
+    CancellationToken token = new CancellationToken();
+    token.cancel();
+    Assertions.assertThrows(
+        CancellationException.class,
+        () -> this.proxy.getResponsePercolate(new TestSessions.FakeRequest(params), token));
+    Assertions.assertFalse(this.proxy.isCached(new TestSessions.FakeRequest(params)));
+    Assertions.assertFalse(holcIds(search(params)).isEmpty());
+    Assertions.assertTrue(this.proxy.isCached(new TestSessions.FakeRequest(params)));
+  }
+
+  /**
+   * This method tests that a ranked search still running on the old index when every partition is
+   * emptied does not leave its result behind for later searches.
+   *
+   * @throws Exception if the search fails
+   */
+  @Test
+  public void testReplaceDuringRankedSearch() throws Exception {
+    Map<String, String> params = Map.of(KEYWORD_PARAM, "park", RANKED_PARAM, "true");
+    PartitionedDataset partitions = this.partitions;
+    CancellationToken replacing =
+        new CancellationToken() {
+          private boolean replaced;
+
+          @Override
+          public void throwIfCancelled() {
+            if (!this.replaced) {
+              this.replaced = true;
+              for (Partition partition : List.copyOf(partitions.partitions())) {
+                partitions.replace(partition.key(), List.of());
+              }
+            }
+          }
+        };
+    ServerResponse during =
+        this.proxy.getResponsePercolate(new TestSessions.FakeRequest(params), replacing);
+    Assertions.assertFalse(holcIds(during).isEmpty());
+    Assertions.assertTrue(holcIds(search(params)).isEmpty());
+  }
+
+  /**
+   * This method tests that stopping early finds the same scores as scoring every match, on a random
+   * corpus with many ties and many matches per term.
+   */
+  @Test
+  public void testEarlyTerminationMatchesFullScoring() {
+    Random random = new Random(42);
+    String[] vocabulary = {"park", "school", "mill", "railroad", "river", "church", "store"};
+    List<Feature> features = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      Map<String, String> descriptions = new HashMap<>();
+      for (String field : new String[] {"1", "2"}) {
+        StringBuilder text = new StringBuilder();
+        for (int w = random.nextInt(12); w >= 0; w--) {
+          text.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+        }
+        descriptions.put(field, text.toString());
+      }
+      features.add(feature(i, descriptions));
+    }
+    KeywordIndex index = new KeywordIndex(features, Map.of("2", 2.0), BM25_K1, BM25_B);
+
+    for (String query : new String[] {"park", "park school", "mill railroad river", "store"}) {
+      List<ScoredFeature> all = index.search(query, features.size(), CancellationToken.NONE);
+      for (int k : new int[] {1, 5, 50}) {
+        List<ScoredFeature> top = index.search(query, k, CancellationToken.NONE);
+        Assertions.assertEquals(k, top.size());
+        for (int i = 0; i < k; i++) {
+          Assertions.assertEquals(all.get(i).score(), top.get(i).score(), 1e-9, query);
+        }
+      }
+    }
+  }
+
+  /** This method tests that boosting a field ranks matches in it above matches elsewhere. */
+  @Test
+  public void testBoosts() {
+    Feature inTitle = feature(1, Map.of("title", "park", "body", "homes"));
+    Feature inBody = feature(2, Map.of("title", "homes", "body", "park"));
+    List<Feature> features = List.of(inBody, inTitle);
+
+    KeywordIndex boosted =
+        new KeywordIndex(features, KeywordIndex.parseBoosts("title=3, body=1"), BM25_K1, BM25_B);
+    Assertions.assertEquals(
+        inTitle, boosted.search("park", 2, CancellationToken.NONE).get(0).feature());
+    KeywordIndex plain = new KeywordIndex(features, Map.of(), BM25_K1, BM25_B);
+    List<ScoredFeature> results = plain.search("park", 2, CancellationToken.NONE);
+    Assertions.assertEquals(results.get(0).score(), results.get(1).score(), 1e-9);
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> KeywordIndex.parseBoosts("title"));
+  }
+
+  /**
+   * Runs a keyword search through the proxy.
+   *
+   * @param params the query parameters
+   * @return the response
+   * @throws Exception if the search fails
+   */
+  private ServerResponse search(Map<String, String> params) throws Exception {
+    return this.proxy.getResponsePercolate(new TestSessions.FakeRequest(params));
+  }
+
+  /**
+   * Returns the HOLC ids of the features of a response, in order.
+   *
+   * @param response the response
+   * @return the HOLC ids
+   */
+  private static List<String> holcIds(ServerResponse response) {
+    List<String> ids = new ArrayList<>();
+    for (Feature feature : ((FeatureCollection) response.data().get(FEATURES)).features()) {
+      ids.add(feature.properties().holc_id());
+    }
+    return ids;
+  }
+
+  /**
+   * Builds a feature with the given descriptions and no geometry.
+   *
+   * @param id the feature's neighborhood id
+   * @param descriptions its area_description_data
+   * @return the feature
+   */
+  private static Feature feature(int id, Map<String, String> descriptions) {
+    return new Feature(
+        "Feature", null, new Properties("City", "ST", "Name", "H" + id, "A", id, descriptions));
+  }
+}
@@ -0,0 +1,119 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import edu.brown.cs.student.sprint5.server.proxies.BoundingBoxProxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import edu.brown.cs.student.sprint5.server.sessions.SessionRegistry;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import org.junit.jupiter.api.*;
+import spark.Request;
+
+/**
+ * This class contains unit tests for cancelling the work of requests that a newer request from the
+ * same client session has superseded.
+ */
+public class TestSessions {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+  private static final String PROVIDENCE_PARAMS = "41.8&-71.43&41.84&-71.39";
+
+  private BoundingBoxProxy proxy;
+  private Request providence;
+
+  /**
+   * This method is run before each test. It loads the mocked GeoJSON into a bounding box proxy.
+   *
+   * @throws IOException if the mocked GeoJSON cannot be read
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    FeatureCollection data = fromJsonFile(MOCK_GEOJSON_PATH, FeatureCollection.class);
+    this.proxy = new BoundingBoxProxy(data);
+    this.providence =
+        new FakeRequest(
+            Map.of(
+                MIN_LAT_PARAM, "41.8",
+                MIN_LNG_PARAM, "-71.43",
+                MAX_LAT_PARAM, "41.84",
+                MAX_LNG_PARAM, "-71.39"));
+  }
+
+  /** This method tests that newer requests cancel older ones, and only within a session. */
+  @Test
+  public void testRegistry() {
+    SessionRegistry sessions = new SessionRegistry();
+    CancellationToken first = sessions.begin("a", 1);
+    CancellationToken other = sessions.begin("b", 1);
+    Assertions.assertFalse(first.isCancelled());
+
+    CancellationToken second = sessions.begin("a", 2);
+    Assertions.assertTrue(first.isCancelled());
+    Assertions.assertFalse(second.isCancelled());
+    Assertions.assertFalse(other.isCancelled());
+
+    // a request that arrives after a newer one from its session is cancelled right away
+    Assertions.assertTrue(sessions.begin("a", 1).isCancelled());
+    Assertions.assertFalse(second.isCancelled());
+
+    CancellationToken.NONE.cancel();
+    Assertions.assertFalse(CancellationToken.NONE.isCancelled());
+  }
+
+  /** This method tests that a cancelled request leaves nothing in the cache. */
+  @Test
+  public void testCancelledFiltering() throws Exception {
+    CancellationToken token = new CancellationToken();
+    token.cancel();
+    Assertions.assertThrows(
+        CancellationException.class, () -> this.proxy.getResponsePercolate(this.providence, token));
+    Assertions.assertFalse(this.proxy.cacheContains(PROVIDENCE_PARAMS));
+
+    ServerResponse response =
+        this.proxy.getResponsePercolate(this.providence, new CancellationToken());
+    Assertions.assertEquals(SUCCESS_MESSAGE, response.responseCode());
+    Assertions.assertEquals(
+        4, ((FeatureCollection) response.data().get(FEATURES)).features().size());
+    Assertions.assertTrue(this.proxy.cacheContains(PROVIDENCE_PARAMS));
+  }
+
+  /**
+   * This method tests that a filtered response is still cached when its request is cancelled during
+   * serialization, and that serialization itself stops.
+   */
+  @Test
+  public void testCancelledSerialization() throws Exception {
+    CancellationToken token = new CancellationToken();
+    ServerResponse response = this.proxy.getResponsePercolate(this.providence, token);
+    Assertions.assertEquals(response.serialize(), response.serialize(token));
+
+    token.cancel();
+    Assertions.assertThrows(CancellationException.class, () -> response.serialize(token));
+    Assertions.assertTrue(this.proxy.cacheContains(PROVIDENCE_PARAMS));
+  }
+
+  /** A Spark request that only answers queryParams lookups, from a fixed map. */
+  static class FakeRequest extends Request {
+
+    private final Map<String, String> params;
+
+    /**
+     * Constructor for FakeRequest.
+     *
+     * @param params the query parameters of the request
+     */
+    FakeRequest(Map<String, String> params) {
+      this.params = params;
+    }
+
+    @Override
+    public String queryParams(String queryParam) {
+      return this.params.get(queryParam);
+    }
+  }
+}
@@ -0,0 +1,377 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import edu.brown.cs.student.sprint5.server.index.DensityPyramid;
+import edu.brown.cs.student.sprint5.server.index.DensityPyramid.DensityCell;
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.index.GradeSummary;
+import edu.brown.cs.student.sprint5.server.index.IndexedFeature;
+import edu.brown.cs.student.sprint5.server.index.Neighbor;
+import edu.brown.cs.student.sprint5.server.index.SpatialIndex;
+import edu.brown.cs.student.sprint5.server.proxies.AggregateProxy;
+import edu.brown.cs.student.sprint5.server.proxies.DensityProxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Geometry;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Properties;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import org.junit.jupiter.api.*;
+
+/**
+ * This class contains unit tests for the spatial index and the point lookups built on it, using a
+ * small mocked GeoJSON file of adjacent neighborhoods and a synthetic grid large enough to need
+ * inner nodes.
+ */
+public class TestSpatialIndex {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+
+  private SpatialIndex index;
+
+  /**
+   * This method is run before each test. It loads the mocked GeoJSON and indexes it.
+   *
+   * @throws IOException if the mocked GeoJSON cannot be read
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    FeatureCollection data = fromJsonFile(MOCK_GEOJSON_PATH, FeatureCollection.class);
+    this.index = new SpatialIndex(data);
+  }
+
+  /** This method tests that features without geometry are left out of the index. */
+  @Test
+  public void testSize() {
+    Assertions.assertEquals(6, this.index.size());
+  }
+
+  /** This method tests point lookups inside, between, and outside of features. */
+  @Test
+  public void testFeaturesAt() {
+    List<IndexedFeature> hits = this.index.featuresAt(41.825, -71.415);
+    Assertions.assertEquals(1, hits.size());
+    Assertions.assertEquals("A1", hits.get(0).feature().properties().holc_id());
+
+    hits = this.index.featuresAt(41.815, -71.405);
+    Assertions.assertEquals(1, hits.size());
+    Assertions.assertEquals("D1", hits.get(0).feature().properties().holc_id());
+
+    // the second polygon of a MultiPolygon
+    hits = this.index.featuresAt(42.355, -71.035);
+    Assertions.assertEquals(1, hits.size());
+    Assertions.assertEquals("C2", hits.get(0).feature().properties().holc_id());
+
+    // the gap between the two polygons of the MultiPolygon
+    Assertions.assertTrue(this.index.featuresAt(42.355, -71.045).isEmpty());
+
+    // far away from any feature
+    Assertions.assertTrue(this.index.featuresAt(0, 0).isEmpty());
+  }
+
+  /** This method tests that points inside a hole are not inside the feature. */
+  @Test
+  public void testHoles() {
+    Assertions.assertEquals(1, this.index.featuresAt(42.352, -71.09).size());
+    Assertions.assertTrue(this.index.featuresAt(42.36, -71.09).isEmpty());
+  }
+
+  /** This method tests envelope searches against the index. */
+  @Test
+  public void testSearch() {
+    List<IndexedFeature> found = new ArrayList<>();
+    this.index.search(new Envelope(41.0, 42.0, -72.0, -71.0), found::add);
+    Assertions.assertEquals(4, found.size());
+
+    found.clear();
+    this.index.search(new Envelope(-90, 90, -180, 180), found::add);
+    Assertions.assertEquals(6, found.size());
+
+    found.clear();
+    this.index.search(new Envelope(10, 11, 10, 11), found::add);
+    Assertions.assertTrue(found.isEmpty());
+  }
+
+  /** This method tests that nearest neighbors come back in order of true polygon distance. */
+  @Test
+  public void testNearest() {
+    List<Neighbor> neighbors =
+        this.index.nearest(41.825, -71.415, 3, Double.POSITIVE_INFINITY, feature -> true);
+    Assertions.assertEquals(3, neighbors.size());
+    Assertions.assertEquals("A1", neighbors.get(0).item().feature().properties().holc_id());
+    Assertions.assertEquals(0, neighbors.get(0).distanceMeters());
+    for (int i = 1; i < neighbors.size(); i++) {
+      Assertions.assertTrue(
+          neighbors.get(i - 1).distanceMeters() <= neighbors.get(i).distanceMeters());
+    }
+
+    // the point sits in the hole of B2, so it is closer to B2's inner ring than to anything else
+    neighbors = this.index.nearest(42.36, -71.09, 1, Double.POSITIVE_INFINITY, feature -> true);
+    Assertions.assertEquals("B2", neighbors.get(0).item().feature().properties().holc_id());
+    Assertions.assertTrue(neighbors.get(0).distanceMeters() > 0);
+
+    // about 500 meters east of D1
+    neighbors = this.index.nearest(41.815, -71.394, 10, 1000, feature -> true);
+    Assertions.assertEquals(2, neighbors.size());
+    Assertions.assertEquals(500, neighbors.get(0).distanceMeters(), 10);
+  }
+
+  /** This method tests that nearest neighbor filters are applied. */
+  @Test
+  public void testNearestFiltered() {
+    List<Neighbor> neighbors =
+        this.index.nearest(
+            41.825,
+            -71.415,
+            5,
+            Double.POSITIVE_INFINITY,
+            feature -> "D".equals(feature.properties().holc_grade()));
+    Assertions.assertEquals(1, neighbors.size());
+    Assertions.assertEquals("D1", neighbors.get(0).item().feature().properties().holc_id());
+
+    Assertions.assertTrue(this.index.nearest(41.825, -71.415, 5, 10, feature -> false).isEmpty());
+  }
+
+  /** This method tests grade summaries over boxes of the mock, whose features fit in one leaf. */
+  @Test
+  public void testSummarize() {
+    GradeSummary providence = this.index.summarize(new Envelope(41.8, 41.84, -71.43, -71.39));
+    Assertions.assertEquals(1L, providence.counts().get("A"));
+    Assertions.assertEquals(1L, providence.counts().get("B"));
+    Assertions.assertEquals(1L, providence.counts().get("D"));
+    // a 0.01 by 0.01 degree square at this latitude is roughly 0.92 square kilometers
+    Assertions.assertEquals(922_000, providence.areas().get("A"), 5_000);
+
+    GradeSummary everything = this.index.summarize(new Envelope(-90, 90, -180, 180));
+    Assertions.assertEquals(2L, everything.counts().get("B"));
+    Assertions.assertEquals(2L, everything.counts().get("C"));
+    Assertions.assertNull(everything.counts().get(GradeSummary.UNGRADED));
+
+    // the hole of B2 is subtracted from its area: 4 squares minus 1 square
+    GradeSummary backBay = this.index.summarize(new Envelope(42.34, 42.38, -71.11, -71.07));
+    Assertions.assertEquals(
+        3 * 0.01 * 0.01 * 111_195 * 111_195 * Math.cos(Math.toRadians(42.36)),
+        backBay.areas().get("B"),
+        5_000);
+
+    Assertions.assertTrue(this.index.summarize(new Envelope(0, 1, 0, 1)).counts().isEmpty());
+  }
+
+  /**
+   * This method tests grade summaries over a grid of features large enough to need inner nodes,
+   * comparing them with a count of every feature whose envelope center lies in the box: a box
+   * around the whole world, boxes straddling nodes, and a box holding nothing.
+   */
+  @Test
+  public void testSummarizeManyFeatures() {
+    FeatureCollection grid = grid(30, 20);
+    SpatialIndex gridIndex = new SpatialIndex(grid);
+    Assertions.assertEquals(600, gridIndex.size());
+
+    GradeSummary everything = gridIndex.summarize(new Envelope(-90, 90, -180, 180));
+    Assertions.assertEquals(
+        expectedCounts(gridIndex, new Envelope(-90, 90, -180, 180)), everything.counts());
+    Assertions.assertEquals(
+        600L, everything.counts().values().stream().mapToLong(Long::longValue).sum());
+
+    Random random = new Random(11);
+    for (int i = 0; i < 200; i++) {
+      double minLat = 9.8 + random.nextDouble() * 3.5;
+      double minLng = 19.8 + random.nextDouble() * 2.5;
+      Envelope box =
+          new Envelope(
+              minLat, minLat + random.nextDouble() * 2, minLng, minLng + random.nextDouble() * 2);
+      Assertions.assertEquals(expectedCounts(gridIndex, box), gridIndex.summarize(box).counts());
+    }
+
+    Assertions.assertTrue(gridIndex.summarize(new Envelope(-10, -9, -10, -9)).counts().isEmpty());
+  }
+
+  /**
+   * This method tests that an /aggregate box around every feature of a dataset large enough to need
+   * inner nodes counts as many features of each grade as its cities, and as its states, add up to.
+   *
+   * @throws Exception if a response cannot be computed
+   */
+  @Test
+  public void testAggregateBox() throws Exception {
+    AggregateProxy proxy = new AggregateProxy(grid(30, 20));
+    Map<String, String> world = new HashMap<>();
+    world.put(MIN_LAT_PARAM, "-90");
+    world.put(MIN_LNG_PARAM, "-180");
+    world.put(MAX_LAT_PARAM, "90");
+    world.put(MAX_LNG_PARAM, "180");
+    Map<String, Long> box = aggregateCounts(proxy, world);
+    Assertions.assertEquals(600L, box.values().stream().mapToLong(Long::longValue).sum());
+
+    Map<String, Long> byCity = new TreeMap<>();
+    for (int city = 0; city < 6; city++) {
+      aggregateCounts(proxy, Map.of(CITY_PARAM, "City" + city))
+          .forEach((grade, count) -> byCity.merge(grade, count, Long::sum));
+    }
+    Assertions.assertEquals(box, byCity);
+
+    Map<String, Long> byState = new TreeMap<>();
+    for (String state : new String[] {"RI", "MA"}) {
+      aggregateCounts(proxy, Map.of(STATE_PARAM, state))
+          .forEach((grade, count) -> byState.merge(grade, count, Long::sum));
+    }
+    Assertions.assertEquals(box, byState);
+  }
+
+  /** This method tests that density grids count each feature once at any resolution. */
+  @Test
+  public void testDensityGrid() {
+    DensityPyramid pyramid = new DensityPyramid(this.index);
+    Envelope northeast = new Envelope(40, 44, -73, -69);
+    for (double cellSize : new double[] {4, 1, 0.1, 0.01, 0.001}) {
+      int total = 0;
+      for (DensityCell cell : pyramid.grid(northeast, cellSize)) {
+        total += cell.counts().values().stream().mapToInt(Integer::intValue).sum();
+      }
+      Assertions.assertEquals(6, total);
+    }
+
+    // cells finer than the finest level are raised to it, rather than leaving gaps
+    Assertions.assertEquals(
+        pyramid.grid(northeast, DensityPyramid.minCellSize()), pyramid.grid(northeast, 0.0001));
+
+    // at a coarse resolution, Providence and Boston fall into a single cell
+    List<DensityCell> cells = pyramid.grid(northeast, 4);
+    Assertions.assertEquals(1, cells.size());
+    Assertions.assertEquals(2, cells.get(0).counts().get("B"));
+
+    // at a finer resolution, they are split apart
+    Assertions.assertTrue(pyramid.grid(northeast, 0.1).size() > 1);
+    Assertions.assertTrue(pyramid.grid(new Envelope(0, 1, 0, 1), 0.1).isEmpty());
+  }
+
+  /**
+   * This method tests that a /density box too small for its resolution gets cells of the finest
+   * pyramid level, and that they count as many features as a single cell over the box does.
+   *
+   * @throws Exception if a response cannot be computed
+   */
+  @Test
+  public void testDensityMinCellSize() throws Exception {
+    FeatureCollection data = fromJsonFile(MOCK_GEOJSON_PATH, FeatureCollection.class);
+    DensityProxy proxy = new DensityProxy(data);
+    ServerResponse fine = density(proxy, DENSITY_MAX_RESOLUTION);
+    Assertions.assertEquals(DensityPyramid.minCellSize(), fine.data().get(CELL_SIZE));
+    Assertions.assertEquals(2, fine.data().get(ROWS));
+    Assertions.assertEquals(2, fine.data().get(COLS));
+    Assertions.assertEquals(total(density(proxy, 1)), total(fine));
+    Assertions.assertTrue(total(fine) > 0);
+  }
+
+  /**
+   * Asks a density proxy for a grid over the Providence neighborhoods of the mock.
+   *
+   * @param proxy the proxy
+   * @param resolution the number of cells along the longer side of the box
+   * @return the response
+   * @throws Exception if the response cannot be computed
+   */
+  private static ServerResponse density(DensityProxy proxy, int resolution) throws Exception {
+    Map<String, String> params = new HashMap<>();
+    params.put(MIN_LAT_PARAM, "41.8");
+    params.put(MIN_LNG_PARAM, "-71.43");
+    params.put(MAX_LAT_PARAM, "41.84");
+    params.put(MAX_LNG_PARAM, "-71.39");
+    params.put(RESOLUTION_PARAM, String.valueOf(resolution));
+    return proxy.getResponsePercolate(new TestSessions.FakeRequest(params));
+  }
+
+  /**
+   * Adds up the counts of every cell of a density response.
+   *
+   * @param response the response
+   * @return the number of features counted in its cells
+   */
+  private static int total(ServerResponse response) {
+    int total = 0;
+    for (Object cell : (List<?>) response.data().get(CELLS)) {
+      total += ((DensityCell) cell).counts().values().stream().mapToInt(Integer::intValue).sum();
+    }
+    return total;
+  }
+
+  /**
+   * Builds a grid of small square features, a tenth of a degree apart, with grades, cities, and
+   * states that vary across the grid.
+   *
+   * @param rows the number of rows, running north from latitude 10
+   * @param cols the number of columns, running east from longitude 20
+   * @return the features
+   */
+  private static FeatureCollection grid(int rows, int cols) {
+    String[] grades = {"A", "B", "C", "D", null};
+    Set<Feature> features = new LinkedHashSet<>();
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < cols; col++) {
+        double lat = 10 + row * 0.1;
+        double lng = 20 + col * 0.1;
+        double[][][][] coordinates = {
+          {{{lng, lat}, {lng + 0.05, lat}, {lng + 0.05, lat + 0.05}, {lng, lat + 0.05}, {lng, lat}}}
+        };
+        int id = row * cols + col;
+        features.add(
+            new Feature(
+                "Feature",
+                new Geometry(coordinates, "MultiPolygon"),
+                new Properties(
+                    "City" + (id % 6),
+                    row < rows / 2 ? "RI" : "MA",
+                    "Name",
+                    "H" + id,
+                    grades[id % grades.length],
+                    id,
+                    Map.of())));
+      }
+    }
+    return new FeatureCollection("FeatureCollection", features);
+  }
+
+  /**
+   * Counts, by grade, every indexed feature whose envelope center lies in a box, without the tree.
+   *
+   * @param index the index holding the features
+   * @param box the box
+   * @return the number of features of each grade in the box
+   */
+  private static Map<String, Long> expectedCounts(SpatialIndex index, Envelope box) {
+    GradeSummary expected = new GradeSummary();
+    for (IndexedFeature item : index.items()) {
+      if (box.contains(item.envelope().centerLat(), item.envelope().centerLng())) {
+        expected.add(item.feature().properties().holc_grade(), 0);
+      }
+    }
+    return expected.counts();
+  }
+
+  /**
+   * Asks an aggregate proxy for the counts per grade of a region.
+   *
+   * @param proxy the proxy
+   * @param params the parameters naming the region
+   * @return the number of features of each grade in the region
+   * @throws Exception if the response cannot be computed
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<String, Long> aggregateCounts(AggregateProxy proxy, Map<String, String> params)
+      throws Exception {
+    ServerResponse response =
+        proxy.getResponsePercolate(new TestSessions.FakeRequest(new HashMap<>(params)));
+    return new TreeMap<>((Map<String, Long>) response.data().get(GRADE_COUNTS));
+  }
+}
@@ -0,0 +1,151 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import edu.brown.cs.student.sprint5.server.handlers.StreamingBoundingBoxHandler;
+import edu.brown.cs.student.sprint5.server.layers.LayerRegistry;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.JsonAdapters;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.*;
+import spark.Service;
+
+/**
+ * This class contains tests for the streaming bounding box endpoint, in both of its framings, using
+ * the small mocked GeoJSON file.
+ */
+public class TestStreaming {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+  private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+  private Service server;
+  private String base;
+
+  /**
+   * This method is run before each test. It starts a server with the streaming endpoint.
+   *
+   * @throws Exception if no port can be opened
+   */
+  @BeforeEach
+  public void setup() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    this.server = Service.ignite().port(port);
+    this.server.get(
+        "/" + BOUNDING_BOX_STREAM_ENDPOINT,
+        new StreamingBoundingBoxHandler(
+            new LayerRegistry(MOCK_GEOJSON_PATH, FeatureCollection.class), null));
+    this.server.init();
+    this.server.awaitInitialization();
+    this.base = "http://localhost:" + port + "/" + BOUNDING_BOX_STREAM_ENDPOINT + "?";
+  }
+
+  /** This method is run after each test. It stops the server. */
+  @AfterEach
+  public void teardown() {
+    this.server.stop();
+    this.server.awaitStop();
+  }
+
+  /**
+   * This method tests that every feature in the box is streamed once, nearest to the center first,
+   * followed by a line with the count.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void testNdjson() throws Exception {
+    HttpResponse<String> response = get("minLat=41&maxLat=43&minLng=-72&maxLng=-70", null);
+    Assertions.assertEquals(NDJSON_TYPE, response.headers().firstValue("Content-Type").orElse(""));
+    List<String> lines = response.body().lines().toList();
+
+    List<String> ids = new ArrayList<>();
+    for (String line : lines.subList(0, lines.size() - 1)) {
+      FeatureCollection batch =
+          JsonAdapters.<FeatureCollection>adapter(FeatureCollection.class).fromJson(line);
+      for (Feature feature : batch.features()) {
+        ids.add(feature.properties().holc_id());
+      }
+    }
+    Assertions.assertEquals(List.of("C2", "B2", "B1", "D1", "A1", "C1"), ids);
+
+    Map<String, Object> end = JsonAdapters.RESPONSE_ADAPTER.fromJson(lines.get(lines.size() - 1));
+    Assertions.assertEquals(SUCCESS_MESSAGE, end.get("result"));
+    Assertions.assertEquals(6.0, end.get("count"));
+
+    // a box with nothing in it only gets the final line
+    lines = get("minLat=0&maxLat=1&minLng=0&maxLng=1", null).body().lines().toList();
+    Assertions.assertEquals(1, lines.size());
+  }
+
+  /**
+   * This method tests the Server-Sent Events framing.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void testServerSentEvents() throws Exception {
+    HttpResponse<String> response =
+        get("minLat=41.8&maxLat=41.83&minLng=-71.43&maxLng=-71.4", EVENT_STREAM_TYPE);
+    Assertions.assertTrue(
+        response.headers().firstValue("Content-Type").orElse("").startsWith(EVENT_STREAM_TYPE));
+    String[] events = response.body().split("\n\n");
+    Assertions.assertTrue(
+        events[0].startsWith("event: features\ndata: {\"type\":\"FeatureCollection\""));
+    Assertions.assertTrue(events[events.length - 1].startsWith("event: end\ndata: "));
+    Assertions.assertTrue(events[events.length - 1].contains("\"count\":4"));
+  }
+
+  /**
+   * This method tests that invalid requests get a single error message.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void testErrors() throws Exception {
+    List<String> lines = get("minLat=41&maxLat=43", null).body().lines().toList();
+    Assertions.assertEquals(1, lines.size());
+    Assertions.assertTrue(lines.get(0).contains(MISSING_PARAMS));
+
+    lines = get("minLat=43&maxLat=41&minLng=-72&maxLng=-70", null).body().lines().toList();
+    Assertions.assertTrue(lines.get(0).contains(MIN_GREATER_THAN_MAX));
+
+    String body = get("minLat=a&maxLat=41&minLng=-72&maxLng=-70", EVENT_STREAM_TYPE).body();
+    Assertions.assertTrue(body.startsWith("event: error\n"));
+    Assertions.assertTrue(body.contains(ERROR_BAD_JSON));
+
+    lines =
+        get("minLat=41&maxLat=43&minLng=-72&maxLng=-70&layer=missing", null)
+            .body()
+            .lines()
+            .toList();
+    Assertions.assertTrue(lines.get(0).contains(String.format(UNKNOWN_LAYER, "missing")));
+  }
+
+  /**
+   * Requests a stream from the server and reads it to the end.
+   *
+   * @param query the query string
+   * @param accept the Accept header to send, or null to send none
+   * @return the response
+   * @throws Exception if the request fails
+   */
+  private HttpResponse<String> get(String query, String accept) throws Exception {
+    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(this.base + query)).GET();
+    if (accept != null) {
+      request.header("Accept", accept);
+    }
+    return CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofString());
+  }
+}
@@ -0,0 +1,156 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import edu.brown.cs.student.sprint5.server.index.CompletionIndex;
+import edu.brown.cs.student.sprint5.server.index.CompletionIndex.Completion;
+import edu.brown.cs.student.sprint5.server.proxies.SuggestProxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Properties;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.*;
+
+/**
+ * This class contains tests for keyword suggestions, through the suggestion proxy on the small
+ * mocked GeoJSON file and on the completion index directly.
+ */
+public class TestSuggest {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+
+  private SuggestProxy proxy;
+
+  /**
+   * This method is run before each test. It loads the mocked GeoJSON into a suggestion proxy.
+   *
+   * @throws IOException if the mocked GeoJSON cannot be read
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    FeatureCollection data = fromJsonFile(MOCK_GEOJSON_PATH, FeatureCollection.class);
+    this.proxy = new SuggestProxy(data);
+  }
+
+  /**
+   * This method tests that completions come most frequent first, alphabetically among ties, that k
+   * limits them, and that only the last word of the prefix is completed.
+   */
+  @Test
+  public void testSuggestions() {
+    ServerResponse response = suggest(Map.of(PREFIX_PARAM, "S"));
+    Assertions.assertEquals(SUCCESS_MESSAGE, response.responseCode());
+    Assertions.assertEquals(
+        List.of("school", "skilled", "surrounds", "surveyed"), response.data().get(SUGGESTIONS));
+    Assertions.assertEquals(List.of(3, 1, 1, 1), response.data().get(FREQUENCIES));
+
+    response = suggest(Map.of(PREFIX_PARAM, "la", K_PARAM, "1"));
+    Assertions.assertEquals(List.of("laborers"), response.data().get(SUGGESTIONS));
+    Assertions.assertEquals(List.of(2), response.data().get(FREQUENCIES));
+
+    response = suggest(Map.of(PREFIX_PARAM, "large park sch"));
+    Assertions.assertEquals(List.of("school"), response.data().get(SUGGESTIONS));
+
+    response = suggest(Map.of(PREFIX_PARAM, "zebra"));
+    Assertions.assertEquals(SUCCESS_MESSAGE, response.responseCode());
+    Assertions.assertEquals(List.of(), response.data().get(SUGGESTIONS));
+  }
+
+  /**
+   * This method tests that requests only count as cheap once the first one has built the index, so
+   * the request that builds it is admitted like any other expensive request.
+   */
+  @Test
+  public void testCachedOnceIndexed() {
+    TestSessions.FakeRequest request = new TestSessions.FakeRequest(Map.of(PREFIX_PARAM, "s"));
+    Assertions.assertFalse(this.proxy.isCached(request));
+    Assertions.assertEquals(SUCCESS_MESSAGE, suggest(Map.of(PREFIX_PARAM, "s")).responseCode());
+    Assertions.assertTrue(this.proxy.isCached(request));
+  }
+
+  /** This method tests the errors of keyword suggestions. */
+  @Test
+  public void testErrors() {
+    Assertions.assertEquals(NO_PREFIX, suggest(Map.of(PREFIX_PARAM, " - ")).errorSpecs());
+    Assertions.assertEquals(
+        INVALID_SUGGEST_K, suggest(Map.of(PREFIX_PARAM, "s", K_PARAM, "0")).errorSpecs());
+    Assertions.assertEquals(
+        INVALID_SUGGEST_K, suggest(Map.of(PREFIX_PARAM, "s", K_PARAM, "few")).errorSpecs());
+  }
+
+  /**
+   * This method tests the completions of every prefix of a random vocabulary against sorting every
+   * matching term by frequency.
+   */
+  @Test
+  public void testCompletionsMatchSorting() {
+    Random random = new Random(7);
+    List<Feature> features = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      StringBuilder text = new StringBuilder();
+      for (int w = random.nextInt(8); w >= 0; w--) {
+        // short words from a small alphabet share many prefixes and frequencies
+        for (int c = 1 + random.nextInt(4); c > 0; c--) {
+          text.append((char) ('a' + random.nextInt(4)));
+        }
+        text.append(' ');
+      }
+      features.add(
+          new Feature(
+              "Feature",
+              null,
+              new Properties("City", "ST", "Name", "H" + i, "A", i, Map.of("1", text.toString()))));
+    }
+    CompletionIndex index = new CompletionIndex(features);
+
+    Map<String, Integer> frequencies = new HashMap<>();
+    for (Feature feature : features) {
+      for (String term :
+          new HashSet<>(
+              List.of(feature.properties().area_description_data().get("1").split(" ")))) {
+        frequencies.merge(term, 1, Integer::sum);
+      }
+    }
+    Assertions.assertEquals(frequencies.size(), index.size());
+    for (String prefix : new String[] {"", "a", "b", "ab", "cd", "dda", "abcd", "e"}) {
+      List<Map.Entry<String, Integer>> expected = new ArrayList<>();
+      for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+        if (entry.getKey().startsWith(prefix)) {
+          expected.add(entry);
+        }
+      }
+      expected.sort(
+          Comparator.comparing(Map.Entry<String, Integer>::getValue)
+              .reversed()
+              .thenComparing(Map.Entry::getKey));
+      for (int k : new int[] {1, 5, 1000}) {
+        List<Completion> completions = index.complete(prefix, k);
+        Assertions.assertEquals(Math.min(k, expected.size()), completions.size(), prefix);
+        for (int i = 0; i < completions.size(); i++) {
+          Assertions.assertEquals(expected.get(i).getKey(), completions.get(i).term(), prefix);
+          Assertions.assertEquals(
+              (int) expected.get(i).getValue(), completions.get(i).frequency(), prefix);
+        }
+      }
+    }
+  }
+
+  /**
+   * Asks the proxy for suggestions.
+   *
+   * @param params the query parameters
+   * @return the response
+   */
+  private ServerResponse suggest(Map<String, String> params) {
+    return this.proxy.getResponsePercolate(new TestSessions.FakeRequest(params));
+  }
+}
@@ -0,0 +1,374 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import com.squareup.moshi.Moshi;
+import edu.brown.cs.student.sprint5.server.handlers.JSONDataHandler;
+import edu.brown.cs.student.sprint5.server.index.Topology;
+import edu.brown.cs.student.sprint5.server.proxies.BoundingBoxProxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Geometry;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Properties;
+import edu.brown.cs.student.sprint5.server.responseformatting.RawJson;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import edu.brown.cs.student.sprint5.server.responseformatting.TopoJson;
+import edu.brown.cs.student.sprint5.server.sessions.CancellationToken;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.*;
+import spark.Service;
+
+/**
+ * This class contains tests for extracting the arcs that neighborhoods share and for writing
+ * responses as TopoJSON over them, using the small mocked GeoJSON file, whose first four
+ * neighborhoods tile a two by two grid.
+ */
+public class TestTopoJson {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+
+  private FeatureCollection data;
+  private Topology topology;
+
+  /**
+   * This method is run before each test. It loads the mocked data and builds its topology.
+   *
+   * @throws Exception if the mocked data cannot be read
+   */
+  @BeforeEach
+  public void setup() throws Exception {
+    this.data = fromJsonFile(MOCK_GEOJSON_PATH, FeatureCollection.class);
+    this.topology = new Topology(this.data, TOPOLOGY_COORDINATE_DIGITS);
+  }
+
+  /**
+   * This method tests that the edges shared by the grid of neighborhoods become one arc each, used
+   * forwards by one neighborhood and backwards by the other.
+   */
+  @Test
+  public void testSharedArcs() {
+    // each square of the grid has two inner edges, each shared with a neighbor, and one outer arc;
+    // the other neighborhoods' four rings share nothing
+    Assertions.assertEquals(4 + 4 + 4, this.topology.arcCount());
+
+    int forward = 0;
+    int backward = 0;
+    for (Feature feature : this.data.features()) {
+      if (feature.geometry() == null) {
+        continue;
+      }
+      for (double[][][] polygon : feature.geometry().coordinates()) {
+        for (double[][] ring : polygon) {
+          for (int ref : this.topology.ringArcs(ring)) {
+            if (ref >= 0) {
+              forward++;
+            } else {
+              backward++;
+            }
+          }
+        }
+      }
+    }
+    Assertions.assertEquals(4, backward);
+    Assertions.assertEquals(4 + 4 + 4, forward);
+  }
+
+  /**
+   * This method tests that every feature's rings and properties can be rebuilt from the topology,
+   * including a feature whose ring is not in the topology.
+   *
+   * @throws Exception if the topology is not valid JSON
+   */
+  @Test
+  public void testRoundTrip() throws Exception {
+    Set<Feature> features = new LinkedHashSet<>(this.data.features());
+    double[][][][] unknown = {{{{-70, 40}, {-69, 40}, {-69, 41}, {-70, 40}}}};
+    features.add(new Feature("Feature", new Geometry(unknown, "MultiPolygon"), null));
+    FeatureCollection collection = new FeatureCollection("FeatureCollection", features);
+
+    Map<String, Object> topoJson =
+        parse(TopoJson.encode(collection, this.topology, CancellationToken.NONE));
+    Assertions.assertEquals("Topology", topoJson.get("type"));
+    List<Map<String, Object>> geometries = geometries(topoJson);
+    Assertions.assertEquals(features.size(), geometries.size());
+
+    int i = 0;
+    for (Feature feature : features) {
+      Map<String, Object> geometry = geometries.get(i++);
+      if (feature.geometry() == null) {
+        Assertions.assertTrue(geometry.containsKey("type"));
+        Assertions.assertNull(geometry.get("type"));
+        continue;
+      }
+      Assertions.assertEquals(feature.geometry().type(), geometry.get("type"));
+      assertRingsEqual(feature.geometry().coordinates(), rebuild(topoJson, geometry));
+      Properties properties = feature.properties();
+      if (properties != null) {
+        Map<?, ?> decoded = (Map<?, ?>) geometry.get("properties");
+        Assertions.assertEquals(properties.holc_id(), decoded.get("holc_id"));
+        Assertions.assertEquals(
+            properties.neighborhood_id(), ((Number) decoded.get("neighborhood_id")).intValue());
+      }
+    }
+  }
+
+  /**
+   * This method tests that a response whose features were read back from the disk cache as raw JSON
+   * converts the same as one holding the parsed features, and is only parsed once however many
+   * times it is converted.
+   */
+  @Test
+  public void testRawJsonFeatures() {
+    String parsed =
+        TopoJson.convert(
+                new ServerResponse(Map.of(FEATURES, this.data)),
+                this.topology,
+                CancellationToken.NONE)
+            .serialize();
+    RawJson json = RawJson.of(this.data);
+    ServerResponse stored = new ServerResponse(Map.of(FEATURES, json));
+    Assertions.assertEquals(
+        parsed, TopoJson.convert(stored, this.topology, CancellationToken.NONE).serialize());
+    FeatureCollection first = json.toFeatureCollection();
+    Assertions.assertEquals(
+        parsed, TopoJson.convert(stored, this.topology, CancellationToken.NONE).serialize());
+    Assertions.assertSame(first, json.toFeatureCollection());
+  }
+
+  /**
+   * This method tests that a response only carries the arcs of the features it holds.
+   *
+   * @throws Exception if the topology is not valid JSON
+   */
+  @Test
+  public void testOnlyUsedArcs() throws Exception {
+    Feature first = this.data.features().iterator().next();
+    FeatureCollection one =
+        new FeatureCollection(
+            "FeatureCollection", new LinkedHashSet<>(Collections.singletonList(first)));
+    Map<String, Object> topoJson =
+        parse(TopoJson.encode(one, this.topology, CancellationToken.NONE));
+    Assertions.assertEquals(3, ((List<?>) topoJson.get("arcs")).size());
+    assertRingsEqual(
+        first.geometry().coordinates(), rebuild(topoJson, geometries(topoJson).get(0)));
+  }
+
+  /**
+   * This method tests that a dense grid of neighborhoods with detailed shared boundaries is much
+   * smaller as TopoJSON than as GeoJSON.
+   */
+  @Test
+  public void testSmallerThanGeoJson() {
+    int size = 20;
+    int pointsPerEdge = 10;
+    Set<Feature> features = new LinkedHashSet<>();
+    for (int row = 0; row < size; row++) {
+      for (int col = 0; col < size; col++) {
+        List<double[]> ring = new ArrayList<>();
+        double lat = 41 + row * 0.01;
+        double lng = -71 + col * 0.01;
+        double[][] corners = {
+          {lng, lat}, {lng + 0.01, lat}, {lng + 0.01, lat + 0.01}, {lng, lat + 0.01}
+        };
+        for (int c = 0; c < 4; c++) {
+          double[] from = corners[c];
+          double[] to = corners[(c + 1) % 4];
+          for (int p = 0; p < pointsPerEdge; p++) {
+            double t = (double) p / pointsPerEdge;
+            ring.add(
+                new double[] {from[0] + (to[0] - from[0]) * t, from[1] + (to[1] - from[1]) * t});
+          }
+        }
+        ring.add(corners[0]);
+        double[][][][] coordinates = {{ring.toArray(new double[0][])}};
+        features.add(new Feature("Feature", new Geometry(coordinates, "MultiPolygon"), null));
+      }
+    }
+    FeatureCollection grid = new FeatureCollection("FeatureCollection", features);
+    Topology gridTopology = new Topology(grid, TOPOLOGY_COORDINATE_DIGITS);
+
+    int geoJson = RawJson.of(grid).json().length();
+    int topoJson = TopoJson.encode(grid, gridTopology, CancellationToken.NONE).json().length();
+    Assertions.assertTrue(topoJson < geoJson / 2, topoJson + " is not under half of " + geoJson);
+  }
+
+  /**
+   * This method tests that the bounding box endpoint answers with a topology only when the Accept
+   * header asks for one.
+   *
+   * @throws Exception if the server cannot be started or a request fails
+   */
+  @Test
+  public void testContentNegotiation() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    Service server = Service.ignite().port(port);
+    try {
+      server.get(
+          "/" + BOUNDING_BOX_ENDPOINT,
+          new JSONDataHandler(MOCK_GEOJSON_PATH, FeatureCollection.class, BoundingBoxProxy.class));
+      server.init();
+      server.awaitInitialization();
+      URI uri =
+          URI.create(
+              "http://localhost:"
+                  + port
+                  + "/"
+                  + BOUNDING_BOX_ENDPOINT
+                  + "?minLat=41&maxLat=43&minLng=-72&maxLng=-70");
+      HttpClient client = HttpClient.newHttpClient();
+
+      String topo =
+          client
+              .send(
+                  HttpRequest.newBuilder(uri).header("Accept", TOPOJSON_TYPE).build(),
+                  HttpResponse.BodyHandlers.ofString())
+              .body();
+      Map<?, ?> data = (Map<?, ?>) parse(new RawJson(topo)).get("data");
+      Map<?, ?> features = (Map<?, ?>) data.get(FEATURES);
+      Assertions.assertEquals("Topology", features.get("type"));
+      Assertions.assertEquals(6, geometries(castMap(features)).size());
+
+      String json =
+          client
+              .send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString())
+              .body();
+      Assertions.assertTrue(json.contains("\"type\":\"FeatureCollection\""));
+    } finally {
+      server.stop();
+      server.awaitStop();
+    }
+  }
+
+  /**
+   * Parses JSON into maps and lists.
+   *
+   * @param json the JSON
+   * @return the parsed object
+   * @throws Exception if the JSON is malformed
+   */
+  private static Map<String, Object> parse(RawJson json) throws Exception {
+    return castMap(new Moshi.Builder().build().adapter(Map.class).fromJson(json.json()));
+  }
+
+  /**
+   * Returns the geometry objects of a topology.
+   *
+   * @param topoJson the parsed topology
+   * @return its geometry objects
+   */
+  private static List<Map<String, Object>> geometries(Map<String, Object> topoJson) {
+    Map<?, ?> object = (Map<?, ?>) ((Map<?, ?>) topoJson.get("objects")).get("features");
+    List<Map<String, Object>> geometries = new ArrayList<>();
+    for (Object geometry : (List<?>) object.get("geometries")) {
+      geometries.add(castMap(geometry));
+    }
+    return geometries;
+  }
+
+  /**
+   * Rebuilds the coordinates of a geometry object from the arcs of its topology, as a TopoJSON
+   * client would.
+   *
+   * @param topoJson the parsed topology
+   * @param geometry the parsed geometry object
+   * @return the coordinates of the geometry
+   */
+  private static double[][][][] rebuild(
+      Map<String, Object> topoJson, Map<String, Object> geometry) {
+    double step =
+        ((Number) ((List<?>) ((Map<?, ?>) topoJson.get("transform")).get("scale")).get(0))
+            .doubleValue();
+    List<?> arcs = (List<?>) topoJson.get("arcs");
+    List<?> polygons = (List<?>) geometry.get("arcs");
+    double[][][][] coordinates = new double[polygons.size()][][][];
+    for (int p = 0; p < polygons.size(); p++) {
+      List<?> rings = (List<?>) polygons.get(p);
+      coordinates[p] = new double[rings.size()][][];
+      for (int r = 0; r < rings.size(); r++) {
+        List<double[]> ring = new ArrayList<>();
+        for (Object refValue : (List<?>) rings.get(r)) {
+          int ref = ((Number) refValue).intValue();
+          List<double[]> arc = new ArrayList<>();
+          long x = 0;
+          long y = 0;
+          for (Object delta : (List<?>) arcs.get(ref >= 0 ? ref : ~ref)) {
+            x += ((Number) ((List<?>) delta).get(0)).longValue();
+            y += ((Number) ((List<?>) delta).get(1)).longValue();
+            arc.add(new double[] {x * step, y * step});
+          }
+          if (ref < 0) {
+            Collections.reverse(arc);
+          }
+          ring.addAll(ring.isEmpty() ? arc : arc.subList(1, arc.size()));
+        }
+        coordinates[p][r] = ring.toArray(new double[0][]);
+      }
+    }
+    return coordinates;
+  }
+
+  /**
+   * Asserts that two sets of rings trace the same closed paths, allowing each ring to start at a
+   * different point.
+   *
+   * @param expected the original coordinates
+   * @param actual the rebuilt coordinates
+   */
+  private static void assertRingsEqual(double[][][][] expected, double[][][][] actual) {
+    Assertions.assertEquals(expected.length, actual.length);
+    for (int p = 0; p < expected.length; p++) {
+      Assertions.assertEquals(expected[p].length, actual[p].length);
+      for (int r = 0; r < expected[p].length; r++) {
+        double[][] want = expected[p][r];
+        double[][] got = actual[p][r];
+        Assertions.assertEquals(want.length, got.length);
+        int offset = -1;
+        for (int i = 0; i < want.length - 1 && offset < 0; i++) {
+          if (close(want[i], got[0])) {
+            offset = i;
+          }
+        }
+        Assertions.assertTrue(offset >= 0, "rebuilt ring does not start on the original ring");
+        for (int i = 0; i < want.length - 1; i++) {
+          Assertions.assertTrue(close(want[(offset + i) % (want.length - 1)], got[i]));
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks if two positions are equal up to the quantization of the topology.
+   *
+   * @param a a position
+   * @param b another position
+   * @return true if the positions are equal
+   */
+  private static boolean close(double[] a, double[] b) {
+    return Math.abs(a[0] - b[0]) < 1e-9 && Math.abs(a[1] - b[1]) < 1e-9;
+  }
+
+  /**
+   * Casts a parsed JSON object to a map with string keys.
+   *
+   * @param object the parsed object
+   * @return the object as a map
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> castMap(Object object) {
+    return (Map<String, Object>) object;
+  }
+}
@@ -0,0 +1,209 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+import static edu.brown.cs.student.sprint5.server.datasources.JSONReader.fromJsonFile;
+
+import edu.brown.cs.student.sprint5.server.index.Envelope;
+import edu.brown.cs.student.sprint5.server.partitions.PartitionedDataset;
+import edu.brown.cs.student.sprint5.server.proxies.BoundingBoxProxy;
+import edu.brown.cs.student.sprint5.server.proxies.ViewportDeltaProxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Feature;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.Geometry;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.*;
+
+/**
+ * This class contains tests for the viewport delta endpoint, checking that applying a delta to the
+ * answer for the previous box gives the answer for the new box, using the small mocked GeoJSON.
+ */
+public class TestViewportDelta {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+
+  private BoundingBoxProxy boxes;
+  private ViewportDeltaProxy deltas;
+
+  /**
+   * This method is run before each test. It builds both proxies over one partitioned dataset.
+   *
+   * @throws IOException if the mocked GeoJSON cannot be read
+   */
+  @BeforeEach
+  public void setup() throws IOException {
+    FeatureCollection data = fromJsonFile(MOCK_GEOJSON_PATH, FeatureCollection.class);
+    PartitionedDataset partitions = new PartitionedDataset(data);
+    this.boxes = new BoundingBoxProxy(partitions, null);
+    this.deltas = new ViewportDeltaProxy(partitions);
+  }
+
+  /** This method tests that the pieces of an envelope difference cover exactly the difference. */
+  @Test
+  public void testMinus() {
+    Envelope a = new Envelope(0, 10, 0, 10);
+    Assertions.assertTrue(a.minus(a).isEmpty());
+    Assertions.assertTrue(a.minus(new Envelope(-1, 11, -1, 11)).isEmpty());
+    Assertions.assertEquals(List.of(a), a.minus(new Envelope(20, 30, 20, 30)));
+    Assertions.assertEquals(4, a.minus(new Envelope(4, 6, 4, 6)).size());
+
+    Envelope b = new Envelope(3, 13, 2, 12);
+    Random random = new Random(7);
+    for (int i = 0; i < 1000; i++) {
+      double lat = random.nextDouble() * 20 - 5;
+      double lng = random.nextDouble() * 20 - 5;
+      boolean inDifference = a.contains(lat, lng) && !b.contains(lat, lng);
+      boolean covered = a.minus(b).stream().anyMatch(piece -> piece.contains(lat, lng));
+      if (inDifference) {
+        Assertions.assertTrue(covered);
+      }
+      if (covered) {
+        Assertions.assertTrue(a.contains(lat, lng));
+      }
+    }
+  }
+
+  /**
+   * This method tests that, for many pairs of overlapping and disjoint boxes, the previous answer
+   * minus the features that left plus those that entered is the new answer.
+   *
+   * @throws Exception if a response cannot be computed
+   */
+  @Test
+  public void testDeltaMatchesBoundingBox() throws Exception {
+    Random random = new Random(42);
+    for (int i = 0; i < 300; i++) {
+      double[] previous = randomBox(random);
+      double[] next =
+          random.nextBoolean()
+              ? pan(previous, random.nextDouble() * 0.2 - 0.1, random.nextDouble() * 0.2 - 0.1)
+              : randomBox(random);
+
+      Set<Feature> expected = box(next);
+      Set<Feature> applied = new HashSet<>(box(previous));
+      ServerResponse delta = delta(previous, next);
+      Assertions.assertEquals(SUCCESS_MESSAGE, delta.responseCode());
+      @SuppressWarnings("unchecked")
+      List<Integer> left = (List<Integer>) delta.data().get(LEFT);
+      applied.removeIf(feature -> left.contains(feature.properties().neighborhood_id()));
+      for (Feature entered : ((FeatureCollection) delta.data().get(ENTERED)).features()) {
+        Assertions.assertTrue(applied.add(entered));
+      }
+      Assertions.assertEquals(expected, applied);
+    }
+  }
+
+  /**
+   * This method tests that an unchanged viewport has an empty delta and that invalid boxes are
+   * rejected.
+   *
+   * @throws Exception if a response cannot be computed
+   */
+  @Test
+  public void testEdgeCases() throws Exception {
+    double[] providence = {41.8, -71.43, 41.84, -71.39};
+    ServerResponse same = delta(providence, providence);
+    Assertions.assertTrue(((FeatureCollection) same.data().get(ENTERED)).features().isEmpty());
+    Assertions.assertEquals(List.of(), same.data().get(LEFT));
+
+    Assertions.assertEquals(
+        ERROR_BAD_REQUEST,
+        delta(providence, new double[] {41.8, -71.43, 91, -71.39}).responseCode());
+    Assertions.assertEquals(
+        ERROR_BAD_REQUEST, delta(providence, new double[] {42, -71.43, 41, -71.39}).responseCode());
+  }
+
+  /**
+   * This method tests that a feature without properties, which has no id to report when it leaves,
+   * is neither sent when it enters the viewport nor counted when it leaves.
+   *
+   * @throws Exception if a response cannot be computed
+   */
+  @Test
+  public void testFeatureWithoutProperties() throws Exception {
+    double[][][][] coordinates = {{{{-71.41, 41.82}, {-71.40, 41.82}, {-71.40, 41.83}}}};
+    Set<Feature> features = new LinkedHashSet<>();
+    features.add(new Feature("Feature", new Geometry(coordinates, "MultiPolygon"), null));
+    this.deltas =
+        new ViewportDeltaProxy(
+            new PartitionedDataset(new FeatureCollection("FeatureCollection", features)));
+
+    double[] providence = {41.8, -71.43, 41.84, -71.39};
+    double[] away = {42.3, -71.1, 42.4, -71.0};
+    ServerResponse entering = delta(away, providence);
+    Assertions.assertTrue(((FeatureCollection) entering.data().get(ENTERED)).features().isEmpty());
+    ServerResponse leaving = delta(providence, away);
+    Assertions.assertEquals(List.of(), leaving.data().get(LEFT));
+  }
+
+  /**
+   * Picks a random box around the mocked neighborhoods.
+   *
+   * @param random the source of randomness
+   * @return the box as {minLat, minLng, maxLat, maxLng}
+   */
+  private static double[] randomBox(Random random) {
+    double minLat = 41.7 + random.nextDouble() * 0.8;
+    double minLng = -71.5 + random.nextDouble() * 0.6;
+    return new double[] {
+      minLat, minLng, minLat + random.nextDouble() * 0.4, minLng + random.nextDouble() * 0.4
+    };
+  }
+
+  /**
+   * Moves a box.
+   *
+   * @param box the box as {minLat, minLng, maxLat, maxLng}
+   * @param dLat how far to move it north
+   * @param dLng how far to move it east
+   * @return the moved box
+   */
+  private static double[] pan(double[] box, double dLat, double dLng) {
+    return new double[] {box[0] + dLat, box[1] + dLng, box[2] + dLat, box[3] + dLng};
+  }
+
+  /**
+   * Asks the bounding box proxy for the features in a box.
+   *
+   * @param box the box as {minLat, minLng, maxLat, maxLng}
+   * @return the features in it
+   * @throws Exception if the response cannot be computed
+   */
+  private Set<Feature> box(double[] box) throws Exception {
+    Map<String, String> params = new HashMap<>();
+    params.put(MIN_LAT_PARAM, String.valueOf(box[0]));
+    params.put(MIN_LNG_PARAM, String.valueOf(box[1]));
+    params.put(MAX_LAT_PARAM, String.valueOf(box[2]));
+    params.put(MAX_LNG_PARAM, String.valueOf(box[3]));
+    ServerResponse response = this.boxes.getResponsePercolate(new TestSessions.FakeRequest(params));
+    return new HashSet<>(((FeatureCollection) response.data().get(FEATURES)).features());
+  }
+
+  /**
+   * Asks the viewport delta proxy for the change between two boxes.
+   *
+   * @param previous the previous box as {minLat, minLng, maxLat, maxLng}
+   * @param next the new box
+   * @return the response
+   * @throws Exception if the response cannot be computed
+   */
+  private ServerResponse delta(double[] previous, double[] next) throws Exception {
+    Map<String, String> params = new HashMap<>();
+    params.put(PREV_MIN_LAT_PARAM, String.valueOf(previous[0]));
+    params.put(PREV_MIN_LNG_PARAM, String.valueOf(previous[1]));
+    params.put(PREV_MAX_LAT_PARAM, String.valueOf(previous[2]));
+    params.put(PREV_MAX_LNG_PARAM, String.valueOf(previous[3]));
+    params.put(MIN_LAT_PARAM, String.valueOf(next[0]));
+    params.put(MIN_LNG_PARAM, String.valueOf(next[1]));
+    params.put(MAX_LAT_PARAM, String.valueOf(next[2]));
+    params.put(MAX_LNG_PARAM, String.valueOf(next[3]));
+    return this.deltas.getResponsePercolate(new TestSessions.FakeRequest(params));
+  }
+}
@@ -0,0 +1,183 @@
+package edu.brown.cs32.server;
+
+import static edu.brown.cs.student.sprint5.Constants.*;
+
+import edu.brown.cs.student.sprint5.server.datasources.WebAPICall;
+import edu.brown.cs.student.sprint5.server.handlers.JSONDataHandler;
+import edu.brown.cs.student.sprint5.server.layers.LayerRegistry;
+import edu.brown.cs.student.sprint5.server.proxies.BoundingBoxProxy;
+import edu.brown.cs.student.sprint5.server.proxies.Proxy;
+import edu.brown.cs.student.sprint5.server.responseformatting.FeatureCollectionFormat.FeatureCollection;
+import edu.brown.cs.student.sprint5.server.responseformatting.ServerResponse;
+import edu.brown.cs.student.sprint5.server.warmup.AccessLog;
+import edu.brown.cs.student.sprint5.server.warmup.CacheWarmer;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import spark.Service;
+
+/**
+ * This class contains tests for the access log and the cache warm-up that replays it: counting and
+ * saving queries, and a restarted server warming its cache with the queries counted before.
+ */
+public class TestWarmup {
+
+  private static final String MOCK_GEOJSON_PATH = "data/mocks/mockGeoJSON.json";
+  private static final String PROVIDENCE = "minLat=41&minLng=-72&maxLat=42&maxLng=-71";
+  private static final String EVERYTHING = "minLat=40&minLng=-73&maxLat=43&maxLng=-70";
+  private static final WebAPICall CALLER = new WebAPICall();
+
+  @TempDir Path directory;
+
+  private Service server;
+
+  /** This method is run after each test. It stops the server if one is running. */
+  @AfterEach
+  public void teardown() {
+    if (this.server != null) {
+      this.server.stop();
+      this.server.awaitStop();
+    }
+  }
+
+  /** This method tests that query keys are canonical, replayable, and can be parsed back. */
+  @Test
+  public void testQueryKey() {
+    Map<String, String[]> params = new HashMap<>();
+    params.put(KEYWORD_PARAM, new String[] {"fire & water"});
+    params.put(LAYER_PARAM, new String[] {"boston"});
+    params.put(SESSION_PARAM, new String[] {"abc"});
+    params.put(SEQUENCE_PARAM, new String[] {"3"});
+    String key = AccessLog.queryKey("/keywordSearch", params);
+    Assertions.assertEquals("/keywordSearch?keyword=fire+%26+water&layer=boston", key);
+    Assertions.assertEquals("/keywordSearch", AccessLog.path(key));
+    Map<String, String[]> parsed = AccessLog.params(key);
+    Assertions.assertEquals(2, parsed.size());
+    Assertions.assertArrayEquals(new String[] {"fire & water"}, parsed.get(KEYWORD_PARAM));
+  }
+
+  /**
+   * This method tests counting, ranking, decay, the capacity bound, and saving and reading back the
+   * log.
+   *
+   * @throws IOException if the log cannot be saved or read
+   */
+  @Test
+  public void testCounts() throws IOException {
+    Path file = this.directory.resolve("access.log");
+    AccessLog log = new AccessLog(file, 3);
+    for (int i = 0; i < 5; i++) {
+      log.record("/a");
+    }
+    log.record("/b");
+    log.record("/b");
+    log.record("/c");
+    Assertions.assertEquals(List.of("/a", "/b", "/c"), log.top(10));
+    Assertions.assertEquals(List.of("/a"), log.top(1));
+
+    log.decay();
+    Assertions.assertEquals(2, log.count("/a"));
+    Assertions.assertEquals(1, log.count("/b"));
+    Assertions.assertEquals(0, log.count("/c"));
+
+    log.save();
+    AccessLog reopened = new AccessLog(file, 3);
+    Assertions.assertEquals(List.of("/a", "/b"), reopened.top(10));
+    Assertions.assertEquals(2, reopened.count("/a"));
+
+    // rarely asked queries are dropped once the log holds twice its capacity
+    for (int i = 0; i < 10; i++) {
+      reopened.record("/rare" + i);
+    }
+    Assertions.assertTrue(reopened.top(100).size() <= 6);
+    Assertions.assertEquals("/a", reopened.top(1).get(0));
+  }
+
+  /**
+   * This method tests that a restarted server, warmed with the queries counted before the restart,
+   * has them cached before any live request arrives, and that warm-up requests are not counted.
+   *
+   * @throws Exception if a server cannot be started or a request fails
+   */
+  @Test
+  public void testWarmUp() throws Exception {
+    Path file = this.directory.resolve("access.log");
+    AccessLog log = new AccessLog(file, ACCESS_LOG_MAX_KEYS);
+    String base = startServer(new LayerRegistry(MOCK_GEOJSON_PATH, FeatureCollection.class), log);
+    for (int i = 0; i < 3; i++) {
+      request(base, PROVIDENCE);
+    }
+    request(base, EVERYTHING);
+    // errors are not counted
+    request(base, "minLat=abc&minLng=-72&maxLat=42&maxLng=-71");
+    Assertions.assertEquals(2, log.top(10).size());
+    log.save();
+    teardown();
+
+    // the restarted server starts with empty caches
+    AccessLog restartedLog = new AccessLog(file, ACCESS_LOG_MAX_KEYS);
+    LayerRegistry layers = new LayerRegistry(MOCK_GEOJSON_PATH, FeatureCollection.class);
+    base = startServer(layers, restartedLog);
+    Proxy proxy = layers.get(layers.defaultLayer()).builtProxy(BoundingBoxProxy.class);
+    Assertions.assertFalse(proxy.isCached(fakeRequest(PROVIDENCE)));
+
+    CacheWarmer warmer = new CacheWarmer(base, restartedLog.top(WARMUP_QUERIES), 100);
+    warmer.run();
+    Assertions.assertEquals(2, warmer.warmed());
+    Assertions.assertTrue(proxy.isCached(fakeRequest(PROVIDENCE)));
+    Assertions.assertTrue(proxy.isCached(fakeRequest(EVERYTHING)));
+    Assertions.assertEquals(3, restartedLog.count(restartedLog.top(1).get(0)));
+  }
+
+  /**
+   * Sends a bounding box query to the server.
+   *
+   * @param base the base URL of the server
+   * @param query the query string
+   * @throws Exception if the request fails
+   */
+  private static void request(String base, String query) throws Exception {
+    CALLER.makeRequest(base + "/" + BOUNDING_BOX_ENDPOINT + "?" + query, ServerResponse.class);
+  }
+
+  /**
+   * Builds a request object with the parameters of a query string.
+   *
+   * @param query the query string
+   * @return the request
+   */
+  private static TestSessions.FakeRequest fakeRequest(String query) {
+    Map<String, String> params = new HashMap<>();
+    for (String pair : query.split("&")) {
+      params.put(pair.substring(0, pair.indexOf('=')), pair.substring(pair.indexOf('=') + 1));
+    }
+    return new TestSessions.FakeRequest(params);
+  }
+
+  /**
+   * Starts a server with a bounding box endpoint that counts its queries in an access log.
+   *
+   * @param layers the layers to serve
+   * @param log the access log
+   * @return the base URL of the server
+   * @throws Exception if the handler cannot be created
+   */
+  private String startServer(LayerRegistry layers, AccessLog log) throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    this.server = Service.ignite().port(port);
+    this.server.get(
+        "/" + BOUNDING_BOX_ENDPOINT,
+        new JSONDataHandler(layers, BoundingBoxProxy.class, null, null, null, log));
+    this.server.init();
+    this.server.awaitInitialization();
+    return "http://localhost:" + port;
+  }
+}
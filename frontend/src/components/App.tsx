@@ -7,7 +7,8 @@ import MapPanel from "./map-panel";
 import {
   extractSearchOverlay,
   extractRedliningOverlay,
-  overlayData 
+  extractViewportOverlay,
+  SupersededRequestError,
 } from "../data-utils/filter-overlays";
 
 /**
@@ -24,13 +25,22 @@ export const appAccessibleRoleName: string =
  * @returns the HTML of the App component
  */
 export default function App() {
+  /**
+   * This state represents the viewport overlay, which is the redlining data
+   * in the area currently shown on the map. It is fetched from the server
+   * in tiles whenever the map stops moving.
+   */
+  const [viewportOverlay, setViewportOverlay] = useState<FeatureCollection>({
+    type: "FeatureCollection",
+    features: [],
+  });
   /**
    * This state represents the bound overlay, which is the redlining data
-   * that is currently being displayed on the map baswed on the user's
-   * specified bounding box.
+   * that is currently being displayed on the map based on the user's
+   * specified bounding box, or null if the user has not specified one.
    */
-  const [boundOverlay, setBoundOverlay] = useState<FeatureCollection>(
-    overlayData()
+  const [boundOverlay, setBoundOverlay] = useState<FeatureCollection | null>(
+    null
   );
   /**
    * This state represents the search overlay, which is the redlining data
@@ -52,6 +62,31 @@ export default function App() {
     nameData: "n/a",
   });
 
+  /**
+   * Fetches the redlining data in the map's viewport after the map moves
+   * @param bounds the bounds of the viewport
+   */
+  async function handleViewportChange(bounds: BoundingBox) {
+    try {
+      setViewportOverlay(await extractViewportOverlay(bounds));
+    } catch (e) {
+      // the map moved again, and the newer request will set the overlay itself
+      if (e instanceof SupersededRequestError) {
+        return;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Drops the user's bounding box, so the map shows the data in its viewport again
+   * @returns the data that the map now shows
+   */
+  function resetBoundOverlay(): FeatureCollection {
+    setBoundOverlay(null);
+    return viewportOverlay;
+  }
+
   /**
    * tsx of the App component
    */
@@ -68,10 +103,12 @@ export default function App() {
         filterBoundOverlay={extractRedliningOverlay}
         filterSearchOverlay={extractSearchOverlay}
         setBoundOverlay={setBoundOverlay}
+        resetBoundOverlay={resetBoundOverlay}
         setSearchOverlay={setSearchOverlay}
       />
       <MapPanel
-        boundOverlay={boundOverlay}
+        boundOverlay={boundOverlay ?? viewportOverlay}
+        onViewportChange={handleViewportChange}
         searchOverlay={searchOverlay}
         setLocationData={setLocationData}
       />
@@ -1,9 +1,7 @@
 import { useState } from "react";
 import { FeatureCollection } from "geojson";
 import InputBox from "./input-box";
-import { 
-  overlayData,
-} from "../data-utils/filter-overlays";
+import { SupersededRequestError } from "../data-utils/filter-overlays";
 
 export const controlAccessibleRoleName: string = "Control Panel Container";
 export const boundBoxAccessibleRoleName: string = "Bounding Box Input Container";
@@ -20,13 +18,15 @@ export const keywordInputAccessibleRoleName: string = "Keyword Input Box";
 
 /**
  * This interface represents the input boxes and buttons props being passed into
- * the control panel. The two props are hooks used to set the overlays of the map
- * to the bounded data and the filtered data based on the user's input.
+ * the control panel. The props are hooks used to set the overlays of the map
+ * to the bounded data and the filtered data based on the user's input, and to
+ * go back to showing the features in the map's viewport.
  */
 interface ControlPanelProps {
   filterBoundOverlay: (coords: BoundingBox) => Promise<FeatureCollection>;
   filterSearchOverlay: (keyword: string) => Promise<FeatureCollection>;
   setBoundOverlay: (data: FeatureCollection) => void;
+  resetBoundOverlay: () => FeatureCollection;
   setSearchOverlay: (data: FeatureCollection) => void;
 }
 
@@ -87,7 +87,16 @@ export default function ControlPanel(props: ControlPanelProps) {
     ) {
       return;
     }
-    let data: FeatureCollection = await props.filterBoundOverlay(coordsList);
+    let data: FeatureCollection;
+    try {
+      data = await props.filterBoundOverlay(coordsList);
+    } catch (e) {
+      // a newer bounding box request replaced this one, and will set the overlay itself
+      if (e instanceof SupersededRequestError) {
+        return;
+      }
+      throw e;
+    }
     props.setBoundOverlay(data);
     setBoundResults(data.features.length);
     setMinLat("");
@@ -116,11 +125,11 @@ export default function ControlPanel(props: ControlPanelProps) {
   }
 
   /**
-   * Handles the reset button being clicked for the bounded box.
+   * Handles the reset button being clicked for the bounded box. The map goes back
+   * to showing the features in its viewport.
    */
   async function handleBoundReset() {
-    props.setBoundOverlay(overlayData());
-    setBoundResults(overlayData().features.length);
+    setBoundResults(props.resetBoundOverlay().features.length);
   }
 
   /**
@@ -223,7 +232,7 @@ export default function ControlPanel(props: ControlPanelProps) {
         <button
           className="reset-button"
           aria-label={boundResetAccessibleRoleName}
-          aria-description="This is the reset button. Press to reset the bounding box to the full dataset."
+          aria-description="This is the reset button. Press to reset the bounding box to the area shown on the map."
           onClick={handleBoundReset}
         >
           reset bounding box
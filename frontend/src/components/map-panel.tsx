@@ -4,12 +4,16 @@ import Map, {
   MapLayerMouseEvent,
   Source,
   ViewStateChangeEvent,
-  MapboxGeoJSONFeature,
-  PointLike,
   MapRef,
 } from "react-map-gl";
-import { redliningLayer, highlightLayer } from "../data-utils/filter-overlays";
+import {
+  redliningLayer,
+  highlightLayer,
+  extractFeatureAt,
+} from "../data-utils/filter-overlays";
 import { RefObject, createRef, useState } from "react";
+import { LngLatBounds, MapboxEvent } from "mapbox-gl";
+import { BoundingBox } from "./control-panel";
 import ACCESS_TOKEN from "../../private/access-token";
 
 /**
@@ -26,6 +30,7 @@ export const mapContainerAccessibleRoleName: string =
 export interface MapPanelProps {
   boundOverlay: GeoJSON.FeatureCollection;
   searchOverlay: GeoJSON.FeatureCollection;
+  onViewportChange: (bounds: BoundingBox) => void;
   setLocationData: (data: {
     stateData: string;
     cityData: string;
@@ -42,6 +47,20 @@ interface LatLong {
   long: number;
 }
 
+/**
+ * This function converts the bounds of the map's viewport into a BoundingBox
+ * @param bounds the bounds of the viewport
+ * @returns the bounding box of the viewport
+ */
+function boundingBoxOf(bounds: LngLatBounds): BoundingBox {
+  return {
+    minLat: bounds.getSouth().toString(),
+    maxLat: bounds.getNorth().toString(),
+    minLng: bounds.getWest().toString(),
+    maxLng: bounds.getEast().toString(),
+  };
+}
+
 /**
  * This function represents the MapPanel component that is used to render the map.
  * It handles the state of the map and related events.
@@ -76,43 +95,34 @@ export default function MapPanel(props: MapPanelProps) {
   const mapRef: RefObject<MapRef> = createRef();
 
   /**
-   * This is the mapClick method that is invoked on click of the map. When clicked, it sets the state,
-   * city, and name of the location clicked if applicable
+   * This is the mapClick method that is invoked on click of the map. When clicked, it asks the
+   * server for the feature containing the clicked point and sets the state, city, and name of
+   * that location if applicable
    * @param e - the event
-   * @param mapRef - a reference to the map
    */
-  function onMapClick(e: MapLayerMouseEvent) {
+  async function onMapClick(e: MapLayerMouseEvent) {
     //default set to n/a
     let stateResponse: string = "n/a";
     let cityResponse: string = "n/a";
     let nameResponse: string = "n/a";
 
-    //bounding box
-    const bbox: [PointLike, PointLike] = [
-      [e.point.x, e.point.y],
-      [e.point.x, e.point.y],
-    ];
-
-    // perform null checks
-    if (mapRef.current !== null && mapRef.current !== undefined) {
-      // gets the feature that was clicked
-      let feature: MapboxGeoJSONFeature =
-        mapRef.current.queryRenderedFeatures(bbox)[0];
+    // gets the feature that contains the clicked point
+    const hits = await extractFeatureAt(e.lngLat.lat, e.lngLat.lng);
+    const feature = hits.features[0];
 
-      // null checks the feature
-      if (feature !== null && feature !== undefined) {
-        //null checks the feature
-        if (feature.properties !== null && feature.properties !== undefined) {
-          // null checks the properties and updates states accordingly
-          if (feature.properties.hasOwnProperty("state")) {
-            stateResponse = feature.properties.state;
-          }
-          if (feature.properties.hasOwnProperty("city")) {
-            cityResponse = feature.properties.city;
-          }
-          if (feature.properties.hasOwnProperty("name")) {
-            nameResponse = feature.properties.name;
-          }
+    // null checks the feature
+    if (feature !== null && feature !== undefined) {
+      //null checks the feature
+      if (feature.properties !== null && feature.properties !== undefined) {
+        // null checks the properties and updates states accordingly
+        if (feature.properties.hasOwnProperty("state")) {
+          stateResponse = feature.properties.state;
+        }
+        if (feature.properties.hasOwnProperty("city")) {
+          cityResponse = feature.properties.city;
+        }
+        if (feature.properties.hasOwnProperty("name")) {
+          nameResponse = feature.properties.name;
         }
       }
     }
@@ -140,6 +150,12 @@ export default function MapPanel(props: MapPanelProps) {
         mapboxAccessToken={ACCESS_TOKEN}
         mapStyle={"mapbox://styles/mapbox/light-v10"}
         onMove={(ev: ViewStateChangeEvent) => setViewState(ev.viewState)}
+        onLoad={(ev: MapboxEvent) =>
+          props.onViewportChange(boundingBoxOf(ev.target.getBounds()))
+        }
+        onMoveEnd={(ev: ViewStateChangeEvent) =>
+          props.onViewportChange(boundingBoxOf(ev.target.getBounds()))
+        }
         onClick={(ev: MapLayerMouseEvent) => onMapClick(ev)}
       >
         <Source id="geo_data" type="geojson" data={props.boundOverlay}>
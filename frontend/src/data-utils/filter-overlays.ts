@@ -2,34 +2,43 @@ import { FeatureCollection, Position } from "geojson";
 import { FillLayer, LineLayer } from "react-map-gl";
 import { ServerResponse } from "./server-response";
 import { BoundingBox } from "../components/control-panel";
-import fullDataset from "../../../backend/data/geodata/redlining.json";
 
 /**
  * This is a type guard to check if a json object is a FeatureCollection
  * @param json the json to check if it is a FeatureCollection
  * @returns true if the json is a FeatureCollection, false otherwise
  */
-function isFeatureCollection(json: any): json is FeatureCollection {
-  return json.type === "FeatureCollection";
+export function isFeatureCollection(json: any): json is FeatureCollection {
+  return json !== undefined && json !== null && json.type === "FeatureCollection";
 }
 
 /**
- * This function loads the full dataset from the json file, and returns it as a FeatureCollection
- * @returns the redlining data as a FeatureCollection, or undefined if it is not a FeatureCollection
+ * The id of this page's session with the server. Bounding box requests carry it along with an
+ * increasing sequence number, so the server can abandon a request once a newer one arrives.
  */
-export function overlayData(): GeoJSON.FeatureCollection {
-  return isFeatureCollection(fullDataset) ? fullDataset : { type: "FeatureCollection", features: [] };
-}
+const sessionId: string = Math.random().toString(36).slice(2) + Date.now().toString(36);
+/**
+ * The sequence number of the latest bounding box request of this session
+ */
+let boundingBoxSequence: number = 0;
+
+/**
+ * The error that a bounding box request is rejected with when a newer bounding box request
+ * replaced it before it was answered. Its result would be stale, so callers should ignore it.
+ */
+export class SupersededRequestError extends Error {}
 
 /**
  * Takes a bounding box to filter by, builds a url to call the appropriate endpoint, and obtains
  * a FeatureCollection from the server.
  * @param coords the coordinates to filter by (minLat, maxLat, minLng, maxLng)
- * @returns a Promise of the features from the response, or an empty FeatureCollection if none exist
+ * @returns a Promise of the features from the response, or an empty FeatureCollection if none exist.
+ * The Promise is rejected with a SupersededRequestError if a newer bounding box request replaced this one.
  */
 export async function extractRedliningOverlay(
   coords: BoundingBox
 ): Promise<FeatureCollection> {
+  const sequence: number = ++boundingBoxSequence;
   let url: string =
     "http://localhost:3232/boundingBox?minLat=" +
     coords.minLat +
@@ -38,147 +47,221 @@ export async function extractRedliningOverlay(
     "&minLng=" +
     coords.minLng +
     "&maxLng=" +
-    coords.maxLng;
-  return extractFeaturesFromURL(url);
+    coords.maxLng +
+    "&session=" +
+    sessionId +
+    "&seq=" +
+    sequence;
+  const features: FeatureCollection = await extractFeaturesFromURL(url);
+  if (sequence !== boundingBoxSequence) {
+    throw new SupersededRequestError();
+  }
+  return features;
 }
 
 /**
- * Takes a keyword to search, builds a url to call the appropriate endpoint, and obtains
- * a FeatureCollection from the server.
- * @param keyword the string to search for in descriptions
- * @returns aPromise of the features from the response, or an empty FeatureCollection if none exist
+ * The width and height, in degrees, of the smallest tiles that viewport overlays are fetched in
  */
-export async function extractSearchOverlay(
-  keyword: string
-): Promise<FeatureCollection> {
-  let url = "http://localhost:3232/describedBy?keyword=" + keyword;
-  return extractFeaturesFromURL(url);
-}
+const baseTileDegrees: number = 0.25;
+/**
+ * The most tiles a viewport is covered with. Zoomed-out viewports use larger tiles instead.
+ */
+const maxViewportTiles: number = 16;
+/**
+ * The most tiles kept in the tile cache; the least recently used tile is dropped first
+ */
+const maxCachedTiles: number = 256;
+/**
+ * The tiles fetched so far, keyed by their size, row, and column, in least recently used order
+ */
+const tileCache: Map<string, FeatureCollection> = new Map();
+/**
+ * The sequence number of the latest viewport overlay request
+ */
+let viewportSequence: number = 0;
 
 /**
- * Extracts the redlining data directly from the json file, without calling the server.
- * This is used for testing purposes, as it allows us to mock the server response.
- * @param coords the coordinates to filter by (minLat, maxLat, minLng, maxLng)
- * @returns Promise<FeatureCollection> that resolves to a FeatureCollection that meets the criteria of the query
+ * Takes the bounds of the map's viewport and obtains the features in it from the server, one tile
+ * at a time. Tiles are cached, so panning back over an area that was already shown costs no
+ * requests, and only the tiles that come into view are fetched.
+ * @param coords the bounds of the viewport (minLat, maxLat, minLng, maxLng)
+ * @returns a Promise of the features in the tiles covering the viewport
+ * The Promise is rejected with a SupersededRequestError if the viewport moved again before the tiles arrived.
  */
-export async function extractMockedRedliningOverlay(
+export async function extractViewportOverlay(
   coords: BoundingBox
 ): Promise<FeatureCollection> {
-  let minLat: number = parseFloat(coords.minLat);
-  let maxLat: number = parseFloat(coords.maxLat);
-  let minLng: number = parseFloat(coords.minLng);
-  let maxLng: number = parseFloat(coords.maxLng);
-
-  let filteredFeatures: FeatureCollection = {
-    type: "FeatureCollection",
-    features: [],
-  };
-  if (isFeatureCollection(fullDataset) && minLat <= maxLat && minLng <= maxLng) {
-    for (let feature of fullDataset.features) {
-      if (feature.geometry === null) continue;
-      if (
-        feature.geometry.type === "Polygon" &&
-        feature.geometry.coordinates.length > 0
-      ) {
-        for (let coord of feature.geometry.coordinates) {
-          if (coord[0][1] >= minLng && coord[0][1] <= maxLng) {
-            if (coord[1][0] >= minLat && coord[1][0] <= maxLat) {
-              filteredFeatures.features.push(feature);
-            }
-          }
-        }
-      } else if (
-        feature.geometry.type === "MultiPolygon" &&
-        feature.geometry.coordinates.length > 0
-      ) {
-        for (let coord of feature.geometry.coordinates) {
-          if (coord[0][0][0] >= minLng && coord[0][0][0] <= maxLng) {
-            if (coord[0][1][1] >= minLat && coord[0][1][1] <= maxLat) {
-              filteredFeatures.features.push(feature);
-            }
-          }
-        }
-      }
+  const sequence: number = ++viewportSequence;
+  const minLat: number = Math.max(-90, parseFloat(coords.minLat));
+  const maxLat: number = Math.min(90, parseFloat(coords.maxLat));
+  const minLng: number = Math.max(-180, parseFloat(coords.minLng));
+  const maxLng: number = Math.min(180, parseFloat(coords.maxLng));
+
+  // doubles the tile size until the viewport is covered by few enough tiles
+  let size: number = baseTileDegrees;
+  while (
+    (Math.floor(maxLat / size) - Math.floor(minLat / size) + 1) *
+      (Math.floor(maxLng / size) - Math.floor(minLng / size) + 1) >
+    maxViewportTiles
+  ) {
+    size *= 2;
+  }
+
+  const tiles: Promise<FeatureCollection>[] = [];
+  for (let row = Math.floor(minLat / size); row <= Math.floor(maxLat / size); row++) {
+    for (let col = Math.floor(minLng / size); col <= Math.floor(maxLng / size); col++) {
+      tiles.push(extractTile(size, row, col));
     }
   }
+  const results: FeatureCollection[] = await Promise.all(tiles);
+  if (sequence !== viewportSequence) {
+    throw new SupersededRequestError();
+  }
 
-  return new Promise<FeatureCollection>((resolve) => {
-    if (filteredFeatures.features.length > 0) {
-      resolve(filteredFeatures);
-    } else {
-      resolve({ type: "FeatureCollection", features: [] });
+  // a feature on the edge between two tiles is returned by both of them; features are told apart
+  // by their neighborhood id, and the rare feature without one by its geometry
+  const seen: Set<string> = new Set();
+  const merged: FeatureCollection = { type: "FeatureCollection", features: [] };
+  for (let tile of results) {
+    for (let feature of tile.features) {
+      const id: unknown = feature.properties?.neighborhood_id;
+      const key: string =
+        id === undefined || id === null
+          ? "geometry:" + JSON.stringify(feature.geometry)
+          : "id:" + id;
+      if (!seen.has(key)) {
+        seen.add(key);
+        merged.features.push(feature);
+      }
     }
-  });
+  }
+  return merged;
+}
+
+/**
+ * Obtains the features of one tile, from the tile cache if it was fetched before.
+ * @param size the width and height of the tile in degrees
+ * @param row the row of the tile, counted from the equator
+ * @param col the column of the tile, counted from the prime meridian
+ * @returns a Promise of the features whose anchor point is in the tile
+ */
+async function extractTile(
+  size: number,
+  row: number,
+  col: number
+): Promise<FeatureCollection> {
+  const key: string = size + "/" + row + "/" + col;
+  const cached: FeatureCollection | undefined = tileCache.get(key);
+  if (cached !== undefined) {
+    // moves the tile to the most recently used end
+    tileCache.delete(key);
+    tileCache.set(key, cached);
+    return cached;
+  }
+  const minLat: number = Math.max(-90, row * size);
+  const maxLat: number = Math.min(90, (row + 1) * size);
+  const minLng: number = Math.max(-180, col * size);
+  const maxLng: number = Math.min(180, (col + 1) * size);
+  const serverResponse: ServerResponse = await fetchServerResponse(
+    "http://localhost:3232/boundingBox?minLat=" +
+      minLat +
+      "&maxLat=" +
+      maxLat +
+      "&minLng=" +
+      minLng +
+      "&maxLng=" +
+      maxLng
+  );
+  const features: FeatureCollection = featuresOf(serverResponse);
+  // failed tiles, e.g. those the server shed while it was busy, are asked for again next time
+  if (serverResponse.result !== "success") {
+    return features;
+  }
+  tileCache.set(key, features);
+  if (tileCache.size > maxCachedTiles) {
+    tileCache.delete(tileCache.keys().next().value);
+  }
+  return features;
 }
 
 /**
- * Extracts the search data directly from the json file, without calling the server.
- * This is used for testing purposes, as it allows us to mock the server response.
+ * Takes a keyword to search, builds a url to call the appropriate endpoint, and obtains
+ * a FeatureCollection from the server.
  * @param keyword the string to search for in descriptions
- * @returns Promise<FeatureCollection> that resolves to a FeatureCollection that meets the criteria of the query
+ * @returns aPromise of the features from the response, or an empty FeatureCollection if none exist
  */
-export async function extractMockedSearchOverlay(
+export async function extractSearchOverlay(
   keyword: string
 ): Promise<FeatureCollection> {
-  let filteredFeatures: FeatureCollection = {
-    type: "FeatureCollection",
-    features: [],
-  };
-  if (isFeatureCollection(fullDataset)) {
-    for (let feature of fullDataset.features) {
-      if (feature.properties) {
-        if (feature.properties.area_description_data) {
-          // iterate over the values of area_description_data
-          let values: string[] = Object.values(feature.properties.area_description_data);
-          for (let value of values) {
-            if (value) {
-              if (value.toLowerCase().includes(keyword.toLowerCase())) {
-                filteredFeatures.features.push(feature);
-              }
-          }
-          }
-        }
-      }
-    }
-  }
+  let url = "http://localhost:3232/describedBy?keyword=" + keyword;
+  return extractFeaturesFromURL(url);
+}
 
-  return new Promise<FeatureCollection>((resolve) => {
-    if (filteredFeatures.features.length > 0) {
-      resolve(filteredFeatures);
-    } else {
-      resolve({ type: "FeatureCollection", features: [] });
-    }
-  });
+/**
+ * Takes a point, builds a url to call the appropriate endpoint, and obtains a FeatureCollection
+ * of the features that contain that point from the server.
+ * @param lat the latitude of the point
+ * @param lng the longitude of the point
+ * @returns a Promise of the features containing the point, or an empty FeatureCollection if none exist
+ */
+export async function extractFeatureAt(
+  lat: number,
+  lng: number
+): Promise<FeatureCollection> {
+  let url = "http://localhost:3232/featureAt?lat=" + lat + "&lng=" + lng;
+  return extractFeaturesFromURL(url);
 }
 
 /**
- * Calls the server to get a FeatureCollection that meets the criteria of a given filtering query
+ * The requests that have been sent to the server but not answered yet, keyed by url
+ */
+const inFlight: Map<string, Promise<ServerResponse>> = new Map();
+
+/**
+ * Calls the server to get a FeatureCollection that meets the criteria of a given filtering query.
+ * If a request for the same url is already on its way, its answer is shared instead of sending another.
  * @param url the url to call to get the FeatureCollection
  * @returns a Promise<FeatureCollecion> that resolves to a FeatureCollection that meets the criteria of the query
  */
 async function extractFeaturesFromURL(url: string): Promise<FeatureCollection> {
-  let response: Response = await fetch(url);
-  let serverResponse: ServerResponse = await response.json();
-
-  return new Promise<FeatureCollection>((resolve) => {
-    if (serverResponse.result === "success") {
-      if (serverResponse.data) {
-        if (serverResponse.data.featCollection) {
-          if (
-            isFeatureCollection(serverResponse.data.featCollection) &&
-            serverResponse.data.featCollection.features.length > 0
-          ) {
-            resolve(serverResponse.data.featCollection);
-          } else {
-            resolve({ type: "FeatureCollection", features: [] });
-          }
-        }
-      }
-    } else {
-      console.log("Error: " + serverResponse.errorReason);
-      resolve({ type: "FeatureCollection", features: [] });
+  return featuresOf(await fetchServerResponse(url));
+}
+
+/**
+ * Calls the server, sharing the answer of an identical request that is already on its way
+ * @param url the url to call
+ * @returns a Promise of the server's response
+ */
+function fetchServerResponse(url: string): Promise<ServerResponse> {
+  let pending: Promise<ServerResponse> | undefined = inFlight.get(url);
+  if (pending === undefined) {
+    pending = fetch(url)
+      .then((response: Response) => response.json())
+      .finally(() => inFlight.delete(url));
+    inFlight.set(url, pending);
+  }
+  return pending;
+}
+
+/**
+ * Takes a response from the server and returns the FeatureCollection in it
+ * @param serverResponse the response
+ * @returns the features of the response, or an empty FeatureCollection if it has none or is an error
+ */
+function featuresOf(serverResponse: ServerResponse): FeatureCollection {
+  if (serverResponse.result === "success") {
+    if (
+      serverResponse.data &&
+      isFeatureCollection(serverResponse.data.featCollection) &&
+      serverResponse.data.featCollection.features.length > 0
+    ) {
+      return serverResponse.data.featCollection;
     }
-  });
+  } else if (serverResponse.result !== "error_superseded") {
+    // superseded requests are expected while the user keeps changing the bounding box
+    console.log("Error: " + serverResponse.errorReason);
+  }
+  return { type: "FeatureCollection", features: [] };
 }
 
 /**
@@ -0,0 +1,105 @@
+import { FeatureCollection } from "geojson";
+import { BoundingBox } from "../components/control-panel";
+import { isFeatureCollection } from "./filter-overlays";
+import fullDataset from "../../../backend/data/geodata/redlining.json";
+
+/*
+ * Mocked versions of the overlay requests, answered from the full dataset instead of the server.
+ * Only the tests import this module, so the dataset is never part of the application's bundle.
+ */
+
+/**
+ * Extracts the redlining data directly from the json file, without calling the server.
+ * This is used for testing purposes, as it allows us to mock the server response.
+ * @param coords the coordinates to filter by (minLat, maxLat, minLng, maxLng)
+ * @returns Promise<FeatureCollection> that resolves to a FeatureCollection that meets the criteria of the query
+ */
+export async function extractMockedRedliningOverlay(
+  coords: BoundingBox
+): Promise<FeatureCollection> {
+  let minLat: number = parseFloat(coords.minLat);
+  let maxLat: number = parseFloat(coords.maxLat);
+  let minLng: number = parseFloat(coords.minLng);
+  let maxLng: number = parseFloat(coords.maxLng);
+
+  let filteredFeatures: FeatureCollection = {
+    type: "FeatureCollection",
+    features: [],
+  };
+  if (isFeatureCollection(fullDataset) && minLat <= maxLat && minLng <= maxLng) {
+    for (let feature of fullDataset.features) {
+      if (feature.geometry === null) continue;
+      if (
+        feature.geometry.type === "Polygon" &&
+        feature.geometry.coordinates.length > 0
+      ) {
+        for (let coord of feature.geometry.coordinates) {
+          if (coord[0][1] >= minLng && coord[0][1] <= maxLng) {
+            if (coord[1][0] >= minLat && coord[1][0] <= maxLat) {
+              filteredFeatures.features.push(feature);
+            }
+          }
+        }
+      } else if (
+        feature.geometry.type === "MultiPolygon" &&
+        feature.geometry.coordinates.length > 0
+      ) {
+        for (let coord of feature.geometry.coordinates) {
+          if (coord[0][0][0] >= minLng && coord[0][0][0] <= maxLng) {
+            if (coord[0][1][1] >= minLat && coord[0][1][1] <= maxLat) {
+              filteredFeatures.features.push(feature);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  return new Promise<FeatureCollection>((resolve) => {
+    if (filteredFeatures.features.length > 0) {
+      resolve(filteredFeatures);
+    } else {
+      resolve({ type: "FeatureCollection", features: [] });
+    }
+  });
+}
+
+/**
+ * Extracts the search data directly from the json file, without calling the server.
+ * This is used for testing purposes, as it allows us to mock the server response.
+ * @param keyword the string to search for in descriptions
+ * @returns Promise<FeatureCollection> that resolves to a FeatureCollection that meets the criteria of the query
+ */
+export async function extractMockedSearchOverlay(
+  keyword: string
+): Promise<FeatureCollection> {
+  let filteredFeatures: FeatureCollection = {
+    type: "FeatureCollection",
+    features: [],
+  };
+  if (isFeatureCollection(fullDataset)) {
+    for (let feature of fullDataset.features) {
+      if (feature.properties) {
+        if (feature.properties.area_description_data) {
+          // iterate over the values of area_description_data
+          let values: string[] = Object.values(feature.properties.area_description_data);
+          for (let value of values) {
+            if (value) {
+              if (value.toLowerCase().includes(keyword.toLowerCase())) {
+                filteredFeatures.features.push(feature);
+              }
+          }
+          }
+        }
+      }
+    }
+  }
+
+  return new Promise<FeatureCollection>((resolve) => {
+    if (filteredFeatures.features.length > 0) {
+      resolve(filteredFeatures);
+    } else {
+      resolve({ type: "FeatureCollection", features: [] });
+    }
+  });
+}
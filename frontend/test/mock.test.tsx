@@ -4,7 +4,7 @@ import "@testing-library/jest-dom/extend-expect";
 import {
   extractMockedSearchOverlay,
   extractMockedRedliningOverlay,
-} from "../src/data-utils/filter-overlays";
+} from "../src/data-utils/mock-overlays";
 import { FeatureCollection } from "geojson";
 import ControlPanel, {
   keywordInputAccessibleRoleName,
@@ -41,6 +41,7 @@ beforeEach(async () => {
       filterBoundOverlay={extractMockedRedliningOverlay}
       filterSearchOverlay={extractMockedSearchOverlay}
       setBoundOverlay={() => {}}
+      resetBoundOverlay={() => ({ type: "FeatureCollection", features: [] })}
       setSearchOverlay={() => {}}
     />
   );